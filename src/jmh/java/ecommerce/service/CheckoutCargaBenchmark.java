@@ -0,0 +1,103 @@
+package ecommerce.service;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.external.EstoqueComLimiteDeConcorrencia;
+import ecommerce.external.LimiteDeConcorrencia;
+import ecommerce.external.PagamentoComLimiteDeConcorrencia;
+import ecommerce.fake.external.EstoqueSimulado;
+import ecommerce.fake.external.PagamentoSimulado;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static ecommerce.util.MetodosAuxilar.*;
+
+// Carga: tempo para finalizar 400 compras simultâneas contra parceiros simulados
+// com 20 ms de latência, no pool fixo de workers do Tomcat (16 threads) e em
+// threads virtuais, com o limite de 100 chamadas simultâneas por parceiro. Com
+// threads virtuais a vazão fica limitada pelos parceiros, não pelo pool.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CheckoutCargaBenchmark {
+
+    private static final int COMPRAS = 400;
+    private static final int THREADS_DO_TOMCAT = 16;
+    private static final int MAX_CONCORRENCIA_POR_PARCEIRO = 100;
+    private static final long LATENCIA_EM_MILLIS = 20;
+
+    @Param({"pool-fixo", "threads-virtuais"})
+    private String executor;
+
+    private CompraService compraService;
+
+    @Setup
+    public void setUp() {
+        FakeClienteRepository clienteRepositoryFake = new FakeClienteRepository();
+        FakeCarrinhoRepository carrinhoRepositoryFake = new FakeCarrinhoRepository();
+
+        for (long id = 1; id <= COMPRAS; id++) {
+            Cliente cliente = criarCliente(id, "Cliente " + id);
+            clienteRepositoryFake.adicionar(cliente);
+
+            CarrinhoDeCompras carrinho = criarCarrinho(criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L));
+            carrinho.setId(id);
+            carrinho.setCliente(cliente);
+            carrinhoRepositoryFake.adicionar(carrinho);
+        }
+
+        EstoqueSimulado estoque = new EstoqueSimulado();
+        estoque.setDisponivel(true);
+        estoque.setLatenciaEmMillis(LATENCIA_EM_MILLIS);
+        PagamentoSimulado pagamento = new PagamentoSimulado();
+        pagamento.setLatenciaEmMillis(LATENCIA_EM_MILLIS);
+
+        compraService = new CompraService(new CarrinhoDeComprasService(carrinhoRepositoryFake),
+                new ClienteService(clienteRepositoryFake),
+                new EstoqueComLimiteDeConcorrencia(estoque,
+                        new LimiteDeConcorrencia("estoque", MAX_CONCORRENCIA_POR_PARCEIRO, 10_000)),
+                new PagamentoComLimiteDeConcorrencia(pagamento,
+                        new LimiteDeConcorrencia("pagamento", MAX_CONCORRENCIA_POR_PARCEIRO, 10_000)));
+    }
+
+    @Benchmark
+    public int finalizarCompras() throws Exception {
+        try (ExecutorService pool = executor.equals("pool-fixo")
+                ? Executors.newFixedThreadPool(THREADS_DO_TOMCAT)
+                : Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<CompraDTO>> resultados = new ArrayList<>();
+            for (long id = 1; id <= COMPRAS; id++) {
+                long carrinhoId = id;
+                resultados.add(pool.submit(() -> compraService.finalizarCompra(carrinhoId, carrinhoId)));
+            }
+            int sucessos = 0;
+            for (Future<CompraDTO> resultado : resultados) {
+                sucessos += resultado.get().sucesso() ? 1 : 0;
+            }
+            return sucessos;
+        }
+    }
+}
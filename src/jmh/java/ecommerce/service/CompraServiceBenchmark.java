@@ -0,0 +1,96 @@
+package ecommerce.service;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.fake.external.EstoqueSimulado;
+import ecommerce.fake.external.PagamentoSimulado;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ecommerce.util.MetodosAuxilar.*;
+
+// Caminhos quentes da finalização de compra: cálculo do custo total, subtotal e o
+// fluxo completo de finalizarCompra sobre repositórios em memória e parceiros
+// simulados sem latência, para que só o custo da aplicação apareça no resultado.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompraServiceBenchmark {
+
+    private static final Long CARRINHO_ID = 1L;
+    private static final Long CLIENTE_ID = 1L;
+
+    @Param({"1", "10", "100", "1000"})
+    private int itens;
+
+    // Percentual de itens frágeis no carrinho
+    @Param({"0", "50", "100"})
+    private int percentualFrageis;
+
+    private CompraService compraService;
+    private CarrinhoDeCompras carrinho;
+
+    @Setup
+    public void setUp() {
+        Cliente cliente = criarCliente(CLIENTE_ID, "Cliente");
+
+        List<ItemCompra> itensCarrinho = new ArrayList<>();
+        for (int i = 0; i < itens; i++) {
+            BigDecimal preco = BigDecimal.valueOf(1999 + i, 2);
+            BigDecimal peso = BigDecimal.valueOf(250 + i % 500, 3);
+            boolean fragil = (i * 100) / itens < percentualFrageis;
+            ItemCompra item = fragil ? criarItemFragil(preco, peso, 2L) : criarItem(preco, peso, 1L);
+            item.getProduto().setId((long) i + 1);
+            itensCarrinho.add(item);
+        }
+
+        carrinho = new CarrinhoDeCompras(CARRINHO_ID, cliente, itensCarrinho, null);
+
+        FakeClienteRepository clienteRepository = new FakeClienteRepository();
+        clienteRepository.adicionar(cliente);
+        FakeCarrinhoRepository carrinhoRepository = new FakeCarrinhoRepository();
+        carrinhoRepository.adicionar(carrinho);
+
+        EstoqueSimulado estoque = new EstoqueSimulado();
+        estoque.setDisponivel(true);
+
+        compraService = new CompraService(new CarrinhoDeComprasService(carrinhoRepository),
+                new ClienteService(clienteRepository), estoque, new PagamentoSimulado());
+    }
+
+    @Benchmark
+    public BigDecimal calcularCustoTotal() {
+        return compraService.calcularCustoTotal(carrinho);
+    }
+
+    @Benchmark
+    public BigDecimal calcularSubtotal() {
+        return compraService.calcularSubtotal(carrinho.getItens());
+    }
+
+    @Benchmark
+    public CompraDTO finalizarCompra() {
+        return compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID);
+    }
+}
@@ -0,0 +1,113 @@
+package ecommerce.service.preco;
+
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static ecommerce.util.MetodosAuxilar.*;
+
+// Compara o cálculo anterior ao peso faturável (frete só pelo peso físico, com as
+// faixas fixas do calcularFrete original), congelado em FreteOriginal, com o motor
+// atual cobrando pelo peso faturável (físico ou cúbico) e faixas da região do
+// cliente. Rodar com o profiler de GC (-prof gc): as regras novas não devem alocar a mais.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreteBenchmark {
+
+    @Param({"10", "100"})
+    private int itens;
+
+    private final MotorDePreco pesoFaturavelPorRegiao = new MotorDePreco(TabelaDePreco.de(
+            TabelaDePreco.DESCONTOS_PADRAO, TabelaDePreco.FRETES_PADRAO,
+            Map.of(Regiao.NORTE, "5:1.00,10:3.00,50:5.50,*:9.00"), 6000));
+    private List<ItemCompra> carrinho;
+
+    @Setup
+    public void setUp() {
+        carrinho = new ArrayList<>();
+        for (int i = 0; i < itens; i++) {
+            ItemCompra item = criarItem(BigDecimal.valueOf(1999 + i, 2), BigDecimal.valueOf(250 + i, 3), 1L);
+            item.getProduto().setComprimento(BigDecimal.valueOf(3000 + i, 2));
+            item.getProduto().setLargura(BigDecimal.valueOf(2000, 2));
+            item.getProduto().setAltura(BigDecimal.valueOf(1500, 2));
+            carrinho.add(item);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal freteSoPeloPesoFisico() {
+        return FreteOriginal.calcularCustoTotal(carrinho);
+    }
+
+    @Benchmark
+    public BigDecimal fretePeloPesoFaturavelPorRegiao() {
+        return pesoFaturavelPorRegiao.calcularCustoTotal(carrinho, Regiao.NORTE);
+    }
+
+    // Cópia congelada do cálculo em ponto fixo de antes do peso faturável: uma
+    // passada somando subtotal, peso físico e unidades frágeis, e o frete pelas
+    // faixas do calcularFrete original (até 5 kg grátis, 10 kg a R$ 2,00, 50 kg a
+    // R$ 4,00, acima a R$ 7,00 por kg). Espera itens válidos e em ponto fixo.
+    static final class FreteOriginal {
+
+        private static final long[] LIMITES_GRAMAS = {5_000, 10_000, 50_000};
+        private static final long[] CENTAVOS_POR_KG = {0, 200, 400, 700};
+
+        private FreteOriginal() {
+        }
+
+        static BigDecimal calcularCustoTotal(List<ItemCompra> itens) {
+            long subtotalCentavos = 0;
+            long pesoGramas = 0;
+            long unidadesFrageis = 0;
+            for (ItemCompra item : itens) {
+                long quantidade = item.getQuantidade();
+                subtotalCentavos = Math.addExact(subtotalCentavos,
+                        Math.multiplyExact(item.getProduto().getPreco().movePointRight(2).longValueExact(), quantidade));
+                pesoGramas = Math.addExact(pesoGramas,
+                        Math.multiplyExact(item.getProduto().getPesoFisico().movePointRight(3).longValueExact(), quantidade));
+                if (Boolean.TRUE.equals(item.getProduto().isFragil())) {
+                    unidadesFrageis = Math.addExact(unidadesFrageis, quantidade);
+                }
+            }
+
+            // em milionésimos de real
+            long pontosBase = subtotalCentavos >= 100_000 ? 2_000 : subtotalCentavos >= 50_000 ? 1_000 : 0;
+            long descontoMilionesimos = Math.multiplyExact(subtotalCentavos, pontosBase);
+            long freteMilionesimos = Math.multiplyExact(Math.multiplyExact(pesoGramas, centavosPorKg(pesoGramas)), 10);
+            long taxaMilionesimos = Math.multiplyExact(Math.multiplyExact(unidadesFrageis, 500), 10_000);
+            long totalMilionesimos = Math.multiplyExact(subtotalCentavos, 10_000) - descontoMilionesimos
+                    + freteMilionesimos + taxaMilionesimos;
+            return BigDecimal.valueOf((totalMilionesimos + 5_000) / 10_000, 2);
+        }
+
+        private static long centavosPorKg(long pesoGramas) {
+            for (int faixa = 0; faixa < LIMITES_GRAMAS.length; faixa++) {
+                if (pesoGramas <= LIMITES_GRAMAS[faixa]) {
+                    return CENTAVOS_POR_KG[faixa];
+                }
+            }
+            return CENTAVOS_POR_KG[LIMITES_GRAMAS.length];
+        }
+    }
+}
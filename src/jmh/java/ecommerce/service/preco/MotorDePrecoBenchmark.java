@@ -0,0 +1,60 @@
+package ecommerce.service.preco;
+
+import ecommerce.entity.ItemCompra;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ecommerce.util.MetodosAuxilar.*;
+
+// Compara o cálculo em ponto fixo com o cálculo de referência em BigDecimal.
+// Rodar com o profiler de GC (-prof gc) para ver gc.alloc.rate.norm por operação.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotorDePrecoBenchmark {
+
+    @Param({"10", "100"})
+    private int itens;
+
+    private final MotorDePreco motor = new MotorDePreco();
+    private List<ItemCompra> carrinho;
+
+    @Setup
+    public void setUp() {
+        carrinho = new ArrayList<>();
+        for (int i = 0; i < itens; i++) {
+            BigDecimal preco = BigDecimal.valueOf(1999 + i, 2);
+            BigDecimal peso = BigDecimal.valueOf(250 + i, 3);
+            carrinho.add(i % 3 == 0
+                    ? criarItemFragil(preco, peso, 2L)
+                    : criarItem(preco, peso, 1L));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal pontoFixo() {
+        return motor.calcularCustoTotal(carrinho);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        return motor.calcularComBigDecimal(carrinho);
+    }
+}
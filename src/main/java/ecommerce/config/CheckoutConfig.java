@@ -0,0 +1,87 @@
+package ecommerce.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import ecommerce.external.EstoqueAsyncAdapter;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IEstoqueExternalAsync;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.external.PagamentoAsyncAdapter;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+
+@Configuration
+public class CheckoutConfig
+{
+
+	/**
+	 * Captura o contexto (a observação corrente e os demais thread locals
+	 * registrados) levado às tarefas dos executores de checkout e dos parceiros.
+	 */
+	@Bean
+	public ContextSnapshotFactory contextSnapshotFactory()
+	{
+		return ContextSnapshotFactory.builder().build();
+	}
+
+	/**
+	 * Executor usado para as chamadas aos serviços de estoque e pagamento quando
+	 * o cliente do parceiro só oferece a interface síncrona. No modo de threads
+	 * virtuais cada chamada ganha sua própria thread virtual; o limite de
+	 * concorrência fica a cargo de {@link DecoradorDeParceiros}. As tarefas rodam
+	 * com o contexto de quem as submeteu (inclusive a observação corrente), para
+	 * que os spans das chamadas aos parceiros fiquem sob o span da compra.
+	 */
+	@Bean(name = "checkoutExecutor", destroyMethod = "shutdown")
+	public ExecutorService checkoutExecutor(@Value("${compra.checkout.threads-virtuais:false}") boolean threadsVirtuais,
+			@Value("${compra.checkout.threads:16}") int threads, ContextSnapshotFactory contextSnapshotFactory)
+	{
+		ExecutorService executor = threadsVirtuais
+				? Executors.newVirtualThreadPerTaskExecutor()
+				: Executors.newFixedThreadPool(threads);
+		return ContextExecutorService.wrap(executor, () -> contextSnapshotFactory.captureAll());
+	}
+
+	/**
+	 * No modo de threads virtuais o Tomcat atende cada requisição (inclusive
+	 * /finalizar) em uma thread virtual, então uma compra esperando estoque ou
+	 * pagamento não ocupa mais uma thread do pool fixo de workers.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "compra.checkout.threads-virtuais", havingValue = "true")
+	public TomcatProtocolHandlerCustomizer<?> threadsVirtuaisNoTomcat()
+	{
+		return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	/**
+	 * Versão assíncrona do estoque. Um cliente nativamente assíncrono do parceiro
+	 * deve substituir este bean em vez de ser adaptado.
+	 */
+	@Bean
+	public IEstoqueExternalAsync estoqueExternalAsync(IEstoqueExternal estoqueExternal,
+			@Qualifier("checkoutExecutor") ExecutorService checkoutExecutor)
+	{
+		return new EstoqueAsyncAdapter(estoqueExternal, checkoutExecutor);
+	}
+
+	/**
+	 * Versão assíncrona do pagamento. Um cliente nativamente assíncrono do
+	 * parceiro deve substituir este bean em vez de ser adaptado.
+	 */
+	@Bean
+	public IPagamentoExternalAsync pagamentoExternalAsync(IPagamentoExternal pagamentoExternal,
+			@Qualifier("checkoutExecutor") ExecutorService checkoutExecutor)
+	{
+		return new PagamentoAsyncAdapter(pagamentoExternal, checkoutExecutor);
+	}
+}
@@ -0,0 +1,243 @@
+package ecommerce.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.env.Environment;
+
+import ecommerce.external.DisjuntorDeParceiro;
+import ecommerce.external.EstoqueComBaixaAgrupada;
+import ecommerce.external.EstoqueComDisjuntor;
+import ecommerce.external.EstoqueComLimiteDeConcorrencia;
+import ecommerce.external.EstoqueComLimiteDeTempo;
+import ecommerce.external.EstoqueComNiveisLocais;
+import ecommerce.external.EstoqueComRastreamento;
+import ecommerce.external.EstoqueComRequisicaoRedundante;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.LimiteDeConcorrencia;
+import ecommerce.external.LimiteDeTempo;
+import ecommerce.external.NiveisDeEstoque;
+import ecommerce.external.PagamentoComDisjuntor;
+import ecommerce.external.PagamentoComLimiteDeConcorrencia;
+import ecommerce.external.PagamentoComLimiteDeTempo;
+import ecommerce.external.PagamentoComRastreamento;
+import ecommerce.external.RastreamentoDeParceiro;
+import ecommerce.external.RequisicaoRedundante;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * Envolve os clientes de estoque e pagamento registrados no contexto com os
+ * decoradores configurados, sem que o restante da aplicação precise saber qual
+ * implementação concreta está por trás de {@link IEstoqueExternal} e
+ * {@link IPagamentoExternal}.
+ */
+public class DecoradorDeParceiros implements BeanPostProcessor, DisposableBean
+{
+
+	private final Environment environment;
+	private final ObjectProvider<ObservationRegistry> observationRegistry;
+	private final ObjectProvider<MeterRegistry> meterRegistry;
+	private final ObjectProvider<ContextSnapshotFactory> contextSnapshotFactory;
+
+	/**
+	 * Executor das chamadas com limite de tempo e das requisições redundantes:
+	 * threads virtuais, já que cada uma só espera pelo parceiro, levando junto o
+	 * contexto (span) de quem chamou. Criado na primeira decoração.
+	 */
+	private ExecutorService executorDosParceiros;
+
+	/**
+	 * Sondagens dos níveis locais de estoque e janelas das baixas agrupadas;
+	 * criado só se algum dos dois estiver habilitado.
+	 */
+	private ScheduledExecutorService agendador;
+
+	public DecoradorDeParceiros(Environment environment, ObjectProvider<ObservationRegistry> observationRegistry,
+			ObjectProvider<MeterRegistry> meterRegistry, ObjectProvider<ContextSnapshotFactory> contextSnapshotFactory)
+	{
+		this.environment = environment;
+		this.observationRegistry = observationRegistry;
+		this.meterRegistry = meterRegistry;
+		this.contextSnapshotFactory = contextSnapshotFactory;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName)
+	{
+		if (bean instanceof IEstoqueExternal estoque)
+		{
+			return decorarEstoque(estoque);
+		}
+		if (bean instanceof IPagamentoExternal pagamento)
+		{
+			return decorarPagamento(pagamento);
+		}
+		return bean;
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (agendador != null)
+		{
+			agendador.shutdownNow();
+		}
+		if (executorDosParceiros != null)
+		{
+			executorDosParceiros.shutdownNow();
+		}
+	}
+
+	/**
+	 * De fora para dentro: rastreamento, para que o span inclua também as
+	 * recusas e a espera por vaga; disjuntor, que com o parceiro degradado recusa
+	 * antes de ocupar uma vaga; limite de concorrência; e limite de tempo, cujo
+	 * estouro conta como falha no disjuntor e libera a vaga.
+	 *
+	 * No estoque, as requisições redundantes (se habilitadas) ficam por dentro
+	 * do disjuntor, que vê uma única chamada, e cada tentativa passa pelos
+	 * limites de concorrência e de tempo.
+	 */
+	private IEstoqueExternal decorarEstoque(IEstoqueExternal estoque)
+	{
+		IEstoqueExternal comLimites = new EstoqueComLimiteDeConcorrencia(
+				new EstoqueComLimiteDeTempo(estoque, limiteDeTempo("estoque")), limite("estoque"));
+		if (environment.getProperty("compra.parceiros.estoque.redundantes.habilitadas", Boolean.class, false))
+		{
+			comLimites = new EstoqueComRequisicaoRedundante(comLimites, requisicaoRedundante("estoque"));
+		}
+		IEstoqueExternal decorado = new EstoqueComRastreamento(
+				new EstoqueComDisjuntor(comLimites, disjuntor("estoque")), rastreamento("estoque"));
+		if (environment.getProperty("compra.parceiros.estoque.baixa-agrupada.habilitada", Boolean.class, false))
+		{
+			decorado = comBaixaAgrupada(decorado);
+		}
+		if (environment.getProperty("compra.parceiros.estoque.niveis-locais.habilitados", Boolean.class, false))
+		{
+			decorado = comNiveisLocais(decorado);
+		}
+		return decorado;
+	}
+
+	/**
+	 * A chamada agrupada passa por rastreamento, disjuntor e limites como
+	 * qualquer outra; por atender várias compras, o span dela fica sob o da
+	 * compra que completou o lote, ou sem pai quando o lote sai pela janela.
+	 */
+	private IEstoqueExternal comBaixaAgrupada(IEstoqueExternal estoque)
+	{
+		String prefixo = "compra.parceiros.estoque.baixa-agrupada.";
+		return new EstoqueComBaixaAgrupada(estoque,
+				environment.getProperty(prefixo + "janela-ms", Long.class, 5L),
+				environment.getProperty(prefixo + "maximo-de-pedidos", Integer.class, 50),
+				agendador(), executorDosParceiros(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+	}
+
+	/**
+	 * Os níveis locais ficam por fora de tudo: uma verificação respondida
+	 * localmente não abre span nem passa pelo disjuntor, e as baixas chegam a
+	 * eles com o resultado de cada compra, não o da chamada agrupada.
+	 */
+	private IEstoqueExternal comNiveisLocais(IEstoqueExternal estoque)
+	{
+		String prefixo = "compra.parceiros.estoque.niveis-locais.";
+		NiveisDeEstoque niveis = new NiveisDeEstoque(
+				environment.getProperty(prefixo + "maximo-de-produtos", Integer.class, 10_000),
+				environment.getProperty(prefixo + "margem", Long.class, 20L),
+				environment.getProperty(prefixo + "validade-ms", Long.class, 30_000L));
+		EstoqueComNiveisLocais comNiveis = new EstoqueComNiveisLocais(estoque, niveis,
+				environment.getProperty(prefixo + "quantidade-de-sondagem", Long.class, 200L),
+				meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+
+		long intervalo = environment.getProperty(prefixo + "sondagem-ms", Long.class, 10_000L);
+		agendador().scheduleWithFixedDelay(comNiveis::atualizarNiveis, intervalo, intervalo, TimeUnit.MILLISECONDS);
+		return comNiveis;
+	}
+
+	private IPagamentoExternal decorarPagamento(IPagamentoExternal pagamento)
+	{
+		IPagamentoExternal comLimites = new PagamentoComLimiteDeConcorrencia(
+				new PagamentoComLimiteDeTempo(pagamento, limiteDeTempo("pagamento")), limite("pagamento"));
+		return new PagamentoComRastreamento(new PagamentoComDisjuntor(comLimites, disjuntor("pagamento")),
+				rastreamento("pagamento"));
+	}
+
+	private RastreamentoDeParceiro rastreamento(String parceiro)
+	{
+		return new RastreamentoDeParceiro(parceiro, observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
+	}
+
+	private LimiteDeConcorrencia limite(String parceiro)
+	{
+		String prefixo = "compra.parceiros." + parceiro + ".";
+		return new LimiteDeConcorrencia(parceiro,
+				environment.getProperty(prefixo + "max-concorrencia", Integer.class, 64),
+				environment.getProperty(prefixo + "espera-ms", Long.class, 1000L));
+	}
+
+	private LimiteDeTempo limiteDeTempo(String parceiro)
+	{
+		return new LimiteDeTempo(parceiro,
+				environment.getProperty("compra.parceiros." + parceiro + ".timeout-ms", Long.class, 2000L),
+				executorDosParceiros());
+	}
+
+	private ExecutorService executorDosParceiros()
+	{
+		if (executorDosParceiros == null)
+		{
+			ContextSnapshotFactory fabrica = contextSnapshotFactory
+					.getIfAvailable(() -> ContextSnapshotFactory.builder().build());
+			executorDosParceiros = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+					() -> fabrica.captureAll());
+		}
+		return executorDosParceiros;
+	}
+
+	private ScheduledExecutorService agendador()
+	{
+		if (agendador == null)
+		{
+			agendador = Executors.newSingleThreadScheduledExecutor(
+					Thread.ofVirtual().name("agendador-de-parceiros").factory());
+		}
+		return agendador;
+	}
+
+	private RequisicaoRedundante requisicaoRedundante(String parceiro)
+	{
+		String prefixo = "compra.parceiros." + parceiro + ".redundantes.";
+		RequisicaoRedundante.Configuracao configuracao = new RequisicaoRedundante.Configuracao(
+				environment.getProperty(prefixo + "percentil", Integer.class, 95),
+				environment.getProperty(prefixo + "atraso-minimo-ms", Long.class, 10L),
+				environment.getProperty(prefixo + "atraso-inicial-ms", Long.class, 200L),
+				environment.getProperty(prefixo + "percentual-maximo", Integer.class, 5));
+		return new RequisicaoRedundante(parceiro, configuracao, executorDosParceiros(),
+				meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+	}
+
+	private DisjuntorDeParceiro disjuntor(String parceiro)
+	{
+		String prefixo = "compra.parceiros." + parceiro + ".disjuntor.";
+		DisjuntorDeParceiro.Configuracao configuracao = new DisjuntorDeParceiro.Configuracao(
+				environment.getProperty(prefixo + "janela", Integer.class, 50),
+				environment.getProperty(prefixo + "minimo-de-chamadas", Integer.class, 20),
+				environment.getProperty(prefixo + "percentual-de-falhas", Integer.class, 50),
+				environment.getProperty(prefixo + "chamada-lenta-ms", Long.class, 1000L),
+				environment.getProperty(prefixo + "percentual-de-lentas", Integer.class, 80),
+				environment.getProperty(prefixo + "aberto-ms", Long.class, 10_000L),
+				environment.getProperty(prefixo + "chamadas-de-teste", Integer.class, 5));
+		return new DisjuntorDeParceiro(parceiro, configuracao,
+				meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+	}
+}
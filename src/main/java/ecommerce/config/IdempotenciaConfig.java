@@ -0,0 +1,42 @@
+package ecommerce.config;
+
+import java.time.Clock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import ecommerce.repository.CompraIdempotenteRepository;
+import ecommerce.service.idempotencia.ArmazenamentoDeIdempotencia;
+import ecommerce.service.idempotencia.ArmazenamentoDeIdempotenciaEmMemoria;
+import ecommerce.service.idempotencia.ArmazenamentoDeIdempotenciaJpa;
+
+/**
+ * Escolhe onde ficam os resultados das compras com chave de idempotência, por
+ * {@code compra.idempotencia.armazenamento}: {@code memoria} (padrão, local a
+ * cada instância) ou {@code jpa} (no banco, compartilhado entre instâncias).
+ */
+@Configuration
+@EnableScheduling
+public class IdempotenciaConfig
+{
+
+	@Bean
+	@ConditionalOnProperty(name = "compra.idempotencia.armazenamento", havingValue = "memoria", matchIfMissing = true)
+	public ArmazenamentoDeIdempotencia armazenamentoDeIdempotenciaEmMemoria(
+			@Value("${compra.idempotencia.tamanho-maximo:100000}") long tamanhoMaximo,
+			@Value("${compra.idempotencia.ttl-ms:86400000}") long ttlMs)
+	{
+		return new ArmazenamentoDeIdempotenciaEmMemoria(tamanhoMaximo, ttlMs);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "compra.idempotencia.armazenamento", havingValue = "jpa")
+	public ArmazenamentoDeIdempotencia armazenamentoDeIdempotenciaJpa(CompraIdempotenteRepository repository,
+			@Value("${compra.idempotencia.ttl-ms:86400000}") long ttlMs)
+	{
+		return new ArmazenamentoDeIdempotenciaJpa(repository, ttlMs, Clock.systemUTC());
+	}
+}
@@ -0,0 +1,24 @@
+package ecommerce.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+@Configuration
+public class ParceirosConfig
+{
+
+	@Bean
+	public static BeanPostProcessor decoradorDeParceiros(Environment environment,
+			ObjectProvider<ObservationRegistry> observationRegistry, ObjectProvider<MeterRegistry> meterRegistry,
+			ObjectProvider<ContextSnapshotFactory> contextSnapshotFactory)
+	{
+		return new DecoradorDeParceiros(environment, observationRegistry, meterRegistry, contextSnapshotFactory);
+	}
+}
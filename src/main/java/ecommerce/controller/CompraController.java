@@ -1,11 +1,29 @@
 package ecommerce.controller;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import ecommerce.dto.CarrinhoClienteDTO;
 import ecommerce.dto.CompraDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.ResultadoCompraLoteDTO;
+import ecommerce.external.ParceiroIndisponivelException;
 import ecommerce.service.CompraService;
+import ecommerce.service.MetricasDeCompra;
+import ecommerce.service.idempotencia.IdempotenciaService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 
 @RestController
 @RequestMapping("/")
@@ -13,33 +31,156 @@ public class CompraController
 {
 
 	private final CompraService compraService;
+	private final IdempotenciaService idempotenciaService;
+	private final MetricasDeCompra metricas;
+	private final ObservationRegistry observationRegistry;
+	private final int tamanhoMaximoDoLote;
 
 	@Autowired
-	public CompraController(CompraService compraService)
+	public CompraController(CompraService compraService, IdempotenciaService idempotenciaService,
+			MetricasDeCompra metricas, ObservationRegistry observationRegistry,
+			@Value("${compra.lote.tamanho-maximo:100}") int tamanhoMaximoDoLote)
 	{
 		this.compraService = compraService;
+		this.idempotenciaService = idempotenciaService;
+		this.metricas = metricas;
+		this.observationRegistry = observationRegistry;
+		this.tamanhoMaximoDoLote = tamanhoMaximoDoLote;
 	}
 
+	/**
+	 * Com o header {@code Idempotency-Key}, repetições da mesma compra (por
+	 * exemplo, após um timeout no cliente) devolvem o resultado da primeira em vez
+	 * de autorizar o pagamento de novo.
+	 *
+	 * A compra roda dentro da observação {@code compra.finalizar}; as chamadas a
+	 * estoque e pagamento, inclusive as feitas em outras threads, viram spans
+	 * filhos dela.
+	 */
 	@PostMapping("/finalizar")
-	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId)
+	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId,
+			@RequestHeader(name = "Idempotency-Key", required = false) String chaveDeIdempotencia)
 	{
-		try
+		Observation observacao = Observation.createNotStarted("compra.finalizar", observationRegistry)
+				.highCardinalityKeyValue("carrinho.id", String.valueOf(carrinhoId))
+				.highCardinalityKeyValue("cliente.id", String.valueOf(clienteId))
+				.lowCardinalityKeyValue("idempotente", String.valueOf(chaveDeIdempotencia != null))
+				.start();
+
+		try (Observation.Scope scope = observacao.openScope())
 		{
-			CompraDTO compraDTO = compraService.finalizarCompra(carrinhoId, clienteId);
+			CompraDTO compraDTO = chaveDeIdempotencia == null
+					? compraService.finalizarCompra(carrinhoId, clienteId)
+					: idempotenciaService.executar(chaveDeIdempotencia, carrinhoId, clienteId,
+							() -> compraService.finalizarCompra(carrinhoId, clienteId));
+			observacao.lowCardinalityKeyValue("status", String.valueOf(HttpStatus.OK.value()));
 			return ResponseEntity.ok(compraDTO);
 		}
-		catch (IllegalArgumentException e)
+		catch (Exception e)
+		{
+			HttpStatus status = statusDaFalha(e);
+			metricas.registrarFalha(status.value());
+			observacao.lowCardinalityKeyValue("status", String.valueOf(status.value()));
+			observacao.error(e);
+			return ResponseEntity.status(status).body(new CompraDTO(false, null, mensagemDaFalha(e)));
+		}
+		finally
+		{
+			observacao.stop();
+		}
+	}
+
+	/**
+	 * Finaliza vários carrinhos em uma requisição. A resposta tem um resultado por
+	 * carrinho, na ordem do pedido, com o status que a finalização individual teria
+	 * devolvido; a falha de um carrinho não interrompe os demais.
+	 */
+	@PostMapping("/finalizar/lote")
+	public ResponseEntity<List<ResultadoCompraLoteDTO>> finalizarCompraEmLote(
+			@RequestBody List<CarrinhoClienteDTO> compras)
+	{
+		if (compras == null || compras.isEmpty())
+		{
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Lote vazio.");
+		}
+		if (compras.size() > tamanhoMaximoDoLote)
+		{
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Lote excede o máximo de " + tamanhoMaximoDoLote + " carrinhos.");
+		}
+
+		List<CompletableFuture<CompraDTO>> futuros = compraService.finalizarCompraEmLote(compras);
+
+		List<ResultadoCompraLoteDTO> resultados = new ArrayList<>(compras.size());
+		for (int i = 0; i < compras.size(); i++)
+		{
+			resultados.add(resultadoDoLote(compras.get(i), futuros.get(i)));
+		}
+		return ResponseEntity.ok(resultados);
+	}
+
+	/**
+	 * Composição do custo total do carrinho (subtotal, desconto, frete, taxa de
+	 * frágeis e total), sem reservar estoque nem autorizar pagamento. A resposta
+	 * leva uma {@code ETag} com a versão do carrinho e dos preços; com
+	 * {@code If-None-Match} igual a ela a resposta é 304, sem recalcular o preço.
+	 */
+	@GetMapping("/carrinho/{carrinhoId}/cotacao")
+	public ResponseEntity<CotacaoDTO> cotarCarrinho(@PathVariable Long carrinhoId, WebRequest request)
+	{
+		Optional<CotacaoDTO> cotacao;
+		try
+		{
+			cotacao = compraService.cotar(carrinhoId, request::checkNotModified);
+		}
+		catch (IllegalArgumentException | IllegalStateException e)
 		{
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CompraDTO(false, null, e.getMessage()));
+			throw new ResponseStatusException(statusDaFalha(e), e.getMessage(), e);
 		}
-		catch (IllegalStateException e)
+		// vazio: checkNotModified já respondeu 304 com a ETag
+		return cotacao.map(ResponseEntity::ok).orElse(null);
+	}
+
+	private ResultadoCompraLoteDTO resultadoDoLote(CarrinhoClienteDTO compra, CompletableFuture<CompraDTO> futuro)
+	{
+		try
 		{
-			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, e.getMessage()));
+			return new ResultadoCompraLoteDTO(compra.carrinhoId(), compra.clienteId(), HttpStatus.OK.value(),
+					futuro.join());
 		}
 		catch (Exception e)
 		{
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-					.body(new CompraDTO(false, null, "Erro ao processar compra."));
+			Throwable falha = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			HttpStatus status = statusDaFalha(falha);
+			metricas.registrarFalha(status.value());
+			return new ResultadoCompraLoteDTO(compra.carrinhoId(), compra.clienteId(), status.value(),
+					new CompraDTO(false, null, mensagemDaFalha(falha)));
+		}
+	}
+
+	private static HttpStatus statusDaFalha(Throwable e)
+	{
+		if (e instanceof IllegalArgumentException)
+		{
+			return HttpStatus.BAD_REQUEST;
+		}
+		if (e instanceof IllegalStateException)
+		{
+			return HttpStatus.CONFLICT;
+		}
+		if (e instanceof ParceiroIndisponivelException)
+		{
+			return HttpStatus.SERVICE_UNAVAILABLE;
+		}
+		return HttpStatus.INTERNAL_SERVER_ERROR;
+	}
+
+	private static String mensagemDaFalha(Throwable e)
+	{
+		if (statusDaFalha(e) == HttpStatus.INTERNAL_SERVER_ERROR)
+		{
+			return "Erro ao processar compra.";
 		}
+		return e.getMessage();
 	}
 }
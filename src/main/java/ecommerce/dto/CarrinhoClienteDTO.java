@@ -0,0 +1,5 @@
+package ecommerce.dto;
+
+public record CarrinhoClienteDTO(Long carrinhoId, Long clienteId)
+{
+}
@@ -0,0 +1,22 @@
+package ecommerce.dto;
+
+import java.util.Objects;
+
+import ecommerce.entity.TotaisDoCarrinho;
+
+/**
+ * Resultado da conferência dos totais de um carrinho: os gravados e os
+ * recalculados agora a partir dos itens e dos produtos. Totais nulos são
+ * totais não mantidos (ou, nos recalculados, itens que não cabem no ponto fixo).
+ * Os recalculados são da época dos preços atual, então totais gravados em uma
+ * época anterior divergem mesmo com os mesmos valores.
+ */
+public record ConferenciaDeTotaisDTO(Long carrinhoId, TotaisDoCarrinho armazenados, TotaisDoCarrinho recalculados)
+{
+
+	/** Se os totais gravados batem com os recalculados; um carrinho sem totais mantidos não tem o que divergir. */
+	public boolean consistente()
+	{
+		return armazenados == null || Objects.equals(armazenados, recalculados);
+	}
+}
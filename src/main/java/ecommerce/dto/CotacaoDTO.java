@@ -0,0 +1,13 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Composição do custo total de um carrinho, sem reserva de estoque nem
+ * pagamento: {@code subtotal - desconto + frete + taxaDeFragil = total}. O
+ * desconto reúne os descontos por categoria, por valor e do nível do cliente.
+ */
+public record CotacaoDTO(BigDecimal subtotal, BigDecimal desconto, BigDecimal frete, BigDecimal taxaDeFragil,
+		BigDecimal total)
+{
+}
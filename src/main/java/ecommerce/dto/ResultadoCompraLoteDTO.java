@@ -0,0 +1,9 @@
+package ecommerce.dto;
+
+/**
+ * Resultado de um carrinho dentro de uma finalização em lote: o status HTTP que
+ * a finalização individual teria devolvido e o {@link CompraDTO} correspondente.
+ */
+public record ResultadoCompraLoteDTO(Long carrinhoId, Long clienteId, Integer status, CompraDTO compra)
+{
+}
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -12,6 +13,13 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 
+/**
+ * Carrinho de um cliente. Além dos itens, guarda os {@link TotaisDoCarrinho},
+ * atualizados pela parcela de cada item incluído, removido ou com a quantidade
+ * alterada por {@link #adicionarItem}, {@link #removerItem} e
+ * {@link #alterarQuantidade}; quem altera {@link #getItens()} diretamente, ou
+ * troca a lista com {@link #setItens}, deixa os totais não mantidos.
+ */
 @Entity
 public class CarrinhoDeCompras
 {
@@ -30,6 +38,9 @@ public class CarrinhoDeCompras
 
 	private LocalDate data;
 
+	@Embedded
+	private TotaisDoCarrinho totais;
+
 	public CarrinhoDeCompras()
 	{
 	}
@@ -71,6 +82,7 @@ public class CarrinhoDeCompras
 	public void setItens(List<ItemCompra> itens)
 	{
 		this.itens = itens;
+		this.totais = null;
 	}
 
 	public LocalDate getData()
@@ -82,4 +94,41 @@ public class CarrinhoDeCompras
 	{
 		this.data = data;
 	}
+
+	/** Totais dos itens, ou {@code null} se não forem mantidos. */
+	public TotaisDoCarrinho getTotais()
+	{
+		return totais;
+	}
+
+	public void setTotais(TotaisDoCarrinho totais)
+	{
+		this.totais = totais;
+	}
+
+	/**
+	 * Inclui o item e soma a parcela dele aos totais. Uma parcela nula (valores
+	 * fora do ponto fixo) deixa os totais não mantidos.
+	 */
+	public void adicionarItem(ItemCompra item, TotaisDoCarrinho parcela)
+	{
+		itens.add(item);
+		totais = totais == null ? null : totais.mais(parcela);
+	}
+
+	/** Remove o item e subtrai a parcela dele dos totais. */
+	public void removerItem(ItemCompra item, TotaisDoCarrinho parcela)
+	{
+		itens.remove(item);
+		totais = totais == null ? null : totais.menos(parcela);
+	}
+
+	/** Troca a quantidade do item e, nos totais, a parcela anterior pela nova. */
+	public void alterarQuantidade(ItemCompra item, Long quantidade, TotaisDoCarrinho parcelaAnterior,
+			TotaisDoCarrinho novaParcela)
+	{
+		item.setQuantidade(quantidade);
+		TotaisDoCarrinho semOItem = totais == null ? null : totais.menos(parcelaAnterior);
+		totais = semOItem == null ? null : semOItem.mais(novaParcela);
+	}
 }
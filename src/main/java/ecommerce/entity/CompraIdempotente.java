@@ -0,0 +1,117 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Resultado de uma compra concluída, guardado pela chave de idempotência
+ * enviada pelo cliente, até {@code expiraEm}.
+ */
+@Entity
+public class CompraIdempotente
+{
+
+	@Id
+	private String chave;
+
+	private Long carrinhoId;
+
+	private Long clienteId;
+
+	private Boolean sucesso;
+
+	private Long transacaoPagamentoId;
+
+	private String mensagem;
+
+	private Instant expiraEm;
+
+	public CompraIdempotente()
+	{
+	}
+
+	public CompraIdempotente(String chave, Long carrinhoId, Long clienteId, Boolean sucesso, Long transacaoPagamentoId,
+			String mensagem, Instant expiraEm)
+	{
+		this.chave = chave;
+		this.carrinhoId = carrinhoId;
+		this.clienteId = clienteId;
+		this.sucesso = sucesso;
+		this.transacaoPagamentoId = transacaoPagamentoId;
+		this.mensagem = mensagem;
+		this.expiraEm = expiraEm;
+	}
+
+	// Getters e Setters
+	public String getChave()
+	{
+		return chave;
+	}
+
+	public void setChave(String chave)
+	{
+		this.chave = chave;
+	}
+
+	public Long getCarrinhoId()
+	{
+		return carrinhoId;
+	}
+
+	public void setCarrinhoId(Long carrinhoId)
+	{
+		this.carrinhoId = carrinhoId;
+	}
+
+	public Long getClienteId()
+	{
+		return clienteId;
+	}
+
+	public void setClienteId(Long clienteId)
+	{
+		this.clienteId = clienteId;
+	}
+
+	public Boolean getSucesso()
+	{
+		return sucesso;
+	}
+
+	public void setSucesso(Boolean sucesso)
+	{
+		this.sucesso = sucesso;
+	}
+
+	public Long getTransacaoPagamentoId()
+	{
+		return transacaoPagamentoId;
+	}
+
+	public void setTransacaoPagamentoId(Long transacaoPagamentoId)
+	{
+		this.transacaoPagamentoId = transacaoPagamentoId;
+	}
+
+	public String getMensagem()
+	{
+		return mensagem;
+	}
+
+	public void setMensagem(String mensagem)
+	{
+		this.mensagem = mensagem;
+	}
+
+	public Instant getExpiraEm()
+	{
+		return expiraEm;
+	}
+
+	public void setExpiraEm(Instant expiraEm)
+	{
+		this.expiraEm = expiraEm;
+	}
+}
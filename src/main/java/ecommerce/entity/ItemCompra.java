@@ -1,6 +1,7 @@
 package ecommerce.entity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -15,7 +16,9 @@ public class ItemCompra
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private Long id;
 
-	@ManyToOne // Vários itens podem se referir ao mesmo produto
+	// Vários itens podem se referir ao mesmo produto. Carregado sob demanda: na
+	// finalização da compra os dados do produto vêm do cache de produtos.
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "produto_id")
 	private Produto produto;
 
@@ -10,7 +10,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 
 @Entity
-public class Produto
+public class Produto implements ProdutoPrecificavel
 {
 
 	@Id
@@ -68,6 +68,7 @@ public class Produto
 		this.id = id;
 	}
 
+	@Override
 	public String getNome()
 	{
 		return nome;
@@ -88,6 +89,7 @@ public class Produto
 		this.descricao = descricao;
 	}
 
+	@Override
 	public BigDecimal getPreco()
 	{
 		return preco;
@@ -98,6 +100,7 @@ public class Produto
 		this.preco = preco;
 	}
 
+	@Override
 	public BigDecimal getPesoFisico()
 	{
 		return pesoFisico;
@@ -108,6 +111,7 @@ public class Produto
 		this.pesoFisico = pesoFisico;
 	}
 
+	@Override
 	public BigDecimal getComprimento()
 	{
 		return comprimento;
@@ -118,6 +122,7 @@ public class Produto
 		this.comprimento = comprimento;
 	}
 
+	@Override
 	public BigDecimal getLargura()
 	{
 		return largura;
@@ -128,6 +133,7 @@ public class Produto
 		this.largura = largura;
 	}
 
+	@Override
 	public BigDecimal getAltura()
 	{
 		return altura;
@@ -138,6 +144,7 @@ public class Produto
 		this.altura = altura;
 	}
 
+	@Override
 	public Boolean isFragil()
 	{
 		return fragil;
@@ -148,6 +155,7 @@ public class Produto
 		this.fragil = fragil;
 	}
 
+	@Override
 	public TipoProduto getTipo()
 	{
 		return tipo;
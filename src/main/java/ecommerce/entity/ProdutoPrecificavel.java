@@ -0,0 +1,27 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * Dados de um produto usados no cálculo de preço, comuns à entidade
+ * {@link Produto} e às cópias imutáveis mantidas em cache.
+ */
+public interface ProdutoPrecificavel
+{
+
+	String getNome();
+
+	BigDecimal getPreco();
+
+	BigDecimal getPesoFisico();
+
+	BigDecimal getComprimento();
+
+	BigDecimal getLargura();
+
+	BigDecimal getAltura();
+
+	Boolean isFragil();
+
+	TipoProduto getTipo();
+}
@@ -0,0 +1,133 @@
+package ecommerce.entity;
+
+import java.util.Objects;
+
+import jakarta.persistence.Embeddable;
+
+/**
+ * Totais dos itens de um carrinho, mantidos a cada item incluído, removido ou
+ * com a quantidade alterada, para que o preço saia sem percorrer os itens:
+ * subtotal em centavos, peso cobrado em gramas (o maior entre o físico e o
+ * cúbico de cada unidade) e unidades frágeis. O peso cúbico depende do fator de
+ * cubagem, que fica guardado junto; totais de outro fator não servem para o
+ * cálculo com a tabela atual.
+ *
+ * Os totais guardam a época dos preços em que foram calculados (veja
+ * {@code MotorDePreco#getEpocaDosPrecos()}); depois de uma escrita de produto
+ * ou de uma troca de tabela a época avança, e totais de uma época anterior não
+ * são mais usados para cotar.
+ *
+ * Imutável: cada alteração do carrinho troca os totais por outros. Gravado nas
+ * colunas do próprio carrinho; todas nulas indicam totais não mantidos.
+ */
+@Embeddable
+public class TotaisDoCarrinho
+{
+
+	private Long subtotalCentavos;
+	private Long pesoGramas;
+	private Long unidadesFrageis;
+	private Long fatorDeCubagem;
+	private Long epocaDosPrecos;
+
+	protected TotaisDoCarrinho()
+	{
+	}
+
+	public TotaisDoCarrinho(long subtotalCentavos, long pesoGramas, long unidadesFrageis, long fatorDeCubagem,
+			long epocaDosPrecos)
+	{
+		this.subtotalCentavos = subtotalCentavos;
+		this.pesoGramas = pesoGramas;
+		this.unidadesFrageis = unidadesFrageis;
+		this.fatorDeCubagem = fatorDeCubagem;
+		this.epocaDosPrecos = epocaDosPrecos;
+	}
+
+	/**
+	 * Soma dos totais com a parcela de um item, ou {@code null} se a parcela for
+	 * nula, tiver outro fator de cubagem ou outra época dos preços, ou se a soma
+	 * estourar.
+	 */
+	public TotaisDoCarrinho mais(TotaisDoCarrinho parcela)
+	{
+		return combinar(parcela, 1);
+	}
+
+	/** Como {@link #mais(TotaisDoCarrinho)}, subtraindo a parcela. */
+	public TotaisDoCarrinho menos(TotaisDoCarrinho parcela)
+	{
+		return combinar(parcela, -1);
+	}
+
+	private TotaisDoCarrinho combinar(TotaisDoCarrinho parcela, long sinal)
+	{
+		if (parcela == null || !fatorDeCubagem.equals(parcela.fatorDeCubagem)
+				|| epocaDosPrecos == null || !epocaDosPrecos.equals(parcela.epocaDosPrecos))
+		{
+			return null;
+		}
+		try
+		{
+			return new TotaisDoCarrinho(
+					Math.addExact(subtotalCentavos, Math.multiplyExact(sinal, parcela.subtotalCentavos)),
+					Math.addExact(pesoGramas, Math.multiplyExact(sinal, parcela.pesoGramas)),
+					Math.addExact(unidadesFrageis, Math.multiplyExact(sinal, parcela.unidadesFrageis)),
+					fatorDeCubagem, epocaDosPrecos);
+		}
+		catch (ArithmeticException e)
+		{
+			return null;
+		}
+	}
+
+	public long getSubtotalCentavos()
+	{
+		return subtotalCentavos;
+	}
+
+	public long getPesoGramas()
+	{
+		return pesoGramas;
+	}
+
+	public long getUnidadesFrageis()
+	{
+		return unidadesFrageis;
+	}
+
+	public long getFatorDeCubagem()
+	{
+		return fatorDeCubagem;
+	}
+
+	/** Época dos preços do cálculo, ou {@code null} em totais gravados antes de ela existir. */
+	public Long getEpocaDosPrecos()
+	{
+		return epocaDosPrecos;
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		return o instanceof TotaisDoCarrinho outros && Objects.equals(subtotalCentavos, outros.subtotalCentavos)
+				&& Objects.equals(pesoGramas, outros.pesoGramas)
+				&& Objects.equals(unidadesFrageis, outros.unidadesFrageis)
+				&& Objects.equals(fatorDeCubagem, outros.fatorDeCubagem)
+				&& Objects.equals(epocaDosPrecos, outros.epocaDosPrecos);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(subtotalCentavos, pesoGramas, unidadesFrageis, fatorDeCubagem, epocaDosPrecos);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TotaisDoCarrinho[subtotalCentavos=" + subtotalCentavos + ", pesoGramas=" + pesoGramas
+				+ ", unidadesFrageis=" + unidadesFrageis + ", fatorDeCubagem=" + fatorDeCubagem + ", epocaDosPrecos="
+				+ epocaDosPrecos + "]";
+	}
+}
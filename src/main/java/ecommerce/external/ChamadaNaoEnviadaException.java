@@ -0,0 +1,20 @@
+package ecommerce.external;
+
+/**
+ * O parceiro nem chegou a ser chamado: o disjuntor está aberto ou não houve
+ * permissão dentro do limite de chamadas simultâneas. Ao contrário de um
+ * limite de tempo esgotado, é certo que nada foi aplicado do outro lado.
+ */
+public class ChamadaNaoEnviadaException extends ParceiroIndisponivelException
+{
+
+	public ChamadaNaoEnviadaException(String mensagem)
+	{
+		super(mensagem);
+	}
+
+	public ChamadaNaoEnviadaException(String mensagem, Throwable causa)
+	{
+		super(mensagem, causa);
+	}
+}
@@ -0,0 +1,253 @@
+package ecommerce.external;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Disjuntor (circuit breaker) das chamadas a um parceiro. Fechado, registra o
+ * resultado das últimas chamadas em uma janela circular; quando a taxa de
+ * falhas ou a de chamadas lentas passa do limite, abre e passa a recusar as
+ * chamadas na hora, sem ocupar threads nem vagas do parceiro. Depois do tempo
+ * aberto deixa passar algumas chamadas de teste: se todas forem bem-sucedidas e
+ * rápidas volta a fechar, senão abre de novo.
+ *
+ * O estado atual e as transições são publicados no Micrometer como
+ * {@code parceiro.disjuntor.estado}, {@code parceiro.disjuntor.transicoes} e
+ * {@code parceiro.disjuntor.recusadas}.
+ */
+public class DisjuntorDeParceiro
+{
+
+	public enum Estado
+	{
+		FECHADO, ABERTO, MEIO_ABERTO
+	}
+
+	/**
+	 * @param janela             quantas das últimas chamadas são consideradas
+	 * @param minimoDeChamadas   chamadas na janela antes de avaliar as taxas
+	 * @param percentualDeFalhas taxa de falhas (%) que abre o disjuntor
+	 * @param chamadaLentaMs     a partir de quanto tempo uma chamada é lenta
+	 * @param percentualDeLentas taxa de chamadas lentas (%) que abre o disjuntor
+	 * @param abertoMs           quanto tempo fica aberto antes do meio-aberto
+	 * @param chamadasDeTeste    chamadas bem-sucedidas no meio-aberto para fechar
+	 */
+	public record Configuracao(int janela, int minimoDeChamadas, int percentualDeFalhas, long chamadaLentaMs,
+			int percentualDeLentas, long abertoMs, int chamadasDeTeste)
+	{
+
+		public Configuracao
+		{
+			if (janela <= 0 || minimoDeChamadas <= 0 || minimoDeChamadas > janela || chamadasDeTeste <= 0)
+			{
+				throw new IllegalArgumentException("Janela, mínimo de chamadas e chamadas de teste devem ser positivos.");
+			}
+			if (percentualDeFalhas <= 0 || percentualDeFalhas > 100 || percentualDeLentas <= 0
+					|| percentualDeLentas > 100)
+			{
+				throw new IllegalArgumentException("Percentuais do disjuntor devem estar entre 1 e 100.");
+			}
+		}
+	}
+
+	private static final byte FALHA = 1;
+	private static final byte LENTA = 2;
+
+	private final String parceiro;
+	private final Configuracao configuracao;
+	private final long chamadaLentaNanos;
+	private final long abertoNanos;
+	private final Ticker ticker;
+	private final Map<Estado, Map<Estado, Counter>> transicoes = new EnumMap<>(Estado.class);
+	private final Counter recusadas;
+
+	private final byte[] janela;
+	private int posicao;
+	private int chamadas;
+	private int falhas;
+	private int lentas;
+
+	private Estado estado = Estado.FECHADO;
+	private long geracao;
+	private long abertoDesde;
+	private int testesEmAndamento;
+	private int testesBemSucedidos;
+
+	public DisjuntorDeParceiro(String parceiro, Configuracao configuracao, MeterRegistry registry)
+	{
+		this(parceiro, configuracao, registry, Ticker.systemTicker());
+	}
+
+	DisjuntorDeParceiro(String parceiro, Configuracao configuracao, MeterRegistry registry, Ticker ticker)
+	{
+		this.parceiro = parceiro;
+		this.configuracao = configuracao;
+		this.chamadaLentaNanos = TimeUnit.MILLISECONDS.toNanos(configuracao.chamadaLentaMs());
+		this.abertoNanos = TimeUnit.MILLISECONDS.toNanos(configuracao.abertoMs());
+		this.ticker = ticker;
+		this.janela = new byte[configuracao.janela()];
+
+		for (Estado de : Estado.values())
+		{
+			Map<Estado, Counter> porDestino = new EnumMap<>(Estado.class);
+			for (Estado para : Estado.values())
+			{
+				if (de != para)
+				{
+					porDestino.put(para, Counter.builder("parceiro.disjuntor.transicoes")
+							.tag("parceiro", parceiro)
+							.tag("de", de.name().toLowerCase())
+							.tag("para", para.name().toLowerCase())
+							.register(registry));
+				}
+			}
+			transicoes.put(de, porDestino);
+
+			Gauge.builder("parceiro.disjuntor.estado", this, disjuntor -> disjuntor.getEstado() == de ? 1 : 0)
+					.description("1 no estado atual do disjuntor, 0 nos demais")
+					.tag("parceiro", parceiro)
+					.tag("estado", de.name().toLowerCase())
+					.register(registry);
+		}
+		this.recusadas = Counter.builder("parceiro.disjuntor.recusadas")
+				.tag("parceiro", parceiro)
+				.register(registry);
+	}
+
+	/**
+	 * Executa a chamada se o disjuntor permitir, registrando o resultado e a
+	 * duração. Com o disjuntor aberto lança
+	 * {@link ChamadaNaoEnviadaException} sem chamar o parceiro. Qualquer
+	 * exceção da chamada conta como falha.
+	 */
+	public <T> T executar(Supplier<T> chamada)
+	{
+		long geracaoDaChamada = permitir();
+		long inicio = ticker.read();
+		boolean falhou = true;
+		try
+		{
+			T retorno = chamada.get();
+			falhou = false;
+			return retorno;
+		}
+		finally
+		{
+			registrar(geracaoDaChamada, falhou, ticker.read() - inicio);
+		}
+	}
+
+	public void executar(Runnable chamada)
+	{
+		executar(() -> {
+			chamada.run();
+			return null;
+		});
+	}
+
+	public synchronized Estado getEstado()
+	{
+		return estado;
+	}
+
+	private synchronized long permitir()
+	{
+		if (estado == Estado.ABERTO)
+		{
+			if (ticker.read() - abertoDesde < abertoNanos)
+			{
+				recusar();
+			}
+			transicionar(Estado.MEIO_ABERTO);
+		}
+		if (estado == Estado.MEIO_ABERTO)
+		{
+			if (testesEmAndamento + testesBemSucedidos >= configuracao.chamadasDeTeste())
+			{
+				recusar();
+			}
+			testesEmAndamento++;
+		}
+		return geracao;
+	}
+
+	private void recusar()
+	{
+		recusadas.increment();
+		throw new ChamadaNaoEnviadaException("Serviço de " + parceiro + " indisponível no momento.");
+	}
+
+	/**
+	 * Resultados de chamadas admitidas antes da última transição são
+	 * descartados: não dizem nada sobre o estado atual do parceiro.
+	 */
+	private synchronized void registrar(long geracaoDaChamada, boolean falhou, long duracaoNanos)
+	{
+		if (geracaoDaChamada != geracao)
+		{
+			return;
+		}
+		boolean lenta = duracaoNanos >= chamadaLentaNanos;
+
+		if (estado == Estado.MEIO_ABERTO)
+		{
+			testesEmAndamento--;
+			if (falhou || lenta)
+			{
+				transicionar(Estado.ABERTO);
+			}
+			else if (++testesBemSucedidos >= configuracao.chamadasDeTeste())
+			{
+				transicionar(Estado.FECHADO);
+			}
+			return;
+		}
+
+		if (chamadas == janela.length)
+		{
+			byte antigo = janela[posicao];
+			falhas -= antigo & FALHA;
+			lentas -= (antigo & LENTA) >> 1;
+		}
+		else
+		{
+			chamadas++;
+		}
+		janela[posicao] = (byte) ((falhou ? FALHA : 0) | (lenta ? LENTA : 0));
+		falhas += falhou ? 1 : 0;
+		lentas += lenta ? 1 : 0;
+		posicao = (posicao + 1) % janela.length;
+
+		if (chamadas >= configuracao.minimoDeChamadas()
+				&& (falhas * 100 >= configuracao.percentualDeFalhas() * chamadas
+						|| lentas * 100 >= configuracao.percentualDeLentas() * chamadas))
+		{
+			transicionar(Estado.ABERTO);
+		}
+	}
+
+	private void transicionar(Estado novo)
+	{
+		transicoes.get(estado).get(novo).increment();
+		estado = novo;
+		geracao++;
+		posicao = 0;
+		chamadas = 0;
+		falhas = 0;
+		lentas = 0;
+		testesEmAndamento = 0;
+		testesBemSucedidos = 0;
+		if (novo == Estado.ABERTO)
+		{
+			abertoDesde = ticker.read();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package ecommerce.external;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Expõe um {@link IEstoqueExternal} síncrono como {@link IEstoqueExternalAsync},
+ * executando cada chamada no executor informado.
+ */
+public class EstoqueAsyncAdapter implements IEstoqueExternalAsync
+{
+
+	private final IEstoqueExternal estoque;
+	private final Executor executor;
+
+	public EstoqueAsyncAdapter(IEstoqueExternal estoque, Executor executor)
+	{
+		this.estoque = estoque;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return CompletableFuture.supplyAsync(() -> estoque.darBaixa(produtosIds, produtosQuantidades), executor);
+	}
+
+	@Override
+	public CompletableFuture<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+			List<Long> produtosQuantidades)
+	{
+		return CompletableFuture.supplyAsync(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades),
+				executor);
+	}
+}
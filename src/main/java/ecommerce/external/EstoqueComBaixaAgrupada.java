@@ -0,0 +1,220 @@
+package ecommerce.external;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Decora um {@link IEstoqueExternal} agrupando as baixas de compras
+ * simultâneas: os pedidos que chegam dentro de uma janela curta (ou até um
+ * máximo de pedidos) viram uma única chamada a {@code darBaixa}, com as
+ * quantidades somadas por produto, e cada compra recebe o resultado dela.
+ *
+ * Se o estoque recusar a baixa agrupada, ou ela nem chegar a ser enviada
+ * ({@link ChamadaNaoEnviadaException}), cada pedido é refeito sozinho, para que
+ * só quem realmente não tem estoque falhe. Isso supõe que o estoque aplica uma
+ * baixa inteira ou nada. Qualquer outra falha, como um limite de tempo
+ * esgotado, deixa incerto se a baixa foi aplicada: todos os pedidos do lote
+ * falham com ela, sem reenvio. A verificação de disponibilidade não é agrupada.
+ */
+public class EstoqueComBaixaAgrupada implements IEstoqueExternal
+{
+
+	private record Pedido(List<Long> produtosIds, List<Long> quantidades,
+			CompletableFuture<EstoqueBaixaDTO> resultado)
+	{
+	}
+
+	private final IEstoqueExternal estoque;
+	private final long janelaEmMillis;
+	private final int maximoDePedidos;
+	private final ScheduledExecutorService agendador;
+	private final Executor executor;
+	private final DistributionSummary pedidosPorChamada;
+	private final Counter chamadasRefeitas;
+
+	private List<Pedido> pendentes = new ArrayList<>();
+	private long geracao;
+
+	public EstoqueComBaixaAgrupada(IEstoqueExternal estoque, long janelaEmMillis, int maximoDePedidos,
+			ScheduledExecutorService agendador, Executor executor, MeterRegistry registry)
+	{
+		if (maximoDePedidos <= 0)
+		{
+			throw new IllegalArgumentException("Máximo de pedidos por baixa deve ser positivo.");
+		}
+		this.estoque = estoque;
+		this.janelaEmMillis = janelaEmMillis;
+		this.maximoDePedidos = maximoDePedidos;
+		this.agendador = agendador;
+		this.executor = executor;
+		this.pedidosPorChamada = DistributionSummary.builder("estoque.baixas.pedidos")
+				.description("Pedidos de baixa atendidos por cada chamada agrupada")
+				.register(registry);
+		this.chamadasRefeitas = Counter.builder("estoque.baixas.refeitas")
+				.description("Chamadas agrupadas recusadas ou não enviadas, refeitas pedido a pedido")
+				.register(registry);
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		Pedido pedido = new Pedido(produtosIds, produtosQuantidades, new CompletableFuture<>());
+		List<Pedido> lote = null;
+		synchronized (this)
+		{
+			pendentes.add(pedido);
+			if (pendentes.size() >= maximoDePedidos)
+			{
+				lote = retirarPendentes();
+			}
+			else if (pendentes.size() == 1)
+			{
+				long geracaoDoLote = geracao;
+				agendador.schedule(() -> despacharPorTempo(geracaoDoLote), janelaEmMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (lote != null)
+		{
+			List<Pedido> cheio = lote;
+			executor.execute(() -> enviar(cheio));
+		}
+		return aguardar(pedido.resultado());
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+	}
+
+	/** Ignora janelas de lotes que já saíram por terem atingido o máximo. */
+	private void despacharPorTempo(long geracaoDoLote)
+	{
+		List<Pedido> lote;
+		synchronized (this)
+		{
+			if (geracaoDoLote != geracao || pendentes.isEmpty())
+			{
+				return;
+			}
+			lote = retirarPendentes();
+		}
+		executor.execute(() -> enviar(lote));
+	}
+
+	private List<Pedido> retirarPendentes()
+	{
+		List<Pedido> lote = pendentes;
+		pendentes = new ArrayList<>();
+		geracao++;
+		return lote;
+	}
+
+	private void enviar(List<Pedido> lote)
+	{
+		pedidosPorChamada.record(lote.size());
+		if (lote.size() == 1)
+		{
+			enviarSozinho(lote.get(0));
+			return;
+		}
+
+		List<Long> produtosIds = new ArrayList<>();
+		List<Long> quantidades = new ArrayList<>();
+		somarPorProduto(lote, produtosIds, quantidades);
+
+		EstoqueBaixaDTO baixa;
+		try
+		{
+			baixa = estoque.darBaixa(produtosIds, quantidades);
+		}
+		catch (ChamadaNaoEnviadaException e)
+		{
+			baixa = null;
+		}
+		catch (RuntimeException e)
+		{
+			for (Pedido pedido : lote)
+			{
+				pedido.resultado().completeExceptionally(e);
+			}
+			return;
+		}
+
+		if (baixa != null && Boolean.TRUE.equals(baixa.sucesso()))
+		{
+			for (Pedido pedido : lote)
+			{
+				pedido.resultado().complete(baixa);
+			}
+			return;
+		}
+
+		chamadasRefeitas.increment();
+		for (Pedido pedido : lote)
+		{
+			executor.execute(() -> enviarSozinho(pedido));
+		}
+	}
+
+	private void enviarSozinho(Pedido pedido)
+	{
+		try
+		{
+			pedido.resultado().complete(estoque.darBaixa(pedido.produtosIds(), pedido.quantidades()));
+		}
+		catch (RuntimeException e)
+		{
+			pedido.resultado().completeExceptionally(e);
+		}
+	}
+
+	private static void somarPorProduto(List<Pedido> lote, List<Long> produtosIds, List<Long> quantidades)
+	{
+		Map<Long, Long> porProduto = new LinkedHashMap<>();
+		for (Pedido pedido : lote)
+		{
+			for (int i = 0; i < pedido.produtosIds().size(); i++)
+			{
+				porProduto.merge(pedido.produtosIds().get(i), pedido.quantidades().get(i), Long::sum);
+			}
+		}
+		produtosIds.addAll(porProduto.keySet());
+		quantidades.addAll(porProduto.values());
+	}
+
+	private static EstoqueBaixaDTO aguardar(CompletableFuture<EstoqueBaixaDTO> resultado)
+	{
+		try
+		{
+			return resultado.get();
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException falha)
+			{
+				throw falha;
+			}
+			throw new IllegalStateException("Erro ao dar baixa no estoque.", e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			// A baixa agrupada pode ser aplicada mesmo assim: como um tempo esgotado.
+			throw new ParceiroIndisponivelException("Baixa no estoque interrompida.", e);
+		}
+	}
+}
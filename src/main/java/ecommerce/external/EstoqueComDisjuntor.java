@@ -0,0 +1,36 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Decora um {@link IEstoqueExternal} passando as chamadas ao serviço de
+ * estoque por um {@link DisjuntorDeParceiro}, que as recusa na hora enquanto o
+ * serviço está degradado.
+ */
+public class EstoqueComDisjuntor implements IEstoqueExternal
+{
+
+	private final IEstoqueExternal estoque;
+	private final DisjuntorDeParceiro disjuntor;
+
+	public EstoqueComDisjuntor(IEstoqueExternal estoque, DisjuntorDeParceiro disjuntor)
+	{
+		this.estoque = estoque;
+		this.disjuntor = disjuntor;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return disjuntor.executar(() -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return disjuntor.executar(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+}
@@ -0,0 +1,35 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Decora um {@link IEstoqueExternal} limitando as chamadas simultâneas ao
+ * serviço de estoque.
+ */
+public class EstoqueComLimiteDeConcorrencia implements IEstoqueExternal
+{
+
+	private final IEstoqueExternal estoque;
+	private final LimiteDeConcorrencia limite;
+
+	public EstoqueComLimiteDeConcorrencia(IEstoqueExternal estoque, LimiteDeConcorrencia limite)
+	{
+		this.estoque = estoque;
+		this.limite = limite;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return limite.executar(() -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return limite.executar(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+}
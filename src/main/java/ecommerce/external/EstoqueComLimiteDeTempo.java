@@ -0,0 +1,35 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Decora um {@link IEstoqueExternal} limitando quanto tempo se espera por cada
+ * chamada ao serviço de estoque.
+ */
+public class EstoqueComLimiteDeTempo implements IEstoqueExternal
+{
+
+	private final IEstoqueExternal estoque;
+	private final LimiteDeTempo limite;
+
+	public EstoqueComLimiteDeTempo(IEstoqueExternal estoque, LimiteDeTempo limite)
+	{
+		this.estoque = estoque;
+		this.limite = limite;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return limite.executar(() -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return limite.executar(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+}
@@ -0,0 +1,127 @@
+package ecommerce.external;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Decora um {@link IEstoqueExternal} respondendo localmente a verificação de
+ * disponibilidade quando os {@link NiveisDeEstoque} conhecidos cobrem o pedido
+ * com folga; nesse caso a quantidade é reservada localmente e o estoque não é
+ * chamado. A baixa vai sempre ao estoque, que continua sendo quem decide.
+ *
+ * Os níveis são alimentados pelas respostas (verificações aprovadas descontam,
+ * produtos indisponíveis e baixas que falham zeram) e por
+ * {@link #atualizarNiveis()}, que de tempos em tempos sonda todos os produtos
+ * acompanhados em uma única chamada, pedindo a quantidade de sondagem de cada.
+ */
+public class EstoqueComNiveisLocais implements IEstoqueExternal
+{
+
+	private final IEstoqueExternal estoque;
+	private final NiveisDeEstoque niveis;
+	private final long quantidadeDeSondagem;
+	private final Counter verificacoesLocais;
+	private final Counter verificacoesRemotas;
+
+	public EstoqueComNiveisLocais(IEstoqueExternal estoque, NiveisDeEstoque niveis, long quantidadeDeSondagem,
+			MeterRegistry registry)
+	{
+		this.estoque = estoque;
+		this.niveis = niveis;
+		this.quantidadeDeSondagem = quantidadeDeSondagem;
+		this.verificacoesLocais = verificacoes(registry, "local");
+		this.verificacoesRemotas = verificacoes(registry, "remota");
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		EstoqueBaixaDTO baixa = estoque.darBaixa(produtosIds, produtosQuantidades);
+		if (baixa == null || !Boolean.TRUE.equals(baixa.sucesso()))
+		{
+			niveis.zerar(produtosIds);
+		}
+		return baixa;
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		Map<Long, Long> pedido = NiveisDeEstoque.porProduto(produtosIds, produtosQuantidades);
+		if (niveis.reservar(pedido))
+		{
+			verificacoesLocais.increment();
+			return new DisponibilidadeDTO(true, List.of());
+		}
+
+		verificacoesRemotas.increment();
+		DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+		if (disponibilidade != null && Boolean.TRUE.equals(disponibilidade.disponivel()))
+		{
+			niveis.consumir(pedido);
+		}
+		else if (disponibilidade != null && disponibilidade.idsProdutosIndisponiveis() != null)
+		{
+			niveis.zerar(disponibilidade.idsProdutosIndisponiveis());
+		}
+		return disponibilidade;
+	}
+
+	/**
+	 * Sonda os produtos acompanhados. Se o estoque falhar ou não disser quais
+	 * produtos faltam, nada é confirmado e os níveis simplesmente expiram.
+	 */
+	public void atualizarNiveis()
+	{
+		NiveisDeEstoque.Sondagem sondagem = niveis.iniciarSondagem();
+		List<Long> produtosIds = sondagem.produtosIds();
+		if (produtosIds.isEmpty())
+		{
+			return;
+		}
+
+		DisponibilidadeDTO resposta;
+		try
+		{
+			resposta = estoque.verificarDisponibilidade(produtosIds,
+					Collections.nCopies(produtosIds.size(), quantidadeDeSondagem));
+		}
+		catch (RuntimeException e)
+		{
+			return;
+		}
+
+		if (resposta == null)
+		{
+			return;
+		}
+		if (Boolean.TRUE.equals(resposta.disponivel()))
+		{
+			niveis.confirmar(sondagem, produtosIds, quantidadeDeSondagem);
+		}
+		else if (resposta.idsProdutosIndisponiveis() != null && !resposta.idsProdutosIndisponiveis().isEmpty())
+		{
+			Set<Long> indisponiveis = new HashSet<>(resposta.idsProdutosIndisponiveis());
+			List<Long> confirmados = new ArrayList<>(produtosIds);
+			confirmados.removeAll(indisponiveis);
+			niveis.zerar(indisponiveis);
+			niveis.confirmar(sondagem, confirmados, quantidadeDeSondagem);
+		}
+	}
+
+	private static Counter verificacoes(MeterRegistry registry, String origem)
+	{
+		return Counter.builder("estoque.verificacoes")
+				.tag("origem", origem)
+				.register(registry);
+	}
+}
@@ -0,0 +1,45 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import io.micrometer.common.KeyValues;
+
+/**
+ * Decora um {@link IEstoqueExternal} com uma observação por chamada, com a
+ * quantidade de itens e o resultado.
+ */
+public class EstoqueComRastreamento implements IEstoqueExternal
+{
+
+	private final IEstoqueExternal estoque;
+	private final RastreamentoDeParceiro rastreamento;
+
+	public EstoqueComRastreamento(IEstoqueExternal estoque, RastreamentoDeParceiro rastreamento)
+	{
+		this.estoque = estoque;
+		this.rastreamento = rastreamento;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return rastreamento.observar("darBaixa", itens(produtosIds),
+				() -> estoque.darBaixa(produtosIds, produtosQuantidades),
+				baixa -> Boolean.TRUE.equals(baixa.sucesso()) ? "sucesso" : "falha");
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return rastreamento.observar("verificarDisponibilidade", itens(produtosIds),
+				() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades),
+				disponibilidade -> Boolean.TRUE.equals(disponibilidade.disponivel()) ? "disponivel" : "indisponivel");
+	}
+
+	private static KeyValues itens(List<Long> produtosIds)
+	{
+		return KeyValues.of("compra.itens", String.valueOf(produtosIds.size()));
+	}
+}
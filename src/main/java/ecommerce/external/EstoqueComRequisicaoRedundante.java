@@ -0,0 +1,36 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Decora um {@link IEstoqueExternal} com requisições redundantes na
+ * verificação de disponibilidade, que só lê o estoque. A baixa não é
+ * idempotente e vai sempre direto, uma única vez.
+ */
+public class EstoqueComRequisicaoRedundante implements IEstoqueExternal
+{
+
+	private final IEstoqueExternal estoque;
+	private final RequisicaoRedundante redundante;
+
+	public EstoqueComRequisicaoRedundante(IEstoqueExternal estoque, RequisicaoRedundante redundante)
+	{
+		this.estoque = estoque;
+		this.redundante = redundante;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return estoque.darBaixa(produtosIds, produtosQuantidades);
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return redundante.executar(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+}
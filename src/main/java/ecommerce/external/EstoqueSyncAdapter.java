@@ -0,0 +1,33 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Expõe um {@link IEstoqueExternalAsync} como {@link IEstoqueExternal}, bloqueando
+ * a thread chamadora até a resposta.
+ */
+public class EstoqueSyncAdapter implements IEstoqueExternal
+{
+
+	private final IEstoqueExternalAsync estoque;
+
+	public EstoqueSyncAdapter(IEstoqueExternalAsync estoque)
+	{
+		this.estoque = estoque;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return ResultadoAsync.aguardar(estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return ResultadoAsync.aguardar(estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+}
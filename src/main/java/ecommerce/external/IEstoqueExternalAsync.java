@@ -0,0 +1,21 @@
+package ecommerce.external;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Contraparte não bloqueante de {@link IEstoqueExternal}: as chamadas retornam
+ * imediatamente e o resultado (ou a falha) chega pelo futuro.
+ */
+public interface IEstoqueExternalAsync
+{
+
+	public CompletableFuture<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades);
+
+	public CompletableFuture<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+			List<Long> produtosQuantidades);
+
+}
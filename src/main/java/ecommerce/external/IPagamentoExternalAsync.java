@@ -0,0 +1,17 @@
+package ecommerce.external;
+
+import java.util.concurrent.CompletableFuture;
+
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Contraparte não bloqueante de {@link IPagamentoExternal}: as chamadas retornam
+ * imediatamente e o resultado (ou a falha) chega pelo futuro.
+ */
+public interface IPagamentoExternalAsync
+{
+
+	CompletableFuture<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal);
+
+	CompletableFuture<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId);
+}
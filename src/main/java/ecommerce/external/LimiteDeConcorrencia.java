@@ -0,0 +1,71 @@
+package ecommerce.external;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limita quantas chamadas simultâneas podem estar em andamento contra um
+ * parceiro. Quem não consegue uma permissão dentro da espera configurada falha,
+ * em vez de se somar a uma fila sem limite durante um pico de latência.
+ */
+public class LimiteDeConcorrencia
+{
+
+	private final String parceiro;
+	private final Semaphore permissoes;
+	private final long esperaEmMillis;
+
+	public LimiteDeConcorrencia(String parceiro, int maximoDeChamadas, long esperaEmMillis)
+	{
+		if (maximoDeChamadas <= 0)
+		{
+			throw new IllegalArgumentException("Máximo de chamadas simultâneas deve ser positivo.");
+		}
+		this.parceiro = parceiro;
+		this.permissoes = new Semaphore(maximoDeChamadas, true);
+		this.esperaEmMillis = esperaEmMillis;
+	}
+
+	public <T> T executar(Supplier<T> chamada)
+	{
+		adquirir();
+		try
+		{
+			return chamada.get();
+		}
+		finally
+		{
+			permissoes.release();
+		}
+	}
+
+	public void executar(Runnable chamada)
+	{
+		executar(() -> {
+			chamada.run();
+			return null;
+		});
+	}
+
+	public int getPermissoesDisponiveis()
+	{
+		return permissoes.availablePermits();
+	}
+
+	private void adquirir()
+	{
+		try
+		{
+			if (!permissoes.tryAcquire(esperaEmMillis, TimeUnit.MILLISECONDS))
+			{
+				throw new ChamadaNaoEnviadaException("Serviço de " + parceiro + " sobrecarregado.");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ChamadaNaoEnviadaException("Chamada ao serviço de " + parceiro + " interrompida.", e);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package ecommerce.external;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Limita quanto tempo quem chama espera por um parceiro. A chamada roda no
+ * executor informado e, se não terminar dentro do limite, é interrompida e
+ * quem chama recebe uma falha, em vez de ficar preso à latência do parceiro.
+ * Limite zero ou negativo desliga o controle e chama direto.
+ */
+public class LimiteDeTempo
+{
+
+	private final String parceiro;
+	private final long limiteEmMillis;
+	private final ExecutorService executor;
+
+	public LimiteDeTempo(String parceiro, long limiteEmMillis, ExecutorService executor)
+	{
+		this.parceiro = parceiro;
+		this.limiteEmMillis = limiteEmMillis;
+		this.executor = executor;
+	}
+
+	public <T> T executar(Supplier<T> chamada)
+	{
+		if (limiteEmMillis <= 0)
+		{
+			return chamada.get();
+		}
+
+		Future<T> futuro = executor.submit(chamada::get);
+		try
+		{
+			return futuro.get(limiteEmMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			futuro.cancel(true);
+			throw new ParceiroIndisponivelException(
+					"Serviço de " + parceiro + " não respondeu em " + limiteEmMillis + " ms.", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException falha)
+			{
+				throw falha;
+			}
+			if (e.getCause() instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw new IllegalStateException("Falha na chamada ao serviço de " + parceiro + ".", e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			futuro.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ParceiroIndisponivelException("Chamada ao serviço de " + parceiro + " interrompida.", e);
+		}
+	}
+
+	public void executar(Runnable chamada)
+	{
+		executar(() -> {
+			chamada.run();
+			return null;
+		});
+	}
+}
@@ -0,0 +1,292 @@
+package ecommerce.external;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Nível de estoque conhecido localmente, por produto. Como o estoque não
+ * informa quantidades, o nível é um mínimo confirmado: a última sondagem
+ * confirmou ao menos aquela quantidade, e cada verificação aprovada desde então
+ * já foi descontada. As reservas são feitas sem trava, com compare-and-set no
+ * contador de cada produto.
+ *
+ * Um nível só vale até a validade configurada após a última confirmação, e só
+ * cobre um pedido se sobrar ao menos a margem depois dele; produtos perto de
+ * zero, ou sem confirmação recente, continuam indo ao estoque.
+ *
+ * Uma sondagem leva tempo, e os pedidos aprovados enquanto ela está em
+ * andamento não aparecem na resposta. Por isso a confirmação aplica o nível
+ * sondado menos o que foi descontado desde o início da sondagem, e um produto
+ * zerado nesse meio tempo continua zerado.
+ */
+public class NiveisDeEstoque
+{
+
+	private final Map<Long, Nivel> niveis = new ConcurrentHashMap<>();
+	private final int maximoDeProdutos;
+	private final long margem;
+	private final long validadeNanos;
+	private final Ticker ticker;
+
+	public NiveisDeEstoque(int maximoDeProdutos, long margem, long validadeMs)
+	{
+		this(maximoDeProdutos, margem, validadeMs, Ticker.systemTicker());
+	}
+
+	NiveisDeEstoque(int maximoDeProdutos, long margem, long validadeMs, Ticker ticker)
+	{
+		this.maximoDeProdutos = maximoDeProdutos;
+		this.margem = margem;
+		this.validadeNanos = TimeUnit.MILLISECONDS.toNanos(validadeMs);
+		this.ticker = ticker;
+	}
+
+	/**
+	 * Reserva as quantidades se o nível local de todos os produtos cobrir o
+	 * pedido com folga. Se algum não cobrir, devolve o que já foi reservado e
+	 * retorna {@code false}.
+	 */
+	public boolean reservar(Map<Long, Long> quantidades)
+	{
+		long agora = ticker.read();
+		List<Map.Entry<Nivel, Long>> reservados = new ArrayList<>(quantidades.size());
+		for (Map.Entry<Long, Long> pedido : quantidades.entrySet())
+		{
+			Nivel nivel = niveis.get(pedido.getKey());
+			if (nivel == null)
+			{
+				desfazer(reservados);
+				return false;
+			}
+			nivel.usadoEm = agora;
+			if (!nivel.reservar(pedido.getValue(), agora))
+			{
+				desfazer(reservados);
+				return false;
+			}
+			reservados.add(Map.entry(nivel, pedido.getValue()));
+		}
+		return true;
+	}
+
+	/**
+	 * Registra uma verificação aprovada pelo estoque: o produto passa a ser
+	 * acompanhado (e sondado) e a quantidade é descontada do nível conhecido.
+	 */
+	public void consumir(Map<Long, Long> quantidades)
+	{
+		long agora = ticker.read();
+		for (Map.Entry<Long, Long> pedido : quantidades.entrySet())
+		{
+			Nivel nivel = acompanhar(pedido.getKey(), agora);
+			if (nivel != null)
+			{
+				nivel.usadoEm = agora;
+				nivel.consumir(pedido.getValue());
+			}
+		}
+	}
+
+	/** Produtos indisponíveis, ou cuja baixa falhou, voltam a ir ao estoque. */
+	public void zerar(Collection<Long> produtosIds)
+	{
+		for (Long id : produtosIds)
+		{
+			Nivel nivel = niveis.get(id);
+			if (nivel != null)
+			{
+				nivel.zerar();
+			}
+		}
+	}
+
+	/**
+	 * Resultado de uma sondagem: o estoque tinha ao menos {@code quantidade} de
+	 * cada produto. Produtos que deixaram de ser acompanhados desde o início da
+	 * sondagem são ignorados.
+	 */
+	public void confirmar(Sondagem sondagem, Collection<Long> produtosIds, long quantidade)
+	{
+		long agora = ticker.read();
+		for (Long id : produtosIds)
+		{
+			Marca marca = sondagem.marcas.get(id);
+			if (marca != null && niveis.get(id) == marca.nivel()
+					&& marca.nivel().confirmar(marca.descontado(), marca.zeragens(), quantidade))
+			{
+				marca.nivel().confirmadoEm = agora;
+			}
+		}
+	}
+
+	/**
+	 * Inicia uma sondagem dos produtos pedidos dentro da validade, marcando quanto
+	 * de cada um já foi descontado. Os demais deixam de ser acompanhados até a
+	 * próxima verificação aprovada.
+	 */
+	public Sondagem iniciarSondagem()
+	{
+		long agora = ticker.read();
+		niveis.values().removeIf(nivel -> agora - nivel.usadoEm > validadeNanos);
+		Map<Long, Marca> marcas = new LinkedHashMap<>();
+		niveis.forEach((id, nivel) -> marcas.put(id,
+				new Marca(nivel, nivel.descontado.get(), nivel.zeragens.get())));
+		return new Sondagem(marcas);
+	}
+
+	public long getQuantidade(Long produtoId)
+	{
+		Nivel nivel = niveis.get(produtoId);
+		return nivel == null ? 0 : nivel.quantidade.get();
+	}
+
+	/** Soma as quantidades por produto, já que um pedido pode repetir produtos. */
+	public static Map<Long, Long> porProduto(List<Long> produtosIds, List<Long> quantidades)
+	{
+		Map<Long, Long> porProduto = new LinkedHashMap<>();
+		for (int i = 0; i < produtosIds.size(); i++)
+		{
+			porProduto.merge(produtosIds.get(i), quantidades.get(i), Long::sum);
+		}
+		return porProduto;
+	}
+
+	private Nivel acompanhar(Long produtoId, long agora)
+	{
+		Nivel nivel = niveis.get(produtoId);
+		if (nivel != null || niveis.size() >= maximoDeProdutos)
+		{
+			return nivel;
+		}
+		return niveis.computeIfAbsent(produtoId, id -> new Nivel(agora));
+	}
+
+	private static void desfazer(List<Map.Entry<Nivel, Long>> reservados)
+	{
+		for (Map.Entry<Nivel, Long> reservado : reservados)
+		{
+			reservado.getKey().devolver(reservado.getValue());
+		}
+	}
+
+	/** Produtos de uma sondagem em andamento, a passar para {@link #confirmar}. */
+	public static final class Sondagem
+	{
+
+		private final Map<Long, Marca> marcas;
+
+		private Sondagem(Map<Long, Marca> marcas)
+		{
+			this.marcas = marcas;
+		}
+
+		public List<Long> produtosIds()
+		{
+			return new ArrayList<>(marcas.keySet());
+		}
+	}
+
+	private record Marca(Nivel nivel, long descontado, long zeragens)
+	{
+	}
+
+	private final class Nivel
+	{
+
+		final AtomicLong quantidade = new AtomicLong();
+		/**
+		 * Total já descontado do nível. Sobe antes de o nível cair e desce depois
+		 * de ele voltar, então uma confirmação nunca deixa de descontar um pedido
+		 * feito durante a sondagem; no pior caso o desconta duas vezes.
+		 */
+		final AtomicLong descontado = new AtomicLong();
+		final AtomicLong zeragens = new AtomicLong();
+		volatile long confirmadoEm;
+		volatile long usadoEm;
+
+		Nivel(long agora)
+		{
+			this.confirmadoEm = agora - validadeNanos - 1;
+			this.usadoEm = agora;
+		}
+
+		boolean reservar(long pedido, long agora)
+		{
+			if (agora - confirmadoEm > validadeNanos)
+			{
+				return false;
+			}
+			descontado.addAndGet(pedido);
+			long atual;
+			do
+			{
+				atual = quantidade.get();
+				if (atual - pedido < margem)
+				{
+					descontado.addAndGet(-pedido);
+					return false;
+				}
+			}
+			while (!quantidade.compareAndSet(atual, atual - pedido));
+			return true;
+		}
+
+		void devolver(long pedido)
+		{
+			quantidade.addAndGet(pedido);
+			descontado.addAndGet(-pedido);
+		}
+
+		void consumir(long pedido)
+		{
+			descontado.addAndGet(pedido);
+			quantidade.accumulateAndGet(pedido, (atual, consumido) -> Math.max(0, atual - consumido));
+		}
+
+		void zerar()
+		{
+			zeragens.incrementAndGet();
+			quantidade.set(0);
+		}
+
+		/**
+		 * Aplica o nível sondado menos o descontado desde a marca; recusa se o
+		 * nível foi zerado desde então. Repete enquanto houver descontos em
+		 * andamento, para que nenhum se perca.
+		 */
+		boolean confirmar(long descontadoNaMarca, long zeragensNaMarca, long sondada)
+		{
+			while (true)
+			{
+				if (zeragens.get() != zeragensNaMarca)
+				{
+					return false;
+				}
+				long descontadoAgora = descontado.get();
+				long atual = quantidade.get();
+				long confirmada = Math.max(0, sondada - (descontadoAgora - descontadoNaMarca));
+				if (!quantidade.compareAndSet(atual, confirmada))
+				{
+					continue;
+				}
+				if (zeragens.get() != zeragensNaMarca)
+				{
+					quantidade.set(0);
+					return false;
+				}
+				if (descontado.get() == descontadoAgora)
+				{
+					return true;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package ecommerce.external;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Expõe um {@link IPagamentoExternal} síncrono como {@link IPagamentoExternalAsync},
+ * executando cada chamada no executor informado.
+ */
+public class PagamentoAsyncAdapter implements IPagamentoExternalAsync
+{
+
+	private final IPagamentoExternal pagamento;
+	private final Executor executor;
+
+	public PagamentoAsyncAdapter(IPagamentoExternal pagamento, Executor executor)
+	{
+		this.pagamento = pagamento;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return CompletableFuture.supplyAsync(() -> pagamento.autorizarPagamento(clienteId, custoTotal), executor);
+	}
+
+	@Override
+	public CompletableFuture<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		return CompletableFuture.runAsync(() -> pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId),
+				executor);
+	}
+}
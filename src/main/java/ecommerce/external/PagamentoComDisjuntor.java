@@ -0,0 +1,33 @@
+package ecommerce.external;
+
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Decora um {@link IPagamentoExternal} passando as chamadas ao serviço de
+ * pagamento por um {@link DisjuntorDeParceiro}, que as recusa na hora enquanto o
+ * serviço está degradado.
+ */
+public class PagamentoComDisjuntor implements IPagamentoExternal
+{
+
+	private final IPagamentoExternal pagamento;
+	private final DisjuntorDeParceiro disjuntor;
+
+	public PagamentoComDisjuntor(IPagamentoExternal pagamento, DisjuntorDeParceiro disjuntor)
+	{
+		this.pagamento = pagamento;
+		this.disjuntor = disjuntor;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return disjuntor.executar(() -> pagamento.autorizarPagamento(clienteId, custoTotal));
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		disjuntor.executar(() -> pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId));
+	}
+}
@@ -0,0 +1,32 @@
+package ecommerce.external;
+
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Decora um {@link IPagamentoExternal} limitando as chamadas simultâneas ao
+ * serviço de pagamento.
+ */
+public class PagamentoComLimiteDeConcorrencia implements IPagamentoExternal
+{
+
+	private final IPagamentoExternal pagamento;
+	private final LimiteDeConcorrencia limite;
+
+	public PagamentoComLimiteDeConcorrencia(IPagamentoExternal pagamento, LimiteDeConcorrencia limite)
+	{
+		this.pagamento = pagamento;
+		this.limite = limite;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return limite.executar(() -> pagamento.autorizarPagamento(clienteId, custoTotal));
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		limite.executar(() -> pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId));
+	}
+}
@@ -0,0 +1,32 @@
+package ecommerce.external;
+
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Decora um {@link IPagamentoExternal} limitando quanto tempo se espera por cada
+ * chamada ao serviço de pagamento.
+ */
+public class PagamentoComLimiteDeTempo implements IPagamentoExternal
+{
+
+	private final IPagamentoExternal pagamento;
+	private final LimiteDeTempo limite;
+
+	public PagamentoComLimiteDeTempo(IPagamentoExternal pagamento, LimiteDeTempo limite)
+	{
+		this.pagamento = pagamento;
+		this.limite = limite;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return limite.executar(() -> pagamento.autorizarPagamento(clienteId, custoTotal));
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		limite.executar(() -> pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId));
+	}
+}
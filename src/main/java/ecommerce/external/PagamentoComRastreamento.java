@@ -0,0 +1,38 @@
+package ecommerce.external;
+
+import ecommerce.dto.PagamentoDTO;
+import io.micrometer.common.KeyValues;
+
+/**
+ * Decora um {@link IPagamentoExternal} com uma observação por chamada, com o
+ * valor da compra e o resultado.
+ */
+public class PagamentoComRastreamento implements IPagamentoExternal
+{
+
+	private final IPagamentoExternal pagamento;
+	private final RastreamentoDeParceiro rastreamento;
+
+	public PagamentoComRastreamento(IPagamentoExternal pagamento, RastreamentoDeParceiro rastreamento)
+	{
+		this.pagamento = pagamento;
+		this.rastreamento = rastreamento;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return rastreamento.observar("autorizarPagamento", KeyValues.of("compra.total", String.valueOf(custoTotal)),
+				() -> pagamento.autorizarPagamento(clienteId, custoTotal),
+				autorizacao -> Boolean.TRUE.equals(autorizacao.autorizado()) ? "autorizado" : "recusado");
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		rastreamento.observar("cancelarPagamento", KeyValues.empty(), () -> {
+			pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId);
+			return Boolean.TRUE;
+		}, cancelado -> "sucesso");
+	}
+}
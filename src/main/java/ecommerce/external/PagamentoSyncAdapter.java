@@ -0,0 +1,30 @@
+package ecommerce.external;
+
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Expõe um {@link IPagamentoExternalAsync} como {@link IPagamentoExternal},
+ * bloqueando a thread chamadora até a resposta.
+ */
+public class PagamentoSyncAdapter implements IPagamentoExternal
+{
+
+	private final IPagamentoExternalAsync pagamento;
+
+	public PagamentoSyncAdapter(IPagamentoExternalAsync pagamento)
+	{
+		this.pagamento = pagamento;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return ResultadoAsync.aguardar(pagamento.autorizarPagamento(clienteId, custoTotal));
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		ResultadoAsync.aguardar(pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId));
+	}
+}
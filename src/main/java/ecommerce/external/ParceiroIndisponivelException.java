@@ -0,0 +1,23 @@
+package ecommerce.external;
+
+/**
+ * O parceiro não atendeu a chamada: não respondeu dentro do limite de tempo,
+ * o disjuntor está aberto ou o limite de chamadas simultâneas está esgotado.
+ * Diferente de uma recusa do parceiro, não diz nada sobre a compra em si, que
+ * pode ser tentada de novo mais tarde; o controller responde 503. Quando é
+ * certo que o parceiro nem foi chamado, a exceção é uma
+ * {@link ChamadaNaoEnviadaException}.
+ */
+public class ParceiroIndisponivelException extends RuntimeException
+{
+
+	public ParceiroIndisponivelException(String mensagem)
+	{
+		super(mensagem);
+	}
+
+	public ParceiroIndisponivelException(String mensagem, Throwable causa)
+	{
+		super(mensagem, causa);
+	}
+}
@@ -0,0 +1,56 @@
+package ecommerce.external;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * Abre uma observação (span, com tracing habilitado) {@code parceiro.chamada}
+ * em volta de cada chamada a um parceiro, filha da observação corrente. Os tags
+ * de baixa cardinalidade identificam parceiro, operação e resultado; os demais
+ * (itens, valor) vão só para o span.
+ */
+public class RastreamentoDeParceiro
+{
+
+	static final String NOME = "parceiro.chamada";
+
+	private final String parceiro;
+	private final ObservationRegistry registry;
+
+	public RastreamentoDeParceiro(String parceiro, ObservationRegistry registry)
+	{
+		this.parceiro = parceiro;
+		this.registry = registry;
+	}
+
+	public <T> T observar(String operacao, KeyValues detalhes, Supplier<T> chamada, Function<T, String> resultado)
+	{
+		Observation observacao = Observation.createNotStarted(NOME, registry)
+				.contextualName(parceiro + " " + operacao)
+				.lowCardinalityKeyValue("parceiro", parceiro)
+				.lowCardinalityKeyValue("operacao", operacao)
+				.highCardinalityKeyValues(detalhes)
+				.start();
+
+		try (Observation.Scope scope = observacao.openScope())
+		{
+			T retorno = chamada.get();
+			observacao.lowCardinalityKeyValue("resultado", retorno == null ? "vazio" : resultado.apply(retorno));
+			return retorno;
+		}
+		catch (RuntimeException e)
+		{
+			observacao.lowCardinalityKeyValue("resultado", "erro");
+			observacao.error(e);
+			throw e;
+		}
+		finally
+		{
+			observacao.stop();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package ecommerce.external;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Requisições redundantes (hedging) para chamadas idempotentes a um parceiro.
+ * Se a chamada não responde dentro de um atraso igual a um percentil das
+ * latências recentes, uma segunda chamada igual é disparada e vale a primeira
+ * resposta bem-sucedida. A chamada que perde não é cancelada.
+ *
+ * Um orçamento limita as redundantes a um percentual das chamadas: cada
+ * chamada acrescenta esse percentual ao saldo, e cada redundante gasta uma
+ * chamada inteira; sem saldo, a chamada espera só pela primeira tentativa.
+ *
+ * Só deve ser usada em operações que podem ser repetidas sem efeito colateral.
+ */
+public class RequisicaoRedundante
+{
+
+	/**
+	 * @param percentil         percentil das latências recentes usado como atraso
+	 * @param atrasoMinimoMs    atraso mínimo antes de disparar a redundante
+	 * @param atrasoInicialMs   atraso usado enquanto não há amostras suficientes
+	 * @param percentualMaximo  redundantes permitidas, em % das chamadas
+	 */
+	public record Configuracao(int percentil, long atrasoMinimoMs, long atrasoInicialMs, int percentualMaximo)
+	{
+
+		public Configuracao
+		{
+			if (percentil <= 0 || percentil >= 100)
+			{
+				throw new IllegalArgumentException("Percentil deve estar entre 1 e 99.");
+			}
+			if (percentualMaximo <= 0 || percentualMaximo > 100)
+			{
+				throw new IllegalArgumentException("Percentual de redundantes deve estar entre 1 e 100.");
+			}
+		}
+	}
+
+	static final int AMOSTRAS = 256;
+	static final int MINIMO_DE_AMOSTRAS = 32;
+
+	/** Saldo em centésimos de chamada; permite rajadas de até 10 redundantes. */
+	private static final long SALDO_MAXIMO = 10 * 100;
+	private static final long CUSTO_DA_REDUNDANTE = 100;
+
+	private final String parceiro;
+	private final Configuracao configuracao;
+	private final Executor executor;
+	private final Ticker ticker;
+	private final long atrasoMinimoNanos;
+	private final Counter disparadas;
+	private final Counter vencedoras;
+	private final Counter semSaldo;
+
+	private final AtomicLong saldo = new AtomicLong(CUSTO_DA_REDUNDANTE);
+	private final long[] latencias = new long[AMOSTRAS];
+	private int posicao;
+	private int amostras;
+	private volatile long atrasoNanos;
+
+	public RequisicaoRedundante(String parceiro, Configuracao configuracao, Executor executor,
+			MeterRegistry registry)
+	{
+		this(parceiro, configuracao, executor, registry, Ticker.systemTicker());
+	}
+
+	RequisicaoRedundante(String parceiro, Configuracao configuracao, Executor executor, MeterRegistry registry,
+			Ticker ticker)
+	{
+		this.parceiro = parceiro;
+		this.configuracao = configuracao;
+		this.executor = executor;
+		this.ticker = ticker;
+		this.atrasoMinimoNanos = TimeUnit.MILLISECONDS.toNanos(configuracao.atrasoMinimoMs());
+		this.atrasoNanos = Math.max(atrasoMinimoNanos, TimeUnit.MILLISECONDS.toNanos(configuracao.atrasoInicialMs()));
+		this.disparadas = contador(registry, parceiro, "disparada");
+		this.vencedoras = contador(registry, parceiro, "venceu");
+		this.semSaldo = contador(registry, parceiro, "sem_saldo");
+	}
+
+	public <T> T executar(Supplier<T> chamada)
+	{
+		saldo.accumulateAndGet(configuracao.percentualMaximo(), (atual, deposito) -> Math.min(SALDO_MAXIMO,
+				atual + deposito));
+
+		CompletableFuture<T> resultado = new CompletableFuture<>();
+		AtomicInteger pendentes = new AtomicInteger(1);
+		tentar(chamada, resultado, pendentes, false);
+
+		try
+		{
+			try
+			{
+				return resultado.get(atrasoNanos, TimeUnit.NANOSECONDS);
+			}
+			catch (TimeoutException e)
+			{
+				if (!resultado.isDone())
+				{
+					if (sacar())
+					{
+						pendentes.incrementAndGet();
+						disparadas.increment();
+						tentar(chamada, resultado, pendentes, true);
+					}
+					else
+					{
+						semSaldo.increment();
+					}
+				}
+				return resultado.get();
+			}
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException falha)
+			{
+				throw falha;
+			}
+			if (e.getCause() instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ParceiroIndisponivelException("Chamada ao serviço de " + parceiro + " interrompida.", e);
+		}
+	}
+
+	long getAtrasoNanos()
+	{
+		return atrasoNanos;
+	}
+
+	/**
+	 * A primeira resposta bem-sucedida completa o resultado; uma falha só é
+	 * repassada quando não há outra tentativa em andamento. A latência da
+	 * tentativa original alimenta o percentil, tenha ela vencido ou não.
+	 */
+	private <T> void tentar(Supplier<T> chamada, CompletableFuture<T> resultado, AtomicInteger pendentes,
+			boolean redundante)
+	{
+		long inicio = ticker.read();
+		CompletableFuture.supplyAsync(chamada, executor).whenComplete((retorno, falha) -> {
+			if (falha == null)
+			{
+				if (!redundante)
+				{
+					registrarLatencia(ticker.read() - inicio);
+				}
+				if (resultado.complete(retorno) && redundante)
+				{
+					vencedoras.increment();
+				}
+			}
+			else if (pendentes.decrementAndGet() == 0)
+			{
+				resultado.completeExceptionally(
+						falha instanceof CompletionException && falha.getCause() != null ? falha.getCause() : falha);
+			}
+		});
+	}
+
+	private boolean sacar()
+	{
+		long atual;
+		do
+		{
+			atual = saldo.get();
+			if (atual < CUSTO_DA_REDUNDANTE)
+			{
+				return false;
+			}
+		}
+		while (!saldo.compareAndSet(atual, atual - CUSTO_DA_REDUNDANTE));
+		return true;
+	}
+
+	/**
+	 * Guarda as últimas {@link #AMOSTRAS} latências e recalcula o atraso a cada
+	 * {@link #MINIMO_DE_AMOSTRAS} novas, para não ordenar a janela a cada chamada.
+	 */
+	private synchronized void registrarLatencia(long nanos)
+	{
+		latencias[posicao] = nanos;
+		posicao = (posicao + 1) % AMOSTRAS;
+		amostras++;
+
+		if (amostras % MINIMO_DE_AMOSTRAS == 0)
+		{
+			long[] ordenadas = Arrays.copyOf(latencias, Math.min(amostras, AMOSTRAS));
+			Arrays.sort(ordenadas);
+			int indice = (int) Math.ceil(configuracao.percentil() / 100.0 * ordenadas.length) - 1;
+			atrasoNanos = Math.max(atrasoMinimoNanos, ordenadas[indice]);
+		}
+	}
+
+	private static Counter contador(MeterRegistry registry, String parceiro, String resultado)
+	{
+		return Counter.builder("parceiro.redundantes")
+				.tag("parceiro", parceiro)
+				.tag("resultado", resultado)
+				.register(registry);
+	}
+}
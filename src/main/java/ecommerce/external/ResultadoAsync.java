@@ -0,0 +1,42 @@
+package ecommerce.external;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Espera o resultado de uma chamada assíncrona relançando a exceção original,
+ * para que os adaptadores síncronos falhem exatamente como uma implementação
+ * síncrona falharia.
+ */
+final class ResultadoAsync
+{
+
+	private ResultadoAsync()
+	{
+	}
+
+	static <T> T aguardar(CompletableFuture<T> futuro)
+	{
+		try
+		{
+			return futuro.join();
+		}
+		catch (CompletionException e)
+		{
+			if (e.getCause() instanceof RuntimeException causa)
+			{
+				throw causa;
+			}
+			if (e.getCause() instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw e;
+		}
+		catch (CancellationException e)
+		{
+			throw new IllegalStateException("Chamada externa cancelada.", e);
+		}
+	}
+}
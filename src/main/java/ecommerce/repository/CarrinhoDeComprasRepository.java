@@ -1,16 +1,49 @@
 package ecommerce.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface CarrinhoDeComprasRepository extends JpaRepository<CarrinhoDeCompras, Long>
 {
 
 	Optional<CarrinhoDeCompras> findByIdAndCliente(Long id, Cliente cliente);
+
+	/**
+	 * Carrega o carrinho para a finalização da compra em um único SELECT, já com
+	 * os itens (fetch join). Dos produtos só vêm os ids, que bastam para buscar o
+	 * restante no cache de produtos. As entidades retornadas são somente leitura:
+	 * o Hibernate não guarda snapshot nem faz dirty checking delas.
+	 */
+	@EntityGraph(attributePaths = { "cliente", "itens" })
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+	Optional<CarrinhoDeCompras> findParaCheckoutByIdAndCliente(Long id, Cliente cliente);
+
+	/**
+	 * Versão em conjunto de {@link #findParaCheckoutByIdAndCliente(Long, Cliente)},
+	 * usada na finalização em lote: todos os carrinhos e itens em um único
+	 * SELECT. A verificação do dono de cada carrinho fica com quem chama.
+	 */
+	@EntityGraph(attributePaths = { "cliente", "itens" })
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+	List<CarrinhoDeCompras> findParaCheckoutByIdIn(Collection<Long> ids);
+
+	/**
+	 * Carrega o carrinho para a cotação, como na finalização: um único SELECT com
+	 * o cliente e os itens, somente leitura e sem exigir o cliente dono.
+	 */
+	@EntityGraph(attributePaths = { "cliente", "itens" })
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+	Optional<CarrinhoDeCompras> findParaCotacaoById(Long id);
 }
@@ -0,0 +1,21 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import ecommerce.entity.CompraIdempotente;
+
+@Repository
+public interface CompraIdempotenteRepository extends JpaRepository<CompraIdempotente, String>
+{
+
+	@Transactional
+	@Modifying
+	@Query("delete from CompraIdempotente c where c.expiraEm < :instante")
+	int removerExpiradosAntesDe(Instant instante);
+}
@@ -1,26 +1,275 @@
 package ecommerce.service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import ecommerce.dto.ConferenciaDeTotaisDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.ProdutoPrecificavel;
+import ecommerce.entity.TotaisDoCarrinho;
 import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.service.catalogo.CatalogoDeProdutos;
+import ecommerce.service.catalogo.ProdutoSnapshot;
+import ecommerce.service.preco.CacheDeCotacoes;
+import ecommerce.service.preco.MotorDePreco;
 
 @Service
 public class CarrinhoDeComprasService
 {
 	private final CarrinhoDeComprasRepository repository;
+	private final MotorDePreco motorDePreco;
+	private final CatalogoDeProdutos catalogoDeProdutos;
+	private final CacheDeCotacoes cacheDeCotacoes;
 
-	@Autowired
 	public CarrinhoDeComprasService(CarrinhoDeComprasRepository repository)
+	{
+		this(repository, new MotorDePreco(), null);
+	}
+
+	/**
+	 * Com o motor de preço, que calcula a parcela de cada item nos totais do
+	 * carrinho, e o catálogo de onde vêm os dados dos produtos (sem catálogo, da
+	 * entidade referenciada pelo item).
+	 */
+	public CarrinhoDeComprasService(CarrinhoDeComprasRepository repository, MotorDePreco motorDePreco,
+			CatalogoDeProdutos catalogoDeProdutos)
+	{
+		this(repository, motorDePreco, catalogoDeProdutos, null);
+	}
+
+	/**
+	 * Com {@code cacheDeCotacoes} cada alteração do carrinho descarta a cotação
+	 * memorizada dele, na hora e de novo depois do commit.
+	 */
+	@Autowired
+	public CarrinhoDeComprasService(CarrinhoDeComprasRepository repository, MotorDePreco motorDePreco,
+			CatalogoDeProdutos catalogoDeProdutos, CacheDeCotacoes cacheDeCotacoes)
 	{
 		this.repository = repository;
+		this.motorDePreco = motorDePreco;
+		this.catalogoDeProdutos = catalogoDeProdutos;
+		this.cacheDeCotacoes = cacheDeCotacoes;
 	}
 
+	/**
+	 * Busca o carrinho do cliente já com os itens carregados, evitando consultas
+	 * adicionais (N+1) ao percorrer os itens durante a compra. Os produtos vêm
+	 * apenas com o id; os demais dados são lidos do cache de produtos.
+	 */
+	@Transactional(readOnly = true)
 	public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente)
-{
-		return repository.findByIdAndCliente(carrinhoId, cliente)
+	{
+		return repository.findParaCheckoutByIdAndCliente(carrinhoId, cliente)
+				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+	}
+
+	/**
+	 * Busca o carrinho, com o cliente e os itens, para cotar o preço sem
+	 * finalizar a compra.
+	 */
+	@Transactional(readOnly = true)
+	public CarrinhoDeCompras buscarParaCotacao(Long carrinhoId)
+	{
+		return repository.findParaCotacaoById(carrinhoId)
+				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+	}
+
+	/**
+	 * Carrega, em uma única consulta, os carrinhos informados já com os itens,
+	 * indexados pelo id.
+	 */
+	@Transactional(readOnly = true)
+	public Map<Long, CarrinhoDeCompras> buscarParaCheckout(Collection<Long> carrinhoIds)
+	{
+		Map<Long, CarrinhoDeCompras> carrinhos = new HashMap<>();
+		for (CarrinhoDeCompras carrinho : repository.findParaCheckoutByIdIn(carrinhoIds))
+		{
+			carrinhos.put(carrinho.getId(), carrinho);
+		}
+		return carrinhos;
+	}
+
+	/**
+	 * Inclui o item no carrinho, somando a parcela dele aos totais sem percorrer
+	 * os demais itens. Um carrinho ainda sem totais mantidos, ou com totais de
+	 * uma época dos preços anterior, os recebe calculados uma vez, antes da
+	 * inclusão.
+	 */
+	@Transactional
+	public CarrinhoDeCompras adicionarItem(Long carrinhoId, ItemCompra item)
+	{
+		if (item == null || item.getProduto() == null || item.getProduto().getId() == null)
+		{
+			throw new IllegalArgumentException("Item de compra ou produto não pode ser nulo");
+		}
+		validarQuantidade(item.getQuantidade());
+		CarrinhoDeCompras carrinho = buscarParaAlteracao(carrinhoId);
+		long epoca = motorDePreco.getEpocaDosPrecos();
+		ProdutoPrecificavel produto = produtoDoItem(item);
+
+		iniciarTotais(carrinho, epoca);
+		carrinho.adicionarItem(item, motorDePreco.totais(List.of(item), i -> produto, epoca));
+		invalidarCotacaoAteOCommit(carrinhoId);
+		return carrinho;
+	}
+
+	/** Troca a quantidade de um item, e a parcela dele nos totais. */
+	@Transactional
+	public CarrinhoDeCompras alterarQuantidade(Long carrinhoId, Long itemId, Long quantidade)
+	{
+		validarQuantidade(quantidade);
+		CarrinhoDeCompras carrinho = buscarParaAlteracao(carrinhoId);
+		ItemCompra item = itemDoCarrinho(carrinho, itemId);
+		long epoca = motorDePreco.getEpocaDosPrecos();
+		ProdutoPrecificavel produto = produtoDoItem(item);
+
+		iniciarTotais(carrinho, epoca);
+		TotaisDoCarrinho parcelaAnterior = motorDePreco.totais(List.of(item), i -> produto, epoca);
+		TotaisDoCarrinho novaParcela = motorDePreco
+				.totais(List.of(new ItemCompra(item.getId(), item.getProduto(), quantidade)), i -> produto, epoca);
+		carrinho.alterarQuantidade(item, quantidade, parcelaAnterior, novaParcela);
+		invalidarCotacaoAteOCommit(carrinhoId);
+		return carrinho;
+	}
+
+	/** Remove um item do carrinho, subtraindo a parcela dele dos totais. */
+	@Transactional
+	public CarrinhoDeCompras removerItem(Long carrinhoId, Long itemId)
+	{
+		CarrinhoDeCompras carrinho = buscarParaAlteracao(carrinhoId);
+		ItemCompra item = itemDoCarrinho(carrinho, itemId);
+		long epoca = motorDePreco.getEpocaDosPrecos();
+		ProdutoPrecificavel produto = produtoDoItem(item);
+
+		iniciarTotais(carrinho, epoca);
+		carrinho.removerItem(item, motorDePreco.totais(List.of(item), i -> produto, epoca));
+		invalidarCotacaoAteOCommit(carrinhoId);
+		return carrinho;
+	}
+
+	/**
+	 * Recalcula os totais do carrinho a partir dos itens, com os dados atuais dos
+	 * produtos, e os compara com os gravados. Divergem, por exemplo, depois de
+	 * uma mudança de preço de um produto que está no carrinho, e sempre que os
+	 * gravados forem de uma época dos preços anterior.
+	 */
+	@Transactional(readOnly = true)
+	public ConferenciaDeTotaisDTO conferirTotais(Long carrinhoId)
+	{
+		CarrinhoDeCompras carrinho = buscarParaCotacao(carrinhoId);
+		return new ConferenciaDeTotaisDTO(carrinhoId, carrinho.getTotais(),
+				recalcularTotais(carrinho, motorDePreco.getEpocaDosPrecos()));
+	}
+
+	/** Grava no carrinho os totais recalculados, como na {@link #conferirTotais(Long) conferência}. */
+	@Transactional
+	public CarrinhoDeCompras corrigirTotais(Long carrinhoId)
+	{
+		CarrinhoDeCompras carrinho = buscarParaAlteracao(carrinhoId);
+		carrinho.setTotais(recalcularTotais(carrinho, motorDePreco.getEpocaDosPrecos()));
+		invalidarCotacaoAteOCommit(carrinhoId);
+		return carrinho;
+	}
+
+	private CarrinhoDeCompras buscarParaAlteracao(Long carrinhoId)
+	{
+		return repository.findById(carrinhoId)
 				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
 	}
+
+	private void invalidarCotacaoAteOCommit(Long carrinhoId)
+	{
+		if (cacheDeCotacoes == null)
+		{
+			return;
+		}
+		cacheDeCotacoes.invalidar(carrinhoId);
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+			{
+				@Override
+				public void afterCommit()
+				{
+					cacheDeCotacoes.invalidar(carrinhoId);
+				}
+			});
+		}
+	}
+
+	private static ItemCompra itemDoCarrinho(CarrinhoDeCompras carrinho, Long itemId)
+	{
+		for (ItemCompra item : carrinho.getItens())
+		{
+			if (item.getId() != null && item.getId().equals(itemId))
+			{
+				return item;
+			}
+		}
+		throw new IllegalArgumentException("Item não encontrado no carrinho.");
+	}
+
+	private static void validarQuantidade(Long quantidade)
+	{
+		if (quantidade == null || quantidade <= 0)
+		{
+			throw new IllegalArgumentException("Quantidade inválida: " + quantidade);
+		}
+	}
+
+	/**
+	 * Recalcula os totais ausentes ou de outra época dos preços, que a
+	 * combinação com a parcela do item alterado recusaria.
+	 */
+	private void iniciarTotais(CarrinhoDeCompras carrinho, long epoca)
+	{
+		TotaisDoCarrinho totais = carrinho.getTotais();
+		if (totais == null || !Long.valueOf(epoca).equals(totais.getEpocaDosPrecos()))
+		{
+			carrinho.setTotais(recalcularTotais(carrinho, epoca));
+		}
+	}
+
+	/** A época deve ser lida antes dos dados dos produtos (ver {@link MotorDePreco#totais(List, Function, long)}). */
+	private TotaisDoCarrinho recalcularTotais(CarrinhoDeCompras carrinho, long epoca)
+	{
+		if (catalogoDeProdutos == null)
+		{
+			return motorDePreco.totais(carrinho.getItens(), ItemCompra::getProduto, epoca);
+		}
+		Set<Long> produtosIds = new HashSet<>();
+		for (ItemCompra item : carrinho.getItens())
+		{
+			if (item != null && item.getProduto() != null)
+			{
+				produtosIds.add(item.getProduto().getId());
+			}
+		}
+		Map<Long, ProdutoSnapshot> produtos = catalogoDeProdutos.buscar(produtosIds);
+		Function<ItemCompra, ProdutoSnapshot> produtoDoItem = item -> produtos.get(item.getProduto().getId());
+		return motorDePreco.totais(carrinho.getItens(), produtoDoItem, epoca);
+	}
+
+	private ProdutoPrecificavel produtoDoItem(ItemCompra item)
+	{
+		if (catalogoDeProdutos == null)
+		{
+			return item.getProduto();
+		}
+		return catalogoDeProdutos.buscarPorId(item.getProduto().getId())
+				.orElseThrow(() -> new IllegalArgumentException("Produto não encontrado: " + item.getProduto().getId()));
+	}
 }
@@ -2,24 +2,170 @@ package ecommerce.service;
 
 import ecommerce.entity.Cliente;
 import ecommerce.repository.ClienteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Busca de clientes com cache em memória na frente do
+ * {@link ClienteRepository}. Ids inexistentes também ficam em cache (cache
+ * negativo), por um tempo menor, para que sondagens de ids aleatórios não
+ * cheguem ao banco. Quem chama recebe sempre uma cópia do cliente em cache.
+ *
+ * Alterações devem passar por {@link #salvar(Cliente)}, que invalida a entrada
+ * do cliente. Acertos, faltas e tempo de carga são publicados no Micrometer como
+ * o cache {@code clientes}.
+ */
 @Service
-public class ClienteService
+public class ClienteService implements MeterBinder
 {
 
+	private static final long TAMANHO_MAXIMO_PADRAO = 10_000;
+	private static final long TTL_MS_PADRAO = 300_000;
+	private static final long TTL_NEGATIVO_MS_PADRAO = 30_000;
+
 	private final ClienteRepository repository;
+	private final LoadingCache<Long, Optional<Cliente>> cache;
 
-	@Autowired
 	public ClienteService(ClienteRepository repository)
+	{
+		this(repository, TAMANHO_MAXIMO_PADRAO, TTL_MS_PADRAO, TTL_NEGATIVO_MS_PADRAO);
+	}
+
+	@Autowired
+	public ClienteService(ClienteRepository repository,
+			@Value("${compra.clientes.tamanho-maximo:10000}") long tamanhoMaximo,
+			@Value("${compra.clientes.ttl-ms:300000}") long ttlMs,
+			@Value("${compra.clientes.ttl-negativo-ms:30000}") long ttlNegativoMs)
+	{
+		this(repository, tamanhoMaximo, ttlMs, ttlNegativoMs, Ticker.systemTicker());
+	}
+
+	ClienteService(ClienteRepository repository, long tamanhoMaximo, long ttlMs, long ttlNegativoMs, Ticker ticker)
 	{
 		this.repository = repository;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfter(expiracao(TimeUnit.MILLISECONDS.toNanos(ttlMs), TimeUnit.MILLISECONDS.toNanos(ttlNegativoMs)))
+				.ticker(ticker)
+				.recordStats()
+				.build(new CacheLoader<>()
+				{
+					@Override
+					public Optional<Cliente> load(Long id)
+					{
+						return repository.findById(id);
+					}
+
+					@Override
+					public Map<Long, Optional<Cliente>> loadAll(Set<? extends Long> ids)
+					{
+						return carregarTodos(ids);
+					}
+				});
 	}
 
 	public Cliente buscarPorId(Long clienteId)
 	{
-		return repository.findById(clienteId).orElseThrow(() -> new IllegalArgumentException("Cliente não encontrado"));
+		return cache.get(clienteId)
+				.map(ClienteService::copiar)
+				.orElseThrow(() -> new IllegalArgumentException("Cliente não encontrado"));
+	}
+
+	/**
+	 * Busca os clientes informados indexados pelo id. Os que não estão em cache
+	 * são carregados juntos, em uma única consulta. Ids inexistentes simplesmente
+	 * não aparecem no resultado.
+	 */
+	public Map<Long, Cliente> buscarPorIds(Collection<Long> clienteIds)
+	{
+		Map<Long, Cliente> clientes = new HashMap<>();
+		cache.getAll(clienteIds)
+				.forEach((id, cliente) -> cliente.ifPresent(c -> clientes.put(id, copiar(c))));
+		return clientes;
 	}
 
+	public Cliente salvar(Cliente cliente)
+	{
+		Cliente salvo = repository.save(cliente);
+		invalidar(salvo.getId());
+		return salvo;
+	}
+
+	public void invalidar(Long clienteId)
+	{
+		cache.invalidate(clienteId);
+	}
+
+	public CacheStats estatisticas()
+	{
+		return cache.stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		CaffeineCacheMetrics.monitor(registry, cache, "clientes");
+	}
+
+	private Map<Long, Optional<Cliente>> carregarTodos(Set<? extends Long> clienteIds)
+	{
+		Map<Long, Optional<Cliente>> clientes = new HashMap<>();
+		for (Long id : clienteIds)
+		{
+			clientes.put(id, Optional.empty());
+		}
+		for (Cliente cliente : repository.findAllById(new ArrayList<Long>(clienteIds)))
+		{
+			clientes.put(cliente.getId(), Optional.of(cliente));
+		}
+		return clientes;
+	}
+
+	private static Cliente copiar(Cliente cliente)
+	{
+		return new Cliente(cliente.getId(), cliente.getNome(), cliente.getRegiao(), cliente.getTipo());
+	}
+
+	private static Expiry<Long, Optional<Cliente>> expiracao(long ttlNanos, long ttlNegativoNanos)
+	{
+		return new Expiry<>()
+		{
+			@Override
+			public long expireAfterCreate(Long id, Optional<Cliente> cliente, long agora)
+			{
+				return cliente.isPresent() ? ttlNanos : ttlNegativoNanos;
+			}
+
+			@Override
+			public long expireAfterUpdate(Long id, Optional<Cliente> cliente, long agora, long duracaoAtual)
+			{
+				return expireAfterCreate(id, cliente, agora);
+			}
+
+			@Override
+			public long expireAfterRead(Long id, Optional<Cliente> cliente, long agora, long duracaoAtual)
+			{
+				return duracaoAtual;
+			}
+		};
+	}
 }
@@ -1,6 +1,8 @@
 package ecommerce.service;
 
+import ecommerce.dto.CarrinhoClienteDTO;
 import ecommerce.dto.CompraDTO;
+import ecommerce.dto.CotacaoDTO;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
 import ecommerce.dto.PagamentoDTO;
@@ -8,16 +10,41 @@ import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
 import ecommerce.entity.ItemCompra;
 import ecommerce.entity.Produto;
+import ecommerce.entity.ProdutoPrecificavel;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TotaisDoCarrinho;
+import ecommerce.external.EstoqueAsyncAdapter;
 import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IEstoqueExternalAsync;
 import ecommerce.external.IPagamentoExternal;
-import jakarta.transaction.Transactional;
+import ecommerce.external.IPagamentoExternalAsync;
+import ecommerce.external.PagamentoAsyncAdapter;
+import ecommerce.service.catalogo.CatalogoDeProdutos;
+import ecommerce.service.catalogo.ProdutoSnapshot;
+import ecommerce.service.preco.CacheDeCotacoes;
+import ecommerce.service.preco.MotorDePreco;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @Service
 public class CompraService {
@@ -26,165 +53,590 @@ public class CompraService {
 	private final ClienteService clienteService;
 	private final IEstoqueExternal estoqueExternal;
 	private final IPagamentoExternal pagamentoExternal;
+	private final IEstoqueExternalAsync estoqueExternalAsync;
+	private final IPagamentoExternalAsync pagamentoExternalAsync;
+	private final MotorDePreco motorDePreco;
+	private final CatalogoDeProdutos catalogoDeProdutos;
+	private final CacheDeCotacoes cacheDeCotacoes;
+	private final MetricasDeCompra metricas;
+	private final ObservationRegistry observationRegistry;
+	private final ExecucaoUnica<CarrinhoClienteDTO, CompraDTO> comprasEmAndamento = new ExecucaoUnica<>();
 
-	@Autowired
 	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
 			IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal) {
+		this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+				new EstoqueAsyncAdapter(estoqueExternal, ForkJoinPool.commonPool()),
+				new PagamentoAsyncAdapter(pagamentoExternal, ForkJoinPool.commonPool()), new MotorDePreco(), null,
+				MetricasDeCompra.desabilitadas());
+	}
+
+	/**
+	 * Com {@code catalogoDeProdutos} nulo os preços vêm dos produtos carregados
+	 * junto com o carrinho, como nos testes com repositórios falsos.
+	 */
+	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+			IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+			IEstoqueExternalAsync estoqueExternalAsync, IPagamentoExternalAsync pagamentoExternalAsync,
+			MotorDePreco motorDePreco, CatalogoDeProdutos catalogoDeProdutos, MetricasDeCompra metricas) {
+		this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal, estoqueExternalAsync,
+				pagamentoExternalAsync, motorDePreco, catalogoDeProdutos, null, metricas);
+	}
+
+	/**
+	 * Com {@code cacheDeCotacoes} o preço de um carrinho que não mudou desde a
+	 * última cotação ou finalização é reaproveitado em vez de recalculado; só vale
+	 * com o catálogo, cujas cópias de produto identificam a versão dos preços.
+	 */
+	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+			IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+			IEstoqueExternalAsync estoqueExternalAsync, IPagamentoExternalAsync pagamentoExternalAsync,
+			MotorDePreco motorDePreco, CatalogoDeProdutos catalogoDeProdutos, CacheDeCotacoes cacheDeCotacoes,
+			MetricasDeCompra metricas) {
+		this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal, estoqueExternalAsync,
+				pagamentoExternalAsync, motorDePreco, catalogoDeProdutos, cacheDeCotacoes, metricas,
+				ObservationRegistry.NOOP);
+	}
+
+	/**
+	 * Com {@code observationRegistry} a finalização anota a observação corrente
+	 * (ver {@link ObservacaoDaCompra}) e o cálculo do custo vira a observação
+	 * filha {@code compra.calcular-custo}.
+	 */
+	@Autowired
+	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+			IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+			IEstoqueExternalAsync estoqueExternalAsync, IPagamentoExternalAsync pagamentoExternalAsync,
+			MotorDePreco motorDePreco, CatalogoDeProdutos catalogoDeProdutos, CacheDeCotacoes cacheDeCotacoes,
+			MetricasDeCompra metricas, ObservationRegistry observationRegistry) {
 		this.carrinhoService = carrinhoService;
 		this.clienteService = clienteService;
 
 		this.estoqueExternal = estoqueExternal;
 		this.pagamentoExternal = pagamentoExternal;
+		this.estoqueExternalAsync = estoqueExternalAsync;
+		this.pagamentoExternalAsync = pagamentoExternalAsync;
+		this.motorDePreco = motorDePreco;
+		this.catalogoDeProdutos = catalogoDeProdutos;
+		this.cacheDeCotacoes = cacheDeCotacoes;
+		this.metricas = metricas;
+		this.observationRegistry = observationRegistry;
 	}
 
-    @Transactional
+	/**
+	 * Finaliza a compra em fases: primeiro cliente e carrinho são carregados em
+	 * transações curtas de leitura; depois estoque e pagamento são chamados sem
+	 * nenhuma transação aberta, para não prender conexões do pool durante a
+	 * latência dos serviços externos.
+	 *
+	 * Chamadas simultâneas para o mesmo carrinho (duplo clique, repetição do
+	 * cliente) compartilham uma única finalização e recebem o mesmo resultado.
+	 */
 	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
 
-		Cliente cliente = clienteService.buscarPorId(clienteId);
-		CarrinhoDeCompras carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+		return comprasEmAndamento.executar(new CarrinhoClienteDTO(carrinhoId, clienteId), () -> {
+			ObservacaoDaCompra observacao = ObservacaoDaCompra.corrente(observationRegistry);
+			long inicio = metricas.iniciar();
+			Cliente cliente = null;
+			CarrinhoDeCompras carrinho;
+			try {
+				cliente = clienteService.buscarPorId(clienteId);
+				carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+			} finally {
+				metricas.registrar(FaseDaCompra.CARREGAR_CARRINHO, cliente, inicio);
+			}
+
+			return processarCompra(cliente, carrinho, observacao);
+		});
+	}
+
+	/**
+	 * Variante assíncrona de {@link #finalizarCompra(Long, Long)}, composta sobre
+	 * {@link IEstoqueExternalAsync} e {@link IPagamentoExternalAsync} sem bloquear
+	 * nenhuma thread à espera dos parceiros. O custo total é calculado enquanto a
+	 * verificação de estoque está em andamento, e os dois só são combinados antes
+	 * da autorização do pagamento. Qualquer falha, inclusive as de carregamento,
+	 * completa o futuro excepcionalmente tendo como causa a mesma exceção (e a
+	 * mesma mensagem) lançada pela versão síncrona. Como na versão síncrona,
+	 * chamadas simultâneas para o mesmo carrinho compartilham a finalização.
+	 */
+	public CompletableFuture<CompraDTO> finalizarCompraAsync(Long carrinhoId, Long clienteId) {
+
+		return comprasEmAndamento.executarAsync(new CarrinhoClienteDTO(carrinhoId, clienteId), () -> {
+			ObservacaoDaCompra observacao = ObservacaoDaCompra.corrente(observationRegistry);
+			long inicio = metricas.iniciar();
+			Cliente cliente = null;
+			CarrinhoDeCompras carrinho;
+			try {
+				cliente = clienteService.buscarPorId(clienteId);
+				carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+			} catch (RuntimeException e) {
+				return CompletableFuture.failedFuture(e);
+			} finally {
+				metricas.registrar(FaseDaCompra.CARREGAR_CARRINHO, cliente, inicio);
+			}
+
+			return processarCompraAsync(cliente, carrinho, observacao);
+		});
+	}
+
+	/**
+	 * Finaliza vários carrinhos de uma vez. Clientes e carrinhos (já com os itens)
+	 * são carregados com uma consulta para cada conjunto, e a
+	 * disponibilidade de todos os carrinhos é verificada em uma única chamada ao
+	 * estoque, com as quantidades somadas por produto; só os carrinhos que tocam
+	 * produtos indisponíveis são verificados de novo, individualmente. Os carrinhos
+	 * seguem em paralelo e cada um tem o seu futuro, na ordem do pedido, de modo
+	 * que a falha de um não interrompe os demais. Cada carrinho passa pela mesma
+	 * execução única de {@link #finalizarCompra(Long, Long)}: se já estiver sendo
+	 * finalizado por outra chamada, recebe o resultado dela.
+	 */
+	public List<CompletableFuture<CompraDTO>> finalizarCompraEmLote(List<CarrinhoClienteDTO> compras) {
+
+		Set<Long> clienteIds = new HashSet<>();
+		Set<Long> carrinhoIds = new HashSet<>();
+		for (CarrinhoClienteDTO compra : compras) {
+			if (compra.clienteId() != null) {
+				clienteIds.add(compra.clienteId());
+			}
+			if (compra.carrinhoId() != null) {
+				carrinhoIds.add(compra.carrinhoId());
+			}
+		}
 
-		List<Long> produtosIds = carrinho.getItens().stream().map(i -> i.getProduto().getId())
-				.collect(Collectors.toList());
-		List<Long> produtosQtds = carrinho.getItens().stream().map(i -> i.getQuantidade()).collect(Collectors.toList());
+		Map<Long, Cliente> clientes = clienteService.buscarPorIds(clienteIds);
+		Map<Long, CarrinhoDeCompras> carrinhos = carrinhoService.buscarParaCheckout(carrinhoIds);
 
-		DisponibilidadeDTO disponibilidade = estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds);
+		List<CompraDoLote> lote = new ArrayList<>(compras.size());
+		List<LinhasDoCarrinho> linhasDoLote = new ArrayList<>(compras.size());
+		Set<Long> carrinhosVistos = new HashSet<>();
+
+		for (CarrinhoClienteDTO compra : compras) {
+			CompraDoLote compraDoLote = resolverCompraDoLote(compra, clientes, carrinhos, carrinhosVistos);
+			lote.add(compraDoLote);
+
+			if (compraDoLote.falha() == null) {
+				linhasDoLote.add(compraDoLote.linhas());
+			}
+		}
+
+		LinhasDoCarrinho quantidadesPorProduto = LinhasDoCarrinho.somar(linhasDoLote);
+		CompletableFuture<DisponibilidadeDTO> disponibilidadeDoLote = quantidadesPorProduto.isEmpty()
+				? CompletableFuture.completedFuture(new DisponibilidadeDTO(true, List.of()))
+				: metricas.registrarAoCompletar(FaseDaCompra.VERIFICAR_DISPONIBILIDADE, null, metricas.iniciar(),
+						estoqueExternalAsync.verificarDisponibilidade(quantidadesPorProduto.produtosIds(),
+								quantidadesPorProduto.quantidades()));
+
+		List<CompletableFuture<CompraDTO>> resultados = new ArrayList<>(lote.size());
+		for (int i = 0; i < lote.size(); i++) {
+			CompraDoLote compraDoLote = lote.get(i);
+			if (compraDoLote.falha() != null) {
+				resultados.add(CompletableFuture.failedFuture(compraDoLote.falha()));
+			} else {
+				resultados.add(comprasEmAndamento.executarAsync(compras.get(i),
+						() -> processarCompraAsync(compraDoLote.cliente(), compraDoLote.carrinho(),
+								compraDoLote.linhas(), disponibilidadeDoCarrinho(disponibilidadeDoLote, compraDoLote),
+								ObservacaoDaCompra.NENHUMA)));
+			}
+		}
+		return resultados;
+	}
+
+	private CompraDoLote resolverCompraDoLote(CarrinhoClienteDTO compra, Map<Long, Cliente> clientes,
+			Map<Long, CarrinhoDeCompras> carrinhos, Set<Long> carrinhosVistos) {
+
+		Cliente cliente = clientes.get(compra.clienteId());
+		if (cliente == null) {
+			return CompraDoLote.comFalha(new IllegalArgumentException("Cliente não encontrado"));
+		}
+
+		CarrinhoDeCompras carrinho = carrinhos.get(compra.carrinhoId());
+		if (carrinho == null || carrinho.getCliente() == null || !cliente.getId().equals(carrinho.getCliente().getId())) {
+			return CompraDoLote.comFalha(new IllegalArgumentException("Carrinho não encontrado."));
+		}
+
+		if (!carrinhosVistos.add(carrinho.getId())) {
+			return CompraDoLote.comFalha(new IllegalArgumentException("Carrinho repetido no lote."));
+		}
+
+		return new CompraDoLote(cliente, carrinho, LinhasDoCarrinho.de(carrinho.getItens()), null);
+	}
 
+	private CompletableFuture<DisponibilidadeDTO> disponibilidadeDoCarrinho(
+			CompletableFuture<DisponibilidadeDTO> disponibilidadeDoLote, CompraDoLote compraDoLote) {
+
+		return disponibilidadeDoLote.thenCompose(disponibilidade -> {
+			if (disponibilidade.disponivel()) {
+				return CompletableFuture.completedFuture(disponibilidade);
+			}
+
+			// Sem a lista de indisponíveis não dá para saber quais carrinhos foram
+			// afetados; do contrário só quem toca um produto indisponível é reverificado.
+			List<Long> indisponiveis = disponibilidade.idsProdutosIndisponiveis();
+			if (indisponiveis != null && !indisponiveis.isEmpty()
+					&& !compraDoLote.linhas().contemAlgum(indisponiveis)) {
+				return CompletableFuture.completedFuture(new DisponibilidadeDTO(true, List.of()));
+			}
+
+			return metricas.registrarAoCompletar(FaseDaCompra.VERIFICAR_DISPONIBILIDADE, compraDoLote.cliente(),
+					metricas.iniciar(), estoqueExternalAsync.verificarDisponibilidade(compraDoLote.linhas().produtosIds(),
+							compraDoLote.linhas().quantidades()));
+		});
+	}
+
+	private record CompraDoLote(Cliente cliente, CarrinhoDeCompras carrinho, LinhasDoCarrinho linhas,
+			RuntimeException falha) {
+
+		static CompraDoLote comFalha(RuntimeException falha) {
+			return new CompraDoLote(null, null, null, falha);
+		}
+	}
+
+	private CompraDTO processarCompra(Cliente cliente, CarrinhoDeCompras carrinho, ObservacaoDaCompra observacao) {
+
+		LinhasDoCarrinho linhas = LinhasDoCarrinho.de(carrinho.getItens());
+		observacao.carrinho(linhas.tamanho());
+
+		long inicio = metricas.iniciar();
+		DisponibilidadeDTO disponibilidade;
+		try {
+			disponibilidade = estoqueExternal.verificarDisponibilidade(linhas.produtosIds(), linhas.quantidades());
+		} finally {
+			metricas.registrar(FaseDaCompra.VERIFICAR_DISPONIBILIDADE, cliente, inicio);
+		}
+		validarDisponibilidade(disponibilidade, observacao);
+
+		BigDecimal custoTotal = calcularCustoTotal(cliente, carrinho);
+		observacao.total(custoTotal);
+
+		return concluirPagamento(cliente, custoTotal, linhas, observacao);
+	}
+
+	private CompletableFuture<CompraDTO> processarCompraAsync(Cliente cliente, CarrinhoDeCompras carrinho,
+			ObservacaoDaCompra observacao) {
+
+		LinhasDoCarrinho linhas = LinhasDoCarrinho.de(carrinho.getItens());
+		observacao.carrinho(linhas.tamanho());
+
+		return processarCompraAsync(cliente, carrinho, linhas,
+				metricas.registrarAoCompletar(FaseDaCompra.VERIFICAR_DISPONIBILIDADE, cliente, metricas.iniciar(),
+						estoqueExternalAsync.verificarDisponibilidade(linhas.produtosIds(), linhas.quantidades())),
+				observacao);
+	}
+
+	private CompletableFuture<CompraDTO> processarCompraAsync(Cliente cliente, CarrinhoDeCompras carrinho,
+			LinhasDoCarrinho linhas, CompletableFuture<DisponibilidadeDTO> disponibilidade,
+			ObservacaoDaCompra observacao) {
+
+		// Calculado na thread atual enquanto o estoque responde; uma falha aqui só é
+		// reportada depois da verificação de estoque, como na versão síncrona.
+		CompletableFuture<BigDecimal> custoTotal;
+		try {
+			BigDecimal custo = calcularCustoTotal(cliente, carrinho);
+			observacao.total(custo);
+			custoTotal = CompletableFuture.completedFuture(custo);
+		} catch (RuntimeException e) {
+			custoTotal = CompletableFuture.failedFuture(e);
+		}
+
+		CompletableFuture<BigDecimal> custoCalculado = custoTotal;
+		return disponibilidade
+				.thenCompose(d -> {
+					validarDisponibilidade(d, observacao);
+					return custoCalculado;
+				})
+				.thenCompose(custo -> concluirPagamentoAsync(cliente, custo, linhas, observacao));
+	}
+
+	private CompletableFuture<CompraDTO> concluirPagamentoAsync(Cliente cliente, BigDecimal custoTotal,
+			LinhasDoCarrinho linhas, ObservacaoDaCompra observacao) {
+
+		return metricas.registrarAoCompletar(FaseDaCompra.AUTORIZAR_PAGAMENTO, cliente, metricas.iniciar(),
+				pagamentoExternalAsync.autorizarPagamento(cliente.getId(), custoTotal.doubleValue()))
+				.thenCompose(pagamento -> {
+					observacao.etapa("pagamento", pagamento.autorizado() ? "autorizado" : "recusado");
+					if (!pagamento.autorizado()) {
+						throw new IllegalStateException("Pagamento não autorizado.");
+					}
+
+					CompletableFuture<EstoqueBaixaDTO> baixa;
+					try {
+						baixa = estoqueExternalAsync.darBaixa(linhas.produtosIds(), linhas.quantidades());
+					} catch (RuntimeException e) {
+						baixa = CompletableFuture.failedFuture(e);
+					}
+
+					return metricas.registrarAoCompletar(FaseDaCompra.DAR_BAIXA, cliente, metricas.iniciar(), baixa)
+							.exceptionallyCompose(falha -> {
+								// Tempo esgotado, disjuntor aberto ou limite de concorrência: o pagamento
+								// já foi autorizado e não pode ficar sem a baixa correspondente.
+								Throwable causa = causa(falha);
+								observacao.etapa("estoque.baixa", "erro");
+								return cancelarPagamentoAsync(cliente, pagamento, observacao)
+										.handle((cancelado, falhaAoCancelar) -> {
+											if (falhaAoCancelar != null) {
+												causa.addSuppressed(causa(falhaAoCancelar));
+											}
+											return null;
+										})
+										.thenCompose(cancelado -> CompletableFuture.<EstoqueBaixaDTO>failedFuture(causa));
+							})
+							.thenCompose(baixaDTO -> {
+								observacao.etapa("estoque.baixa", baixaDTO.sucesso() ? "sucesso" : "falha");
+								if (baixaDTO.sucesso()) {
+									return CompletableFuture.completedFuture(new CompraDTO(true,
+											pagamento.transacaoId(), "Compra finalizada com sucesso."));
+								}
+
+								return cancelarPagamentoAsync(cliente, pagamento, observacao)
+										.<CompraDTO>thenApply(cancelado -> {
+											throw new IllegalStateException("Erro ao dar baixa no estoque.");
+										});
+							});
+				});
+	}
+
+	private CompletableFuture<Void> cancelarPagamentoAsync(Cliente cliente, PagamentoDTO pagamento,
+			ObservacaoDaCompra observacao) {
+
+		return metricas.registrarAoCompletar(FaseDaCompra.CANCELAR_PAGAMENTO, cliente, metricas.iniciar(),
+				pagamentoExternalAsync.cancelarPagamento(cliente.getId(), pagamento.transacaoId()))
+				.thenRun(() -> observacao.etapa("pagamento.cancelamento", "sucesso"));
+	}
+
+	private static Throwable causa(Throwable falha) {
+		return falha instanceof CompletionException && falha.getCause() != null ? falha.getCause() : falha;
+	}
+
+	private void validarDisponibilidade(DisponibilidadeDTO disponibilidade, ObservacaoDaCompra observacao) {
+		observacao.etapa("estoque.disponibilidade", disponibilidade.disponivel() ? "disponivel" : "indisponivel");
 		if (!disponibilidade.disponivel()) {
 			throw new IllegalStateException("Itens fora de estoque.");
 		}
+	}
 
-		BigDecimal custoTotal = calcularCustoTotal(carrinho);
+	private CompraDTO concluirPagamento(Cliente cliente, BigDecimal custoTotal, LinhasDoCarrinho linhas,
+			ObservacaoDaCompra observacao) {
 
-		PagamentoDTO pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue());
+		long inicio = metricas.iniciar();
+		PagamentoDTO pagamento;
+		try {
+			pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue());
+		} finally {
+			metricas.registrar(FaseDaCompra.AUTORIZAR_PAGAMENTO, cliente, inicio);
+		}
 
+		observacao.etapa("pagamento", pagamento.autorizado() ? "autorizado" : "recusado");
 		if (!pagamento.autorizado()) {
 			throw new IllegalStateException("Pagamento não autorizado.");
 		}
 
-		EstoqueBaixaDTO baixaDTO = estoqueExternal.darBaixa(produtosIds, produtosQtds);
+		EstoqueBaixaDTO baixaDTO;
+		try {
+			inicio = metricas.iniciar();
+			try {
+				baixaDTO = estoqueExternal.darBaixa(linhas.produtosIds(), linhas.quantidades());
+			} finally {
+				metricas.registrar(FaseDaCompra.DAR_BAIXA, cliente, inicio);
+			}
+		} catch (RuntimeException e) {
+			// Tempo esgotado, disjuntor aberto ou limite de concorrência: o pagamento
+			// já foi autorizado e não pode ficar sem a baixa correspondente.
+			observacao.etapa("estoque.baixa", "erro");
+			try {
+				cancelarPagamento(cliente, pagamento, observacao);
+			} catch (RuntimeException falhaAoCancelar) {
+				e.addSuppressed(falhaAoCancelar);
+			}
+			throw e;
+		}
 
+		observacao.etapa("estoque.baixa", baixaDTO.sucesso() ? "sucesso" : "falha");
 		if (!baixaDTO.sucesso()) {
-			pagamentoExternal.cancelarPagamento(cliente.getId(), pagamento.transacaoId());
+			cancelarPagamento(cliente, pagamento, observacao);
 			throw new IllegalStateException("Erro ao dar baixa no estoque.");
 		}
 
          return new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
 	}
+
+	private void cancelarPagamento(Cliente cliente, PagamentoDTO pagamento, ObservacaoDaCompra observacao) {
+		long inicio = metricas.iniciar();
+		try {
+			pagamentoExternal.cancelarPagamento(cliente.getId(), pagamento.transacaoId());
+		} finally {
+			metricas.registrar(FaseDaCompra.CANCELAR_PAGAMENTO, cliente, inicio);
+		}
+		observacao.etapa("pagamento.cancelamento", "sucesso");
+	}
     
+	private BigDecimal calcularCustoTotal(Cliente cliente, CarrinhoDeCompras carrinho) {
+		long inicio = metricas.iniciar();
+		try {
+			if (observationRegistry.isNoop()) {
+				return calcularCustoTotal(carrinho, cliente.getTipo(), cliente.getRegiao());
+			}
+			return Observation.createNotStarted("compra.calcular-custo", observationRegistry)
+					.observe(() -> calcularCustoTotal(carrinho, cliente.getTipo(), cliente.getRegiao()));
+		} finally {
+			metricas.registrar(FaseDaCompra.CALCULAR_CUSTO, cliente, inicio);
+		}
+	}
+
 	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho) {
+		return calcularCustoTotal(carrinho, null, null);
+	}
 
-		validarEntradas(carrinho);
-		List<ItemCompra> itensCarrinho = carrinho.getItens();
-		validarItens(itensCarrinho);
-	
-		BigDecimal subtotalGeral = calcularSubtotal(itensCarrinho);
-		BigDecimal descontoPorValorTotal = calcularDescontoPorValor(subtotalGeral);
-		BigDecimal subtotalFinal = subtotalGeral.subtract(descontoPorValorTotal);
-		BigDecimal pesoTotal = calcularPesoTotal(itensCarrinho);
-		BigDecimal valorFrete = calcularFrete(pesoTotal);
-		BigDecimal taxaFragilidade = calcularTaxaDeProdutosFrageis(itensCarrinho);
-		valorFrete = valorFrete.add(taxaFragilidade);
+	/**
+	 * Custo total com os descontos do nível do cliente e o frete pelas faixas da
+	 * região dele; sem nível, sem desconto de nível, e sem região, pelas faixas gerais.
+	 * Um carrinho com totais mantidos da época dos preços atual tem o preço
+	 * calculado por eles, sem percorrer os itens nem consultar o cache de
+	 * produtos.
+	 */
+	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, TipoCliente nivel, Regiao regiao) {
 
-		return subtotalFinal.add(valorFrete).setScale(2, RoundingMode.HALF_UP);
-	}
+		validarEntradas(carrinho);
 
-	private void validarEntradas(CarrinhoDeCompras carrinho) {
-		if (carrinho == null) {
-			throw new IllegalArgumentException("Carrinho não pode ser nulo");
+		CotacaoDTO pelosTotais = motorDePreco.cotar(carrinho.getTotais(), nivel, regiao);
+		if (pelosTotais != null) {
+			return pelosTotais.total();
 		}
-        if (carrinho.getItens() == null || carrinho.getItens().isEmpty()) {
-            throw new IllegalArgumentException("Carrinho não pode estar vazio");
-        }
+		if (catalogoDeProdutos == null) {
+			return motorDePreco.calcularCustoTotal(carrinho.getItens(), nivel, regiao);
+		}
+		Function<ItemCompra, ProdutoSnapshot> produtoDoItem = produtosDoCatalogo(carrinho);
+		if (memorizavel(carrinho)) {
+			return cacheDeCotacoes.cotar(carrinho.getId(), carrinho.getItens(), produtoDoItem, nivel, regiao).total();
+		}
+		return motorDePreco.calcularCustoTotal(carrinho.getItens(), produtoDoItem, nivel, regiao);
 	}
-	
-	private void validarItens(List<ItemCompra> itensCarrinho) {
-		for (ItemCompra item : itensCarrinho) {
-			if (item == null || item.getProduto() == null) {
-				throw new IllegalArgumentException("Item de compra ou produto não pode ser nulo");
-			}
 
-            Produto p = item.getProduto();
-	
-			if (item.getQuantidade() == null || item.getQuantidade() <= 0) {
-				throw new IllegalArgumentException("Quantidade inválida no produto: " + item.getProduto().getNome());
-			}
-	
-			if (p.getPreco() == null || p.getPreco().compareTo(BigDecimal.ZERO) < 0) {
-				throw new IllegalArgumentException("Preço inválido no produto: " + item.getProduto().getNome());
-			}
+	/**
+	 * Cotação do carrinho: a composição do custo total que a finalização
+	 * cobraria, sem consultar estoque nem pagamento. O carrinho vem de uma
+	 * consulta somente leitura e os produtos, do cache.
+	 *
+	 * Antes do cálculo, a versão da cotação (um hash de tudo que entra no preço)
+	 * é passada a {@code naoModificada}; se ela responder {@code true}, porque
+	 * quem pede já tem essa versão, o preço não é calculado e o retorno é vazio.
+	 */
+	public Optional<CotacaoDTO> cotar(Long carrinhoId, Predicate<String> naoModificada) {
+
+		CarrinhoDeCompras carrinho = carrinhoService.buscarParaCotacao(carrinhoId);
+		validarEntradas(carrinho);
+
+		Cliente cliente = carrinho.getCliente();
+		TipoCliente nivel = cliente == null ? null : cliente.getTipo();
+		Regiao regiao = cliente == null ? null : cliente.getRegiao();
+
+		CotacaoDTO pelosTotais = motorDePreco.cotar(carrinho.getTotais(), nivel, regiao);
+		if (pelosTotais != null) {
+			String versao = versaoDosTotais(carrinho.getTotais(), nivel, regiao);
+			return naoModificada.test(versao) ? Optional.empty() : Optional.of(pelosTotais);
+		}
 
-            if (p.getTipo() == null) {
-                throw new IllegalArgumentException("Tipo do produto não pode ser nulo: " + p.getNome());
-            }
+		Function<ItemCompra, ProdutoSnapshot> produtosDoCatalogo = catalogoDeProdutos == null ? null
+				: produtosDoCatalogo(carrinho);
+		Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem = produtosDoCatalogo == null
+				? ItemCompra::getProduto : produtosDoCatalogo;
 
-            if (p.getPesoFisico() == null || p.getPesoFisico().compareTo(BigDecimal.ZERO) <= 0) {
-                throw new IllegalArgumentException("Peso físico inválido (deve ser > 0) no produto: " + p.getNome());
-            }
+		if (naoModificada.test(versaoDaCotacao(carrinho.getItens(), produtoDoItem, nivel, regiao))) {
+			return Optional.empty();
+		}
+		if (memorizavel(carrinho)) {
+			return Optional.of(cacheDeCotacoes.cotar(carrinho.getId(), carrinho.getItens(), produtosDoCatalogo, nivel,
+					regiao));
 		}
+		return Optional.of(motorDePreco.cotar(carrinho.getItens(), produtoDoItem, nivel, regiao));
 	}
-	
-	public BigDecimal calcularSubtotal(List<ItemCompra> itensCarrinho) {
 
-		BigDecimal subtotal = BigDecimal.ZERO;
-	
-		for (ItemCompra item : itensCarrinho) {
-			Produto produto = item.getProduto();
-			BigDecimal precoProduto = produto.getPreco();
-			BigDecimal quantidadeItem = BigDecimal.valueOf(item.getQuantidade());
-			subtotal = subtotal.add(precoProduto.multiply(quantidadeItem));
+	private boolean memorizavel(CarrinhoDeCompras carrinho) {
+		return cacheDeCotacoes != null && catalogoDeProdutos != null && carrinho.getId() != null;
+	}
+
+	private Function<ItemCompra, ProdutoSnapshot> produtosDoCatalogo(CarrinhoDeCompras carrinho) {
+		// Preço, peso e fragilidade vêm do cache de produtos; do carrinho só se usa
+		// o id de cada produto, que não exige carregar a entidade.
+		Set<Long> produtosIds = new HashSet<>();
+		for (ItemCompra item : carrinho.getItens()) {
+			if (item != null && item.getProduto() != null) {
+				produtosIds.add(item.getProduto().getId());
+			}
 		}
-	
-		return subtotal;
+		Map<Long, ProdutoSnapshot> produtos = catalogoDeProdutos.buscar(produtosIds);
+
+		return item -> produtos.get(item.getProduto().getId());
 	}
 
-	private BigDecimal calcularDescontoPorValor(BigDecimal subtotal) {
-		if (subtotal.compareTo(new BigDecimal("1000.00")) >= 0) {
-			return subtotal.multiply(new BigDecimal("0.20"));
-		} else if (subtotal.compareTo(new BigDecimal("500.00")) >= 0) {
-			return subtotal.multiply(new BigDecimal("0.10"));
+	/**
+	 * SHA-256, em hexadecimal, de tudo que entra no preço: nível e região do
+	 * cliente, a tabela de preço em uso e, para cada item, o produto, a
+	 * quantidade e os dados de preço do produto. Itens inválidos entram como
+	 * estão; o cálculo da cotação os recusa depois.
+	 */
+	private String versaoDaCotacao(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem, TipoCliente nivel, Regiao regiao) {
+
+		StringBuilder conteudo = new StringBuilder().append(nivel).append('|').append(regiao).append('|')
+				.append(motorDePreco.getTabela());
+		for (ItemCompra item : itens) {
+			conteudo.append('|');
+			if (item == null || item.getProduto() == null) {
+				conteudo.append("null");
+				continue;
+			}
+			conteudo.append(item.getProduto().getId()).append(':').append(item.getQuantidade());
+			ProdutoPrecificavel produto = produtoDoItem.apply(item);
+			if (produto != null) {
+				conteudo.append(':').append(produto.getTipo()).append(':').append(produto.getPreco())
+						.append(':').append(produto.getPesoFisico()).append(':').append(produto.getComprimento())
+						.append('x').append(produto.getLargura()).append('x').append(produto.getAltura())
+						.append(':').append(produto.isFragil());
+			}
 		}
-		return BigDecimal.ZERO;
+
+		return sha256(conteudo.toString());
 	}
-	
-	private BigDecimal calcularPesoTotal(List<ItemCompra> itensCarrinho) {
-		BigDecimal pesoTotal = BigDecimal.ZERO;
-	
-		for (ItemCompra item : itensCarrinho) {
-			Produto produto = item.getProduto();
 
-			BigDecimal pesoFisico = produto.getPesoFisico();
-            BigDecimal quantidade = BigDecimal.valueOf(item.getQuantidade());
+	/**
+	 * Versão da cotação pelos totais mantidos: como em
+	 * {@link #versaoDaCotacao}, mas com os totais, que já trazem a época dos
+	 * preços, no lugar dos itens. A cotação só depende deles, do nível, da
+	 * região e da tabela, então a versão sai sem percorrer os itens.
+	 */
+	private String versaoDosTotais(TotaisDoCarrinho totais, TipoCliente nivel, Regiao regiao) {
+		return sha256(nivel + "|" + regiao + "|" + motorDePreco.getTabela() + "|" + totais);
+	}
 
-			pesoTotal = pesoTotal.add(pesoFisico.multiply(quantidade));
+	private static String sha256(String conteudo) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(conteudo.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 indisponível.", e);
 		}
-	
-		return pesoTotal;
 	}
-	
-	private BigDecimal calcularFrete(BigDecimal pesoTotal) {
-		if (pesoTotal.compareTo(new BigDecimal("5.00")) <= 0)
-			return BigDecimal.ZERO;
 
-		if (pesoTotal.compareTo(new BigDecimal("10.00")) <= 0)
-			return pesoTotal.multiply(new BigDecimal("2.00"));
-	
-		if (pesoTotal.compareTo(new BigDecimal("50.00")) <= 0)
-			return pesoTotal.multiply(new BigDecimal("4.00"));
-	
-		return pesoTotal.multiply(new BigDecimal("7.00"));
+	private void validarEntradas(CarrinhoDeCompras carrinho) {
+		if (carrinho == null) {
+			throw new IllegalArgumentException("Carrinho não pode ser nulo");
+		}
+        if (carrinho.getItens() == null || carrinho.getItens().isEmpty()) {
+            throw new IllegalArgumentException("Carrinho não pode estar vazio");
+        }
 	}
 	
-	private BigDecimal calcularTaxaDeProdutosFrageis(List<ItemCompra> itensCarrinho) {
-		BigDecimal taxaTotal = BigDecimal.ZERO;
+	public BigDecimal calcularSubtotal(List<ItemCompra> itensCarrinho) {
+
+		BigDecimal subtotal = BigDecimal.ZERO;
 	
 		for (ItemCompra item : itensCarrinho) {
 			Produto produto = item.getProduto();
-			if (Boolean.TRUE.equals(produto.isFragil())) {
-				BigDecimal quantidade = BigDecimal.valueOf(item.getQuantidade());
-				taxaTotal = taxaTotal.add(new BigDecimal("5.00").multiply(quantidade));
-			}
+			BigDecimal precoProduto = produto.getPreco();
+			BigDecimal quantidadeItem = BigDecimal.valueOf(item.getQuantidade());
+			subtotal = subtotal.add(precoProduto.multiply(quantidadeItem));
 		}
 	
-		return taxaTotal;
+		return subtotal;
 	}
 }
@@ -0,0 +1,109 @@
+package ecommerce.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Junta chamadas concorrentes com a mesma chave em uma única execução
+ * (single-flight): a primeira executa a tarefa e as demais, enquanto ela estiver
+ * em andamento, recebem o mesmo resultado ou a mesma exceção. Chaves diferentes
+ * não esperam umas pelas outras; o registro das execuções em andamento é um
+ * {@link ConcurrentHashMap}, sem trava global.
+ *
+ * Qualquer {@link Throwable} da tarefa, não só exceções de runtime, completa a
+ * execução compartilhada; quem espera nunca fica preso a uma chave abandonada.
+ */
+final class ExecucaoUnica<K, V>
+{
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> emAndamento = new ConcurrentHashMap<>();
+
+	V executar(K chave, Supplier<V> tarefa)
+	{
+		CompletableFuture<V> nova = new CompletableFuture<>();
+		CompletableFuture<V> original = emAndamento.putIfAbsent(chave, nova);
+		if (original != null)
+		{
+			return aguardar(original);
+		}
+
+		try
+		{
+			V resultado = tarefa.get();
+			nova.complete(resultado);
+			return resultado;
+		}
+		catch (Throwable e)
+		{
+			nova.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			emAndamento.remove(chave, nova);
+		}
+	}
+
+	/**
+	 * Variante assíncrona: cada chamador recebe a sua cópia do futuro
+	 * compartilhado, de modo que cancelar uma cópia não afeta os demais.
+	 */
+	CompletableFuture<V> executarAsync(K chave, Supplier<CompletableFuture<V>> tarefa)
+	{
+		CompletableFuture<V> nova = new CompletableFuture<>();
+		CompletableFuture<V> original = emAndamento.putIfAbsent(chave, nova);
+		if (original != null)
+		{
+			return original.copy();
+		}
+
+		try
+		{
+			tarefa.get().whenComplete((resultado, falha) -> {
+				emAndamento.remove(chave, nova);
+				if (falha != null)
+				{
+					nova.completeExceptionally(causa(falha));
+				}
+				else
+				{
+					nova.complete(resultado);
+				}
+			});
+		}
+		catch (Throwable e)
+		{
+			emAndamento.remove(chave, nova);
+			nova.completeExceptionally(e);
+		}
+		return nova.copy();
+	}
+
+	private static <V> V aguardar(CompletableFuture<V> original)
+	{
+		try
+		{
+			return original.join();
+		}
+		catch (CompletionException e)
+		{
+			Throwable causa = causa(e);
+			if (causa instanceof RuntimeException falha)
+			{
+				throw falha;
+			}
+			if (causa instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw e;
+		}
+	}
+
+	private static Throwable causa(Throwable falha)
+	{
+		return falha instanceof CompletionException && falha.getCause() != null ? falha.getCause() : falha;
+	}
+}
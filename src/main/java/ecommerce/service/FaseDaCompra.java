@@ -0,0 +1,9 @@
+package ecommerce.service;
+
+/**
+ * Fases da finalização de uma compra medidas por {@link MetricasDeCompra}.
+ */
+public enum FaseDaCompra
+{
+	CARREGAR_CARRINHO, VERIFICAR_DISPONIBILIDADE, CALCULAR_CUSTO, AUTORIZAR_PAGAMENTO, DAR_BAIXA, CANCELAR_PAGAMENTO
+}
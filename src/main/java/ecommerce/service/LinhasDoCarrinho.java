@@ -0,0 +1,218 @@
+package ecommerce.service;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import ecommerce.entity.ItemCompra;
+
+/**
+ * Linhas de um pedido ao estoque: um id de produto e a quantidade pedida, em
+ * dois {@code long[]} paralelos. Cada produto aparece uma única vez, com a soma
+ * das quantidades dos itens que o repetem, na ordem em que apareceu primeiro.
+ *
+ * {@link #produtosIds()} e {@link #quantidades()} são visões somente leitura
+ * sobre os vetores, para as implementações que recebem {@code List<Long>}.
+ */
+final class LinhasDoCarrinho
+{
+
+	// Até este tamanho a busca por produto repetido é linear; acima, indexada.
+	private static final int LIMITE_DA_BUSCA_LINEAR = 16;
+
+	private final long[] produtosIds;
+	private final long[] quantidades;
+
+	private LinhasDoCarrinho(long[] produtosIds, long[] quantidades)
+	{
+		this.produtosIds = produtosIds;
+		this.quantidades = quantidades;
+	}
+
+	/**
+	 * Monta as linhas em uma passada pelos itens. Quantidade nula conta como
+	 * zero: a validação dos itens é do cálculo do custo, que roda depois da
+	 * verificação de estoque.
+	 */
+	public static LinhasDoCarrinho de(List<ItemCompra> itens)
+	{
+		Acumulador acumulador = new Acumulador(itens.size());
+		for (ItemCompra item : itens)
+		{
+			if (item.getProduto() == null || item.getProduto().getId() == null)
+			{
+				throw new IllegalArgumentException("Item sem produto no carrinho.");
+			}
+			Long quantidade = item.getQuantidade();
+			acumulador.somar(item.getProduto().getId(), quantidade == null ? 0 : quantidade);
+		}
+		return acumulador.linhas();
+	}
+
+	/** Soma as linhas de vários pedidos, como em uma verificação de lote. */
+	public static LinhasDoCarrinho somar(Collection<LinhasDoCarrinho> pedidos)
+	{
+		int capacidade = 0;
+		for (LinhasDoCarrinho linhas : pedidos)
+		{
+			capacidade += linhas.tamanho();
+		}
+		Acumulador acumulador = new Acumulador(capacidade);
+		for (LinhasDoCarrinho linhas : pedidos)
+		{
+			for (int i = 0; i < linhas.tamanho(); i++)
+			{
+				acumulador.somar(linhas.produtosIds[i], linhas.quantidades[i]);
+			}
+		}
+		return acumulador.linhas();
+	}
+
+	public int tamanho()
+	{
+		return produtosIds.length;
+	}
+
+	public boolean isEmpty()
+	{
+		return produtosIds.length == 0;
+	}
+
+	public long produtoId(int linha)
+	{
+		return produtosIds[linha];
+	}
+
+	public long quantidade(int linha)
+	{
+		return quantidades[linha];
+	}
+
+	public boolean contemAlgum(Collection<Long> ids)
+	{
+		for (long id : produtosIds)
+		{
+			if (ids.contains(id))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public List<Long> produtosIds()
+	{
+		return new Visao(produtosIds);
+	}
+
+	public List<Long> quantidades()
+	{
+		return new Visao(quantidades);
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		return o instanceof LinhasDoCarrinho outras && Arrays.equals(produtosIds, outras.produtosIds)
+				&& Arrays.equals(quantidades, outras.quantidades);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * Arrays.hashCode(produtosIds) + Arrays.hashCode(quantidades);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LinhasDoCarrinho[produtosIds=" + Arrays.toString(produtosIds) + ", quantidades="
+				+ Arrays.toString(quantidades) + "]";
+	}
+
+	private static final class Visao extends AbstractList<Long> implements RandomAccess
+	{
+
+		private final long[] valores;
+
+		Visao(long[] valores)
+		{
+			this.valores = valores;
+		}
+
+		@Override
+		public Long get(int indice)
+		{
+			return valores[indice];
+		}
+
+		@Override
+		public int size()
+		{
+			return valores.length;
+		}
+	}
+
+	private static final class Acumulador
+	{
+
+		private final long[] produtosIds;
+		private final long[] quantidades;
+		private final Map<Long, Integer> indice;
+		private int tamanho;
+
+		Acumulador(int capacidade)
+		{
+			this.produtosIds = new long[capacidade];
+			this.quantidades = new long[capacidade];
+			this.indice = capacidade > LIMITE_DA_BUSCA_LINEAR ? new HashMap<>(capacidade * 4 / 3 + 1) : null;
+		}
+
+		void somar(long produtoId, long quantidade)
+		{
+			int linha = buscar(produtoId);
+			if (linha >= 0)
+			{
+				quantidades[linha] += quantidade;
+				return;
+			}
+			if (indice != null)
+			{
+				indice.put(produtoId, tamanho);
+			}
+			produtosIds[tamanho] = produtoId;
+			quantidades[tamanho] = quantidade;
+			tamanho++;
+		}
+
+		private int buscar(long produtoId)
+		{
+			if (indice != null)
+			{
+				Integer linha = indice.get(produtoId);
+				return linha == null ? -1 : linha;
+			}
+			for (int i = 0; i < tamanho; i++)
+			{
+				if (produtosIds[i] == produtoId)
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		LinhasDoCarrinho linhas()
+		{
+			if (tamanho == produtosIds.length)
+			{
+				return new LinhasDoCarrinho(produtosIds, quantidades);
+			}
+			return new LinhasDoCarrinho(Arrays.copyOf(produtosIds, tamanho), Arrays.copyOf(quantidades, tamanho));
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.entity.Cliente;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Métricas da finalização de compra no Micrometer:
+ * <ul>
+ * <li>{@code compra.fase}: timer por fase ({@link FaseDaCompra}), tipo de cliente
+ * e região, com percentis 50/95/99 e histograma para o Prometheus;</li>
+ * <li>{@code compra.falhas}: contador por status HTTP devolvido (400, 409,
+ * 500, 503).</li>
+ * </ul>
+ * Os timers são criados na primeira medição de cada combinação e guardados em
+ * arrays indexados pelos ordinais, então medir uma fase não aloca nada. Com
+ * {@code compra.metricas.habilitadas=false} os métodos retornam de imediato,
+ * sem nem ler o relógio.
+ */
+@Component
+public class MetricasDeCompra
+{
+
+	private static final String SEM_VALOR = "nenhum";
+	private static final int[] STATUS_DE_FALHA = { 400, 409, 500, 503 };
+
+	private static final MetricasDeCompra DESABILITADAS = new MetricasDeCompra(null, false);
+
+	private final MeterRegistry registry;
+	private final boolean habilitadas;
+	private final Timer[][][] timers;
+	private final Counter[] falhas;
+
+	@Autowired
+	public MetricasDeCompra(MeterRegistry registry, @Value("${compra.metricas.habilitadas:true}") boolean habilitadas)
+	{
+		this.registry = registry;
+		this.habilitadas = habilitadas && registry != null;
+		this.timers = new Timer[FaseDaCompra.values().length][TipoCliente.values().length + 1][Regiao.values().length + 1];
+		this.falhas = new Counter[STATUS_DE_FALHA.length];
+
+		if (this.habilitadas)
+		{
+			for (int i = 0; i < STATUS_DE_FALHA.length; i++)
+			{
+				falhas[i] = Counter.builder("compra.falhas")
+						.description("Compras recusadas, por status HTTP devolvido")
+						.tag("status", String.valueOf(STATUS_DE_FALHA[i]))
+						.register(registry);
+			}
+		}
+	}
+
+	/** Instância que não mede nada, para uso fora do Spring. */
+	public static MetricasDeCompra desabilitadas()
+	{
+		return DESABILITADAS;
+	}
+
+	public boolean habilitadas()
+	{
+		return habilitadas;
+	}
+
+	/** Marca o início de uma fase; o valor deve ser passado a {@link #registrar}. */
+	public long iniciar()
+	{
+		return habilitadas ? System.nanoTime() : 0L;
+	}
+
+	public void registrar(FaseDaCompra fase, Cliente cliente, long inicio)
+	{
+		if (!habilitadas)
+		{
+			return;
+		}
+		timer(fase, cliente).record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Registra a fase quando o futuro completar, com sucesso ou não. Desabilitado,
+	 * devolve o próprio futuro.
+	 */
+	public <T> CompletableFuture<T> registrarAoCompletar(FaseDaCompra fase, Cliente cliente, long inicio,
+			CompletableFuture<T> futuro)
+	{
+		if (!habilitadas)
+		{
+			return futuro;
+		}
+		return futuro.whenComplete((resultado, falha) -> registrar(fase, cliente, inicio));
+	}
+
+	public void registrarFalha(int status)
+	{
+		if (!habilitadas)
+		{
+			return;
+		}
+		for (int i = 0; i < STATUS_DE_FALHA.length; i++)
+		{
+			if (STATUS_DE_FALHA[i] == status)
+			{
+				falhas[i].increment();
+				return;
+			}
+		}
+	}
+
+	private Timer timer(FaseDaCompra fase, Cliente cliente)
+	{
+		TipoCliente tipo = cliente == null ? null : cliente.getTipo();
+		Regiao regiao = cliente == null ? null : cliente.getRegiao();
+		int t = tipo == null ? 0 : tipo.ordinal() + 1;
+		int r = regiao == null ? 0 : regiao.ordinal() + 1;
+
+		Timer timer = timers[fase.ordinal()][t][r];
+		if (timer == null)
+		{
+			// Corrida benigna: o registry devolve o mesmo timer para o mesmo id.
+			timer = Timer.builder("compra.fase")
+					.description("Duração de cada fase da finalização de compra")
+					.tag("fase", fase.name().toLowerCase(Locale.ROOT))
+					.tag("tipo_cliente", tipo == null ? SEM_VALOR : tipo.name())
+					.tag("regiao", regiao == null ? SEM_VALOR : regiao.name())
+					.publishPercentiles(0.5, 0.95, 0.99)
+					.publishPercentileHistogram()
+					.minimumExpectedValue(Duration.ofMillis(1))
+					.maximumExpectedValue(Duration.ofSeconds(10))
+					.register(registry);
+			timers[fase.ordinal()][t][r] = timer;
+		}
+		return timer;
+	}
+}
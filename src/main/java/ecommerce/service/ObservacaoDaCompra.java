@@ -0,0 +1,86 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * Anota a finalização na observação corrente, normalmente a
+ * {@code compra.finalizar} aberta pelo controller: quantidade de itens e faixa
+ * do total como tags de baixa cardinalidade (o total exato vai como tag de alta
+ * cardinalidade) e, para cada etapa, uma tag e um evento com o resultado, como
+ * {@code pagamento=autorizado} e {@code compra.pagamento.autorizado}. Sem
+ * observação corrente, como no lote ou fora de uma requisição, não faz nada.
+ */
+final class ObservacaoDaCompra
+{
+
+	static final ObservacaoDaCompra NENHUMA = new ObservacaoDaCompra(null);
+
+	private final Observation observacao;
+
+	private ObservacaoDaCompra(Observation observacao)
+	{
+		this.observacao = observacao;
+	}
+
+	static ObservacaoDaCompra corrente(ObservationRegistry registry)
+	{
+		Observation observacao = registry.getCurrentObservation();
+		return observacao == null || observacao.isNoop() ? NENHUMA : new ObservacaoDaCompra(observacao);
+	}
+
+	void carrinho(int itens)
+	{
+		if (observacao != null)
+		{
+			observacao.lowCardinalityKeyValue("carrinho.itens", faixaDeItens(itens));
+		}
+	}
+
+	void total(BigDecimal total)
+	{
+		if (observacao != null)
+		{
+			observacao.lowCardinalityKeyValue("compra.total", faixaDoTotal(total));
+			observacao.highCardinalityKeyValue("compra.total.valor", total.toPlainString());
+		}
+	}
+
+	void etapa(String etapa, String resultado)
+	{
+		if (observacao != null)
+		{
+			observacao.lowCardinalityKeyValue(etapa, resultado);
+			observacao.event(Observation.Event.of("compra." + etapa + "." + resultado));
+		}
+	}
+
+	private static String faixaDeItens(int itens)
+	{
+		if (itens <= 1)
+		{
+			return String.valueOf(itens);
+		}
+		if (itens <= 5)
+		{
+			return "2-5";
+		}
+		return itens <= 20 ? "6-20" : "21+";
+	}
+
+	// As mesmas faixas dos descontos padrão por valor.
+	private static String faixaDoTotal(BigDecimal total)
+	{
+		if (total.compareTo(BigDecimal.valueOf(100)) < 0)
+		{
+			return "0-100";
+		}
+		if (total.compareTo(BigDecimal.valueOf(500)) < 0)
+		{
+			return "100-500";
+		}
+		return total.compareTo(BigDecimal.valueOf(1000)) < 0 ? "500-1000" : "1000+";
+	}
+}
@@ -0,0 +1,159 @@
+package ecommerce.service.catalogo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import ecommerce.entity.Produto;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.preco.MotorDePreco;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache de leitura (read-through) de produtos na frente do
+ * {@link ProdutoRepository}. Guarda cópias imutáveis ({@link ProdutoSnapshot})
+ * por id, limitado em tamanho e com expiração após a escrita, de modo que os
+ * produtos mais vendidos deixam de ser lidos do banco a cada compra.
+ *
+ * Escritas devem passar por {@link #salvar(Produto)} e
+ * {@link #remover(Long)}, que invalidam a entrada correspondente na hora e,
+ * dentro de uma transação, de novo depois do commit: uma leitura concorrente
+ * que recarregue a linha antiga antes do commit não fica em cache; alterações
+ * feitas por fora só são vistas depois de {@link #invalidar(Long)} ou da
+ * expiração. Cada invalidação também avança a época dos preços do
+ * {@link MotorDePreco}, para que os totais mantidos nos carrinhos com dados
+ * anteriores deixem de ser usados. Acertos, faltas e remoções são publicados
+ * no Micrometer como o cache {@code produtos}.
+ */
+@Component
+public class CatalogoDeProdutos implements MeterBinder
+{
+
+	private final ProdutoRepository repository;
+	private final MotorDePreco motorDePreco;
+	private final Cache<Long, ProdutoSnapshot> cache;
+
+	@Autowired
+	public CatalogoDeProdutos(ProdutoRepository repository, MotorDePreco motorDePreco,
+			@Value("${compra.catalogo.produtos.tamanho-maximo:10000}") long tamanhoMaximo,
+			@Value("${compra.catalogo.produtos.ttl-ms:600000}") long ttlMs)
+	{
+		this(repository, motorDePreco, tamanhoMaximo, ttlMs, Ticker.systemTicker(), ForkJoinPool.commonPool());
+	}
+
+	/** Com o relógio e o executor da manutenção do cache (remoções) informados, para testes. */
+	CatalogoDeProdutos(ProdutoRepository repository, MotorDePreco motorDePreco, long tamanhoMaximo, long ttlMs,
+			Ticker ticker, Executor executor)
+	{
+		this.repository = repository;
+		this.motorDePreco = motorDePreco;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(Duration.ofMillis(ttlMs))
+				.ticker(ticker)
+				.executor(executor)
+				.recordStats()
+				.build();
+	}
+
+	public Optional<ProdutoSnapshot> buscarPorId(Long id)
+	{
+		return Optional.ofNullable(cache.get(id, this::carregar));
+	}
+
+	/**
+	 * Busca os produtos informados, indexados pelo id. Os que não estão em cache
+	 * são carregados juntos, em uma única consulta; ids inexistentes ficam fora
+	 * do mapa e não são guardados.
+	 */
+	public Map<Long, ProdutoSnapshot> buscar(Collection<Long> ids)
+	{
+		return cache.getAll(ids, this::carregarTodos);
+	}
+
+	public Produto salvar(Produto produto)
+	{
+		Produto salvo = repository.save(produto);
+		invalidarAteOCommit(salvo.getId());
+		return salvo;
+	}
+
+	public void remover(Long id)
+	{
+		repository.deleteById(id);
+		invalidarAteOCommit(id);
+	}
+
+	public void invalidar(Long id)
+	{
+		cache.invalidate(id);
+		motorDePreco.avancarEpocaDosPrecos();
+	}
+
+	public void invalidarTodos()
+	{
+		cache.invalidateAll();
+		motorDePreco.avancarEpocaDosPrecos();
+	}
+
+	public CacheStats estatisticas()
+	{
+		return cache.stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		CaffeineCacheMetrics.monitor(registry, cache, "produtos");
+	}
+
+	private void invalidarAteOCommit(Long id)
+	{
+		invalidar(id);
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+			{
+				@Override
+				public void afterCommit()
+				{
+					invalidar(id);
+				}
+			});
+		}
+	}
+
+	private ProdutoSnapshot carregar(Long id)
+	{
+		return repository.findById(id).map(ProdutoSnapshot::de).orElse(null);
+	}
+
+	private Map<Long, ProdutoSnapshot> carregarTodos(Set<? extends Long> ids)
+	{
+		Map<Long, ProdutoSnapshot> produtos = new HashMap<>();
+		for (Produto produto : repository.findAllById(new ArrayList<Long>(ids)))
+		{
+			produtos.put(produto.getId(), ProdutoSnapshot.de(produto));
+		}
+		return produtos;
+	}
+}
@@ -0,0 +1,96 @@
+package ecommerce.service.catalogo;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.Produto;
+import ecommerce.entity.ProdutoPrecificavel;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Cópia imutável de um {@link Produto}, segura para ser compartilhada entre
+ * threads pelo {@link CatalogoDeProdutos}.
+ */
+public final class ProdutoSnapshot implements ProdutoPrecificavel
+{
+
+	private final Long id;
+	private final String nome;
+	private final BigDecimal preco;
+	private final BigDecimal pesoFisico;
+	private final BigDecimal comprimento;
+	private final BigDecimal largura;
+	private final BigDecimal altura;
+	private final Boolean fragil;
+	private final TipoProduto tipo;
+
+	private ProdutoSnapshot(Produto produto)
+	{
+		this.id = produto.getId();
+		this.nome = produto.getNome();
+		this.preco = produto.getPreco();
+		this.pesoFisico = produto.getPesoFisico();
+		this.comprimento = produto.getComprimento();
+		this.largura = produto.getLargura();
+		this.altura = produto.getAltura();
+		this.fragil = produto.isFragil();
+		this.tipo = produto.getTipo();
+	}
+
+	public static ProdutoSnapshot de(Produto produto)
+	{
+		return new ProdutoSnapshot(produto);
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	@Override
+	public String getNome()
+	{
+		return nome;
+	}
+
+	@Override
+	public BigDecimal getPreco()
+	{
+		return preco;
+	}
+
+	@Override
+	public BigDecimal getPesoFisico()
+	{
+		return pesoFisico;
+	}
+
+	@Override
+	public BigDecimal getComprimento()
+	{
+		return comprimento;
+	}
+
+	@Override
+	public BigDecimal getLargura()
+	{
+		return largura;
+	}
+
+	@Override
+	public BigDecimal getAltura()
+	{
+		return altura;
+	}
+
+	@Override
+	public Boolean isFragil()
+	{
+		return fragil;
+	}
+
+	@Override
+	public TipoProduto getTipo()
+	{
+		return tipo;
+	}
+}
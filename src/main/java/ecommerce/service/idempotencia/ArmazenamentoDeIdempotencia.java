@@ -0,0 +1,16 @@
+package ecommerce.service.idempotencia;
+
+import java.util.Optional;
+
+/**
+ * Onde ficam os resultados das compras já concluídas, por chave de
+ * idempotência. Registros expiram depois de um tempo configurado; um registro
+ * expirado se comporta como inexistente.
+ */
+public interface ArmazenamentoDeIdempotencia
+{
+
+	Optional<RegistroDeIdempotencia> buscar(String chave);
+
+	void salvar(String chave, RegistroDeIdempotencia registro);
+}
@@ -0,0 +1,37 @@
+package ecommerce.service.idempotencia;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Armazenamento em memória, local a cada instância, limitado em tamanho e com
+ * expiração após a escrita. É o padrão.
+ */
+public class ArmazenamentoDeIdempotenciaEmMemoria implements ArmazenamentoDeIdempotencia
+{
+
+	private final Cache<String, RegistroDeIdempotencia> registros;
+
+	public ArmazenamentoDeIdempotenciaEmMemoria(long tamanhoMaximo, long ttlMs)
+	{
+		this.registros = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(Duration.ofMillis(ttlMs))
+				.build();
+	}
+
+	@Override
+	public Optional<RegistroDeIdempotencia> buscar(String chave)
+	{
+		return Optional.ofNullable(registros.getIfPresent(chave));
+	}
+
+	@Override
+	public void salvar(String chave, RegistroDeIdempotencia registro)
+	{
+		registros.put(chave, registro);
+	}
+}
@@ -0,0 +1,56 @@
+package ecommerce.service.idempotencia;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CompraIdempotente;
+import ecommerce.repository.CompraIdempotenteRepository;
+
+/**
+ * Armazenamento no banco, compartilhado entre instâncias e preservado entre
+ * reinícios. Registros expirados são ignorados na busca e removidos
+ * periodicamente.
+ */
+public class ArmazenamentoDeIdempotenciaJpa implements ArmazenamentoDeIdempotencia
+{
+
+	private final CompraIdempotenteRepository repository;
+	private final Duration ttl;
+	private final Clock relogio;
+
+	public ArmazenamentoDeIdempotenciaJpa(CompraIdempotenteRepository repository, long ttlMs, Clock relogio)
+	{
+		this.repository = repository;
+		this.ttl = Duration.ofMillis(ttlMs);
+		this.relogio = relogio;
+	}
+
+	@Override
+	public Optional<RegistroDeIdempotencia> buscar(String chave)
+	{
+		Instant agora = relogio.instant();
+		return repository.findById(chave)
+				.filter(c -> c.getExpiraEm().isAfter(agora))
+				.map(c -> new RegistroDeIdempotencia(c.getCarrinhoId(), c.getClienteId(),
+						new CompraDTO(c.getSucesso(), c.getTransacaoPagamentoId(), c.getMensagem())));
+	}
+
+	@Override
+	public void salvar(String chave, RegistroDeIdempotencia registro)
+	{
+		CompraDTO compra = registro.compra();
+		repository.save(new CompraIdempotente(chave, registro.carrinhoId(), registro.clienteId(), compra.sucesso(),
+				compra.transacaoPagamentoId(), compra.mensagem(), relogio.instant().plus(ttl)));
+	}
+
+	@Scheduled(fixedDelayString = "${compra.idempotencia.limpeza-ms:600000}")
+	public void removerExpirados()
+	{
+		repository.removerExpiradosAntesDe(relogio.instant());
+	}
+}
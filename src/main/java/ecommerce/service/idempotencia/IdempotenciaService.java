@@ -0,0 +1,209 @@
+package ecommerce.service.idempotencia;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.CompraDTO;
+
+/**
+ * Garante que uma compra enviada mais de uma vez com a mesma chave de
+ * idempotência (header {@code Idempotency-Key}) seja processada uma única vez.
+ *
+ * Uma chave já concluída devolve o {@link CompraDTO} guardado no
+ * {@link ArmazenamentoDeIdempotencia}, sem chamar estoque nem pagamento. Uma
+ * chave ainda em processamento nesta instância faz a repetição esperar pelo
+ * resultado da original, em vez de iniciar uma segunda compra. Só compras bem
+ * sucedidas são guardadas: depois de uma falha a mesma chave pode ser tentada de
+ * novo.
+ *
+ * Uma compra concluída é devolvida mesmo que o armazenamento falhe ao guardá-la:
+ * o registro fica em memória nesta instância, atendendo as repetições, até que
+ * {@link #regravarPendentes()} consiga guardá-lo. Esses registros seguem o
+ * mesmo tamanho máximo e a mesma validade do armazenamento: durante uma falha
+ * longa os mais antigos expiram em vez de acumular, e um registro expirado não
+ * é mais devolvido nem regravado. As falhas são contadas em
+ * {@code compra.idempotencia.falhas.gravacao}.
+ */
+@Service
+public class IdempotenciaService implements MeterBinder
+{
+
+	private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+
+	private final ArmazenamentoDeIdempotencia armazenamento;
+	private final long esperaMs;
+	private final Map<String, CompletableFuture<RegistroDeIdempotencia>> emAndamento = new ConcurrentHashMap<>();
+	private final Cache<String, RegistroDeIdempotencia> naoGravados;
+	private final AtomicLong falhasDeGravacao = new AtomicLong();
+
+	@Autowired
+	public IdempotenciaService(ArmazenamentoDeIdempotencia armazenamento,
+			@Value("${compra.idempotencia.espera-ms:30000}") long esperaMs,
+			@Value("${compra.idempotencia.tamanho-maximo:100000}") long tamanhoMaximo,
+			@Value("${compra.idempotencia.ttl-ms:86400000}") long ttlMs)
+	{
+		this(armazenamento, esperaMs, tamanhoMaximo, ttlMs, Ticker.systemTicker());
+	}
+
+	/** Com o relógio da validade dos registros não gravados informado, para testes. */
+	IdempotenciaService(ArmazenamentoDeIdempotencia armazenamento, long esperaMs, long tamanhoMaximo, long ttlMs,
+			Ticker ticker)
+	{
+		this.armazenamento = armazenamento;
+		this.esperaMs = esperaMs;
+		this.naoGravados = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(Duration.ofMillis(ttlMs))
+				.ticker(ticker)
+				.build();
+	}
+
+	public CompraDTO executar(String chave, Long carrinhoId, Long clienteId, Supplier<CompraDTO> compra)
+	{
+		Optional<RegistroDeIdempotencia> concluida = buscar(chave);
+		if (concluida.isPresent())
+		{
+			return resultadoPara(concluida.get(), carrinhoId, clienteId);
+		}
+
+		CompletableFuture<RegistroDeIdempotencia> nova = new CompletableFuture<>();
+		CompletableFuture<RegistroDeIdempotencia> original = emAndamento.putIfAbsent(chave, nova);
+		if (original != null)
+		{
+			return resultadoPara(aguardar(original), carrinhoId, clienteId);
+		}
+
+		try
+		{
+			// A original pode ter terminado entre a busca e o registro desta.
+			RegistroDeIdempotencia registro = buscar(chave).orElse(null);
+			if (registro == null)
+			{
+				registro = new RegistroDeIdempotencia(carrinhoId, clienteId, compra.get());
+				guardar(chave, registro);
+			}
+			nova.complete(registro);
+			return resultadoPara(registro, carrinhoId, clienteId);
+		}
+		catch (RuntimeException e)
+		{
+			nova.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			emAndamento.remove(chave, nova);
+		}
+	}
+
+	/**
+	 * Tenta de novo guardar os registros que o armazenamento recusou; os que
+	 * falharem outra vez continuam em memória para a próxima tentativa, até
+	 * expirarem.
+	 */
+	@Scheduled(fixedDelayString = "${compra.idempotencia.regravacao-ms:5000}")
+	public void regravarPendentes()
+	{
+		naoGravados.asMap().forEach((chave, registro) -> {
+			try
+			{
+				armazenamento.salvar(chave, registro);
+				naoGravados.asMap().remove(chave, registro);
+			}
+			catch (RuntimeException e)
+			{
+				falhasDeGravacao.incrementAndGet();
+				log.warn("Registro de idempotência da chave {} ainda não pôde ser guardado.", chave, e);
+			}
+		});
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("compra.idempotencia.falhas.gravacao", falhasDeGravacao, AtomicLong::get)
+				.description("Compras concluídas cujo registro de idempotência o armazenamento recusou")
+				.register(registry);
+		Gauge.builder("compra.idempotencia.nao.gravados", naoGravados, Cache::estimatedSize)
+				.description("Registros de idempotência mantidos em memória à espera de serem guardados")
+				.register(registry);
+	}
+
+	private Optional<RegistroDeIdempotencia> buscar(String chave)
+	{
+		RegistroDeIdempotencia pendente = naoGravados.getIfPresent(chave);
+		return pendente != null ? Optional.of(pendente) : armazenamento.buscar(chave);
+	}
+
+	/** A compra já foi feita: uma falha do armazenamento não pode virar erro para o cliente. */
+	private void guardar(String chave, RegistroDeIdempotencia registro)
+	{
+		try
+		{
+			armazenamento.salvar(chave, registro);
+		}
+		catch (RuntimeException e)
+		{
+			naoGravados.put(chave, registro);
+			falhasDeGravacao.incrementAndGet();
+			log.warn("Falha ao guardar o registro de idempotência da chave {}; mantido em memória.", chave, e);
+		}
+	}
+
+	private RegistroDeIdempotencia aguardar(CompletableFuture<RegistroDeIdempotencia> original)
+	{
+		try
+		{
+			return original.get(esperaMs, TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException falha)
+			{
+				throw falha;
+			}
+			throw new IllegalStateException("Erro ao processar compra.", e.getCause());
+		}
+		catch (TimeoutException e)
+		{
+			throw new IllegalStateException("Compra com esta chave de idempotência ainda em processamento.");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Compra com esta chave de idempotência ainda em processamento.");
+		}
+	}
+
+	private static CompraDTO resultadoPara(RegistroDeIdempotencia registro, Long carrinhoId, Long clienteId)
+	{
+		if (!registro.pertenceA(carrinhoId, clienteId))
+		{
+			throw new IllegalArgumentException("Chave de idempotência já usada em outra compra.");
+		}
+		return registro.compra();
+	}
+}
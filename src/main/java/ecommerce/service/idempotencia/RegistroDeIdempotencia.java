@@ -0,0 +1,17 @@
+package ecommerce.service.idempotencia;
+
+import ecommerce.dto.CompraDTO;
+
+/**
+ * Resultado de uma compra concluída, guardado sob a chave de idempotência
+ * enviada pelo cliente. O carrinho e o cliente identificam a compra a que a
+ * chave pertence.
+ */
+public record RegistroDeIdempotencia(Long carrinhoId, Long clienteId, CompraDTO compra)
+{
+
+	public boolean pertenceA(Long carrinhoId, Long clienteId)
+	{
+		return this.carrinhoId.equals(carrinhoId) && this.clienteId.equals(clienteId);
+	}
+}
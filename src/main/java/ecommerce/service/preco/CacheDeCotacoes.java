@@ -0,0 +1,188 @@
+package ecommerce.service.preco;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.catalogo.CatalogoDeProdutos;
+import ecommerce.service.catalogo.ProdutoSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Última cotação calculada de cada carrinho, para que cotação, finalização e
+ * repetições de um carrinho que não mudou não recalculem o preço.
+ *
+ * O preço de um carrinho alterado pelo {@code CarrinhoDeComprasService} sai
+ * dos {@link ecommerce.entity.TotaisDoCarrinho totais mantidos}, sem passar por
+ * aqui; este cache é a memória só dos carrinhos cujos totais não servem
+ * (carrinhos antigos, sem totais ou de uma época dos preços anterior, planos
+ * com desconto por categoria, valores fora do ponto fixo), cotados pelos
+ * itens. As alterações do carrinho chamam {@link #invalidar(Long)} na hora e
+ * de novo depois do commit, para que a entrada antiga não ocupe espaço até
+ * ser removida pelo tamanho.
+ *
+ * Junto com a
+ * cotação fica a versão do que entrou no cálculo: produto e quantidade de cada
+ * item, a cópia de cada produto vinda do {@link CatalogoDeProdutos}, a tabela
+ * de preço, o nível e a região do cliente. A cotação só é reaproveitada se a
+ * versão atual for a mesma; qualquer diferença recalcula e substitui a entrada.
+ *
+ * Cópias de produto e tabelas são imutáveis e trocadas por inteiro quando
+ * mudam (o catálogo carrega uma cópia nova depois de
+ * {@link CatalogoDeProdutos#salvar} ou {@link CatalogoDeProdutos#invalidar},
+ * e a recarga da configuração cria outra tabela), então a versão compara
+ * referências e não exige hash. Limitado em tamanho, com remoção dos carrinhos
+ * menos usados, e publicado no Micrometer como o cache {@code cotacoes}.
+ */
+@Component
+public class CacheDeCotacoes implements MeterBinder
+{
+
+	private final MotorDePreco motorDePreco;
+	private final Cache<Long, CotacaoMemorizada> cache;
+
+	@Autowired
+	public CacheDeCotacoes(MotorDePreco motorDePreco,
+			@Value("${compra.cotacoes.tamanho-maximo:10000}") long tamanhoMaximo)
+	{
+		this.motorDePreco = motorDePreco;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * Cotação do carrinho com os produtos do catálogo: a memorizada, se nada mudou
+	 * desde que foi calculada, ou uma nova, que passa a ser a memorizada. Itens
+	 * inválidos não são memorizados e o cálculo os recusa como sempre.
+	 */
+	public CotacaoDTO cotar(Long carrinhoId, List<ItemCompra> itens, Function<ItemCompra, ProdutoSnapshot> produtoDoItem,
+			TipoCliente nivel, Regiao regiao)
+	{
+		TabelaDePreco tabela = motorDePreco.getTabela();
+		VersaoDaCotacao versao = VersaoDaCotacao.de(itens, produtoDoItem, tabela, nivel, regiao);
+		if (versao == null)
+		{
+			return motorDePreco.cotar(tabela, itens, produtoDoItem, nivel, regiao);
+		}
+
+		CotacaoMemorizada memorizada = cache.getIfPresent(carrinhoId);
+		if (memorizada != null && memorizada.versao().equals(versao))
+		{
+			return memorizada.cotacao();
+		}
+
+		CotacaoDTO cotacao = motorDePreco.cotar(tabela, itens, produtoDoItem, nivel, regiao);
+		cache.put(carrinhoId, new CotacaoMemorizada(versao, cotacao));
+		return cotacao;
+	}
+
+	public void invalidar(Long carrinhoId)
+	{
+		cache.invalidate(carrinhoId);
+	}
+
+	public CacheStats estatisticas()
+	{
+		return cache.stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		CaffeineCacheMetrics.monitor(registry, cache, "cotacoes");
+	}
+
+	private record CotacaoMemorizada(VersaoDaCotacao versao, CotacaoDTO cotacao)
+	{
+	}
+
+	/** Entradas de um cálculo; produtos e tabela são comparados por referência. */
+	private static final class VersaoDaCotacao
+	{
+
+		private final long[] produtosIds;
+		private final long[] quantidades;
+		private final ProdutoSnapshot[] produtos;
+		private final TabelaDePreco tabela;
+		private final TipoCliente nivel;
+		private final Regiao regiao;
+
+		private VersaoDaCotacao(long[] produtosIds, long[] quantidades, ProdutoSnapshot[] produtos,
+				TabelaDePreco tabela, TipoCliente nivel, Regiao regiao)
+		{
+			this.produtosIds = produtosIds;
+			this.quantidades = quantidades;
+			this.produtos = produtos;
+			this.tabela = tabela;
+			this.nivel = nivel;
+			this.regiao = regiao;
+		}
+
+		/** Versão dos itens, ou {@code null} se algum item estiver incompleto. */
+		static VersaoDaCotacao de(List<ItemCompra> itens, Function<ItemCompra, ProdutoSnapshot> produtoDoItem,
+				TabelaDePreco tabela, TipoCliente nivel, Regiao regiao)
+		{
+			long[] produtosIds = new long[itens.size()];
+			long[] quantidades = new long[itens.size()];
+			ProdutoSnapshot[] produtos = new ProdutoSnapshot[itens.size()];
+			for (int i = 0; i < produtos.length; i++)
+			{
+				ItemCompra item = itens.get(i);
+				if (item == null || item.getProduto() == null || item.getProduto().getId() == null
+						|| item.getQuantidade() == null)
+				{
+					return null;
+				}
+				produtos[i] = produtoDoItem.apply(item);
+				if (produtos[i] == null)
+				{
+					return null;
+				}
+				produtosIds[i] = item.getProduto().getId();
+				quantidades[i] = item.getQuantidade();
+			}
+			return new VersaoDaCotacao(produtosIds, quantidades, produtos, tabela, nivel, regiao);
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof VersaoDaCotacao outra) || tabela != outra.tabela || nivel != outra.nivel
+					|| regiao != outra.regiao || !Arrays.equals(produtosIds, outra.produtosIds)
+					|| !Arrays.equals(quantidades, outra.quantidades))
+			{
+				return false;
+			}
+			for (int i = 0; i < produtos.length; i++)
+			{
+				if (produtos[i] != outra.produtos[i])
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * Arrays.hashCode(produtosIds) + Arrays.hashCode(quantidades);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Estado de um cálculo percorrido pelas etapas de um {@link PlanoDePreco}. Os
+ * totais dos itens são acumulados na única passada pelo carrinho; as etapas só
+ * mexem no valor das mercadorias (descontos) e nos acréscimos (frete e taxas).
+ *
+ * Em ponto fixo, valor e acréscimos ficam em unidades de 10⁻⁸ real: com
+ * percentuais em pontos-base, até três descontos inteiros em percentual
+ * encadeados continuam exatos nessa escala.
+ */
+final class ContaDePreco
+{
+
+	static final long UNIDADES_POR_CENTAVO = 1_000_000L;
+
+	private static final int CATEGORIAS = TipoProduto.values().length;
+
+	long subtotalCentavos;
+	/** Só preenchido quando o plano tem desconto por categoria. */
+	final long[] subtotalCentavosPorCategoria;
+	long pesoGramas;
+	long unidadesFrageis;
+
+	long valor;
+	long acrescimos;
+	/** Parte dos acréscimos que é frete. */
+	long frete;
+
+	ContaDePreco(boolean porCategoria)
+	{
+		this.subtotalCentavosPorCategoria = porCategoria ? new long[CATEGORIAS] : null;
+	}
+
+	/** Valor total arredondado (HALF_UP) em centavos. */
+	long totalEmCentavos()
+	{
+		long total = Math.addExact(valor, acrescimos);
+		return (total + UNIDADES_POR_CENTAVO / 2) / UNIDADES_POR_CENTAVO;
+	}
+
+	/**
+	 * Composição do total, depois de rodado o plano. Frete e taxas são
+	 * arredondados cada um para centavos e o desconto é o que falta para o
+	 * total, de modo que as parcelas sempre somam o total cobrado.
+	 */
+	CotacaoDTO cotacao()
+	{
+		return cotacao(BigDecimal.valueOf(subtotalCentavos, 2), BigDecimal.valueOf(frete, 8),
+				BigDecimal.valueOf(acrescimos - frete, 8), BigDecimal.valueOf(totalEmCentavos(), 2));
+	}
+
+	private static CotacaoDTO cotacao(BigDecimal subtotal, BigDecimal frete, BigDecimal taxas, BigDecimal total)
+	{
+		BigDecimal subtotalEmCentavos = subtotal.setScale(2, RoundingMode.HALF_UP);
+		BigDecimal freteEmCentavos = frete.setScale(2, RoundingMode.HALF_UP);
+		BigDecimal taxasEmCentavos = taxas.setScale(2, RoundingMode.HALF_UP);
+		BigDecimal desconto = subtotalEmCentavos.add(freteEmCentavos).add(taxasEmCentavos).subtract(total);
+		return new CotacaoDTO(subtotalEmCentavos, desconto, freteEmCentavos, taxasEmCentavos, total);
+	}
+
+	/** O mesmo estado em {@link BigDecimal}, para valores que não cabem no ponto fixo. */
+	static final class Decimal
+	{
+
+		BigDecimal subtotal = BigDecimal.ZERO;
+		final BigDecimal[] subtotalPorCategoria;
+		BigDecimal pesoKg = BigDecimal.ZERO;
+		BigDecimal unidadesFrageis = BigDecimal.ZERO;
+
+		BigDecimal valor;
+		BigDecimal acrescimos = BigDecimal.ZERO;
+		BigDecimal frete = BigDecimal.ZERO;
+
+		Decimal(boolean porCategoria)
+		{
+			this.subtotalPorCategoria = porCategoria ? new BigDecimal[CATEGORIAS] : null;
+			if (porCategoria)
+			{
+				Arrays.fill(subtotalPorCategoria, BigDecimal.ZERO);
+			}
+		}
+
+		BigDecimal total()
+		{
+			return valor.add(acrescimos).setScale(2, RoundingMode.HALF_UP);
+		}
+
+		CotacaoDTO cotacao()
+		{
+			return ContaDePreco.cotacao(subtotal, frete, acrescimos.subtract(frete), total());
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Uma etapa de um {@link PlanoDePreco}, aplicada sobre a {@link ContaDePreco}
+ * depois da passada pelos itens. Cada etapa existe nas duas aritméticas, com o
+ * mesmo resultado: em ponto fixo e em {@link BigDecimal}.
+ */
+interface EtapaDePreco
+{
+
+	/** Indica que um percentual não é exato na escala do ponto fixo. */
+	long NAO_EXATO = Long.MIN_VALUE;
+
+	/**
+	 * Aplica a etapa em ponto fixo. Retorna {@code false} se o resultado não for
+	 * exato nessa escala e lança {@link ArithmeticException} em estouro; nos dois
+	 * casos o cálculo é refeito em {@link BigDecimal}.
+	 */
+	boolean aplicar(ContaDePreco conta);
+
+	void aplicar(ContaDePreco.Decimal conta);
+
+	/** {@code valor * pontosBase / 10000}, ou {@link #NAO_EXATO}. */
+	static long parcela(long valor, long pontosBase)
+	{
+		long parteInteira = Math.multiplyExact(valor / 10_000, pontosBase);
+		long resto = (valor % 10_000) * pontosBase;
+		if (resto % 10_000 != 0)
+		{
+			return NAO_EXATO;
+		}
+		return Math.addExact(parteInteira, resto / 10_000);
+	}
+
+	/** Desconto de cada categoria de produto sobre o subtotal dela. */
+	record DescontoPorCategoria(long[] pontosBase, BigDecimal[] percentuais) implements EtapaDePreco
+	{
+
+		@Override
+		public boolean aplicar(ContaDePreco conta)
+		{
+			for (int categoria = 0; categoria < pontosBase.length; categoria++)
+			{
+				if (pontosBase[categoria] != 0)
+				{
+					// centavos * 10⁶ * pontos-base / 10⁴: sempre exato
+					long desconto = Math.multiplyExact(
+							Math.multiplyExact(conta.subtotalCentavosPorCategoria[categoria], pontosBase[categoria]), 100);
+					conta.valor -= desconto;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void aplicar(ContaDePreco.Decimal conta)
+		{
+			for (int categoria = 0; categoria < percentuais.length; categoria++)
+			{
+				if (pontosBase[categoria] != 0)
+				{
+					conta.valor = conta.valor.subtract(conta.subtotalPorCategoria[categoria].multiply(percentuais[categoria]));
+				}
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder texto = new StringBuilder("DescontoPorCategoria[");
+			for (TipoProduto tipo : TipoProduto.values())
+			{
+				if (pontosBase[tipo.ordinal()] != 0)
+				{
+					texto.append(texto.charAt(texto.length() - 1) == '[' ? "" : ", ").append(tipo).append('=')
+							.append(percentuais[tipo.ordinal()].movePointRight(2).stripTrailingZeros().toPlainString())
+							.append('%');
+				}
+			}
+			return texto.append(']').toString();
+		}
+	}
+
+	/** Desconto pelas faixas de valor, escolhida pelo valor já com os descontos anteriores. */
+	record DescontoPorValor(TabelaDePreco tabela) implements EtapaDePreco
+	{
+
+		@Override
+		public boolean aplicar(ContaDePreco conta)
+		{
+			long pontosBase = tabela.pontosBaseDeDesconto(conta.valor / ContaDePreco.UNIDADES_POR_CENTAVO);
+			long desconto = parcela(conta.valor, pontosBase);
+			if (desconto == NAO_EXATO)
+			{
+				return false;
+			}
+			conta.valor -= desconto;
+			return true;
+		}
+
+		@Override
+		public void aplicar(ContaDePreco.Decimal conta)
+		{
+			conta.valor = conta.valor.subtract(conta.valor.multiply(tabela.percentualDeDesconto(conta.valor)));
+		}
+
+		@Override
+		public String toString()
+		{
+			return "DescontoPorValor";
+		}
+	}
+
+	/** Benefício do nível do cliente: percentual sobre o valor já com os demais descontos. */
+	record BeneficioDoNivel(long pontosBase, BigDecimal percentual) implements EtapaDePreco
+	{
+
+		@Override
+		public boolean aplicar(ContaDePreco conta)
+		{
+			long desconto = parcela(conta.valor, pontosBase);
+			if (desconto == NAO_EXATO)
+			{
+				return false;
+			}
+			conta.valor -= desconto;
+			return true;
+		}
+
+		@Override
+		public void aplicar(ContaDePreco.Decimal conta)
+		{
+			conta.valor = conta.valor.subtract(conta.valor.multiply(percentual));
+		}
+
+		@Override
+		public String toString()
+		{
+			return "BeneficioDoNivel[" + percentual.movePointRight(2).stripTrailingZeros().toPlainString() + "%]";
+		}
+	}
+
+	/** Frete pelo peso faturável, com as faixas de uma região. */
+	record Frete(TabelaDePreco.FaixasDeFrete faixas) implements EtapaDePreco
+	{
+
+		@Override
+		public boolean aplicar(ContaDePreco conta)
+		{
+			// gramas * centavos por kg = 10⁻⁵ real
+			long frete = Math.multiplyExact(Math.multiplyExact(conta.pesoGramas, faixas.centavosPorKg(conta.pesoGramas)),
+					1_000);
+			conta.acrescimos = Math.addExact(conta.acrescimos, frete);
+			conta.frete = frete;
+			return true;
+		}
+
+		@Override
+		public void aplicar(ContaDePreco.Decimal conta)
+		{
+			conta.frete = conta.pesoKg.multiply(faixas.fretePorKg(conta.pesoKg));
+			conta.acrescimos = conta.acrescimos.add(conta.frete);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Frete[" + faixas + "]";
+		}
+	}
+
+	/** Taxa fixa por unidade de produto frágil. */
+	record TaxaDeFragil(long centavos, BigDecimal valor) implements EtapaDePreco
+	{
+
+		@Override
+		public boolean aplicar(ContaDePreco conta)
+		{
+			long taxa = Math.multiplyExact(Math.multiplyExact(conta.unidadesFrageis, centavos),
+					ContaDePreco.UNIDADES_POR_CENTAVO);
+			conta.acrescimos = Math.addExact(conta.acrescimos, taxa);
+			return true;
+		}
+
+		@Override
+		public void aplicar(ContaDePreco.Decimal conta)
+		{
+			conta.acrescimos = conta.acrescimos.add(valor.multiply(conta.unidadesFrageis));
+		}
+
+		@Override
+		public String toString()
+		{
+			return "TaxaDeFragil[" + valor.toPlainString() + "]";
+		}
+	}
+}
@@ -0,0 +1,487 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.ProdutoPrecificavel;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TotaisDoCarrinho;
+
+/**
+ * Calcula o custo total de uma lista de itens em aritmética de ponto fixo:
+ * preços em centavos, pesos em gramas e o total em 10⁻⁸ real (veja
+ * {@link ContaDePreco}), tudo em {@code long} e em uma única passada pelos
+ * itens. O resultado é idêntico ao do cálculo com {@link BigDecimal}
+ * arredondado com {@code setScale(2, HALF_UP)}.
+ *
+ * As faixas de desconto e de frete vêm de uma {@link TabelaDePreco}, lida da
+ * configuração e trocada por inteiro em {@link #atualizarTabela(TabelaDePreco)};
+ * cada cálculo usa uma única tabela do começo ao fim. O frete é cobrado pelo
+ * peso faturável (o maior entre o físico e o cúbico de cada unidade) com as
+ * faixas da região do cliente.
+ *
+ * Os itens são percorridos uma única vez, acumulando subtotal (também por
+ * categoria, se houver desconto por categoria), peso e unidades frágeis; em
+ * seguida roda o {@link PlanoDePreco} da tabela para o nível e a região do
+ * cliente. Regras novas entram como etapas do plano, sem outra passada pelos
+ * itens.
+ *
+ * Carrinhos com {@link TotaisDoCarrinho} mantidos dispensam até essa passada:
+ * {@link #cotar(TotaisDoCarrinho, TipoCliente, Regiao)} roda o plano direto
+ * sobre os totais, se forem da {@linkplain #getEpocaDosPrecos() época dos
+ * preços} atual, e {@link #totais(List, Function, long)} calcula a parcela de
+ * cada item incluído ou removido.
+ *
+ * Quando algum valor não cabe no ponto fixo (preço com mais de 2 casas, peso
+ * com mais de 3 casas ou estouro de {@code long}) o cálculo cai para a versão
+ * com {@link BigDecimal}.
+ */
+@Component
+public class MotorDePreco
+{
+
+	/** Indica que o valor não pode ser representado em ponto fixo. */
+	private static final long NAO_REPRESENTAVEL = Long.MIN_VALUE;
+
+	private final AtomicReference<TabelaDePreco> tabela;
+	// Começa no relógio da inicialização, com espaço para 2^20 avanços por
+	// milissegundo: totais gravados em uma execução anterior não coincidem.
+	private final AtomicLong epocaDosPrecos = new AtomicLong(System.currentTimeMillis() << 20);
+
+	public MotorDePreco()
+	{
+		this(TabelaDePreco.padrao());
+	}
+
+	@Autowired
+	public MotorDePreco(Environment environment)
+	{
+		this(TabelaDePreco.daConfiguracao(environment));
+	}
+
+	public MotorDePreco(TabelaDePreco tabela)
+	{
+		this.tabela = new AtomicReference<>(tabela);
+	}
+
+	public TabelaDePreco getTabela()
+	{
+		return tabela.get();
+	}
+
+	/** Passa a calcular com a nova tabela; cálculos em andamento terminam com a anterior. */
+	public void atualizarTabela(TabelaDePreco novaTabela)
+	{
+		if (novaTabela == null)
+		{
+			throw new IllegalArgumentException("Tabela de preço não pode ser nula");
+		}
+		tabela.set(novaTabela);
+		avancarEpocaDosPrecos();
+	}
+
+	/**
+	 * Época dos preços: avança a cada troca de tabela e a cada escrita ou
+	 * invalidação de produto no catálogo. Totais mantidos guardam a época em
+	 * que foram calculados e só servem para cotar enquanto ela for a atual, uma
+	 * conferência sem percorrer os itens. Local a esta instância, como o cache
+	 * de produtos.
+	 */
+	public long getEpocaDosPrecos()
+	{
+		return epocaDosPrecos.get();
+	}
+
+	public void avancarEpocaDosPrecos()
+	{
+		epocaDosPrecos.incrementAndGet();
+	}
+
+	/**
+	 * Valida os itens e calcula o custo total (subtotal com desconto por valor,
+	 * frete por peso e taxa de produtos frágeis), com duas casas decimais e as
+	 * faixas gerais de frete.
+	 */
+	public BigDecimal calcularCustoTotal(List<ItemCompra> itens)
+	{
+		return calcularCustoTotal(itens, ItemCompra::getProduto, null, null);
+	}
+
+	/** Como {@link #calcularCustoTotal(List)}, com as faixas de frete da região (as gerais se nula). */
+	public BigDecimal calcularCustoTotal(List<ItemCompra> itens, Regiao regiao)
+	{
+		return calcularCustoTotal(itens, ItemCompra::getProduto, null, regiao);
+	}
+
+	/**
+	 * Como {@link #calcularCustoTotal(List, Regiao)}, com os descontos do nível do
+	 * cliente (nenhum se nulo).
+	 */
+	public BigDecimal calcularCustoTotal(List<ItemCompra> itens, TipoCliente nivel, Regiao regiao)
+	{
+		return calcularCustoTotal(itens, ItemCompra::getProduto, nivel, regiao);
+	}
+
+	/**
+	 * Como {@link #calcularCustoTotal(List)}, mas com os dados de cada produto
+	 * obtidos por {@code produtoDoItem} (por exemplo, do cache de produtos) em vez
+	 * da entidade referenciada pelo item. Um item cujo produto não é encontrado é
+	 * rejeitado.
+	 */
+	public BigDecimal calcularCustoTotal(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem)
+	{
+		return calcularCustoTotal(itens, produtoDoItem, null, null);
+	}
+
+	public BigDecimal calcularCustoTotal(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem, TipoCliente nivel, Regiao regiao)
+	{
+		TabelaDePreco faixas = tabela.get();
+		PlanoDePreco plano = faixas.plano(nivel, regiao);
+		ContaDePreco conta = calcularEmPontoFixo(itens, produtoDoItem, faixas, plano);
+		if (conta != null)
+		{
+			return BigDecimal.valueOf(conta.totalEmCentavos(), 2);
+		}
+		return plano.calcular(acumularComBigDecimal(itens, produtoDoItem, faixas, plano));
+	}
+
+	/**
+	 * Mesmo cálculo de
+	 * {@link #calcularCustoTotal(List, Function, TipoCliente, Regiao)}, com a
+	 * composição do total (subtotal, desconto, frete e taxa de frágeis) em vez só
+	 * do total.
+	 */
+	public CotacaoDTO cotar(List<ItemCompra> itens, Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem,
+			TipoCliente nivel, Regiao regiao)
+	{
+		return cotar(tabela.get(), itens, produtoDoItem, nivel, regiao);
+	}
+
+	/** Como {@link #cotar(List, Function, TipoCliente, Regiao)}, com uma tabela já lida. */
+	CotacaoDTO cotar(TabelaDePreco faixas, List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem, TipoCliente nivel, Regiao regiao)
+	{
+		PlanoDePreco plano = faixas.plano(nivel, regiao);
+		ContaDePreco conta = calcularEmPontoFixo(itens, produtoDoItem, faixas, plano);
+		if (conta != null)
+		{
+			return conta.cotacao();
+		}
+		ContaDePreco.Decimal contaDecimal = acumularComBigDecimal(itens, produtoDoItem, faixas, plano);
+		plano.calcular(contaDecimal);
+		return contaDecimal.cotacao();
+	}
+
+	/**
+	 * Totais dos itens para manter em {@link CarrinhoDeCompras#getTotais()}, com o
+	 * peso cobrado pelo fator de cubagem da tabela atual. Retorna {@code null} se
+	 * algum item for inválido ou algum valor não couber no ponto fixo: um
+	 * carrinho assim tem o preço calculado pelos itens.
+	 *
+	 * {@code epocaDosPrecos} deve ser lida antes dos dados dos produtos: uma
+	 * escrita no meio do caminho deixa os totais já de uma época anterior.
+	 */
+	public TotaisDoCarrinho totais(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem, long epocaDosPrecos)
+	{
+		TabelaDePreco faixas = tabela.get();
+		ContaDePreco conta = new ContaDePreco(false);
+		try
+		{
+			if (!acumularEmPontoFixo(itens, produtoDoItem, faixas, conta))
+			{
+				return null;
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+		return new TotaisDoCarrinho(conta.subtotalCentavos, conta.pesoGramas, conta.unidadesFrageis,
+				faixas.fatorDeCubagem(), epocaDosPrecos);
+	}
+
+	/** Como {@link #totais(List, Function, long)}, na época dos preços atual. */
+	public TotaisDoCarrinho totais(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem)
+	{
+		return totais(itens, produtoDoItem, getEpocaDosPrecos());
+	}
+
+	/**
+	 * Cotação a partir dos totais mantidos no carrinho, sem percorrer os itens:
+	 * o plano do nível e da região roda direto sobre subtotal, peso e unidades
+	 * frágeis, com o mesmo resultado do cálculo pelos itens. Retorna {@code null}
+	 * se não houver totais, se eles forem de outra época dos preços ou de outro
+	 * fator de cubagem, ou se o plano tiver desconto por categoria, que precisa
+	 * do subtotal de cada uma.
+	 */
+	public CotacaoDTO cotar(TotaisDoCarrinho totais, TipoCliente nivel, Regiao regiao)
+	{
+		TabelaDePreco faixas = tabela.get();
+		PlanoDePreco plano = faixas.plano(nivel, regiao);
+		if (totais == null || !Long.valueOf(getEpocaDosPrecos()).equals(totais.getEpocaDosPrecos())
+				|| plano.porCategoria() || totais.getFatorDeCubagem() != faixas.fatorDeCubagem())
+		{
+			return null;
+		}
+
+		ContaDePreco conta = new ContaDePreco(false);
+		conta.subtotalCentavos = totais.getSubtotalCentavos();
+		conta.pesoGramas = totais.getPesoGramas();
+		conta.unidadesFrageis = totais.getUnidadesFrageis();
+		try
+		{
+			if (plano.calcular(conta) != EtapaDePreco.NAO_EXATO)
+			{
+				return conta.cotacao();
+			}
+		}
+		catch (ArithmeticException e)
+		{
+			// estouro no total: segue para o cálculo com BigDecimal
+		}
+
+		ContaDePreco.Decimal contaDecimal = new ContaDePreco.Decimal(false);
+		contaDecimal.subtotal = BigDecimal.valueOf(totais.getSubtotalCentavos(), 2);
+		contaDecimal.pesoKg = BigDecimal.valueOf(totais.getPesoGramas(), 3);
+		contaDecimal.unidadesFrageis = BigDecimal.valueOf(totais.getUnidadesFrageis());
+		plano.calcular(contaDecimal);
+		return contaDecimal.cotacao();
+	}
+
+	/**
+	 * Valida os itens e, em uma única passada, acumula a conta em ponto fixo e
+	 * roda o plano sobre ela. Retorna {@code null} se algum valor não couber no
+	 * ponto fixo ou o resultado não for exato nele.
+	 */
+	private static ContaDePreco calcularEmPontoFixo(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem, TabelaDePreco faixas,
+			PlanoDePreco plano)
+	{
+		ContaDePreco conta = new ContaDePreco(plano.porCategoria());
+		if (acumularEmPontoFixo(itens, produtoDoItem, faixas, conta))
+		{
+			try
+			{
+				if (plano.calcular(conta) != EtapaDePreco.NAO_EXATO)
+				{
+					return conta;
+				}
+			}
+			catch (ArithmeticException e)
+			{
+				// estouro no total: segue para o cálculo com BigDecimal
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Valida os itens e acumula os totais deles na conta. Retorna {@code false}
+	 * se algum valor não couber no ponto fixo.
+	 */
+	private static boolean acumularEmPontoFixo(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem, TabelaDePreco faixas,
+			ContaDePreco conta)
+	{
+		boolean pontoFixo = true;
+
+		for (ItemCompra item : itens)
+		{
+			ProdutoPrecificavel produto = validarItem(item, produtoDoItem);
+
+			if (!pontoFixo)
+			{
+				continue;
+			}
+
+			long quantidade = item.getQuantidade();
+			long precoCentavos = emUnidades(produto.getPreco(), 2);
+			long pesoItemGramas = emUnidades(produto.getPesoFisico(), 3);
+
+			if (precoCentavos == NAO_REPRESENTAVEL || pesoItemGramas == NAO_REPRESENTAVEL)
+			{
+				pontoFixo = false;
+				continue;
+			}
+
+			try
+			{
+				long pesoCubicoGramas = pesoCubicoGramas(faixas, produto);
+				if (pesoCubicoGramas == NAO_REPRESENTAVEL)
+				{
+					pontoFixo = false;
+					continue;
+				}
+				long pesoCobradoGramas = Math.max(pesoItemGramas, pesoCubicoGramas);
+
+				long totalItemCentavos = Math.multiplyExact(precoCentavos, quantidade);
+				conta.subtotalCentavos = Math.addExact(conta.subtotalCentavos, totalItemCentavos);
+				if (conta.subtotalCentavosPorCategoria != null)
+				{
+					int categoria = produto.getTipo().ordinal();
+					conta.subtotalCentavosPorCategoria[categoria] = Math
+							.addExact(conta.subtotalCentavosPorCategoria[categoria], totalItemCentavos);
+				}
+				conta.pesoGramas = Math.addExact(conta.pesoGramas, Math.multiplyExact(pesoCobradoGramas, quantidade));
+				if (Boolean.TRUE.equals(produto.isFragil()))
+				{
+					conta.unidadesFrageis = Math.addExact(conta.unidadesFrageis, quantidade);
+				}
+			}
+			catch (ArithmeticException e)
+			{
+				pontoFixo = false;
+			}
+		}
+
+		return pontoFixo;
+	}
+
+	/**
+	 * Peso cúbico de uma unidade em gramas, zero para produtos sem as três
+	 * dimensões, ou {@link #NAO_REPRESENTAVEL} se alguma dimensão tiver mais de 2
+	 * casas. Lança {@link ArithmeticException} se o volume estourar o {@code long}.
+	 */
+	private static long pesoCubicoGramas(TabelaDePreco faixas, ProdutoPrecificavel produto)
+	{
+		if (!temDimensoes(produto))
+		{
+			return 0;
+		}
+		long comprimento = emUnidades(produto.getComprimento(), 2);
+		long largura = emUnidades(produto.getLargura(), 2);
+		long altura = emUnidades(produto.getAltura(), 2);
+		if (comprimento == NAO_REPRESENTAVEL || largura == NAO_REPRESENTAVEL || altura == NAO_REPRESENTAVEL)
+		{
+			return NAO_REPRESENTAVEL;
+		}
+		return faixas.pesoCubicoGramas(Math.multiplyExact(Math.multiplyExact(comprimento, largura), altura));
+	}
+
+	private static boolean temDimensoes(ProdutoPrecificavel produto)
+	{
+		return produto.getComprimento() != null && produto.getComprimento().signum() > 0
+				&& produto.getLargura() != null && produto.getLargura().signum() > 0
+				&& produto.getAltura() != null && produto.getAltura().signum() > 0;
+	}
+
+	/**
+	 * Converte o valor para um inteiro na escala informada (2 para centavos, 3
+	 * para gramas), ou {@link #NAO_REPRESENTAVEL} se houver perda de precisão.
+	 */
+	private static long emUnidades(BigDecimal valor, int escala)
+	{
+		if (valor.scale() > escala || valor.precision() - valor.scale() > 18 - escala)
+		{
+			return NAO_REPRESENTAVEL;
+		}
+		return valor.movePointRight(escala).longValue();
+	}
+
+	private static ProdutoPrecificavel validarItem(ItemCompra item,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem)
+	{
+		if (item == null || item.getProduto() == null)
+		{
+			throw new IllegalArgumentException("Item de compra ou produto não pode ser nulo");
+		}
+
+		ProdutoPrecificavel p = produtoDoItem.apply(item);
+
+		if (p == null)
+		{
+			throw new IllegalArgumentException("Produto não encontrado: " + item.getProduto().getId());
+		}
+
+		if (item.getQuantidade() == null || item.getQuantidade() <= 0)
+		{
+			throw new IllegalArgumentException("Quantidade inválida no produto: " + p.getNome());
+		}
+
+		if (p.getPreco() == null || p.getPreco().compareTo(BigDecimal.ZERO) < 0)
+		{
+			throw new IllegalArgumentException("Preço inválido no produto: " + p.getNome());
+		}
+
+		if (p.getTipo() == null)
+		{
+			throw new IllegalArgumentException("Tipo do produto não pode ser nulo: " + p.getNome());
+		}
+
+		if (p.getPesoFisico() == null || p.getPesoFisico().compareTo(BigDecimal.ZERO) <= 0)
+		{
+			throw new IllegalArgumentException("Peso físico inválido (deve ser > 0) no produto: " + p.getNome());
+		}
+
+		return p;
+	}
+
+	/**
+	 * Cálculo de referência com {@link BigDecimal}, usado quando os valores não
+	 * cabem no ponto fixo. Espera itens já validados.
+	 */
+	BigDecimal calcularComBigDecimal(List<ItemCompra> itens)
+	{
+		return calcularComBigDecimal(itens, null);
+	}
+
+	BigDecimal calcularComBigDecimal(List<ItemCompra> itens, Regiao regiao)
+	{
+		return calcularComBigDecimal(itens, null, regiao);
+	}
+
+	BigDecimal calcularComBigDecimal(List<ItemCompra> itens, TipoCliente nivel, Regiao regiao)
+	{
+		TabelaDePreco faixas = tabela.get();
+		PlanoDePreco plano = faixas.plano(nivel, regiao);
+		return plano.calcular(acumularComBigDecimal(itens, ItemCompra::getProduto, faixas, plano));
+	}
+
+	private static ContaDePreco.Decimal acumularComBigDecimal(List<ItemCompra> itens,
+			Function<ItemCompra, ? extends ProdutoPrecificavel> produtoDoItem, TabelaDePreco faixas,
+			PlanoDePreco plano)
+	{
+		ContaDePreco.Decimal conta = new ContaDePreco.Decimal(plano.porCategoria());
+
+		for (ItemCompra item : itens)
+		{
+			ProdutoPrecificavel produto = produtoDoItem.apply(item);
+			BigDecimal quantidade = BigDecimal.valueOf(item.getQuantidade());
+
+			BigDecimal totalItem = produto.getPreco().multiply(quantidade);
+			conta.subtotal = conta.subtotal.add(totalItem);
+			if (conta.subtotalPorCategoria != null)
+			{
+				int categoria = produto.getTipo().ordinal();
+				conta.subtotalPorCategoria[categoria] = conta.subtotalPorCategoria[categoria].add(totalItem);
+			}
+			BigDecimal pesoCobrado = produto.getPesoFisico();
+			if (temDimensoes(produto))
+			{
+				pesoCobrado = pesoCobrado.max(faixas.pesoCubicoKg(
+						produto.getComprimento().multiply(produto.getLargura()).multiply(produto.getAltura())));
+			}
+			conta.pesoKg = conta.pesoKg.add(pesoCobrado.multiply(quantidade));
+			if (Boolean.TRUE.equals(produto.isFragil()))
+			{
+				conta.unidadesFrageis = conta.unidadesFrageis.add(quantidade);
+			}
+		}
+		return conta;
+	}
+}
@@ -0,0 +1,63 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Sequência de etapas de preço de uma combinação de nível de cliente e região,
+ * montada uma vez pela {@link TabelaDePreco}. As etapas ficam em um vetor e
+ * rodam em ordem sobre a conta já acumulada: descontos por categoria, por valor
+ * e do nível do cliente, depois frete e taxa de frágeis. Etapas sem efeito na
+ * configuração (percentual zero) nem entram no plano.
+ */
+final class PlanoDePreco
+{
+
+	private final EtapaDePreco[] etapas;
+	private final boolean porCategoria;
+
+	PlanoDePreco(EtapaDePreco... etapas)
+	{
+		this.etapas = etapas;
+		this.porCategoria = Arrays.stream(etapas).anyMatch(EtapaDePreco.DescontoPorCategoria.class::isInstance);
+	}
+
+	/** Se a passada pelos itens precisa acumular o subtotal de cada categoria. */
+	boolean porCategoria()
+	{
+		return porCategoria;
+	}
+
+	/**
+	 * Total em centavos, ou {@link EtapaDePreco#NAO_EXATO} se alguma etapa não for
+	 * exata em ponto fixo. Lança {@link ArithmeticException} em estouro.
+	 */
+	long calcular(ContaDePreco conta)
+	{
+		conta.valor = Math.multiplyExact(conta.subtotalCentavos, ContaDePreco.UNIDADES_POR_CENTAVO);
+		for (EtapaDePreco etapa : etapas)
+		{
+			if (!etapa.aplicar(conta))
+			{
+				return EtapaDePreco.NAO_EXATO;
+			}
+		}
+		return conta.totalEmCentavos();
+	}
+
+	BigDecimal calcular(ContaDePreco.Decimal conta)
+	{
+		conta.valor = conta.subtotal;
+		for (EtapaDePreco etapa : etapas)
+		{
+			etapa.aplicar(conta);
+		}
+		return conta.total();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PlanoDePreco" + Arrays.toString(etapas);
+	}
+}
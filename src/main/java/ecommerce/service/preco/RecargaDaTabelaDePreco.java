@@ -0,0 +1,36 @@
+package ecommerce.service.preco;
+
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recarrega a {@link TabelaDePreco} do {@link MotorDePreco} quando as faixas
+ * mudam na configuração sem reiniciar a aplicação (por exemplo, pelo endpoint
+ * {@code refresh} do actuator ou por um servidor de configuração). Faixas
+ * inválidas são recusadas com {@link IllegalArgumentException} e a tabela em
+ * uso continua a mesma.
+ */
+@Component
+public class RecargaDaTabelaDePreco implements ApplicationListener<EnvironmentChangeEvent>
+{
+
+	private final MotorDePreco motorDePreco;
+	private final Environment environment;
+
+	public RecargaDaTabelaDePreco(MotorDePreco motorDePreco, Environment environment)
+	{
+		this.motorDePreco = motorDePreco;
+		this.environment = environment;
+	}
+
+	@Override
+	public void onApplicationEvent(EnvironmentChangeEvent event)
+	{
+		if (event.getKeys().stream().anyMatch(chave -> chave.startsWith(TabelaDePreco.PREFIXO)))
+		{
+			motorDePreco.atualizarTabela(TabelaDePreco.daConfiguracao(environment));
+		}
+	}
+}
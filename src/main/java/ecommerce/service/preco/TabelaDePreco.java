@@ -0,0 +1,543 @@
+package ecommerce.service.preco;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.core.env.Environment;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Faixas de desconto por valor e de frete por peso, já ordenadas e convertidas
+ * para ponto fixo: limites de desconto em centavos, percentuais em pontos-base
+ * (centésimos de 1%), limites de frete em gramas e fretes em centavos por kg. A
+ * busca da faixa é binária. Imutável; para mudar as faixas troca-se a tabela
+ * inteira (veja {@link MotorDePreco#atualizarTabela(TabelaDePreco)}).
+ *
+ * O frete tem uma tabela por {@link Regiao}, montada uma vez com a tabela; as
+ * regiões sem faixas próprias usam as gerais. O peso cobrado de cada unidade é
+ * o maior entre o físico e o cúbico (volume em cm³ dividido pelo fator de
+ * cubagem, em kg, arredondado para cima no grama); fator zero ignora o volume.
+ *
+ * Na configuração os descontos são pares {@code subtotalMinimo:percentual}
+ * (por exemplo {@code 500.00:10,1000.00:20}) e os fretes pares
+ * {@code pesoMaximoKg:reaisPorKg}, com o último peso {@code *} para a faixa sem
+ * limite (por exemplo {@code 5:0,10:2.00,50:4.00,*:7.00}).
+ *
+ * Descontos opcionais por categoria de produto e por nível de cliente são
+ * percentuais simples. Com eles a tabela monta, uma vez, um {@link PlanoDePreco}
+ * para cada combinação de nível e região: categoria, valor, nível, frete e taxa
+ * de frágeis, nessa ordem, cada desconto sobre o valor já descontado.
+ */
+public final class TabelaDePreco
+{
+
+	public static final String PROPRIEDADE_DESCONTOS = "compra.preco.descontos";
+	public static final String PROPRIEDADE_FRETES = "compra.preco.fretes";
+	public static final String PROPRIEDADE_FATOR_DE_CUBAGEM = "compra.preco.fator-de-cubagem";
+	/** Prefixo de todas as propriedades da tabela. */
+	public static final String PREFIXO = "compra.preco.";
+
+	static final String DESCONTOS_PADRAO = "500.00:10,1000.00:20";
+	static final String FRETES_PADRAO = "5:0,10:2.00,50:4.00,*:7.00";
+	static final long FATOR_DE_CUBAGEM_PADRAO = 6000;
+
+	static final long CENTAVOS_TAXA_FRAGIL = 500L;
+
+	private static final Regiao[] REGIOES = Regiao.values();
+	private static final TipoProduto[] CATEGORIAS = TipoProduto.values();
+	private static final TipoCliente[] NIVEIS = TipoCliente.values();
+
+	private static final TabelaDePreco PADRAO = de(DESCONTOS_PADRAO, FRETES_PADRAO);
+
+	// desconto: a faixa é a de maior mínimo <= subtotal
+	private final long[] minimosCentavos;
+	private final long[] pontosBase;
+	private final BigDecimal[] minimos;
+	private final BigDecimal[] percentuais;
+
+	private final FaixasDeFrete fretes;
+	// por Regiao.ordinal(); regiões sem faixas próprias apontam para as gerais
+	private final FaixasDeFrete[] fretesPorRegiao;
+
+	private final long fatorDeCubagem;
+	private final BigDecimal fatorDeCubagemDecimal;
+
+	// por TipoProduto.ordinal() e TipoCliente.ordinal(); zero sem desconto
+	private final long[] pontosBasePorCategoria;
+	private final long[] pontosBasePorNivel;
+
+	// [nível][região], com a última posição de cada eixo para nível ou região nulos
+	private final PlanoDePreco[][] planos;
+
+	private TabelaDePreco(long[] minimosCentavos, long[] pontosBase, FaixasDeFrete fretes,
+			FaixasDeFrete[] fretesPorRegiao, long fatorDeCubagem, long[] pontosBasePorCategoria,
+			long[] pontosBasePorNivel)
+	{
+		this.minimosCentavos = minimosCentavos;
+		this.pontosBase = pontosBase;
+		this.minimos = emEscala(minimosCentavos, 2);
+		this.percentuais = emEscala(pontosBase, 4);
+		this.fretes = fretes;
+		this.fretesPorRegiao = fretesPorRegiao;
+		this.fatorDeCubagem = fatorDeCubagem;
+		this.fatorDeCubagemDecimal = BigDecimal.valueOf(fatorDeCubagem);
+		this.pontosBasePorCategoria = pontosBasePorCategoria;
+		this.pontosBasePorNivel = pontosBasePorNivel;
+		this.planos = new PlanoDePreco[NIVEIS.length + 1][REGIOES.length + 1];
+		for (int nivel = 0; nivel <= NIVEIS.length; nivel++)
+		{
+			for (int regiao = 0; regiao <= REGIOES.length; regiao++)
+			{
+				planos[nivel][regiao] = montarPlano(nivel < NIVEIS.length ? pontosBasePorNivel[nivel] : 0,
+						regiao < REGIOES.length ? fretesPorRegiao[regiao] : fretes);
+			}
+		}
+	}
+
+	private PlanoDePreco montarPlano(long pontosBaseDoNivel, FaixasDeFrete faixasDeFrete)
+	{
+		List<EtapaDePreco> etapas = new ArrayList<>();
+		if (Arrays.stream(pontosBasePorCategoria).anyMatch(pontos -> pontos != 0))
+		{
+			etapas.add(new EtapaDePreco.DescontoPorCategoria(pontosBasePorCategoria,
+					emEscala(pontosBasePorCategoria, 4)));
+		}
+		etapas.add(new EtapaDePreco.DescontoPorValor(this));
+		if (pontosBaseDoNivel != 0)
+		{
+			etapas.add(new EtapaDePreco.BeneficioDoNivel(pontosBaseDoNivel, BigDecimal.valueOf(pontosBaseDoNivel, 4)));
+		}
+		etapas.add(new EtapaDePreco.Frete(faixasDeFrete));
+		etapas.add(new EtapaDePreco.TaxaDeFragil(CENTAVOS_TAXA_FRAGIL, BigDecimal.valueOf(CENTAVOS_TAXA_FRAGIL, 2)));
+		return new PlanoDePreco(etapas.toArray(EtapaDePreco[]::new));
+	}
+
+	/**
+	 * As faixas fixas de sempre: 10% a partir de R$ 500 e 20% a partir de R$ 1000;
+	 * frete 0/2/4/7 por kg em todas as regiões, com fator de cubagem 6000.
+	 */
+	public static TabelaDePreco padrao()
+	{
+		return PADRAO;
+	}
+
+	/**
+	 * Lê as faixas da configuração; propriedades ausentes ficam com as faixas
+	 * padrão. As faixas de frete de uma região vêm de
+	 * {@code compra.preco.regioes.<regiao>.fretes} (por exemplo
+	 * {@code compra.preco.regioes.centro-oeste.fretes}); o desconto de uma
+	 * categoria, de {@code compra.preco.categorias.<categoria>.desconto}, e o de um
+	 * nível de cliente, de {@code compra.preco.clientes.<nivel>.desconto}.
+	 */
+	public static TabelaDePreco daConfiguracao(Environment environment)
+	{
+		Map<Regiao, String> fretesPorRegiao = new EnumMap<>(Regiao.class);
+		for (Regiao regiao : REGIOES)
+		{
+			String fretes = environment.getProperty(propriedadeDeFretes(regiao));
+			if (fretes != null)
+			{
+				fretesPorRegiao.put(regiao, fretes);
+			}
+		}
+		Map<TipoProduto, String> descontosPorCategoria = new EnumMap<>(TipoProduto.class);
+		for (TipoProduto categoria : CATEGORIAS)
+		{
+			String desconto = environment.getProperty(propriedadeDeDesconto(categoria));
+			if (desconto != null)
+			{
+				descontosPorCategoria.put(categoria, desconto);
+			}
+		}
+		Map<TipoCliente, String> descontosPorNivel = new EnumMap<>(TipoCliente.class);
+		for (TipoCliente nivel : NIVEIS)
+		{
+			String desconto = environment.getProperty(propriedadeDeDesconto(nivel));
+			if (desconto != null)
+			{
+				descontosPorNivel.put(nivel, desconto);
+			}
+		}
+		long fatorDeCubagem;
+		try
+		{
+			fatorDeCubagem = environment.getProperty(PROPRIEDADE_FATOR_DE_CUBAGEM, Long.class,
+					FATOR_DE_CUBAGEM_PADRAO);
+		}
+		catch (RuntimeException e)
+		{
+			throw new IllegalArgumentException("Valor inválido em " + PROPRIEDADE_FATOR_DE_CUBAGEM, e);
+		}
+		return de(environment.getProperty(PROPRIEDADE_DESCONTOS, DESCONTOS_PADRAO),
+				environment.getProperty(PROPRIEDADE_FRETES, FRETES_PADRAO), fretesPorRegiao, fatorDeCubagem,
+				descontosPorCategoria, descontosPorNivel);
+	}
+
+	public static String propriedadeDeFretes(Regiao regiao)
+	{
+		return PREFIXO + "regioes." + emChave(regiao) + ".fretes";
+	}
+
+	public static String propriedadeDeDesconto(TipoProduto categoria)
+	{
+		return PREFIXO + "categorias." + emChave(categoria) + ".desconto";
+	}
+
+	public static String propriedadeDeDesconto(TipoCliente nivel)
+	{
+		return PREFIXO + "clientes." + emChave(nivel) + ".desconto";
+	}
+
+	private static String emChave(Enum<?> valor)
+	{
+		return valor.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+
+	public static TabelaDePreco de(String descontos, String fretes)
+	{
+		return de(descontos, fretes, Map.of(), FATOR_DE_CUBAGEM_PADRAO);
+	}
+
+	public static TabelaDePreco de(String descontos, String fretes, Map<Regiao, String> fretesPorRegiao,
+			long fatorDeCubagem)
+	{
+		return de(descontos, fretes, fretesPorRegiao, fatorDeCubagem, Map.of(), Map.of());
+	}
+
+	/**
+	 * Tabela completa; os descontos por categoria e por nível são percentuais
+	 * (por exemplo {@code 5} ou {@code 2.5}), e categorias e níveis ausentes não
+	 * têm desconto.
+	 */
+	public static TabelaDePreco de(String descontos, String fretes, Map<Regiao, String> fretesPorRegiao,
+			long fatorDeCubagem, Map<TipoProduto, String> descontosPorCategoria,
+			Map<TipoCliente, String> descontosPorNivel)
+	{
+		List<String[]> faixasDeDesconto = pares(descontos, PROPRIEDADE_DESCONTOS);
+		long[] minimosCentavos = new long[faixasDeDesconto.size()];
+		long[] pontosBase = new long[faixasDeDesconto.size()];
+		for (int i = 0; i < faixasDeDesconto.size(); i++)
+		{
+			minimosCentavos[i] = emUnidades(faixasDeDesconto.get(i)[0], 2, PROPRIEDADE_DESCONTOS);
+			pontosBase[i] = emUnidades(faixasDeDesconto.get(i)[1], 2, PROPRIEDADE_DESCONTOS);
+			if (pontosBase[i] > 10_000)
+			{
+				throw new IllegalArgumentException("Percentual de desconto acima de 100% em " + PROPRIEDADE_DESCONTOS);
+			}
+		}
+		exigirCrescente(minimosCentavos, PROPRIEDADE_DESCONTOS);
+
+		if (fatorDeCubagem < 0)
+		{
+			throw new IllegalArgumentException(PROPRIEDADE_FATOR_DE_CUBAGEM + " não pode ser negativo.");
+		}
+
+		FaixasDeFrete faixasGerais = FaixasDeFrete.de(fretes, PROPRIEDADE_FRETES);
+		FaixasDeFrete[] faixasPorRegiao = new FaixasDeFrete[REGIOES.length];
+		for (Regiao regiao : REGIOES)
+		{
+			String fretesDaRegiao = fretesPorRegiao.get(regiao);
+			faixasPorRegiao[regiao.ordinal()] = fretesDaRegiao == null ? faixasGerais
+					: FaixasDeFrete.de(fretesDaRegiao, propriedadeDeFretes(regiao));
+		}
+
+		long[] pontosBasePorCategoria = new long[CATEGORIAS.length];
+		for (TipoProduto categoria : CATEGORIAS)
+		{
+			pontosBasePorCategoria[categoria.ordinal()] = percentual(descontosPorCategoria.get(categoria),
+					propriedadeDeDesconto(categoria));
+		}
+		long[] pontosBasePorNivel = new long[NIVEIS.length];
+		for (TipoCliente nivel : NIVEIS)
+		{
+			pontosBasePorNivel[nivel.ordinal()] = percentual(descontosPorNivel.get(nivel), propriedadeDeDesconto(nivel));
+		}
+
+		return new TabelaDePreco(minimosCentavos, pontosBase, faixasGerais, faixasPorRegiao, fatorDeCubagem,
+				pontosBasePorCategoria, pontosBasePorNivel);
+	}
+
+	/** Percentual simples em pontos-base; ausente ou em branco vale zero. */
+	private static long percentual(String valor, String propriedade)
+	{
+		if (valor == null || valor.isBlank())
+		{
+			return 0;
+		}
+		long pontosBase = emUnidades(valor.trim(), 2, propriedade);
+		if (pontosBase > 10_000)
+		{
+			throw new IllegalArgumentException("Percentual de desconto acima de 100% em " + propriedade);
+		}
+		return pontosBase;
+	}
+
+	/**
+	 * Plano de preço já montado para o nível do cliente e a região (sem
+	 * benefício de nível e com as faixas gerais de frete quando nulos).
+	 */
+	PlanoDePreco plano(TipoCliente nivel, Regiao regiao)
+	{
+		return planos[nivel == null ? NIVEIS.length : nivel.ordinal()][regiao == null ? REGIOES.length
+				: regiao.ordinal()];
+	}
+
+	/** Desconto em pontos-base para o subtotal em centavos. */
+	long pontosBaseDeDesconto(long subtotalCentavos)
+	{
+		int faixa = Arrays.binarySearch(minimosCentavos, subtotalCentavos);
+		if (faixa < 0)
+		{
+			faixa = -faixa - 2;
+		}
+		return faixa < 0 ? 0 : pontosBase[faixa];
+	}
+
+	long fatorDeCubagem()
+	{
+		return fatorDeCubagem;
+	}
+
+	/**
+	 * Peso cúbico em gramas, arredondado para cima, de um volume em milionésimos
+	 * de cm³ (as três dimensões em centésimos de cm); zero se o fator for zero.
+	 */
+	long pesoCubicoGramas(long volumeMilionesimosCm3)
+	{
+		if (fatorDeCubagem == 0)
+		{
+			return 0;
+		}
+		return Math.ceilDiv(volumeMilionesimosCm3, Math.multiplyExact(fatorDeCubagem, 1000));
+	}
+
+	/** Como {@link #pesoCubicoGramas(long)}, em kg com três casas, para um volume em cm³. */
+	BigDecimal pesoCubicoKg(BigDecimal volumeCm3)
+	{
+		if (fatorDeCubagem == 0)
+		{
+			return BigDecimal.ZERO;
+		}
+		return volumeCm3.divide(fatorDeCubagemDecimal, 3, RoundingMode.CEILING);
+	}
+
+	/** Como {@link #pontosBaseDeDesconto(long)}, para subtotais fora do ponto fixo; retorna a fração (0.10 para 10%). */
+	BigDecimal percentualDeDesconto(BigDecimal subtotal)
+	{
+		int faixa = Arrays.binarySearch(minimos, subtotal);
+		if (faixa < 0)
+		{
+			faixa = -faixa - 2;
+		}
+		return faixa < 0 ? BigDecimal.ZERO : percentuais[faixa];
+	}
+
+	/** Faixas de frete da região, ou as gerais se ela for nula ou não tiver faixas próprias. */
+	FaixasDeFrete faixasDe(Regiao regiao)
+	{
+		return regiao == null ? fretes : fretesPorRegiao[regiao.ordinal()];
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		return o instanceof TabelaDePreco outra && Arrays.equals(minimosCentavos, outra.minimosCentavos)
+				&& Arrays.equals(pontosBase, outra.pontosBase) && fretes.equals(outra.fretes)
+				&& Arrays.equals(fretesPorRegiao, outra.fretesPorRegiao) && fatorDeCubagem == outra.fatorDeCubagem
+				&& Arrays.equals(pontosBasePorCategoria, outra.pontosBasePorCategoria)
+				&& Arrays.equals(pontosBasePorNivel, outra.pontosBasePorNivel);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Arrays.hashCode(new int[] { Arrays.hashCode(minimosCentavos), Arrays.hashCode(pontosBase),
+				fretes.hashCode(), Arrays.hashCode(fretesPorRegiao), Long.hashCode(fatorDeCubagem),
+				Arrays.hashCode(pontosBasePorCategoria), Arrays.hashCode(pontosBasePorNivel) });
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder descontos = new StringBuilder();
+		for (int i = 0; i < minimos.length; i++)
+		{
+			descontos.append(i == 0 ? "" : ",").append(minimos[i].toPlainString()).append(':')
+					.append(emPercentual(pontosBase[i]));
+		}
+		StringBuilder texto = new StringBuilder("TabelaDePreco[descontos=").append(descontos)
+				.append(", fretes=").append(fretes);
+		for (Regiao regiao : REGIOES)
+		{
+			if (fretesPorRegiao[regiao.ordinal()] != fretes)
+			{
+				texto.append(", fretes ").append(regiao).append('=').append(fretesPorRegiao[regiao.ordinal()]);
+			}
+		}
+		texto.append(", fatorDeCubagem=").append(fatorDeCubagem);
+		for (TipoProduto categoria : CATEGORIAS)
+		{
+			if (pontosBasePorCategoria[categoria.ordinal()] != 0)
+			{
+				texto.append(", desconto ").append(categoria).append('=')
+						.append(emPercentual(pontosBasePorCategoria[categoria.ordinal()]));
+			}
+		}
+		for (TipoCliente nivel : NIVEIS)
+		{
+			if (pontosBasePorNivel[nivel.ordinal()] != 0)
+			{
+				texto.append(", desconto ").append(nivel).append('=').append(emPercentual(pontosBasePorNivel[nivel.ordinal()]));
+			}
+		}
+		return texto.append(']').toString();
+	}
+
+	private static String emPercentual(long pontosBase)
+	{
+		return BigDecimal.valueOf(pontosBase, 2).stripTrailingZeros().toPlainString();
+	}
+
+	private static List<String[]> pares(String valor, String propriedade)
+	{
+		List<String[]> pares = new ArrayList<>();
+		if (valor == null || valor.isBlank())
+		{
+			return pares;
+		}
+		for (String faixa : valor.split(","))
+		{
+			String[] par = faixa.trim().split(":");
+			if (par.length != 2)
+			{
+				throw new IllegalArgumentException("Faixa inválida em " + propriedade + ": '" + faixa.trim() + "'");
+			}
+			pares.add(new String[] { par[0].trim(), par[1].trim() });
+		}
+		return pares;
+	}
+
+	private static long emUnidades(String valor, int escala, String propriedade)
+	{
+		try
+		{
+			BigDecimal decimal = new BigDecimal(valor);
+			if (decimal.signum() < 0)
+			{
+				throw new IllegalArgumentException("Valor negativo em " + propriedade + ": " + valor);
+			}
+			return decimal.movePointRight(escala).longValueExact();
+		}
+		catch (ArithmeticException | NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Valor inválido em " + propriedade + " (até " + escala
+					+ " casas decimais): " + valor, e);
+		}
+	}
+
+	private static void exigirCrescente(long[] limites, String propriedade)
+	{
+		for (int i = 1; i < limites.length; i++)
+		{
+			if (limites[i] <= limites[i - 1])
+			{
+				throw new IllegalArgumentException("As faixas de " + propriedade + " devem estar em ordem crescente.");
+			}
+		}
+	}
+
+	private static BigDecimal[] emEscala(long[] valores, int escala)
+	{
+		BigDecimal[] decimais = new BigDecimal[valores.length];
+		for (int i = 0; i < valores.length; i++)
+		{
+			decimais[i] = BigDecimal.valueOf(valores[i], escala);
+		}
+		return decimais;
+	}
+
+	/** Faixas de frete de uma região: a faixa é a de menor limite >= peso; além do último vale o último frete. */
+	static final class FaixasDeFrete
+	{
+
+		private final long[] limitesGramas;
+		private final long[] centavosPorKg;
+		private final BigDecimal[] limitesKg;
+		private final BigDecimal[] fretesPorKg;
+
+		private FaixasDeFrete(long[] limitesGramas, long[] centavosPorKg)
+		{
+			this.limitesGramas = limitesGramas;
+			this.centavosPorKg = centavosPorKg;
+			this.limitesKg = emEscala(limitesGramas, 3);
+			this.fretesPorKg = emEscala(centavosPorKg, 2);
+		}
+
+		static FaixasDeFrete de(String fretes, String propriedade)
+		{
+			List<String[]> faixas = pares(fretes, propriedade);
+			if (faixas.isEmpty() || !"*".equals(faixas.get(faixas.size() - 1)[0]))
+			{
+				throw new IllegalArgumentException("A última faixa de " + propriedade + " deve ter peso '*'.");
+			}
+			long[] limitesGramas = new long[faixas.size() - 1];
+			long[] centavosPorKg = new long[faixas.size()];
+			for (int i = 0; i < faixas.size(); i++)
+			{
+				if (i < limitesGramas.length)
+				{
+					limitesGramas[i] = emUnidades(faixas.get(i)[0], 3, propriedade);
+				}
+				centavosPorKg[i] = emUnidades(faixas.get(i)[1], 2, propriedade);
+			}
+			exigirCrescente(limitesGramas, propriedade);
+			return new FaixasDeFrete(limitesGramas, centavosPorKg);
+		}
+
+		long centavosPorKg(long pesoGramas)
+		{
+			int faixa = Arrays.binarySearch(limitesGramas, pesoGramas);
+			return centavosPorKg[faixa < 0 ? -faixa - 1 : faixa];
+		}
+
+		BigDecimal fretePorKg(BigDecimal pesoKg)
+		{
+			int faixa = Arrays.binarySearch(limitesKg, pesoKg);
+			return fretesPorKg[faixa < 0 ? -faixa - 1 : faixa];
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return o instanceof FaixasDeFrete outras && Arrays.equals(limitesGramas, outras.limitesGramas)
+					&& Arrays.equals(centavosPorKg, outras.centavosPorKg);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * Arrays.hashCode(limitesGramas) + Arrays.hashCode(centavosPorKg);
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder texto = new StringBuilder();
+			for (int i = 0; i < fretesPorKg.length; i++)
+			{
+				texto.append(i == 0 ? "" : ",").append(i < limitesKg.length ? limitesKg[i].toPlainString() : "*")
+						.append(':').append(fretesPorKg[i].toPlainString());
+			}
+			return texto.toString();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package ecommerce.external;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.external.DisjuntorDeParceiro.Estado;
+import ecommerce.fake.external.EstoqueSimulado;
+import ecommerce.fake.external.PagamentoSimulado;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompraService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DisjuntorDeParceiroTest {
+
+    // janela 10, avalia a partir de 5 chamadas, abre com 50% de falhas ou 50% de
+    // lentas (>= 100 ms), fica aberto 1 s e fecha após 2 chamadas de teste.
+    private static final DisjuntorDeParceiro.Configuracao CONFIGURACAO =
+            new DisjuntorDeParceiro.Configuracao(10, 5, 50, 100, 50, 1000, 2);
+
+    private final AtomicLong relogioNanos = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DisjuntorDeParceiro disjuntor =
+            new DisjuntorDeParceiro("pagamento", CONFIGURACAO, registry, relogioNanos::get);
+
+    private static final Supplier<String> SUCESSO = () -> "ok";
+    private static final Supplier<String> FALHA = () -> {
+        throw new RuntimeException("parceiro fora do ar");
+    };
+
+    private void chamar(Supplier<String> chamada) {
+        try {
+            disjuntor.executar(chamada);
+        } catch (RuntimeException e) {
+            // o resultado já foi registrado pelo disjuntor
+        }
+    }
+
+    private Supplier<String> lenta(long millis) {
+        return () -> {
+            relogioNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+            return "ok";
+        };
+    }
+
+    private void avancar(long millis) {
+        relogioNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private double transicoes(String de, String para) {
+        return registry.get("parceiro.disjuntor.transicoes").tag("parceiro", "pagamento")
+                .tag("de", de).tag("para", para).counter().count();
+    }
+
+    private void abrir() {
+        for (int i = 0; i < 5; i++) {
+            chamar(FALHA);
+        }
+        assertEquals(Estado.ABERTO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Deve continuar fechado enquanto a taxa de falhas estiver abaixo do limite")
+    void deveContinuarFechadoAbaixoDoLimite() {
+        for (int i = 0; i < 10; i++) {
+            chamar(i % 3 == 0 ? FALHA : SUCESSO);
+        }
+
+        assertEquals(Estado.FECHADO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Não deve abrir antes do mínimo de chamadas, mesmo com todas falhando")
+    void naoDeveAbrirAntesDoMinimoDeChamadas() {
+        for (int i = 0; i < 4; i++) {
+            chamar(FALHA);
+        }
+
+        assertEquals(Estado.FECHADO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Taxa de falhas no limite deve abrir e as chamadas seguintes devem falhar sem chegar ao parceiro")
+    void taxaDeFalhasDeveAbrirEFalharRapido() {
+        AtomicInteger chamadasAoParceiro = new AtomicInteger();
+        abrir();
+
+        ChamadaNaoEnviadaException e = assertThrows(ChamadaNaoEnviadaException.class,
+                () -> disjuntor.executar(() -> chamadasAoParceiro.incrementAndGet()));
+
+        assertEquals("Serviço de pagamento indisponível no momento.", e.getMessage());
+        assertEquals(0, chamadasAoParceiro.get());
+        assertEquals(1.0, transicoes("fechado", "aberto"));
+        assertEquals(1.0, registry.get("parceiro.disjuntor.recusadas").counter().count());
+        assertEquals(1.0, registry.get("parceiro.disjuntor.estado").tag("estado", "aberto").gauge().value());
+        assertEquals(0.0, registry.get("parceiro.disjuntor.estado").tag("estado", "fechado").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Taxa de chamadas lentas no limite deve abrir, mesmo sem falhas")
+    void chamadasLentasDevemAbrir() {
+        for (int i = 0; i < 5; i++) {
+            chamar(i % 2 == 0 ? lenta(150) : lenta(10));
+        }
+
+        assertEquals(Estado.ABERTO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Falhas antigas devem sair da janela e deixar de contar")
+    void falhasAntigasDevemSairDaJanela() {
+        for (int i = 0; i < 10; i++) {
+            chamar(i < 6 ? SUCESSO : FALHA);
+        }
+        for (int i = 0; i < 10; i++) {
+            chamar(SUCESSO);
+        }
+        for (int i = 0; i < 4; i++) {
+            chamar(FALHA);
+        }
+
+        assertEquals(Estado.FECHADO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Depois do tempo aberto, chamadas de teste bem-sucedidas devem fechar o disjuntor")
+    void chamadasDeTesteDevemFechar() {
+        abrir();
+        avancar(1000);
+
+        assertEquals("ok", disjuntor.executar(SUCESSO));
+        assertEquals(Estado.MEIO_ABERTO, disjuntor.getEstado());
+        assertEquals("ok", disjuntor.executar(SUCESSO));
+
+        assertEquals(Estado.FECHADO, disjuntor.getEstado());
+        assertEquals(1.0, transicoes("aberto", "meio_aberto"));
+        assertEquals(1.0, transicoes("meio_aberto", "fechado"));
+    }
+
+    @Test
+    @DisplayName("Falha em chamada de teste deve reabrir o disjuntor por mais um período")
+    void falhaNoMeioAbertoDeveReabrir() {
+        abrir();
+        avancar(1000);
+
+        chamar(FALHA);
+
+        assertEquals(Estado.ABERTO, disjuntor.getEstado());
+        assertEquals(1.0, transicoes("meio_aberto", "aberto"));
+        assertThrows(ParceiroIndisponivelException.class, () -> disjuntor.executar(SUCESSO));
+    }
+
+    @Test
+    @DisplayName("No meio-aberto, só as chamadas de teste devem passar enquanto estão em andamento")
+    void meioAbertoDeveLimitarChamadasDeTeste() throws Exception {
+        abrir();
+        avancar(1000);
+
+        AtomicInteger emAndamento = new AtomicInteger();
+        CountDownLatch liberar = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            for (int i = 0; i < 2; i++) {
+                executor.submit(() -> disjuntor.executar(() -> {
+                    emAndamento.incrementAndGet();
+                    try {
+                        liberar.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "ok";
+                }));
+            }
+            while (emAndamento.get() < 2) {
+                Thread.onSpinWait();
+            }
+
+            assertThrows(ParceiroIndisponivelException.class, () -> disjuntor.executar(SUCESSO));
+            liberar.countDown();
+        }
+
+        assertEquals(Estado.FECHADO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Resultado de chamada admitida antes de uma transição não deve afetar o novo estado")
+    void resultadoDeGeracaoAnteriorDeveSerDescartado() {
+        Supplier<String> falhaAtrasada = () -> {
+            abrir();
+            avancar(1000);
+            disjuntor.executar(SUCESSO);
+            throw new RuntimeException("falha atrasada");
+        };
+
+        chamar(falhaAtrasada);
+        assertEquals(Estado.MEIO_ABERTO, disjuntor.getEstado());
+        disjuntor.executar(SUCESSO);
+
+        assertEquals(Estado.FECHADO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Pagamento recusado pelo parceiro não deve contar como falha")
+    void pagamentoRecusadoNaoDeveContarComoFalha() {
+        PagamentoSimulado pagamentoFake = new PagamentoSimulado();
+        pagamentoFake.setAutorizado(false);
+        IPagamentoExternal pagamento = new PagamentoComDisjuntor(pagamentoFake, disjuntor);
+
+        for (int i = 0; i < 10; i++) {
+            PagamentoDTO pagamentoDTO = pagamento.autorizarPagamento(1L, 100.0);
+            assertFalse(pagamentoDTO.autorizado());
+        }
+
+        assertEquals(Estado.FECHADO, disjuntor.getEstado());
+    }
+
+    @Test
+    @DisplayName("Com o disjuntor aberto, a compra deve falhar na hora com mensagem clara")
+    void compraComDisjuntorAbertoDeveFalharNaHora() {
+        FakeClienteRepository clienteRepositoryFake = new FakeClienteRepository();
+        FakeCarrinhoRepository carrinhoRepositoryFake = new FakeCarrinhoRepository();
+        Cliente cliente = criarCliente(1L, "Cliente");
+        clienteRepositoryFake.adicionar(cliente);
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L));
+        carrinho.setId(1L);
+        carrinho.setCliente(cliente);
+        carrinhoRepositoryFake.adicionar(carrinho);
+
+        EstoqueSimulado estoqueFake = new EstoqueSimulado();
+        estoqueFake.setDisponivel(true);
+        PagamentoSimulado pagamentoFake = spy(new PagamentoSimulado());
+        CompraService compraService = new CompraService(new CarrinhoDeComprasService(carrinhoRepositoryFake),
+                new ClienteService(clienteRepositoryFake), estoqueFake,
+                new PagamentoComDisjuntor(pagamentoFake, disjuntor));
+        abrir();
+
+        ParceiroIndisponivelException e = assertThrows(ParceiroIndisponivelException.class,
+                () -> compraService.finalizarCompra(1L, 1L));
+
+        assertEquals("Serviço de pagamento indisponível no momento.", e.getMessage());
+        verifyNoInteractions(pagamentoFake);
+    }
+
+    @Test
+    @DisplayName("Configuração com percentual fora de 1 a 100 deve ser rejeitada")
+    void configuracaoInvalidaDeveSerRejeitada() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new DisjuntorDeParceiro.Configuracao(10, 5, 0, 100, 50, 1000, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DisjuntorDeParceiro.Configuracao(10, 11, 50, 100, 50, 1000, 2));
+    }
+}
@@ -0,0 +1,202 @@
+package ecommerce.external;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class EstoqueComBaixaAgrupadaTest {
+
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IEstoqueExternal estoqueReal = mock(IEstoqueExternal.class);
+
+    @AfterEach
+    void tearDown() {
+        agendador.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private EstoqueComBaixaAgrupada agrupado(long janelaEmMillis, int maximoDePedidos) {
+        return new EstoqueComBaixaAgrupada(estoqueReal, janelaEmMillis, maximoDePedidos, agendador, executor,
+                registry);
+    }
+
+    /** Dispara as baixas ao mesmo tempo, cada uma na sua thread, como compras simultâneas. */
+    private List<Future<EstoqueBaixaDTO>> baixasSimultaneas(IEstoqueExternal estoque, List<List<Long>> ids,
+            List<List<Long>> quantidades) {
+        List<Future<EstoqueBaixaDTO>> resultados = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            List<Long> produtos = ids.get(i);
+            List<Long> qtds = quantidades.get(i);
+            resultados.add(executor.submit((Callable<EstoqueBaixaDTO>) () -> estoque.darBaixa(produtos, qtds)));
+        }
+        return resultados;
+    }
+
+    @Test
+    @DisplayName("Baixas dentro da janela devem virar uma única chamada, com quantidades somadas por produto")
+    void baixasNaJanelaDevemVirarUmaChamada() throws Exception {
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+        IEstoqueExternal estoque = agrupado(200, 100);
+
+        List<Future<EstoqueBaixaDTO>> resultados = baixasSimultaneas(estoque,
+                List.of(List.of(1L, 2L), List.of(2L), List.of(3L, 1L)),
+                List.of(List.of(1L, 2L), List.of(5L), List.of(1L, 4L)));
+
+        for (Future<EstoqueBaixaDTO> resultado : resultados) {
+            assertTrue(resultado.get(5, TimeUnit.SECONDS).sucesso());
+        }
+        ArgumentCaptor<List<Long>> ids = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<Long>> qtds = ArgumentCaptor.forClass(List.class);
+        verify(estoqueReal, times(1)).darBaixa(ids.capture(), qtds.capture());
+        assertEquals(3, ids.getValue().size());
+        for (int i = 0; i < ids.getValue().size(); i++) {
+            long esperado = switch (ids.getValue().get(i).intValue()) {
+                case 1 -> 5L;
+                case 2 -> 7L;
+                default -> 1L;
+            };
+            assertEquals(esperado, qtds.getValue().get(i));
+        }
+        assertEquals(3.0, registry.get("estoque.baixas.pedidos").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Lote que atinge o máximo de pedidos deve sair sem esperar a janela")
+    void loteCheioDeveSairSemEsperarAJanela() throws Exception {
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+        IEstoqueExternal estoque = agrupado(60_000, 2);
+
+        List<Future<EstoqueBaixaDTO>> resultados = baixasSimultaneas(estoque,
+                List.of(List.of(1L), List.of(2L)), List.of(List.of(1L), List.of(1L)));
+
+        for (Future<EstoqueBaixaDTO> resultado : resultados) {
+            assertTrue(resultado.get(5, TimeUnit.SECONDS).sucesso());
+        }
+        verify(estoqueReal, times(1)).darBaixa(anyList(), anyList());
+    }
+
+    @Test
+    @DisplayName("Baixa sozinha deve sair ao fim da janela, em uma chamada com os dados originais")
+    void baixaSozinhaDeveSairNaJanela() {
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+
+        assertFalse(agrupado(10, 100).darBaixa(List.of(1L), List.of(3L)).sucesso());
+
+        verify(estoqueReal, times(1)).darBaixa(List.of(1L), List.of(3L));
+        assertEquals(0.0, registry.get("estoque.baixas.refeitas").counter().count());
+    }
+
+    @Test
+    @DisplayName("Se a chamada agrupada for recusada, cada compra deve refazer a sua e só quem não tem estoque falha")
+    void chamadaAgrupadaRecusadaDeveSerRefeitaPorCompra() throws Exception {
+        // só há 5 unidades do produto 1
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenAnswer(invocacao -> {
+            List<Long> ids = invocacao.getArgument(0);
+            List<Long> qtds = invocacao.getArgument(1);
+            int posicao = ids.indexOf(1L);
+            return new EstoqueBaixaDTO(posicao < 0 || qtds.get(posicao) <= 5);
+        });
+        IEstoqueExternal estoque = agrupado(200, 100);
+
+        List<Future<EstoqueBaixaDTO>> resultados = baixasSimultaneas(estoque,
+                List.of(List.of(1L), List.of(1L, 2L), List.of(2L)),
+                List.of(List.of(4L), List.of(6L, 1L), List.of(1L)));
+
+        assertTrue(resultados.get(0).get(5, TimeUnit.SECONDS).sucesso());
+        assertFalse(resultados.get(1).get(5, TimeUnit.SECONDS).sucesso());
+        assertTrue(resultados.get(2).get(5, TimeUnit.SECONDS).sucesso());
+        verify(estoqueReal, times(4)).darBaixa(anyList(), anyList());
+        assertEquals(1.0, registry.get("estoque.baixas.refeitas").counter().count());
+    }
+
+    @Test
+    @DisplayName("Chamada agrupada não enviada deve levar às chamadas individuais, e a exceção de cada uma a quem chamou")
+    void chamadaAgrupadaNaoEnviadaDeveSerRefeitaPorCompra() throws Exception {
+        IllegalStateException falha = new IllegalStateException("Produto 2 bloqueado.");
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenAnswer(invocacao -> {
+            List<Long> ids = invocacao.getArgument(0);
+            if (ids.size() > 1) {
+                throw new ChamadaNaoEnviadaException("Serviço de estoque indisponível no momento.");
+            }
+            if (ids.contains(2L)) {
+                throw falha;
+            }
+            return new EstoqueBaixaDTO(true);
+        });
+        IEstoqueExternal estoque = agrupado(200, 100);
+
+        List<Future<EstoqueBaixaDTO>> resultados = baixasSimultaneas(estoque,
+                List.of(List.of(1L), List.of(2L)), List.of(List.of(1L), List.of(1L)));
+
+        assertTrue(resultados.get(0).get(5, TimeUnit.SECONDS).sucesso());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> resultados.get(1).get(5, TimeUnit.SECONDS));
+        assertSame(falha, e.getCause());
+        assertEquals(1.0, registry.get("estoque.baixas.refeitas").counter().count());
+    }
+
+    @Test
+    @DisplayName("Chamada agrupada que esgota o tempo deve falhar todas as compras do lote sem reenviá-las")
+    void chamadaAgrupadaSemRespostaNaoDeveSerReenviada() {
+        ParceiroIndisponivelException tempoEsgotado = new ParceiroIndisponivelException(
+                "Serviço de estoque não respondeu em 2000 ms.");
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenThrow(tempoEsgotado);
+        IEstoqueExternal estoque = agrupado(200, 100);
+
+        List<Future<EstoqueBaixaDTO>> resultados = baixasSimultaneas(estoque,
+                List.of(List.of(1L), List.of(2L)), List.of(List.of(1L), List.of(1L)));
+
+        for (Future<EstoqueBaixaDTO> resultado : resultados) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> resultado.get(5, TimeUnit.SECONDS));
+            assertSame(tempoEsgotado, e.getCause());
+        }
+        verify(estoqueReal, times(1)).darBaixa(anyList(), anyList());
+        assertEquals(0.0, registry.get("estoque.baixas.refeitas").counter().count());
+    }
+
+    @Test
+    @DisplayName("Espera interrompida pela baixa agrupada deve deixar o estoque indisponível, não recusar a compra")
+    void esperaInterrompidaDeveDeixarEstoqueIndisponivel() {
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+        IEstoqueExternal estoque = agrupado(60_000, 100);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(ParceiroIndisponivelException.class, () -> estoque.darBaixa(List.of(1L), List.of(1L)));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    @DisplayName("A verificação de disponibilidade não deve ser agrupada")
+    void verificacaoNaoDeveSerAgrupada() {
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+
+        assertTrue(agrupado(60_000, 100).verificarDisponibilidade(List.of(1L), List.of(1L)).disponivel());
+
+        verify(estoqueReal).verificarDisponibilidade(List.of(1L), List.of(1L));
+    }
+}
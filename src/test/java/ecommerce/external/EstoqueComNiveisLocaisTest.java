@@ -0,0 +1,239 @@
+package ecommerce.external;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class EstoqueComNiveisLocaisTest {
+
+    // sondagem de 100 unidades, margem de 10, confirmação válida por 1 s.
+    private static final long SONDAGEM = 100;
+
+    private final AtomicLong relogioNanos = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private IEstoqueExternal estoqueReal;
+    private NiveisDeEstoque niveis;
+    private EstoqueComNiveisLocais estoque;
+
+    @BeforeEach
+    void setUp() {
+        estoqueReal = mock(IEstoqueExternal.class);
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+        niveis = new NiveisDeEstoque(1000, 10, 1000, relogioNanos::get);
+        estoque = new EstoqueComNiveisLocais(estoqueReal, niveis, SONDAGEM, registry);
+    }
+
+    private void avancar(long millis) {
+        relogioNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private DisponibilidadeDTO verificar(long produtoId, long quantidade) {
+        return estoque.verificarDisponibilidade(List.of(produtoId), List.of(quantidade));
+    }
+
+    private double verificacoes(String origem) {
+        return registry.get("estoque.verificacoes").tag("origem", origem).counter().count();
+    }
+
+    /** Primeira verificação passa a acompanhar o produto; a sondagem confirma o nível. */
+    private void conhecer(Long... produtosIds) {
+        for (Long id : produtosIds) {
+            verificar(id, 1);
+        }
+        estoque.atualizarNiveis();
+        clearInvocations(estoqueReal);
+    }
+
+    @Test
+    @DisplayName("Sem nível confirmado, a verificação deve ir ao estoque")
+    void semNivelConfirmadoDeveIrAoEstoque() {
+        assertTrue(verificar(1L, 2).disponivel());
+        assertTrue(verificar(1L, 2).disponivel());
+
+        verify(estoqueReal, times(2)).verificarDisponibilidade(List.of(1L), List.of(2L));
+        assertEquals(2.0, verificacoes("remota"));
+    }
+
+    @Test
+    @DisplayName("A sondagem deve pedir a quantidade de sondagem de todos os produtos acompanhados, em uma chamada")
+    void sondagemDevePedirTodosOsProdutosDeUmaVez() {
+        verificar(1L, 1);
+        verificar(2L, 1);
+
+        estoque.atualizarNiveis();
+
+        verify(estoqueReal).verificarDisponibilidade(List.of(1L, 2L), List.of(SONDAGEM, SONDAGEM));
+        assertEquals(SONDAGEM, niveis.getQuantidade(1L));
+    }
+
+    @Test
+    @DisplayName("Com nível confirmado cobrindo o pedido com folga, a verificação deve ser local e reservar")
+    void nivelConfirmadoDeveResponderLocalmente() {
+        conhecer(1L, 2L);
+
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(List.of(1L, 2L, 1L),
+                List.of(30L, 5L, 20L));
+
+        assertTrue(disponibilidade.disponivel());
+        verify(estoqueReal, never()).verificarDisponibilidade(anyList(), anyList());
+        assertEquals(50, niveis.getQuantidade(1L));
+        assertEquals(95, niveis.getQuantidade(2L));
+        assertEquals(1.0, verificacoes("local"));
+    }
+
+    @Test
+    @DisplayName("Pedido que deixaria menos que a margem deve ir ao estoque sem reservar nada")
+    void pedidoPertoDeZeroDeveIrAoEstoque() {
+        conhecer(1L, 2L);
+
+        estoque.verificarDisponibilidade(List.of(1L, 2L), List.of(5L, 91L));
+
+        verify(estoqueReal).verificarDisponibilidade(List.of(1L, 2L), List.of(5L, 91L));
+        // aprovado pelo estoque, o pedido é descontado uma única vez
+        assertEquals(95, niveis.getQuantidade(1L));
+        assertEquals(9, niveis.getQuantidade(2L));
+    }
+
+    @Test
+    @DisplayName("Produtos que a sondagem aponta como indisponíveis devem continuar indo ao estoque")
+    void indisponiveisNaSondagemDevemIrAoEstoque() {
+        verificar(1L, 1);
+        verificar(2L, 1);
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(false, List.of(2L)));
+        estoque.atualizarNiveis();
+        clearInvocations(estoqueReal);
+
+        verificar(1L, 1);
+        verificar(2L, 1);
+
+        verify(estoqueReal, never()).verificarDisponibilidade(List.of(1L), List.of(1L));
+        verify(estoqueReal).verificarDisponibilidade(List.of(2L), List.of(1L));
+    }
+
+    @Test
+    @DisplayName("Sondagem sem a lista de indisponíveis, ou com falha, não deve confirmar nada")
+    void sondagemInconclusivaNaoDeveConfirmar() {
+        verificar(1L, 1);
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(false, List.of()))
+                .thenThrow(new IllegalStateException("Serviço de estoque indisponível no momento."));
+
+        estoque.atualizarNiveis();
+        estoque.atualizarNiveis();
+
+        assertEquals(0, niveis.getQuantidade(1L));
+    }
+
+    @Test
+    @DisplayName("Baixa que falha deve zerar o nível dos produtos e a baixa deve ir sempre ao estoque")
+    void baixaComFalhaDeveZerarNivel() {
+        conhecer(1L);
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+
+        assertFalse(estoque.darBaixa(List.of(1L), List.of(1L)).sucesso());
+
+        verify(estoqueReal).darBaixa(List.of(1L), List.of(1L));
+        assertEquals(0, niveis.getQuantidade(1L));
+        verificar(1L, 1);
+        verify(estoqueReal).verificarDisponibilidade(List.of(1L), List.of(1L));
+    }
+
+    @Test
+    @DisplayName("Confirmação vencida deve mandar a verificação de volta ao estoque")
+    void confirmacaoVencidaDeveIrAoEstoque() {
+        conhecer(1L);
+        avancar(1001);
+
+        verificar(1L, 1);
+
+        verify(estoqueReal).verificarDisponibilidade(List.of(1L), List.of(1L));
+    }
+
+    @Test
+    @DisplayName("Produtos sem pedidos dentro da validade devem deixar de ser sondados")
+    void produtosSemPedidosDevemDeixarDeSerSondados() {
+        verificar(1L, 1);
+        avancar(600);
+        verificar(2L, 1);
+        avancar(600);
+
+        assertEquals(List.of(2L), niveis.iniciarSondagem().produtosIds());
+    }
+
+    @Test
+    @DisplayName("Pedidos aprovados durante a sondagem devem ser descontados do nível sondado")
+    void pedidosDuranteASondagemDevemSerDescontados() {
+        conhecer(1L, 2L);
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList())).thenAnswer(sondagem -> {
+            assertTrue(verificar(1L, 30).disponivel());
+            return new DisponibilidadeDTO(true, List.of());
+        });
+
+        estoque.atualizarNiveis();
+
+        assertEquals(70, niveis.getQuantidade(1L));
+        assertEquals(SONDAGEM, niveis.getQuantidade(2L));
+    }
+
+    @Test
+    @DisplayName("Produto zerado durante a sondagem deve continuar zerado")
+    void produtoZeradoDuranteASondagemDeveContinuarZerado() {
+        conhecer(1L);
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList())).thenAnswer(sondagem -> {
+            estoque.darBaixa(List.of(1L), List.of(1L));
+            return new DisponibilidadeDTO(true, List.of());
+        });
+
+        estoque.atualizarNiveis();
+
+        assertEquals(0, niveis.getQuantidade(1L));
+    }
+
+    @Test
+    @DisplayName("Reservas simultâneas nunca devem passar do nível menos a margem")
+    void reservasSimultaneasNaoDevemPassarDoNivel() throws Exception {
+        conhecer(1L);
+        List<Future<Integer>> resultados = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                resultados.add(executor.submit(() -> {
+                    int reservas = 0;
+                    for (int i = 0; i < 50; i++) {
+                        if (niveis.reservar(Map.of(1L, 1L))) {
+                            reservas++;
+                        }
+                    }
+                    return reservas;
+                }));
+            }
+        }
+
+        int total = 0;
+        for (Future<Integer> resultado : resultados) {
+            total += resultado.get();
+        }
+        assertEquals(90, total);
+        assertEquals(10, niveis.getQuantidade(1L));
+    }
+}
@@ -0,0 +1,79 @@
+package ecommerce.external;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.fake.external.EstoqueSimulado;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LimiteDeTempoTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Chamada dentro do limite deve devolver o resultado do parceiro")
+    void chamadaDentroDoLimiteDeveDevolverResultado() {
+        EstoqueSimulado estoqueFake = new EstoqueSimulado();
+        estoqueFake.setDisponivel(true);
+        estoqueFake.setLatenciaEmMillis(5);
+        IEstoqueExternal estoque = new EstoqueComLimiteDeTempo(estoqueFake,
+                new LimiteDeTempo("estoque", 1000, executor));
+
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(List.of(1L), List.of(1L));
+
+        assertTrue(disponibilidade.disponivel());
+    }
+
+    @Test
+    @DisplayName("Chamada que passa do limite deve falhar sem esperar o parceiro e ser interrompida")
+    void chamadaForaDoLimiteDeveFalharEInterromper() throws Exception {
+        CountDownLatch interrompida = new CountDownLatch(1);
+        LimiteDeTempo limite = new LimiteDeTempo("pagamento", 50, executor);
+
+        long inicio = System.nanoTime();
+        ParceiroIndisponivelException e = assertThrows(ParceiroIndisponivelException.class, () -> limite.executar(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException ie) {
+                interrompida.countDown();
+            }
+        }));
+
+        assertEquals("Serviço de pagamento não respondeu em 50 ms.", e.getMessage());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 5_000);
+        assertTrue(interrompida.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Exceção do parceiro deve chegar a quem chama sem ser embrulhada")
+    void excecaoDoParceiroDeveSerPropagada() {
+        LimiteDeTempo limite = new LimiteDeTempo("estoque", 1000, executor);
+        IllegalArgumentException falha = new IllegalArgumentException("produto inválido");
+
+        assertSame(falha, assertThrows(IllegalArgumentException.class, () -> limite.executar(() -> {
+            throw falha;
+        })));
+    }
+
+    @Test
+    @DisplayName("Limite zero deve chamar o parceiro na própria thread")
+    void limiteZeroDeveChamarDireto() {
+        LimiteDeTempo limite = new LimiteDeTempo("estoque", 0, executor);
+        Thread chamadora = Thread.currentThread();
+
+        assertSame(chamadora, limite.executar(Thread::currentThread));
+    }
+}
@@ -0,0 +1,132 @@
+package ecommerce.external;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.test.simple.SimpleSpan;
+import io.micrometer.tracing.test.simple.SimpleTracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RastreamentoDeParceiroTest {
+
+    private SimpleTracer tracer;
+    private ObservationRegistry registry;
+    private IEstoqueExternal estoqueReal;
+    private IPagamentoExternal pagamentoReal;
+    private IEstoqueExternal estoque;
+    private IPagamentoExternal pagamento;
+
+    @BeforeEach
+    void setUp() {
+        tracer = new SimpleTracer();
+        registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new DefaultTracingObservationHandler(tracer));
+
+        estoqueReal = mock(IEstoqueExternal.class);
+        pagamentoReal = mock(IPagamentoExternal.class);
+        estoque = new EstoqueComRastreamento(estoqueReal, new RastreamentoDeParceiro("estoque", registry));
+        pagamento = new PagamentoComRastreamento(pagamentoReal, new RastreamentoDeParceiro("pagamento", registry));
+    }
+
+    private SimpleSpan span(String nome) {
+        return tracer.getSpans().stream()
+                .filter(span -> nome.equals(span.getName()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Span não encontrado: " + nome));
+    }
+
+    @Test
+    @DisplayName("Chamadas aos parceiros devem virar spans filhos da compra, com itens, total e resultado")
+    void chamadasDevemVirarSpansFilhosDaCompra() {
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+        when(pagamentoReal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(false, null));
+
+        Observation.createNotStarted("compra.finalizar", registry).observe(() -> {
+            estoque.verificarDisponibilidade(List.of(1L, 2L), List.of(1L, 3L));
+            pagamento.autorizarPagamento(1L, 150.0);
+            estoque.darBaixa(List.of(1L, 2L), List.of(1L, 3L));
+        });
+
+        SimpleSpan compra = span("compra.finalizar");
+        SimpleSpan disponibilidade = span("estoque verificar-disponibilidade");
+        SimpleSpan autorizacao = span("pagamento autorizar-pagamento");
+        SimpleSpan baixa = span("estoque dar-baixa");
+
+        for (SimpleSpan filho : List.of(disponibilidade, autorizacao, baixa)) {
+            assertEquals(compra.getTraceId(), filho.getTraceId());
+            assertEquals(compra.getSpanId(), filho.getParentId());
+        }
+        assertEquals("2", disponibilidade.getTags().get("compra.itens"));
+        assertEquals("disponivel", disponibilidade.getTags().get("resultado"));
+        assertEquals("150.0", autorizacao.getTags().get("compra.total"));
+        assertEquals("recusado", autorizacao.getTags().get("resultado"));
+        assertEquals("falha", baixa.getTags().get("resultado"));
+        assertEquals("estoque", baixa.getTags().get("parceiro"));
+    }
+
+    @Test
+    @DisplayName("Exceção do parceiro deve ficar registrada no span e ser propagada")
+    void excecaoDoParceiroDeveFicarNoSpan() {
+        RuntimeException falha = new RuntimeException("timeout");
+        when(pagamentoReal.autorizarPagamento(anyLong(), anyDouble())).thenThrow(falha);
+
+        assertSame(falha, assertThrows(RuntimeException.class, () -> pagamento.autorizarPagamento(1L, 10.0)));
+
+        SimpleSpan span = tracer.onlySpan();
+        assertSame(falha, span.getError());
+        assertEquals("erro", span.getTags().get("resultado"));
+        assertNotNull(span.getEndTimestamp());
+    }
+
+    @Test
+    @DisplayName("Chamadas em outra thread do executor de checkout devem manter o span da compra como pai")
+    void chamadasAssincronasDevemManterOPai() throws Exception {
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        ContextSnapshotFactory fabrica = ContextSnapshotFactory.builder().build();
+        ExecutorService executor = ContextExecutorService.wrap(Executors.newFixedThreadPool(2),
+                () -> fabrica.captureAll());
+        IEstoqueExternalAsync estoqueAsync = new EstoqueAsyncAdapter(estoque, executor);
+        try {
+            Observation compra = Observation.start("compra.finalizar", registry);
+            try (Observation.Scope scope = compra.openScope()) {
+                estoqueAsync.verificarDisponibilidade(List.of(1L), List.of(1L)).get(5, TimeUnit.SECONDS);
+            } finally {
+                compra.stop();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(span("compra.finalizar").getSpanId(), span("estoque verificar-disponibilidade").getParentId());
+    }
+
+    @Test
+    @DisplayName("Sem observação corrente, cada chamada deve abrir um trace próprio")
+    void semObservacaoCorrenteDeveAbrirTraceProprio() {
+        pagamento.cancelarPagamento(1L, 2L);
+
+        SimpleSpan span = tracer.onlySpan();
+        assertEquals("pagamento cancelar-pagamento", span.getName());
+        assertEquals("sucesso", span.getTags().get("resultado"));
+        assertTrue(span.getParentId() == null || span.getParentId().isEmpty());
+    }
+}
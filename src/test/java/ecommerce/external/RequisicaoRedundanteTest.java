@@ -0,0 +1,201 @@
+package ecommerce.external;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RequisicaoRedundanteTest {
+
+    // redundante após 20 ms enquanto não há amostras; até 1% de carga extra.
+    private static final RequisicaoRedundante.Configuracao CONFIGURACAO =
+            new RequisicaoRedundante.Configuracao(95, 5, 20, 1);
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch liberarLenta = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        liberarLenta.countDown();
+        executor.shutdownNow();
+    }
+
+    private RequisicaoRedundante redundante() {
+        return new RequisicaoRedundante("estoque", CONFIGURACAO, executor, registry);
+    }
+
+    private double contagem(String resultado) {
+        return registry.get("parceiro.redundantes").tag("resultado", resultado).counter().count();
+    }
+
+    /** A primeira tentativa fica presa até o fim do teste; as demais respondem na hora. */
+    private Supplier<String> primeiraLenta(AtomicInteger tentativas) {
+        return () -> {
+            if (tentativas.incrementAndGet() == 1) {
+                try {
+                    liberarLenta.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "lenta";
+            }
+            return "rapida";
+        };
+    }
+
+    @Test
+    @DisplayName("Espera interrompida deve deixar o parceiro indisponível, não recusar a compra")
+    void esperaInterrompidaDeveDeixarParceiroIndisponivel() {
+        Thread.currentThread().interrupt();
+        try {
+            ParceiroIndisponivelException e = assertThrows(ParceiroIndisponivelException.class,
+                    () -> redundante().executar(primeiraLenta(new AtomicInteger())));
+
+            assertEquals("Chamada ao serviço de estoque interrompida.", e.getMessage());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    @DisplayName("Resposta dentro do atraso não deve disparar redundante")
+    void respostaRapidaNaoDeveDispararRedundante() {
+        AtomicInteger tentativas = new AtomicInteger();
+
+        assertEquals("ok", redundante().executar(() -> {
+            tentativas.incrementAndGet();
+            return "ok";
+        }));
+
+        assertEquals(1, tentativas.get());
+        assertEquals(0.0, contagem("disparada"));
+    }
+
+    @Test
+    @DisplayName("Tentativa lenta deve disparar a redundante e ficar com a primeira resposta")
+    void tentativaLentaDeveDispararRedundante() {
+        AtomicInteger tentativas = new AtomicInteger();
+
+        long inicio = System.nanoTime();
+        assertEquals("rapida", redundante().executar(primeiraLenta(tentativas)));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 5_000);
+        assertEquals(2, tentativas.get());
+        assertEquals(1.0, contagem("disparada"));
+        assertEquals(1.0, contagem("venceu"));
+    }
+
+    @Test
+    @DisplayName("Sem saldo no orçamento, a chamada deve esperar só pela tentativa original")
+    void semSaldoNaoDeveDispararRedundante() throws Exception {
+        RequisicaoRedundante redundante = redundante();
+        AtomicInteger primeiras = new AtomicInteger();
+        redundante.executar(primeiraLenta(primeiras));
+
+        AtomicInteger tentativas = new AtomicInteger();
+        Supplier<String> lenta = () -> {
+            tentativas.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "lenta";
+        };
+
+        assertEquals("lenta", redundante.executar(lenta));
+        assertEquals(1, tentativas.get());
+        assertEquals(1.0, contagem("sem_saldo"));
+    }
+
+    @Test
+    @DisplayName("Falha da tentativa original deve esperar pela redundante antes de ser repassada")
+    void falhaDeveEsperarPelaRedundante() {
+        AtomicInteger tentativas = new AtomicInteger();
+        CountDownLatch redundanteDisparada = new CountDownLatch(1);
+
+        String resultado = redundante().executar(() -> {
+            if (tentativas.incrementAndGet() == 1) {
+                try {
+                    redundanteDisparada.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("timeout no estoque");
+            }
+            redundanteDisparada.countDown();
+            return "redundante";
+        });
+
+        assertEquals("redundante", resultado);
+    }
+
+    @Test
+    @DisplayName("Falha de todas as tentativas deve chegar a quem chama sem ser embrulhada")
+    void falhaDeTodasDeveSerPropagada() {
+        IllegalStateException falha = new IllegalStateException("estoque fora do ar");
+
+        assertSame(falha, assertThrows(IllegalStateException.class, () -> redundante().executar(() -> {
+            throw falha;
+        })));
+    }
+
+    @Test
+    @DisplayName("O atraso deve seguir o percentil configurado das latências recentes")
+    void atrasoDeveSeguirOPercentil() {
+        AtomicLong relogioNanos = new AtomicLong();
+        RequisicaoRedundante redundante = new RequisicaoRedundante("estoque",
+                new RequisicaoRedundante.Configuracao(95, 5, 1_000, 5), executor, registry, relogioNanos::get);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1_000), redundante.getAtrasoNanos());
+        for (int i = 1; i <= 2 * RequisicaoRedundante.MINIMO_DE_AMOSTRAS; i++) {
+            long latencia = TimeUnit.MILLISECONDS.toNanos(i);
+            redundante.executar(() -> relogioNanos.addAndGet(latencia));
+        }
+
+        // p95 de 1..64 ms
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(61), redundante.getAtrasoNanos());
+    }
+
+    @Test
+    @DisplayName("A baixa no estoque nunca deve ser repetida, mesmo lenta")
+    void baixaNuncaDeveSerRepetida() {
+        IEstoqueExternal estoqueReal = mock(IEstoqueExternal.class);
+        when(estoqueReal.darBaixa(anyList(), anyList())).thenAnswer(invocacao -> {
+            Thread.sleep(100);
+            return new EstoqueBaixaDTO(true);
+        });
+        when(estoqueReal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        IEstoqueExternal estoque = new EstoqueComRequisicaoRedundante(estoqueReal, redundante());
+
+        assertTrue(estoque.darBaixa(List.of(1L), List.of(1L)).sucesso());
+        assertTrue(estoque.verificarDisponibilidade(List.of(1L), List.of(1L)).disponivel());
+
+        verify(estoqueReal, times(1)).darBaixa(anyList(), anyList());
+        assertEquals(0.0, contagem("disparada"));
+    }
+
+    @Test
+    @DisplayName("Percentil fora de 1 a 99 deve ser rejeitado")
+    void configuracaoInvalidaDeveSerRejeitada() {
+        assertThrows(IllegalArgumentException.class, () -> new RequisicaoRedundante.Configuracao(100, 5, 20, 5));
+    }
+}
@@ -0,0 +1,64 @@
+package ecommerce.fake.external;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.external.IEstoqueExternalAsync;
+
+public class EstoqueAsyncSimulado implements IEstoqueExternalAsync {
+
+    private boolean disponivel = true;
+    private boolean falhaNaBaixa;
+    private RuntimeException excecaoNaBaixa;
+    private long latenciaEmMillis;
+
+    private final AtomicInteger chamadasVerificacao = new AtomicInteger();
+    private final AtomicInteger chamadasBaixa = new AtomicInteger();
+
+    public void setDisponivel(boolean disponivel) {
+        this.disponivel = disponivel;
+    }
+
+    public void setFalhaNaBaixa(boolean falha) {
+        this.falhaNaBaixa = falha;
+    }
+
+    public void setExcecaoNaBaixa(RuntimeException excecao) {
+        this.excecaoNaBaixa = excecao;
+    }
+
+    public void setLatenciaEmMillis(long latenciaEmMillis) {
+        this.latenciaEmMillis = latenciaEmMillis;
+    }
+
+    public int getChamadasVerificacao() { return chamadasVerificacao.get(); }
+    public int getChamadasBaixa() { return chamadasBaixa.get(); }
+
+    @Override
+    public CompletableFuture<EstoqueBaixaDTO> darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+        chamadasBaixa.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            if (excecaoNaBaixa != null) {
+                throw excecaoNaBaixa;
+            }
+            return new EstoqueBaixaDTO(!falhaNaBaixa);
+        }, atraso());
+    }
+
+    @Override
+    public CompletableFuture<DisponibilidadeDTO> verificarDisponibilidade(List<Long> produtosIds,
+                                                                         List<Long> produtosQuantidades) {
+        chamadasVerificacao.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> new DisponibilidadeDTO(disponivel, Collections.emptyList()), atraso());
+    }
+
+    private Executor atraso() {
+        return CompletableFuture.delayedExecutor(latenciaEmMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -2,6 +2,7 @@ package ecommerce.fake.external;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.stereotype.Service;
 
@@ -15,6 +16,10 @@ public class EstoqueSimulado implements IEstoqueExternal {
     private boolean disponivel;
     private boolean falhaNaBaixa;
 
+    private long latenciaEmMillis;
+    private final AtomicInteger chamadasEmAndamento = new AtomicInteger();
+    private final AtomicInteger maximoDeChamadasSimultaneas = new AtomicInteger();
+
     private List<Long> idsRecebidos;
     private List<Long> qntdsRecebidas;
 
@@ -29,9 +34,16 @@ public class EstoqueSimulado implements IEstoqueExternal {
         this.falhaNaBaixa = falha;
     }
 
+    public void setLatenciaEmMillis(long latenciaEmMillis) {
+        this.latenciaEmMillis = latenciaEmMillis;
+    }
+
+    public int getMaximoDeChamadasSimultaneas() { return maximoDeChamadasSimultaneas.get(); }
+
 	@Override
 	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
 	{
+        simularLatencia();
 		return new EstoqueBaixaDTO(!falhaNaBaixa);
 	}
 
@@ -40,7 +52,22 @@ public class EstoqueSimulado implements IEstoqueExternal {
 	{
         this.idsRecebidos = produtosIds;
         this.qntdsRecebidas = produtosQuantidades;
+        simularLatencia();
 
 		return new DisponibilidadeDTO(disponivel, Collections.emptyList());
 	}
+
+    private void simularLatencia() {
+        if (latenciaEmMillis == 0) {
+            return;
+        }
+        maximoDeChamadasSimultaneas.accumulateAndGet(chamadasEmAndamento.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(latenciaEmMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            chamadasEmAndamento.decrementAndGet();
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package ecommerce.fake.external;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.external.IPagamentoExternalAsync;
+
+public class PagamentoAsyncSimulado implements IPagamentoExternalAsync {
+
+    private boolean autorizado = true;
+    private volatile boolean cancelamentoChamado = false;
+    private long latenciaEmMillis;
+
+    public boolean houveCancelamentoChamado() {
+        return this.cancelamentoChamado;
+    }
+
+    public void setAutorizado(boolean autorizado) {
+        this.autorizado = autorizado;
+    }
+
+    public void setLatenciaEmMillis(long latenciaEmMillis) {
+        this.latenciaEmMillis = latenciaEmMillis;
+    }
+
+    @Override
+    public CompletableFuture<PagamentoDTO> autorizarPagamento(Long clienteId, Double custoTotal) {
+        return CompletableFuture.supplyAsync(() -> new PagamentoDTO(autorizado, autorizado ? 999L : null), atraso());
+    }
+
+    @Override
+    public CompletableFuture<Void> cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+        return CompletableFuture.runAsync(() -> this.cancelamentoChamado = true, atraso());
+    }
+
+    private Executor atraso() {
+        return CompletableFuture.delayedExecutor(latenciaEmMillis, TimeUnit.MILLISECONDS);
+    }
+}
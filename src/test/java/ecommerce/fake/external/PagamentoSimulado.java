@@ -10,6 +10,7 @@ public class PagamentoSimulado implements IPagamentoExternal {
 
     private boolean autorizado = true;
     private boolean cancelamentoChamado = false;
+    private long latenciaEmMillis;
 
     public boolean houveCancelamentoChamado() {
         return this.cancelamentoChamado;
@@ -19,9 +20,20 @@ public class PagamentoSimulado implements IPagamentoExternal {
         this.autorizado = autorizado;
     }
 
+    public void setLatenciaEmMillis(long latenciaEmMillis) {
+        this.latenciaEmMillis = latenciaEmMillis;
+    }
+
     @Override
 	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
 	{
+        if (latenciaEmMillis > 0) {
+            try {
+                Thread.sleep(latenciaEmMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 		return new PagamentoDTO(autorizado, autorizado ? 999L : null);
 	}
 
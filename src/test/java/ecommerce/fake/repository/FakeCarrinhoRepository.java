@@ -9,6 +9,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.query.FluentQuery;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +35,27 @@ public class FakeCarrinhoRepository implements CarrinhoDeComprasRepository {
         return Optional.empty();
     }
 
+    @Override
+    public Optional<CarrinhoDeCompras> findParaCheckoutByIdAndCliente(Long id, Cliente cliente) {
+        return findByIdAndCliente(id, cliente);
+    }
+
+    @Override
+    public List<CarrinhoDeCompras> findParaCheckoutByIdIn(Collection<Long> ids) {
+        List<CarrinhoDeCompras> carrinhos = new ArrayList<>();
+        for (Long id : ids) {
+            if (bancoDeDados.containsKey(id)) {
+                carrinhos.add(bancoDeDados.get(id));
+            }
+        }
+        return carrinhos;
+    }
+
+    @Override
+    public Optional<CarrinhoDeCompras> findParaCotacaoById(Long id) {
+        return findById(id);
+    }
+
     @Override
     public Optional<CarrinhoDeCompras> findById(Long id) {
         return Optional.ofNullable(bancoDeDados.get(id));
@@ -8,6 +8,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.query.FluentQuery;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,17 @@ public class FakeClienteRepository implements ClienteRepository {
         return Optional.ofNullable(bancoDeDados.get(id));
     }
 
+    @Override
+    public List<Cliente> findAllById(Iterable<Long> ids) {
+        List<Cliente> clientes = new ArrayList<>();
+        for (Long id : ids) {
+            if (bancoDeDados.containsKey(id)) {
+                clientes.add(bancoDeDados.get(id));
+            }
+        }
+        return clientes;
+    }
+
     // Ignorar o restante
 
     @Override
@@ -129,11 +141,6 @@ public class FakeClienteRepository implements ClienteRepository {
         return List.of();
     }
 
-    @Override
-    public List<Cliente> findAllById(Iterable<Long> longs) {
-        return List.of();
-    }
-
     @Override
     public long count() {
         return 0;
@@ -0,0 +1,164 @@
+package ecommerce.repository;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisDoCarrinho;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class CarrinhoDeComprasRepositoryTest {
+
+    private static final int QUANTIDADE_DE_ITENS = 40;
+
+    @Autowired
+    private CarrinhoDeComprasRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estatisticas;
+    private Cliente cliente;
+    private Long carrinhoId;
+
+    @BeforeEach
+    void setUp() {
+        cliente = entityManager.persist(new Cliente(null, "Lucas", Regiao.SUDESTE, TipoCliente.OURO));
+
+        List<ItemCompra> itens = new ArrayList<>();
+        for (int i = 0; i < QUANTIDADE_DE_ITENS; i++) {
+            Produto produto = entityManager.persist(new Produto(null, "Produto " + i, "Produto de teste",
+                    new BigDecimal("10.00"), new BigDecimal("1.00"), null, null, null, false, TipoProduto.LIVRO));
+            itens.add(new ItemCompra(null, produto, 1L));
+        }
+
+        CarrinhoDeCompras carrinho = entityManager.persist(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now()));
+        carrinhoId = carrinho.getId();
+
+        entityManager.flush();
+        entityManager.clear();
+
+        estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+    }
+
+    @Test
+    @DisplayName("Carrinho para checkout deve ser carregado com itens e ids dos produtos em um único SELECT")
+    void deveCarregarCarrinhoParaCheckoutEmUmaConsulta() {
+        CarrinhoDeCompras carrinho = repository.findParaCheckoutByIdAndCliente(carrinhoId, cliente).orElseThrow();
+
+        assertEquals(QUANTIDADE_DE_ITENS, percorrerIdsDosProdutos(carrinho));
+        assertEquals(1, estatisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Carrinho para checkout deve ser carregado como somente leitura")
+    void deveCarregarCarrinhoSomenteLeitura() {
+        CarrinhoDeCompras carrinho = repository.findParaCheckoutByIdAndCliente(carrinhoId, cliente).orElseThrow();
+
+        assertTrue(entityManager.getEntityManager().unwrap(Session.class).isReadOnly(carrinho));
+    }
+
+    @Test
+    @DisplayName("Consulta sem fetch join dispara uma consulta por item percorrido (N+1)")
+    void consultaPadraoDeveDispararConsultasAdicionais() {
+        CarrinhoDeCompras carrinho = repository.findByIdAndCliente(carrinhoId, cliente).orElseThrow();
+
+        assertEquals(QUANTIDADE_DE_ITENS, percorrerItens(carrinho));
+        assertTrue(estatisticas.getPrepareStatementCount() > 2,
+                "Esperava-se N+1 consultas, mas foram " + estatisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Carrinhos do lote devem ser carregados com itens e ids dos produtos em um único SELECT")
+    void deveCarregarCarrinhosDoLoteEmUmaConsulta() {
+        CarrinhoDeCompras outro = entityManager.persistFlushFind(new CarrinhoDeCompras(null, cliente,
+                new ArrayList<>(), LocalDate.now()));
+        entityManager.clear();
+        estatisticas.clear();
+
+        List<CarrinhoDeCompras> carrinhos = repository.findParaCheckoutByIdIn(List.of(carrinhoId, outro.getId()));
+
+        assertEquals(2, carrinhos.size());
+        assertEquals(QUANTIDADE_DE_ITENS, carrinhos.stream().mapToInt(this::percorrerIdsDosProdutos).sum());
+        assertEquals(1, estatisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Carrinho para cotação deve ser carregado com cliente e itens em um único SELECT, somente leitura")
+    void deveCarregarCarrinhoParaCotacaoEmUmaConsulta() {
+        CarrinhoDeCompras carrinho = repository.findParaCotacaoById(carrinhoId).orElseThrow();
+
+        assertEquals(TipoCliente.OURO, carrinho.getCliente().getTipo());
+        assertEquals(QUANTIDADE_DE_ITENS, percorrerIdsDosProdutos(carrinho));
+        assertEquals(1, estatisticas.getPrepareStatementCount());
+        assertTrue(entityManager.getEntityManager().unwrap(Session.class).isReadOnly(carrinho));
+    }
+
+    @Test
+    @DisplayName("Totais mantidos devem ser gravados com o carrinho; sem eles, as colunas ficam nulas")
+    void deveGravarOsTotaisDoCarrinho() {
+        CarrinhoDeCompras carrinho = repository.findById(carrinhoId).orElseThrow();
+        assertNull(carrinho.getTotais());
+
+        carrinho.setTotais(new TotaisDoCarrinho(40000, 40000, 0, 6000, 42));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(new TotaisDoCarrinho(40000, 40000, 0, 6000, 42),
+                repository.findParaCotacaoById(carrinhoId).orElseThrow().getTotais());
+    }
+
+    @Test
+    @DisplayName("Carrinho de outro cliente não deve ser encontrado")
+    void naoDeveEncontrarCarrinhoDeOutroCliente() {
+        Cliente outro = entityManager.persist(new Cliente(null, "Carlos", Regiao.SUL, TipoCliente.BRONZE));
+
+        assertTrue(repository.findParaCheckoutByIdAndCliente(carrinhoId, outro).isEmpty());
+    }
+
+    private int percorrerIdsDosProdutos(CarrinhoDeCompras carrinho) {
+        int total = 0;
+        for (ItemCompra item : carrinho.getItens()) {
+            assertNotNull(item.getProduto().getId());
+            assertFalse(Hibernate.isInitialized(item.getProduto()), "Produto não deveria ser carregado do banco");
+            total++;
+        }
+        return total;
+    }
+
+    private int percorrerItens(CarrinhoDeCompras carrinho) {
+        int total = 0;
+        for (ItemCompra item : carrinho.getItens()) {
+            assertNotNull(item.getProduto().getPreco());
+            total++;
+        }
+        return total;
+    }
+}
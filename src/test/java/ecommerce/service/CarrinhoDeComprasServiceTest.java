@@ -0,0 +1,164 @@
+package ecommerce.service;
+
+import ecommerce.dto.ConferenciaDeTotaisDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.TotaisDoCarrinho;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.service.catalogo.ProdutoSnapshot;
+import ecommerce.service.preco.CacheDeCotacoes;
+import ecommerce.service.preco.MotorDePreco;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarrinhoDeComprasServiceTest {
+
+    private static final long FATOR = 6000;
+
+    private FakeCarrinhoRepository carrinhoRepositoryFake;
+    private MotorDePreco motorDePreco;
+    private CarrinhoDeComprasService carrinhoService;
+    private ItemCompra livro;
+
+    @BeforeEach
+    void setup() {
+        carrinhoRepositoryFake = new FakeCarrinhoRepository();
+        motorDePreco = new MotorDePreco();
+        carrinhoService = new CarrinhoDeComprasService(carrinhoRepositoryFake, motorDePreco, null);
+
+        livro = item(1L, criarItem(new BigDecimal("100.00"), new BigDecimal("1.50"), 2L));
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, criarCliente(1L, "Lucas"),
+                new ArrayList<>(List.of(livro)), null);
+        carrinhoRepositoryFake.adicionar(carrinho);
+    }
+
+    private static ItemCompra item(Long id, ItemCompra item) {
+        item.setId(id);
+        return item;
+    }
+
+    private TotaisDoCarrinho totais() {
+        return carrinhoRepositoryFake.findById(1L).orElseThrow().getTotais();
+    }
+
+    private long epoca() {
+        return motorDePreco.getEpocaDosPrecos();
+    }
+
+    @Test
+    @DisplayName("Primeira alteração deve calcular os totais do carrinho e somar o item incluído")
+    void primeiraAlteracaoDeveCalcularOsTotais() {
+        ItemCompra vaso = item(2L, criarItemFragil(new BigDecimal("35.90"), new BigDecimal("0.75"), 3L));
+
+        carrinhoService.adicionarItem(1L, vaso);
+
+        assertEquals(new TotaisDoCarrinho(30770, 5250, 3, FATOR, epoca()), totais());
+        assertEquals(2, carrinhoRepositoryFake.findById(1L).orElseThrow().getItens().size());
+    }
+
+    @Test
+    @DisplayName("Alterar a quantidade e remover itens devem atualizar os totais")
+    void alterarERemoverDevemAtualizarOsTotais() {
+        ItemCompra vaso = item(2L, criarItemFragil(new BigDecimal("35.90"), new BigDecimal("0.75"), 3L));
+        carrinhoService.adicionarItem(1L, vaso);
+
+        carrinhoService.alterarQuantidade(1L, 1L, 5L);
+        assertEquals(new TotaisDoCarrinho(60770, 9750, 3, FATOR, epoca()), totais());
+
+        carrinhoService.removerItem(1L, 2L);
+        assertEquals(new TotaisDoCarrinho(50000, 7500, 0, FATOR, epoca()), totais());
+        assertEquals(5L, livro.getQuantidade());
+    }
+
+    @Test
+    @DisplayName("Quantidade inválida, item ou carrinho inexistentes devem ser recusados")
+    void alteracoesInvalidasDevemSerRecusadas() {
+        assertThrows(IllegalArgumentException.class, () -> carrinhoService.alterarQuantidade(1L, 1L, 0L));
+        assertThrows(IllegalArgumentException.class, () -> carrinhoService.removerItem(1L, 99L));
+        assertThrows(IllegalArgumentException.class,
+                () -> carrinhoService.adicionarItem(99L, criarItem(BigDecimal.TEN, BigDecimal.ONE, 1L)));
+        assertNull(totais());
+    }
+
+    @Test
+    @DisplayName("Item com valores fora do ponto fixo deve deixar os totais não mantidos")
+    void itemForaDoPontoFixoDeveDesligarOsTotais() {
+        carrinhoService.adicionarItem(1L, item(2L, criarItem(new BigDecimal("166.665"), BigDecimal.ONE, 1L)));
+
+        assertNull(totais());
+        assertTrue(carrinhoService.conferirTotais(1L).consistente());
+    }
+
+    @Test
+    @DisplayName("Conferência deve apontar totais divergentes e a correção deve regravá-los")
+    void conferenciaDeveApontarTotaisDivergentes() {
+        carrinhoService.alterarQuantidade(1L, 1L, 3L);
+        livro.getProduto().setPreco(new BigDecimal("90.00"));
+
+        ConferenciaDeTotaisDTO conferencia = carrinhoService.conferirTotais(1L);
+
+        assertFalse(conferencia.consistente());
+        assertEquals(new TotaisDoCarrinho(30000, 4500, 0, FATOR, epoca()), conferencia.armazenados());
+        assertEquals(new TotaisDoCarrinho(27000, 4500, 0, FATOR, epoca()), conferencia.recalculados());
+
+        carrinhoService.corrigirTotais(1L);
+
+        assertTrue(carrinhoService.conferirTotais(1L).consistente());
+    }
+
+    @Test
+    @DisplayName("Totais de uma época dos preços anterior devem ser recalculados na próxima alteração")
+    void totaisDeEpocaAnteriorDevemSerRecalculados() {
+        carrinhoService.alterarQuantidade(1L, 1L, 3L);
+        long epocaAnterior = epoca();
+        livro.getProduto().setPreco(new BigDecimal("90.00"));
+        motorDePreco.avancarEpocaDosPrecos();
+
+        assertEquals(new TotaisDoCarrinho(30000, 4500, 0, FATOR, epocaAnterior), totais());
+        assertFalse(carrinhoService.conferirTotais(1L).consistente());
+
+        carrinhoService.alterarQuantidade(1L, 1L, 4L);
+
+        assertEquals(new TotaisDoCarrinho(36000, 6000, 0, FATOR, epoca()), totais());
+        assertNotEquals(epocaAnterior, epoca());
+    }
+
+    @Test
+    @DisplayName("Alteração do carrinho deve descartar a cotação memorizada, de novo depois do commit")
+    void alteracaoDeveDescartarACotacaoMemorizada() {
+        CacheDeCotacoes cacheDeCotacoes = new CacheDeCotacoes(motorDePreco, 100);
+        carrinhoService = new CarrinhoDeComprasService(carrinhoRepositoryFake, motorDePreco, null, cacheDeCotacoes);
+        CarrinhoDeCompras carrinho = carrinhoRepositoryFake.findById(1L).orElseThrow();
+        Map<Long, ProdutoSnapshot> copias = new HashMap<>();
+        Runnable cotar = () -> cacheDeCotacoes.cotar(1L, carrinho.getItens(),
+                i -> copias.computeIfAbsent(i.getProduto().getId(), id -> ProdutoSnapshot.de(i.getProduto())),
+                null, null);
+        cotar.run();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            carrinhoService.alterarQuantidade(1L, 1L, 3L);
+            // cotação concorrente antes do commit volta a memorizar o carrinho
+            cotar.run();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        cotar.run();
+
+        assertEquals(0, cacheDeCotacoes.estatisticas().hitCount());
+        assertEquals(3, cacheDeCotacoes.estatisticas().missCount());
+    }
+}
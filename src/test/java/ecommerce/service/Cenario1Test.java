@@ -13,6 +13,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.util.concurrent.ExecutionException;
 
 import static ecommerce.util.MetodosAuxilar.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -124,4 +125,99 @@ public class Cenario1Test {
 
         assertEquals("Erro ao dar baixa no estoque.", e.getMessage());
     }
+
+    @Test
+    @DisplayName("Compra assíncrona finalizada com sucesso quando estoque e pagamentos estão ok")
+    void deveFinalizarCompraAsyncSucesso() throws Exception {
+        Cliente cliente = criarCliente(1L, "Lucas");
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L)
+        );
+
+        when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+        when(carrinhoDeComprasService.buscarPorCarrinhoIdEClienteId(1L, cliente)).thenReturn(carrinho);
+
+        estoqueFake.setDisponivel(true);
+        pagamentoFake.setAutorizado(true);
+
+        CompraDTO resultado = compraService.finalizarCompraAsync(1L, 1L).get();
+
+        assertEquals(1L, estoqueFake.getIdsRecebidos().get(0));
+        assertEquals(1L, estoqueFake.getQntdsRecebidas().get(0));
+
+        assertTrue(resultado.sucesso());
+        assertEquals("Compra finalizada com sucesso.", resultado.mensagem());
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona não finalizada por falta de estoque")
+    void deveFalharAsyncQuandoSemEstoque() {
+        Cliente cliente = criarCliente(1L, "Lucas");
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L)
+        );
+
+        when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+        when(carrinhoDeComprasService.buscarPorCarrinhoIdEClienteId(1L, cliente)).thenReturn(carrinho);
+
+        estoqueFake.setDisponivel(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("Itens fora de estoque.", e.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona reporta falta de estoque antes de erro no cálculo do custo")
+    void deveReportarFaltaDeEstoqueAntesDeErroNoCusto() {
+        Cliente cliente = criarCliente(1L, "Lucas");
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(new BigDecimal("-1.00"), new BigDecimal("1.00"), 1L)
+        );
+
+        when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+        when(carrinhoDeComprasService.buscarPorCarrinhoIdEClienteId(1L, cliente)).thenReturn(carrinho);
+
+        estoqueFake.setDisponivel(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertEquals("Itens fora de estoque.", e.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona não finalizada por pagamento não autorizado")
+    void deveFalharAsyncQuandoPagamentoRecusado() {
+        Cliente cliente = criarCliente(1L, "Carlos");
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L)
+        );
+
+        when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+        when(carrinhoDeComprasService.buscarPorCarrinhoIdEClienteId(1L, cliente)).thenReturn(carrinho);
+
+        estoqueFake.setDisponivel(true);
+        pagamentoFake.setAutorizado(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("Pagamento não autorizado.", e.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona reporta cliente não encontrado no futuro")
+    void deveFalharAsyncQuandoClienteNaoEncontrado() {
+        when(clienteService.buscarPorId(1L)).thenThrow(new IllegalArgumentException("Cliente não encontrado"));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        assertEquals("Cliente não encontrado", e.getCause().getMessage());
+    }
 }
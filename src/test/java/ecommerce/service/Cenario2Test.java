@@ -8,6 +8,7 @@ import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.ParceiroIndisponivelException;
 import ecommerce.fake.repository.FakeCarrinhoRepository;
 import ecommerce.fake.repository.FakeClienteRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -205,4 +206,55 @@ public class Cenario2Test {
         verify(pagamentoMock).cancelarPagamento(eq(1L), eq(12345L));
     }
 
+    @Test
+    @DisplayName("Itens repetidos do mesmo produto devem ir ao estoque em uma única linha, com as quantidades somadas")
+    void deveEnviarProdutoRepetidoEmUmaLinha() {
+        Cliente cliente = criarCliente(1L, "Lucas");
+        clienteRepositoryFake.adicionar(cliente);
+
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(new BigDecimal("10.00"), new BigDecimal("1.00"), 2L),
+                criarItem(new BigDecimal("10.00"), new BigDecimal("1.00"), 3L)
+        );
+        carrinho.setId(10L);
+        carrinho.setCliente(cliente);
+        carrinhoRepositoryFake.adicionar(carrinho);
+
+        when(estoqueMock.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
+        when(pagamentoMock.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+
+        assertTrue(compraService.finalizarCompra(10L, 1L).sucesso());
+
+        verify(estoqueMock).verificarDisponibilidade(eq(List.of(1L)), eq(List.of(5L)));
+        verify(estoqueMock).darBaixa(eq(List.of(1L)), eq(List.of(5L)));
+    }
+
+
+    @Test
+    @DisplayName("Exceção na baixa, como disjuntor aberto, deve cancelar o pagamento já autorizado e ser repassada")
+    void deveCancelarPagamentoQuandoBaixaLancaExcecao() {
+        Cliente cliente = criarCliente(1L, "Lucas");
+        clienteRepositoryFake.adicionar(cliente);
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L)
+        );
+        carrinho.setId(10L);
+        carrinho.setCliente(cliente);
+        carrinhoRepositoryFake.adicionar(carrinho);
+
+        when(estoqueMock.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
+        when(pagamentoMock.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+        ParceiroIndisponivelException falha = new ParceiroIndisponivelException(
+                "Serviço de estoque indisponível no momento.");
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenThrow(falha);
+
+        assertSame(falha, assertThrows(ParceiroIndisponivelException.class,
+                () -> compraService.finalizarCompra(10L, 1L)));
+        verify(pagamentoMock).cancelarPagamento(eq(1L), eq(12345L));
+    }
 }
@@ -0,0 +1,175 @@
+package ecommerce.service;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.external.EstoqueSyncAdapter;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IEstoqueExternalAsync;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.ParceiroIndisponivelException;
+import ecommerce.external.PagamentoSyncAdapter;
+import ecommerce.fake.external.EstoqueAsyncSimulado;
+import ecommerce.fake.external.PagamentoAsyncSimulado;
+import ecommerce.service.preco.MotorDePreco;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Cenário 3: parceiros assíncronos simulados com latência, sem bloquear threads
+@ExtendWith(MockitoExtension.class)
+public class Cenario3Test {
+
+    @Mock
+    private CarrinhoDeComprasService carrinhoDeComprasService;
+    @Mock
+    private ClienteService clienteService;
+    @Mock
+    private IEstoqueExternal estoqueSincrono;
+    @Mock
+    private IPagamentoExternal pagamentoSincrono;
+
+    private EstoqueAsyncSimulado estoqueFake;
+    private PagamentoAsyncSimulado pagamentoFake;
+
+    private CompraService compraService;
+
+    @BeforeEach
+    void setUp() {
+        estoqueFake = new EstoqueAsyncSimulado();
+        pagamentoFake = new PagamentoAsyncSimulado();
+        compraService = new CompraService(carrinhoDeComprasService, clienteService, estoqueSincrono,
+                pagamentoSincrono, estoqueFake, pagamentoFake, new MotorDePreco(), null,
+                MetricasDeCompra.desabilitadas());
+    }
+
+    private void prepararCarrinho() {
+        Cliente cliente = criarCliente(1L, "Lucas");
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L)
+        );
+
+        when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+        when(carrinhoDeComprasService.buscarPorCarrinhoIdEClienteId(1L, cliente)).thenReturn(carrinho);
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona retorna antes da resposta dos parceiros e finaliza com sucesso")
+    void deveFinalizarSemBloquearAChamada() throws Exception {
+        prepararCarrinho();
+        estoqueFake.setLatenciaEmMillis(200);
+        pagamentoFake.setLatenciaEmMillis(200);
+
+        CompletableFuture<CompraDTO> futuro = compraService.finalizarCompraAsync(1L, 1L);
+
+        assertFalse(futuro.isDone(), "A chamada não deveria esperar pela resposta dos parceiros.");
+
+        CompraDTO resultado = futuro.get();
+        assertTrue(resultado.sucesso());
+        assertEquals(999L, resultado.transacaoPagamentoId());
+        assertEquals("Compra finalizada com sucesso.", resultado.mensagem());
+        assertEquals(1, estoqueFake.getChamadasVerificacao());
+        assertEquals(1, estoqueFake.getChamadasBaixa());
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona não finalizada por falta de estoque")
+    void deveFalharQuandoSemEstoque() {
+        prepararCarrinho();
+        estoqueFake.setDisponivel(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("Itens fora de estoque.", e.getCause().getMessage());
+        assertEquals(0, estoqueFake.getChamadasBaixa());
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona não finalizada por pagamento não autorizado")
+    void deveFalharQuandoPagamentoRecusado() {
+        prepararCarrinho();
+        pagamentoFake.setAutorizado(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertEquals("Pagamento não autorizado.", e.getCause().getMessage());
+        assertEquals(0, estoqueFake.getChamadasBaixa());
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona cancela o pagamento quando a baixa falha")
+    void deveCancelarPagamentoQuandoBaixaFalha() {
+        prepararCarrinho();
+        estoqueFake.setFalhaNaBaixa(true);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertEquals("Erro ao dar baixa no estoque.", e.getCause().getMessage());
+        assertTrue(pagamentoFake.houveCancelamentoChamado(),
+                "O sistema deveria ter chamado o cancelamento do pagamento, mas não chamou.");
+    }
+
+    @Test
+    @DisplayName("Compra assíncrona cancela o pagamento e repassa a exceção quando a baixa não responde")
+    void deveCancelarPagamentoQuandoBaixaLancaExcecao() {
+        prepararCarrinho();
+        ParceiroIndisponivelException falha = new ParceiroIndisponivelException(
+                "Serviço de estoque não respondeu em 2000 ms.");
+        estoqueFake.setExcecaoNaBaixa(falha);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> compraService.finalizarCompraAsync(1L, 1L).get());
+
+        assertSame(falha, e.getCause());
+        assertTrue(pagamentoFake.houveCancelamentoChamado(),
+                "O sistema deveria ter chamado o cancelamento do pagamento, mas não chamou.");
+    }
+
+    @Test
+    @DisplayName("Adaptadores síncronos devolvem a resposta dos parceiros assíncronos")
+    void adaptadoresSincronosDevemAguardarResposta() {
+        estoqueFake.setLatenciaEmMillis(50);
+        pagamentoFake.setLatenciaEmMillis(50);
+
+        DisponibilidadeDTO disponibilidade = new EstoqueSyncAdapter(estoqueFake)
+                .verificarDisponibilidade(List.of(1L), List.of(1L));
+        PagamentoDTO pagamento = new PagamentoSyncAdapter(pagamentoFake).autorizarPagamento(1L, 100.00);
+
+        assertTrue(disponibilidade.disponivel());
+        assertTrue(pagamento.autorizado());
+        assertEquals(999L, pagamento.transacaoId());
+    }
+
+    @Test
+    @DisplayName("Adaptador síncrono relança a exceção original do parceiro assíncrono")
+    void adaptadorSincronoDeveRelancarExcecaoOriginal() {
+        IEstoqueExternalAsync estoqueComFalha = mock(IEstoqueExternalAsync.class);
+        when(estoqueComFalha.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Estoque indisponível")));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new EstoqueSyncAdapter(estoqueComFalha).verificarDisponibilidade(List.of(1L), List.of(1L)));
+
+        assertEquals("Estoque indisponível", e.getMessage());
+    }
+}
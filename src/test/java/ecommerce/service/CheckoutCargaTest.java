@@ -0,0 +1,97 @@
+package ecommerce.service;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.external.EstoqueComLimiteDeConcorrencia;
+import ecommerce.external.LimiteDeConcorrencia;
+import ecommerce.external.PagamentoComLimiteDeConcorrencia;
+import ecommerce.fake.external.EstoqueSimulado;
+import ecommerce.fake.external.PagamentoSimulado;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compras simultâneas em threads virtuais contra parceiros simulados com latência:
+// todas devem ser concluídas sem passar do limite por parceiro. O limite fica bem
+// abaixo da concorrência natural das 400 compras, para que ele realmente segure
+// chamadas. A comparação de
+// vazão com o pool fixo de workers do Tomcat fica em CheckoutCargaBenchmark
+// (perfil benchmarks), fora da execução padrão dos testes.
+public class CheckoutCargaTest {
+
+    private static final int COMPRAS = 400;
+    private static final int MAX_CONCORRENCIA_POR_PARCEIRO = 10;
+    private static final long LATENCIA_EM_MILLIS = 20;
+
+    private EstoqueSimulado estoqueFake;
+    private CompraService compraService;
+
+    @BeforeEach
+    void setUp() {
+        FakeClienteRepository clienteRepositoryFake = new FakeClienteRepository();
+        FakeCarrinhoRepository carrinhoRepositoryFake = new FakeCarrinhoRepository();
+
+        for (long id = 1; id <= COMPRAS; id++) {
+            Cliente cliente = criarCliente(id, "Cliente " + id);
+            clienteRepositoryFake.adicionar(cliente);
+
+            CarrinhoDeCompras carrinho = criarCarrinho(
+                    criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L)
+            );
+            carrinho.setId(id);
+            carrinho.setCliente(cliente);
+            carrinhoRepositoryFake.adicionar(carrinho);
+        }
+
+        estoqueFake = new EstoqueSimulado();
+        estoqueFake.setDisponivel(true);
+        estoqueFake.setLatenciaEmMillis(LATENCIA_EM_MILLIS);
+
+        PagamentoSimulado pagamentoFake = new PagamentoSimulado();
+        pagamentoFake.setLatenciaEmMillis(LATENCIA_EM_MILLIS);
+
+        compraService = new CompraService(
+                new CarrinhoDeComprasService(carrinhoRepositoryFake),
+                new ClienteService(clienteRepositoryFake),
+                new EstoqueComLimiteDeConcorrencia(estoqueFake,
+                        new LimiteDeConcorrencia("estoque", MAX_CONCORRENCIA_POR_PARCEIRO, 10_000)),
+                new PagamentoComLimiteDeConcorrencia(pagamentoFake,
+                        new LimiteDeConcorrencia("pagamento", MAX_CONCORRENCIA_POR_PARCEIRO, 10_000)));
+    }
+
+    @Test
+    @DisplayName("Threads virtuais devem finalizar todas as compras, respeitando o limite por parceiro")
+    void threadsVirtuaisDevemFinalizarTodasAsCompras() throws Exception {
+        try (ExecutorService threadsVirtuais = Executors.newVirtualThreadPerTaskExecutor()) {
+            finalizarTodas(threadsVirtuais);
+        }
+
+        // sem o limite o estoque chegaria perto de 400 chamadas simultâneas
+        assertEquals(MAX_CONCORRENCIA_POR_PARCEIRO, estoqueFake.getMaximoDeChamadasSimultaneas(),
+                "O estoque deveria ter recebido exatamente o limite de chamadas simultâneas");
+    }
+
+    private void finalizarTodas(ExecutorService executor) throws Exception {
+        List<Future<CompraDTO>> resultados = new ArrayList<>();
+        for (long id = 1; id <= COMPRAS; id++) {
+            long carrinhoId = id;
+            resultados.add(executor.submit(() -> compraService.finalizarCompra(carrinhoId, carrinhoId)));
+        }
+        for (Future<CompraDTO> resultado : resultados) {
+            assertTrue(resultado.get().sucesso());
+        }
+    }
+}
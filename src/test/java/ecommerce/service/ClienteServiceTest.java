@@ -0,0 +1,153 @@
+package ecommerce.service;
+
+import ecommerce.entity.Cliente;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.repository.ClienteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ClienteServiceTest {
+
+    private static final long TTL_MS = 60_000;
+    private static final long TTL_NEGATIVO_MS = 5_000;
+
+    @Mock
+    private ClienteRepository clienteRepository;
+
+    private final AtomicLong relogioNanos = new AtomicLong();
+
+    private ClienteService clienteService;
+
+    @BeforeEach
+    void setup() {
+        clienteService = new ClienteService(clienteRepository, 100, TTL_MS, TTL_NEGATIVO_MS, relogioNanos::get);
+    }
+
+    private void avancar(long millis) {
+        relogioNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static Cliente criarCliente(Long id) {
+        return new Cliente(id, "Cliente " + id, Regiao.SUDESTE, TipoCliente.OURO);
+    }
+
+    @Test
+    @DisplayName("Cliente em cache não deve ser lido do banco de novo")
+    void deveLerDoBancoApenasNaPrimeiraVez() {
+        when(clienteRepository.findById(1L)).thenReturn(Optional.of(criarCliente(1L)));
+
+        clienteService.buscarPorId(1L);
+        Cliente cliente = clienteService.buscarPorId(1L);
+
+        assertEquals(TipoCliente.OURO, cliente.getTipo());
+        verify(clienteRepository, times(1)).findById(1L);
+        assertEquals(0.5, clienteService.estatisticas().hitRate());
+    }
+
+    @Test
+    @DisplayName("Alterar o cliente devolvido não deve alterar o cliente em cache")
+    void deveDevolverCopia() {
+        when(clienteRepository.findById(1L)).thenReturn(Optional.of(criarCliente(1L)));
+
+        clienteService.buscarPorId(1L).setTipo(TipoCliente.BRONZE);
+
+        assertEquals(TipoCliente.OURO, clienteService.buscarPorId(1L).getTipo());
+    }
+
+    @Test
+    @DisplayName("Cliente inexistente deve ficar em cache negativo até expirar")
+    void deveGuardarClienteInexistente() {
+        when(clienteRepository.findById(99L)).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 5; i++) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> clienteService.buscarPorId(99L));
+            assertEquals("Cliente não encontrado", e.getMessage());
+        }
+        verify(clienteRepository, times(1)).findById(99L);
+
+        avancar(TTL_NEGATIVO_MS + 1);
+        assertThrows(IllegalArgumentException.class, () -> clienteService.buscarPorId(99L));
+        verify(clienteRepository, times(2)).findById(99L);
+    }
+
+    @Test
+    @DisplayName("Cliente existente deve expirar só depois do TTL, maior que o do cache negativo")
+    void deveExpirarClienteDepoisDoTtl() {
+        when(clienteRepository.findById(1L)).thenReturn(Optional.of(criarCliente(1L)));
+
+        clienteService.buscarPorId(1L);
+        avancar(TTL_NEGATIVO_MS + 1);
+        clienteService.buscarPorId(1L);
+        verify(clienteRepository, times(1)).findById(1L);
+
+        avancar(TTL_MS);
+        clienteService.buscarPorId(1L);
+        verify(clienteRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Salvar o cliente deve invalidar a entrada em cache, inclusive a negativa")
+    void salvarDeveInvalidarCliente() {
+        Cliente cliente = criarCliente(1L);
+        when(clienteRepository.findById(1L)).thenReturn(Optional.empty());
+        assertThrows(IllegalArgumentException.class, () -> clienteService.buscarPorId(1L));
+
+        when(clienteRepository.save(cliente)).thenReturn(cliente);
+        when(clienteRepository.findById(1L)).thenReturn(Optional.of(cliente));
+        clienteService.salvar(cliente);
+
+        assertEquals(1L, clienteService.buscarPorId(1L).getId());
+    }
+
+    @Test
+    @DisplayName("Busca em conjunto deve carregar só os faltantes e guardar também os inexistentes")
+    void buscaEmConjuntoDeveUsarOCache() {
+        when(clienteRepository.findById(1L)).thenReturn(Optional.of(criarCliente(1L)));
+        when(clienteRepository.findAllById(anyIterable())).thenReturn(List.of(criarCliente(2L)));
+
+        clienteService.buscarPorId(1L);
+        Map<Long, Cliente> clientes = clienteService.buscarPorIds(List.of(1L, 2L, 99L));
+        clienteService.buscarPorIds(List.of(1L, 2L, 99L));
+
+        assertEquals(2, clientes.size());
+        assertFalse(clientes.containsKey(99L));
+        verify(clienteRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Acertos, faltas e tempo de carga devem ser publicados no Micrometer")
+    void devePublicarMetricas() {
+        when(clienteRepository.findById(1L)).thenReturn(Optional.of(criarCliente(1L)));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        clienteService.bindTo(registry);
+
+        clienteService.buscarPorId(1L);
+        clienteService.buscarPorId(1L);
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "clientes").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "clientes").tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.load").tag("cache", "clientes").tag("result", "success")
+                .functionCounter().count());
+        assertNotNull(registry.get("cache.load.duration").tag("cache", "clientes").timeGauge());
+    }
+}
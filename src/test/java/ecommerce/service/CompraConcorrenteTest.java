@@ -0,0 +1,142 @@
+package ecommerce.service;
+
+import ecommerce.dto.CarrinhoClienteDTO;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CompraConcorrenteTest {
+
+    private static final int CHAMADAS = 8;
+
+    @Mock
+    private IEstoqueExternal estoqueMock;
+    @Mock
+    private IPagamentoExternal pagamentoMock;
+
+    private CompraService compraService;
+    private final CountDownLatch pagamentoIniciado = new CountDownLatch(1);
+    private final CompletableFuture<Void> liberarPagamento = new CompletableFuture<>();
+
+    @BeforeEach
+    void setup() {
+        FakeClienteRepository clienteRepositoryFake = new FakeClienteRepository();
+        FakeCarrinhoRepository carrinhoRepositoryFake = new FakeCarrinhoRepository();
+
+        for (long id = 1; id <= 2; id++) {
+            Cliente cliente = criarCliente(id, "Cliente " + id);
+            clienteRepositoryFake.adicionar(cliente);
+
+            CarrinhoDeCompras carrinho = criarCarrinho(criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L));
+            carrinho.setId(id * 10);
+            carrinho.setCliente(cliente);
+            carrinhoRepositoryFake.adicionar(carrinho);
+        }
+
+        compraService = new CompraService(new CarrinhoDeComprasService(carrinhoRepositoryFake),
+                new ClienteService(clienteRepositoryFake), estoqueMock, pagamentoMock);
+
+        when(estoqueMock.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        when(pagamentoMock.autorizarPagamento(anyLong(), anyDouble())).thenAnswer(invocation -> {
+            pagamentoIniciado.countDown();
+            liberarPagamento.join();
+            return new PagamentoDTO(true, 12345L);
+        });
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+    }
+
+    @Test
+    @DisplayName("Finalizações simultâneas do mesmo carrinho devem autorizar o pagamento uma única vez")
+    void finalizacoesSimultaneasDoMesmoCarrinhoDevemSerUnificadas() throws Exception {
+        List<Future<CompraDTO>> resultados = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CHAMADAS)) {
+            resultados.add(executor.submit(() -> compraService.finalizarCompra(10L, 1L)));
+            assertTrue(pagamentoIniciado.await(5, TimeUnit.SECONDS));
+
+            for (int i = 1; i < CHAMADAS; i++) {
+                resultados.add(executor.submit(() -> compraService.finalizarCompra(10L, 1L)));
+            }
+            CompletableFuture<CompraDTO> assincrona = compraService.finalizarCompraAsync(10L, 1L);
+            Thread.sleep(50);
+
+            liberarPagamento.complete(null);
+
+            for (Future<CompraDTO> resultado : resultados) {
+                assertEquals(12345L, resultado.get(5, TimeUnit.SECONDS).transacaoPagamentoId());
+            }
+            assertEquals(12345L, assincrona.get(5, TimeUnit.SECONDS).transacaoPagamentoId());
+        }
+
+        verify(pagamentoMock, times(1)).autorizarPagamento(anyLong(), anyDouble());
+        verify(estoqueMock, times(1)).darBaixa(anyList(), anyList());
+    }
+
+    @Test
+    @DisplayName("Carrinho do lote já em finalização deve receber o resultado dela, sem pagar de novo")
+    void loteDeveCompartilharFinalizacaoEmAndamento() throws Exception {
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<CompraDTO> individual = executor.submit(() -> compraService.finalizarCompra(10L, 1L));
+            assertTrue(pagamentoIniciado.await(5, TimeUnit.SECONDS));
+
+            List<CompletableFuture<CompraDTO>> lote = compraService.finalizarCompraEmLote(List.of(
+                    new CarrinhoClienteDTO(10L, 1L)));
+            Thread.sleep(50);
+            assertFalse(lote.get(0).isDone());
+
+            liberarPagamento.complete(null);
+
+            assertEquals(12345L, individual.get(5, TimeUnit.SECONDS).transacaoPagamentoId());
+            assertEquals(12345L, lote.get(0).get(5, TimeUnit.SECONDS).transacaoPagamentoId());
+        }
+
+        verify(pagamentoMock, times(1)).autorizarPagamento(anyLong(), anyDouble());
+        verify(estoqueMock, times(1)).darBaixa(anyList(), anyList());
+    }
+
+    @Test
+    @DisplayName("Carrinhos diferentes não devem esperar um pelo outro")
+    void carrinhosDiferentesNaoDevemSerUnificados() throws Exception {
+        liberarPagamento.complete(null);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<CompraDTO> primeiro = executor.submit(() -> compraService.finalizarCompra(10L, 1L));
+            Future<CompraDTO> segundo = executor.submit(() -> compraService.finalizarCompra(20L, 2L));
+
+            assertTrue(primeiro.get(5, TimeUnit.SECONDS).sucesso());
+            assertTrue(segundo.get(5, TimeUnit.SECONDS).sucesso());
+        }
+
+        verify(pagamentoMock).autorizarPagamento(eq(1L), anyDouble());
+        verify(pagamentoMock).autorizarPagamento(eq(2L), anyDouble());
+    }
+}
@@ -0,0 +1,148 @@
+package ecommerce.service;
+
+import ecommerce.dto.CarrinhoClienteDTO;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CompraEmLoteTest {
+
+    @Mock
+    private IEstoqueExternal estoqueMock;
+    @Mock
+    private IPagamentoExternal pagamentoMock;
+
+    private FakeClienteRepository clienteRepositoryFake;
+    private FakeCarrinhoRepository carrinhoRepositoryFake;
+
+    private CompraService compraService;
+
+    @BeforeEach
+    void setup() {
+        clienteRepositoryFake = new FakeClienteRepository();
+        carrinhoRepositoryFake = new FakeCarrinhoRepository();
+
+        compraService = new CompraService(new CarrinhoDeComprasService(carrinhoRepositoryFake),
+                new ClienteService(clienteRepositoryFake), estoqueMock, pagamentoMock);
+    }
+
+    private void adicionarCarrinho(Long carrinhoId, Long clienteId, Long produtoId, Long quantidade) {
+        Cliente cliente = criarCliente(clienteId, "Cliente " + clienteId);
+        clienteRepositoryFake.adicionar(cliente);
+
+        ItemCompra item = criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), quantidade);
+        item.getProduto().setId(produtoId);
+
+        CarrinhoDeCompras carrinho = criarCarrinho(item);
+        carrinho.setId(carrinhoId);
+        carrinho.setCliente(cliente);
+        carrinhoRepositoryFake.adicionar(carrinho);
+    }
+
+    private void pagamentoEBaixaOk() {
+        when(pagamentoMock.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 12345L));
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+    }
+
+    @Test
+    @DisplayName("Lote verifica o estoque de todos os carrinhos em uma única chamada, somando quantidades por produto")
+    void deveVerificarEstoqueDoLoteEmUmaChamada() {
+        adicionarCarrinho(10L, 1L, 7L, 2L);
+        adicionarCarrinho(20L, 2L, 7L, 3L);
+        adicionarCarrinho(30L, 3L, 8L, 1L);
+
+        when(estoqueMock.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        pagamentoEBaixaOk();
+
+        List<CompletableFuture<CompraDTO>> resultados = compraService.finalizarCompraEmLote(List.of(
+                new CarrinhoClienteDTO(10L, 1L),
+                new CarrinhoClienteDTO(20L, 2L),
+                new CarrinhoClienteDTO(30L, 3L)));
+
+        assertEquals(3, resultados.size());
+        resultados.forEach(resultado -> assertTrue(resultado.join().sucesso()));
+
+        verify(estoqueMock, times(1)).verificarDisponibilidade(eq(List.of(7L, 8L)), eq(List.of(5L, 1L)));
+        verify(estoqueMock, times(3)).darBaixa(anyList(), anyList());
+    }
+
+    @Test
+    @DisplayName("Falhas de um carrinho são reportadas só para ele, sem interromper o lote")
+    void deveReportarFalhaPorCarrinho() throws Exception {
+        adicionarCarrinho(10L, 1L, 7L, 1L);
+        adicionarCarrinho(20L, 2L, 8L, 1L);
+
+        when(estoqueMock.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        pagamentoEBaixaOk();
+
+        List<CompletableFuture<CompraDTO>> resultados = compraService.finalizarCompraEmLote(List.of(
+                new CarrinhoClienteDTO(10L, 1L),
+                new CarrinhoClienteDTO(99L, 1L),
+                new CarrinhoClienteDTO(20L, 99L),
+                new CarrinhoClienteDTO(20L, 1L),
+                new CarrinhoClienteDTO(10L, 1L),
+                new CarrinhoClienteDTO(20L, 2L)));
+
+        assertTrue(resultados.get(0).get().sucesso());
+        assertFalhaComMensagem(resultados.get(1), "Carrinho não encontrado.");
+        assertFalhaComMensagem(resultados.get(2), "Cliente não encontrado");
+        assertFalhaComMensagem(resultados.get(3), "Carrinho não encontrado.");
+        assertFalhaComMensagem(resultados.get(4), "Carrinho repetido no lote.");
+        assertTrue(resultados.get(5).get().sucesso());
+    }
+
+    @Test
+    @DisplayName("Só os carrinhos que tocam produtos indisponíveis são verificados de novo")
+    void deveReverificarApenasCarrinhosAfetados() throws Exception {
+        adicionarCarrinho(10L, 1L, 7L, 1L);
+        adicionarCarrinho(20L, 2L, 8L, 1L);
+
+        when(estoqueMock.verificarDisponibilidade(eq(List.of(7L, 8L)), anyList()))
+                .thenReturn(new DisponibilidadeDTO(false, List.of(8L)));
+        when(estoqueMock.verificarDisponibilidade(eq(List.of(8L)), anyList()))
+                .thenReturn(new DisponibilidadeDTO(false, List.of(8L)));
+        pagamentoEBaixaOk();
+
+        List<CompletableFuture<CompraDTO>> resultados = compraService.finalizarCompraEmLote(List.of(
+                new CarrinhoClienteDTO(10L, 1L),
+                new CarrinhoClienteDTO(20L, 2L)));
+
+        assertTrue(resultados.get(0).get().sucesso());
+        assertFalhaComMensagem(resultados.get(1), "Itens fora de estoque.");
+
+        verify(estoqueMock, never()).verificarDisponibilidade(eq(List.of(7L)), anyList());
+        verify(estoqueMock, times(1)).darBaixa(anyList(), anyList());
+    }
+
+    private static void assertFalhaComMensagem(CompletableFuture<CompraDTO> resultado, String mensagem) {
+        ExecutionException e = assertThrows(ExecutionException.class, resultado::get);
+        assertEquals(mensagem, e.getCause().getMessage());
+    }
+}
@@ -1,9 +1,13 @@
 package ecommerce.service;
 
+import ecommerce.dto.CotacaoDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.ItemCompra;
+import ecommerce.entity.TotaisDoCarrinho;
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
+import ecommerce.service.preco.MotorDePreco;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -12,17 +16,21 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.NullSource;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static ecommerce.util.MetodosAuxilar.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class CompraServiceTest {
@@ -39,9 +47,13 @@ public class CompraServiceTest {
     @Mock
     IPagamentoExternal pagamentoExternal;
 
-    @InjectMocks
     private CompraService compraService;
 
+    @BeforeEach
+    void setUp() {
+        compraService = new CompraService(carrinhoDeComprasService, clienteService, estoqueExternal, pagamentoExternal);
+    }
+
     // Testes de Desconto (Usamos nested para visualizar melhor os testes)
     @Nested
     @DisplayName("Regras de Desconto por Valor Total")
@@ -136,6 +148,109 @@ public class CompraServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Cotação do carrinho")
+    class CotacaoTests {
+
+        @Test
+        @DisplayName("Deve compor o custo total sem chamar estoque nem pagamento")
+        void deveCotarSemEstoqueNemPagamento() {
+            CarrinhoDeCompras carrinho = criarCarrinho(
+                    criarItem(new BigDecimal("600.00"), new BigDecimal("6.00"), 1L),
+                    criarItemFragil(new BigDecimal("10.00"), new BigDecimal("1.00"), 2L));
+            carrinho.setCliente(criarCliente(1L, "Lucas"));
+            when(carrinhoDeComprasService.buscarParaCotacao(1L)).thenReturn(carrinho);
+
+            Optional<CotacaoDTO> cotacao = compraService.cotar(1L, versao -> false);
+
+            // 620 - 10% + 8 kg a R$ 2,00 + 2 frágeis a R$ 5,00
+            assertEquals(Optional.of(new CotacaoDTO(new BigDecimal("620.00"), new BigDecimal("62.00"),
+                    new BigDecimal("16.00"), new BigDecimal("10.00"), new BigDecimal("584.00"))), cotacao);
+            assertEquals(compraService.calcularCustoTotal(carrinho), cotacao.get().total());
+            verifyNoInteractions(estoqueExternal, pagamentoExternal);
+        }
+
+        @Test
+        @DisplayName("Carrinho sem mudança deve manter a versão e não ser cotado de novo")
+        void carrinhoSemMudancaNaoDeveSerCotadoDeNovo() {
+            CarrinhoDeCompras carrinho = criarCarrinho(criarItem(new BigDecimal("10.00"), new BigDecimal("1.00"), 1L));
+            when(carrinhoDeComprasService.buscarParaCotacao(1L)).thenReturn(carrinho);
+            AtomicReference<String> versao = new AtomicReference<>();
+
+            assertTrue(compraService.cotar(1L, guardarEm(versao)).isPresent());
+
+            assertTrue(compraService.cotar(1L, versao.get()::equals).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Versão da cotação deve mudar com a quantidade ou o preço dos itens")
+        void versaoDeveMudarComQuantidadeOuPreco() {
+            ItemCompra item = criarItem(new BigDecimal("10.00"), new BigDecimal("1.00"), 1L);
+            CarrinhoDeCompras carrinho = criarCarrinho(item);
+            when(carrinhoDeComprasService.buscarParaCotacao(1L)).thenReturn(carrinho);
+            AtomicReference<String> versao = new AtomicReference<>();
+            compraService.cotar(1L, guardarEm(versao));
+            String original = versao.get();
+
+            item.setQuantidade(2L);
+            compraService.cotar(1L, guardarEm(versao));
+            String comOutraQuantidade = versao.get();
+
+            item.setQuantidade(1L);
+            item.getProduto().setPreco(new BigDecimal("11.00"));
+            compraService.cotar(1L, guardarEm(versao));
+
+            assertNotEquals(original, comOutraQuantidade);
+            assertNotEquals(original, versao.get());
+            assertNotEquals(comOutraQuantidade, versao.get());
+        }
+
+        @Test
+        @DisplayName("Mudança de preço em outra época depois dos totais mantidos deve mudar o total e a versão da cotação")
+        void mudancaDePrecoDeveMudarTotalEVersaoComTotais() {
+            MotorDePreco motor = new MotorDePreco();
+            compraService = new CompraService(carrinhoDeComprasService, clienteService, estoqueExternal,
+                    pagamentoExternal, null, null, motor, null, MetricasDeCompra.desabilitadas());
+            ItemCompra vaso = criarItemFragil(new BigDecimal("10.00"), new BigDecimal("1.00"), 2L);
+            CarrinhoDeCompras carrinho = criarCarrinho(
+                    criarItem(new BigDecimal("600.00"), new BigDecimal("6.00"), 1L), vaso);
+            TotaisDoCarrinho totais = motor.totais(carrinho.getItens(), ItemCompra::getProduto);
+            carrinho.setTotais(totais);
+            when(carrinhoDeComprasService.buscarParaCotacao(1L)).thenReturn(carrinho);
+            AtomicReference<String> versao = new AtomicReference<>();
+
+            Optional<CotacaoDTO> cotacao = compraService.cotar(1L, guardarEm(versao));
+            String original = versao.get();
+            // a escrita no catálogo avança a época dos preços
+            vaso.getProduto().setPreco(new BigDecimal("20.00"));
+            motor.avancarEpocaDosPrecos();
+            Optional<CotacaoDTO> comOutroPreco = compraService.cotar(1L, guardarEm(versao));
+
+            // como em deveCotarSemEstoqueNemPagamento: 620 - 10% + 8 kg a R$ 2,00 + 2 frágeis
+            assertEquals(new BigDecimal("584.00"), cotacao.orElseThrow().total());
+            // os totais gravados ainda somam 620, mas os dois vasos agora custam R$ 20,00: 640 - 10% + 16 + 10
+            assertEquals(totais, carrinho.getTotais());
+            assertEquals(new BigDecimal("602.00"), comOutroPreco.orElseThrow().total());
+            assertEquals(new BigDecimal("602.00"), compraService.calcularCustoTotal(carrinho));
+            assertNotEquals(original, versao.get());
+        }
+
+        @Test
+        @DisplayName("Carrinho vazio não deve ser cotado")
+        void carrinhoVazioNaoDeveSerCotado() {
+            when(carrinhoDeComprasService.buscarParaCotacao(1L)).thenReturn(criarCarrinho());
+
+            assertThrows(IllegalArgumentException.class, () -> compraService.cotar(1L, versao -> false));
+        }
+
+        private static Predicate<String> guardarEm(AtomicReference<String> versao) {
+            return v -> {
+                versao.set(v);
+                return false;
+            };
+        }
+    }
+
     // Testes de Robustez
     @Nested
     @DisplayName("Validações de Entrada")
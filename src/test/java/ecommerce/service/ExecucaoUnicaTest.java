@@ -0,0 +1,157 @@
+package ecommerce.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecucaoUnicaTest {
+
+    private final ExecucaoUnica<Long, String> execucaoUnica = new ExecucaoUnica<>();
+    private final AtomicInteger execucoes = new AtomicInteger();
+    private final CountDownLatch iniciada = new CountDownLatch(1);
+    private final CompletableFuture<Void> liberar = new CompletableFuture<>();
+
+    private Supplier<String> tarefaLenta(String resultado) {
+        return () -> {
+            execucoes.incrementAndGet();
+            iniciada.countDown();
+            liberar.join();
+            return resultado;
+        };
+    }
+
+    @Test
+    @DisplayName("Chamadas simultâneas com a mesma chave devem compartilhar uma única execução")
+    void chamadasSimultaneasDevemCompartilharExecucao() throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            Future<String> primeira = executor.submit(() -> execucaoUnica.executar(1L, tarefaLenta("ok")));
+            assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+
+            Future<String> segunda = executor.submit(() -> execucaoUnica.executar(1L, tarefaLenta("outra")));
+            CompletableFuture<String> terceira = execucaoUnica.executarAsync(1L,
+                    () -> CompletableFuture.completedFuture("outra"));
+            Thread.sleep(50);
+            assertFalse(segunda.isDone());
+            assertFalse(terceira.isDone());
+
+            liberar.complete(null);
+
+            assertEquals("ok", primeira.get(5, TimeUnit.SECONDS));
+            assertEquals("ok", segunda.get(5, TimeUnit.SECONDS));
+            assertEquals("ok", terceira.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, execucoes.get());
+    }
+
+    @Test
+    @DisplayName("Chaves diferentes não devem esperar umas pelas outras")
+    void chavesDiferentesNaoDevemEsperar() throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<String> lenta = executor.submit(() -> execucaoUnica.executar(1L, tarefaLenta("lenta")));
+            assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+
+            assertEquals("rapida", execucaoUnica.executar(2L, () -> "rapida"));
+            assertFalse(lenta.isDone());
+
+            liberar.complete(null);
+            assertEquals("lenta", lenta.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Quem espera deve receber a mesma exceção da execução original")
+    void esperaDeveReceberMesmaExcecao() throws Exception {
+        Supplier<String> tarefaQueFalha = () -> {
+            iniciada.countDown();
+            liberar.join();
+            throw new IllegalStateException("Pagamento não autorizado.");
+        };
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<String> primeira = executor.submit(() -> execucaoUnica.executar(1L, tarefaQueFalha));
+            assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+            Future<String> segunda = executor.submit(() -> execucaoUnica.executar(1L, tarefaQueFalha));
+            CompletableFuture<String> terceira = execucaoUnica.executarAsync(1L,
+                    () -> CompletableFuture.completedFuture("outra"));
+            Thread.sleep(50);
+
+            liberar.complete(null);
+
+            for (Future<String> futuro : new Future[] { primeira, segunda, terceira }) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> futuro.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+                assertEquals("Pagamento não autorizado.", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Depois de concluída, a mesma chave deve executar de novo")
+    void chaveConcluidaDeveExecutarDeNovo() {
+        execucaoUnica.executar(1L, () -> "primeira");
+        assertEquals("segunda", execucaoUnica.executar(1L, () -> "segunda"));
+
+        assertEquals("terceira", execucaoUnica.executarAsync(1L,
+                () -> CompletableFuture.completedFuture("terceira")).join());
+        assertEquals("quarta", execucaoUnica.executarAsync(1L,
+                () -> CompletableFuture.completedFuture("quarta")).join());
+    }
+
+    @Test
+    @DisplayName("Cancelar a cópia de um chamador não deve afetar os demais")
+    void cancelarCopiaNaoDeveAfetarDemais() {
+        CompletableFuture<String> resultado = new CompletableFuture<>();
+        CompletableFuture<String> primeira = execucaoUnica.executarAsync(1L, () -> resultado);
+        CompletableFuture<String> segunda = execucaoUnica.executarAsync(1L, () -> resultado);
+
+        primeira.cancel(true);
+        resultado.complete("ok");
+
+        assertEquals("ok", segunda.join());
+    }
+
+    @Test
+    @DisplayName("Erro que não é de runtime também deve liberar a chave e chegar a quem espera")
+    void erroDeveLiberarAChave() throws Exception {
+        Supplier<String> tarefaComErro = () -> {
+            iniciada.countDown();
+            liberar.join();
+            throw new StackOverflowError("estouro");
+        };
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<String> primeira = executor.submit(() -> execucaoUnica.executar(1L, tarefaComErro));
+            assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+            Future<String> segunda = executor.submit(() -> execucaoUnica.executar(1L, tarefaComErro));
+            Thread.sleep(50);
+
+            liberar.complete(null);
+
+            for (Future<String> futuro : List.of(primeira, segunda)) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> futuro.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(StackOverflowError.class, e.getCause());
+            }
+        }
+
+        assertEquals("de novo", execucaoUnica.executar(1L, () -> "de novo"));
+        CompletableFuture<String> assincrona = execucaoUnica.executarAsync(2L, () -> {
+            throw new StackOverflowError("estouro");
+        });
+        assertInstanceOf(StackOverflowError.class,
+                assertThrows(ExecutionException.class, assincrona::get).getCause());
+        assertEquals("de novo", execucaoUnica.executarAsync(2L,
+                () -> CompletableFuture.completedFuture("de novo")).join());
+    }
+}
@@ -0,0 +1,83 @@
+package ecommerce.service;
+
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LinhasDoCarrinhoTest {
+
+    private static ItemCompra item(Long produtoId, Long quantidade) {
+        Produto produto = new Produto();
+        produto.setId(produtoId);
+        return new ItemCompra(null, produto, quantidade);
+    }
+
+    @Test
+    @DisplayName("Itens do mesmo produto devem virar uma linha, na ordem em que o produto apareceu primeiro")
+    void itensRepetidosDevemVirarUmaLinha() {
+        LinhasDoCarrinho linhas = LinhasDoCarrinho.de(List.of(item(7L, 2L), item(3L, 1L), item(7L, 4L)));
+
+        assertEquals(2, linhas.tamanho());
+        assertEquals(List.of(7L, 3L), linhas.produtosIds());
+        assertEquals(List.of(6L, 1L), linhas.quantidades());
+        assertEquals(7L, linhas.produtoId(0));
+        assertEquals(6L, linhas.quantidade(0));
+    }
+
+    @Test
+    @DisplayName("Carrinhos grandes devem somar repetidos da mesma forma")
+    void carrinhoGrandeDeveSomarRepetidos() {
+        List<ItemCompra> itens = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            itens.add(item(i % 40, 1L));
+        }
+
+        LinhasDoCarrinho linhas = LinhasDoCarrinho.de(itens);
+
+        assertEquals(40, linhas.tamanho());
+        assertEquals(0L, linhas.produtoId(0));
+        assertEquals(3L, linhas.quantidade(0));
+        assertEquals(2L, linhas.quantidade(39));
+    }
+
+    @Test
+    @DisplayName("Soma de pedidos deve juntar as quantidades por produto")
+    void somaDePedidosDeveJuntarPorProduto() {
+        LinhasDoCarrinho primeiro = LinhasDoCarrinho.de(List.of(item(7L, 2L)));
+        LinhasDoCarrinho segundo = LinhasDoCarrinho.de(List.of(item(8L, 1L), item(7L, 3L)));
+
+        LinhasDoCarrinho soma = LinhasDoCarrinho.somar(List.of(primeiro, segundo));
+
+        assertEquals(List.of(7L, 8L), soma.produtosIds());
+        assertEquals(List.of(5L, 1L), soma.quantidades());
+        assertTrue(LinhasDoCarrinho.somar(List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Quantidade nula deve contar como zero e item sem produto deve ser recusado")
+    void quantidadeNulaEItemSemProduto() {
+        assertEquals(List.of(0L), LinhasDoCarrinho.de(List.of(item(1L, null))).quantidades());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> LinhasDoCarrinho.de(List.of(new ItemCompra(null, null, 1L))));
+        assertEquals("Item sem produto no carrinho.", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("As visões devem ser somente leitura e as linhas comparáveis por valor")
+    void visoesSomenteLeituraEIgualdadePorValor() {
+        LinhasDoCarrinho linhas = LinhasDoCarrinho.de(List.of(item(1L, 2L)));
+
+        assertThrows(UnsupportedOperationException.class, () -> linhas.produtosIds().set(0, 9L));
+        assertEquals(linhas, LinhasDoCarrinho.de(List.of(item(1L, 1L), item(1L, 1L))));
+        assertEquals(linhas.hashCode(), LinhasDoCarrinho.de(List.of(item(1L, 2L))).hashCode());
+        assertTrue(linhas.contemAlgum(List.of(5L, 1L)));
+        assertFalse(linhas.contemAlgum(List.of(5L)));
+    }
+}
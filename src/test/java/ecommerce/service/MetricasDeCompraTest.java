@@ -0,0 +1,146 @@
+package ecommerce.service;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.EstoqueAsyncAdapter;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.PagamentoAsyncAdapter;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import ecommerce.service.preco.MotorDePreco;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MetricasDeCompraTest {
+
+    @Mock
+    private IEstoqueExternal estoqueMock;
+    @Mock
+    private IPagamentoExternal pagamentoMock;
+
+    private SimpleMeterRegistry registry;
+    private CompraService compraService;
+
+    @BeforeEach
+    void setup() {
+        FakeClienteRepository clienteRepositoryFake = new FakeClienteRepository();
+        FakeCarrinhoRepository carrinhoRepositoryFake = new FakeCarrinhoRepository();
+
+        Cliente cliente = criarCliente(1L, "Lucas");
+        cliente.setTipo(TipoCliente.PRATA);
+        cliente.setRegiao(Regiao.SUL);
+        clienteRepositoryFake.adicionar(cliente);
+
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L));
+        carrinho.setId(10L);
+        carrinho.setCliente(cliente);
+        carrinhoRepositoryFake.adicionar(carrinho);
+
+        registry = new SimpleMeterRegistry();
+        compraService = new CompraService(new CarrinhoDeComprasService(carrinhoRepositoryFake),
+                new ClienteService(clienteRepositoryFake), estoqueMock, pagamentoMock,
+                new EstoqueAsyncAdapter(estoqueMock, Runnable::run), new PagamentoAsyncAdapter(pagamentoMock, Runnable::run),
+                new MotorDePreco(), null, new MetricasDeCompra(registry, true));
+
+        lenient().when(estoqueMock.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        lenient().when(pagamentoMock.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+    }
+
+    private long contagem(FaseDaCompra fase) {
+        Timer timer = registry.find("compra.fase").tag("fase", fase.name().toLowerCase())
+                .tag("tipo_cliente", "PRATA").tag("regiao", "SUL").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    @DisplayName("Cada fase da compra síncrona deve ser medida com tipo de cliente e região")
+    void deveMedirFasesDaCompraSincrona() {
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+
+        compraService.finalizarCompra(10L, 1L);
+
+        assertEquals(1, contagem(FaseDaCompra.CARREGAR_CARRINHO));
+        assertEquals(1, contagem(FaseDaCompra.VERIFICAR_DISPONIBILIDADE));
+        assertEquals(1, contagem(FaseDaCompra.CALCULAR_CUSTO));
+        assertEquals(1, contagem(FaseDaCompra.AUTORIZAR_PAGAMENTO));
+        assertEquals(1, contagem(FaseDaCompra.DAR_BAIXA));
+        assertEquals(0, contagem(FaseDaCompra.CANCELAR_PAGAMENTO));
+    }
+
+    @Test
+    @DisplayName("Cada fase da compra assíncrona deve ser medida, inclusive o cancelamento")
+    void deveMedirFasesDaCompraAssincrona() {
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+
+        CompletableFuture<?> resultado = compraService.finalizarCompraAsync(10L, 1L);
+
+        assertThrows(Exception.class, resultado::join);
+        for (FaseDaCompra fase : FaseDaCompra.values()) {
+            assertEquals(1, contagem(fase), fase.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Fase que falha também deve ser medida")
+    void deveMedirFaseQueFalha() {
+        when(pagamentoMock.autorizarPagamento(anyLong(), anyDouble())).thenThrow(new RuntimeException("timeout"));
+
+        assertThrows(RuntimeException.class, () -> compraService.finalizarCompra(10L, 1L));
+
+        assertEquals(1, contagem(FaseDaCompra.AUTORIZAR_PAGAMENTO));
+        assertEquals(0, contagem(FaseDaCompra.DAR_BAIXA));
+    }
+
+    @Test
+    @DisplayName("Falhas devem ser contadas por status")
+    void deveContarFalhasPorStatus() {
+        MetricasDeCompra metricas = new MetricasDeCompra(registry, true);
+
+        metricas.registrarFalha(409);
+        metricas.registrarFalha(409);
+        metricas.registrarFalha(400);
+
+        assertEquals(2.0, registry.get("compra.falhas").tag("status", "409").counter().count());
+        assertEquals(1.0, registry.get("compra.falhas").tag("status", "400").counter().count());
+        assertEquals(0.0, registry.get("compra.falhas").tag("status", "500").counter().count());
+    }
+
+    @Test
+    @DisplayName("Desabilitadas, as métricas não devem registrar nada nem envolver o futuro")
+    void desabilitadasNaoDevemRegistrar() {
+        SimpleMeterRegistry vazio = new SimpleMeterRegistry();
+        MetricasDeCompra metricas = new MetricasDeCompra(vazio, false);
+        CompletableFuture<String> futuro = new CompletableFuture<>();
+
+        assertEquals(0L, metricas.iniciar());
+        metricas.registrar(FaseDaCompra.DAR_BAIXA, null, 0L);
+        metricas.registrarFalha(500);
+
+        assertSame(futuro, metricas.registrarAoCompletar(FaseDaCompra.DAR_BAIXA, null, 0L, futuro));
+        assertTrue(vazio.getMeters().isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package ecommerce.service;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.external.EstoqueAsyncAdapter;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.PagamentoAsyncAdapter;
+import ecommerce.fake.repository.FakeCarrinhoRepository;
+import ecommerce.fake.repository.FakeClienteRepository;
+import ecommerce.service.preco.MotorDePreco;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.test.simple.SimpleSpan;
+import io.micrometer.tracing.test.simple.SimpleTracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ObservacaoDaCompraTest {
+
+    @Mock
+    private IEstoqueExternal estoqueMock;
+    @Mock
+    private IPagamentoExternal pagamentoMock;
+
+    private SimpleTracer tracer;
+    private ObservationRegistry registry;
+    private CompraService compraService;
+
+    @BeforeEach
+    void setup() {
+        tracer = new SimpleTracer();
+        registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new DefaultTracingObservationHandler(tracer));
+
+        FakeClienteRepository clienteRepositoryFake = new FakeClienteRepository();
+        FakeCarrinhoRepository carrinhoRepositoryFake = new FakeCarrinhoRepository();
+        Cliente cliente = criarCliente(1L, "Lucas");
+        clienteRepositoryFake.adicionar(cliente);
+        ItemCompra vaso = criarItem(new BigDecimal("50.00"), new BigDecimal("1.00"), 1L);
+        vaso.getProduto().setId(2L);
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 2L), vaso);
+        carrinho.setId(10L);
+        carrinho.setCliente(cliente);
+        carrinhoRepositoryFake.adicionar(carrinho);
+
+        compraService = new CompraService(new CarrinhoDeComprasService(carrinhoRepositoryFake),
+                new ClienteService(clienteRepositoryFake), estoqueMock, pagamentoMock,
+                new EstoqueAsyncAdapter(estoqueMock, Runnable::run), new PagamentoAsyncAdapter(pagamentoMock, Runnable::run),
+                new MotorDePreco(), null, null, MetricasDeCompra.desabilitadas(), registry);
+
+        when(estoqueMock.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        when(pagamentoMock.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 12345L));
+    }
+
+    private <T> T dentroDaCompra(Supplier<T> compra) {
+        return Observation.createNotStarted("compra.finalizar", registry).observe(compra);
+    }
+
+    private SimpleSpan span(String nome) {
+        return tracer.getSpans().stream()
+                .filter(span -> nome.equals(span.getName()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Span não encontrado: " + nome));
+    }
+
+    private List<String> eventos(SimpleSpan span) {
+        return span.getEvents().stream().map(Map.Entry::getValue).toList();
+    }
+
+    @Test
+    @DisplayName("Compra deve anotar itens, faixa do total e o resultado de cada etapa na observação corrente")
+    void compraDeveAnotarAObservacao() {
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+
+        dentroDaCompra(() -> compraService.finalizarCompra(10L, 1L));
+
+        SimpleSpan compra = span("compra.finalizar");
+        assertEquals("2-5", compra.getTags().get("carrinho.itens"));
+        assertEquals("100-500", compra.getTags().get("compra.total"));
+        assertEquals("250.00", compra.getTags().get("compra.total.valor"));
+        assertEquals("disponivel", compra.getTags().get("estoque.disponibilidade"));
+        assertEquals("autorizado", compra.getTags().get("pagamento"));
+        assertEquals("sucesso", compra.getTags().get("estoque.baixa"));
+        assertEquals(List.of("compra.estoque.disponibilidade.disponivel", "compra.pagamento.autorizado",
+                "compra.estoque.baixa.sucesso"), eventos(compra));
+        assertEquals(compra.getSpanId(), span("compra.calcular-custo").getParentId());
+    }
+
+    @Test
+    @DisplayName("Falha na baixa deve anotar a baixa e o cancelamento também na finalização assíncrona")
+    void falhaNaBaixaDeveAnotarOCancelamento() {
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+
+        assertThrows(Exception.class, () -> dentroDaCompra(() -> compraService.finalizarCompraAsync(10L, 1L).join()));
+
+        SimpleSpan compra = span("compra.finalizar");
+        assertEquals("falha", compra.getTags().get("estoque.baixa"));
+        assertEquals("sucesso", compra.getTags().get("pagamento.cancelamento"));
+        assertTrue(eventos(compra).contains("compra.pagamento.cancelamento.sucesso"));
+        assertEquals(compra.getSpanId(), span("compra.calcular-custo").getParentId());
+    }
+
+    @Test
+    @DisplayName("Sem observação corrente a compra não deve abrir a observação da finalização")
+    void semObservacaoCorrenteNaoDeveAnotar() {
+        when(estoqueMock.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+
+        assertTrue(compraService.finalizarCompra(10L, 1L).sucesso());
+
+        assertEquals(List.of("compra.calcular-custo"), tracer.getSpans().stream().map(SimpleSpan::getName).toList());
+    }
+}
@@ -0,0 +1,208 @@
+package ecommerce.service.catalogo;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.CompraService;
+import ecommerce.service.MetricasDeCompra;
+import ecommerce.service.preco.MotorDePreco;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CatalogoDeProdutosTest {
+
+    private static final long TTL_MS = 60_000;
+
+    @Mock
+    private ProdutoRepository produtoRepository;
+
+    private final AtomicLong relogioNanos = new AtomicLong();
+
+    private final MotorDePreco motorDePreco = new MotorDePreco();
+
+    private CatalogoDeProdutos catalogo;
+
+    @BeforeEach
+    void setup() {
+        catalogo = new CatalogoDeProdutos(produtoRepository, motorDePreco, 100, TTL_MS, relogioNanos::get, Runnable::run);
+
+        lenient().when(produtoRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Produto> produtos = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                if (id < 100) {
+                    produtos.add(criarProduto(id, new BigDecimal("10.00")));
+                }
+            }
+            return produtos;
+        });
+    }
+
+    private static Produto criarProduto(Long id, BigDecimal preco) {
+        return new Produto(id, "Produto " + id, "Produto de teste", preco, new BigDecimal("1.00"),
+                null, null, null, false, TipoProduto.LIVRO);
+    }
+
+    @Test
+    @DisplayName("Produtos já em cache não devem ser lidos do banco de novo")
+    void deveLerDoBancoApenasNaPrimeiraVez() {
+        catalogo.buscar(List.of(1L, 2L));
+        Map<Long, ProdutoSnapshot> produtos = catalogo.buscar(List.of(1L, 2L));
+
+        assertEquals(new BigDecimal("10.00"), produtos.get(1L).getPreco());
+        verify(produtoRepository, times(1)).findAllById(anyIterable());
+        assertEquals(2, catalogo.estatisticas().hitCount());
+        assertEquals(2, catalogo.estatisticas().missCount());
+    }
+
+    @Test
+    @DisplayName("Só os produtos fora do cache devem ser carregados, todos em uma consulta")
+    void deveCarregarApenasOsFaltantesEmUmaConsulta() {
+        catalogo.buscar(List.of(1L));
+        catalogo.buscar(List.of(1L, 2L, 3L));
+
+        verify(produtoRepository).findAllById(argThat(ids -> ((Collection<?>) ids).size() == 1));
+        verify(produtoRepository).findAllById(argThat(ids -> ((Collection<?>) ids).containsAll(List.of(2L, 3L))
+                && ((Collection<?>) ids).size() == 2));
+    }
+
+    @Test
+    @DisplayName("Produto inexistente não deve aparecer no resultado nem ficar em cache")
+    void produtoInexistenteNaoDeveFicarEmCache() {
+        assertFalse(catalogo.buscar(List.of(1L, 500L)).containsKey(500L));
+        assertFalse(catalogo.buscar(List.of(500L)).containsKey(500L));
+
+        verify(produtoRepository, times(2)).findAllById(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Produto deve ser recarregado depois de expirado")
+    void deveRecarregarDepoisDoTtl() {
+        catalogo.buscar(List.of(1L));
+        relogioNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS + 1));
+        catalogo.buscar(List.of(1L));
+
+        verify(produtoRepository, times(2)).findAllById(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Cache deve respeitar o tamanho máximo e contar as remoções")
+    void deveRespeitarTamanhoMaximo() {
+        catalogo = new CatalogoDeProdutos(produtoRepository, motorDePreco, 2, TTL_MS, relogioNanos::get, Runnable::run);
+
+        for (long id = 1; id <= 10; id++) {
+            catalogo.buscar(List.of(id));
+        }
+
+        assertTrue(catalogo.estatisticas().evictionCount() > 0);
+    }
+
+    @Test
+    @DisplayName("Salvar um produto deve invalidar a cópia em cache")
+    void salvarDeveInvalidarOProduto() {
+        Produto produto = criarProduto(1L, new BigDecimal("99.90"));
+        when(produtoRepository.save(produto)).thenReturn(produto);
+        catalogo.buscar(List.of(1L));
+
+        catalogo.salvar(produto);
+        when(produtoRepository.findById(1L)).thenReturn(Optional.of(produto));
+
+        assertEquals(new BigDecimal("99.90"), catalogo.buscarPorId(1L).orElseThrow().getPreco());
+    }
+
+    @Test
+    @DisplayName("Salvar dentro de uma transação deve invalidar de novo depois do commit")
+    void salvarEmTransacaoDeveInvalidarDepoisDoCommit() {
+        Produto novo = criarProduto(1L, new BigDecimal("99.90"));
+        when(produtoRepository.save(novo)).thenReturn(novo);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            catalogo.salvar(novo);
+            // leitura concorrente antes do commit ainda vê a linha antiga
+            when(produtoRepository.findById(1L)).thenReturn(Optional.of(criarProduto(1L, new BigDecimal("10.00"))));
+            assertEquals(new BigDecimal("10.00"), catalogo.buscarPorId(1L).orElseThrow().getPreco());
+
+            when(produtoRepository.findById(1L)).thenReturn(Optional.of(novo));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(new BigDecimal("99.90"), catalogo.buscarPorId(1L).orElseThrow().getPreco());
+    }
+
+    @Test
+    @DisplayName("Salvar e invalidar devem avançar a época dos preços, de novo depois do commit")
+    void salvarEInvalidarDevemAvancarAEpocaDosPrecos() {
+        Produto produto = criarProduto(1L, new BigDecimal("99.90"));
+        when(produtoRepository.save(produto)).thenReturn(produto);
+        long inicial = motorDePreco.getEpocaDosPrecos();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            catalogo.salvar(produto);
+            long antesDoCommit = motorDePreco.getEpocaDosPrecos();
+            assertNotEquals(inicial, antesDoCommit);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertNotEquals(antesDoCommit, motorDePreco.getEpocaDosPrecos());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        long depoisDoCommit = motorDePreco.getEpocaDosPrecos();
+        catalogo.invalidarTodos();
+        assertNotEquals(depoisDoCommit, motorDePreco.getEpocaDosPrecos());
+    }
+
+    @Test
+    @DisplayName("Acertos e faltas devem ser publicados no Micrometer")
+    void devePublicarMetricas() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        catalogo.bindTo(registry);
+
+        catalogo.buscar(List.of(1L));
+        catalogo.buscar(List.of(1L));
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "produtos").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "produtos").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Custo total da compra deve usar os dados do catálogo, não os do produto no carrinho")
+    void custoTotalDeveUsarOCatalogo() {
+        ItemCompra item = criarItem(new BigDecimal("999.00"), new BigDecimal("1.00"), 3L);
+        CarrinhoDeCompras carrinho = criarCarrinho(item);
+
+        CompraService compraService = new CompraService(null, null, null, null, null, null, motorDePreco,
+                catalogo, MetricasDeCompra.desabilitadas());
+
+        assertEquals(new BigDecimal("30.00"), compraService.calcularCustoTotal(carrinho));
+    }
+}
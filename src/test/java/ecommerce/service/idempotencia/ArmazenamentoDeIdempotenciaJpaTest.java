@@ -0,0 +1,62 @@
+package ecommerce.service.idempotencia;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.repository.CompraIdempotenteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class ArmazenamentoDeIdempotenciaJpaTest {
+
+    private static final long TTL_MS = 60_000;
+    private static final Instant AGORA = Instant.parse("2024-01-01T10:00:00Z");
+
+    private static final RegistroDeIdempotencia REGISTRO = new RegistroDeIdempotencia(10L, 1L,
+            new CompraDTO(true, 12345L, "Compra finalizada com sucesso."));
+
+    @Autowired
+    private CompraIdempotenteRepository repository;
+
+    private ArmazenamentoDeIdempotenciaJpa armazenamento;
+
+    @BeforeEach
+    void setup() {
+        armazenamento = armazenamentoEm(AGORA);
+    }
+
+    private ArmazenamentoDeIdempotenciaJpa armazenamentoEm(Instant instante) {
+        return new ArmazenamentoDeIdempotenciaJpa(repository, TTL_MS, Clock.fixed(instante, ZoneOffset.UTC));
+    }
+
+    @Test
+    @DisplayName("Registro salvo deve ser encontrado pela chave")
+    void deveEncontrarRegistroSalvo() {
+        armazenamento.salvar("chave-1", REGISTRO);
+
+        assertEquals(REGISTRO, armazenamento.buscar("chave-1").orElseThrow());
+        assertTrue(armazenamento.buscar("chave-2").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Registro expirado deve ser ignorado e removido na limpeza")
+    void registroExpiradoDeveSerIgnoradoERemovido() {
+        armazenamento.salvar("chave-1", REGISTRO);
+
+        ArmazenamentoDeIdempotenciaJpa depoisDoTtl = armazenamentoEm(AGORA.plus(Duration.ofMillis(TTL_MS + 1)));
+
+        assertTrue(depoisDoTtl.buscar("chave-1").isEmpty());
+
+        depoisDoTtl.removerExpirados();
+        assertEquals(0, repository.count());
+    }
+}
@@ -0,0 +1,211 @@
+package ecommerce.service.idempotencia;
+
+import ecommerce.dto.CompraDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotenciaServiceTest {
+
+    private static final CompraDTO COMPRA = new CompraDTO(true, 12345L, "Compra finalizada com sucesso.");
+    private static final long TTL_MS = 60_000;
+
+    private final AtomicLong relogioNanos = new AtomicLong();
+
+    private IdempotenciaService idempotenciaService;
+    private AtomicInteger compras;
+
+    @BeforeEach
+    void setup() {
+        idempotenciaService = new IdempotenciaService(new ArmazenamentoDeIdempotenciaEmMemoria(100, TTL_MS), 5_000, 100,
+                TTL_MS);
+        compras = new AtomicInteger();
+    }
+
+    private Supplier<CompraDTO> compraQueRetorna(CompraDTO compra) {
+        return () -> {
+            compras.incrementAndGet();
+            return compra;
+        };
+    }
+
+    @Test
+    @DisplayName("Repetição com a mesma chave deve devolver o resultado guardado sem processar de novo")
+    void repeticaoDeveDevolverResultadoGuardado() {
+        CompraDTO primeira = idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA));
+        CompraDTO repeticao = idempotenciaService.executar("chave-1", 10L, 1L,
+                compraQueRetorna(new CompraDTO(true, 99999L, "Outra.")));
+
+        assertEquals(COMPRA, primeira);
+        assertEquals(COMPRA, repeticao);
+        assertEquals(1, compras.get());
+    }
+
+    @Test
+    @DisplayName("Chaves diferentes devem ser processadas separadamente")
+    void chavesDiferentesDevemSerProcessadas() {
+        idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA));
+        idempotenciaService.executar("chave-2", 10L, 1L, compraQueRetorna(COMPRA));
+
+        assertEquals(2, compras.get());
+    }
+
+    @Test
+    @DisplayName("Repetição enquanto a original está em andamento deve esperar por ela")
+    void repeticaoEmAndamentoDeveEsperarAOriginal() throws Exception {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CompletableFuture<Void> liberar = new CompletableFuture<>();
+        Supplier<CompraDTO> compraLenta = () -> {
+            compras.incrementAndGet();
+            iniciada.countDown();
+            liberar.join();
+            return COMPRA;
+        };
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<CompraDTO> original = executor.submit(
+                    () -> idempotenciaService.executar("chave-1", 10L, 1L, compraLenta));
+            assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+
+            Future<CompraDTO> repeticao = executor.submit(
+                    () -> idempotenciaService.executar("chave-1", 10L, 1L, compraLenta));
+            Thread.sleep(50);
+            assertFalse(repeticao.isDone());
+
+            liberar.complete(null);
+
+            assertEquals(COMPRA, original.get(5, TimeUnit.SECONDS));
+            assertEquals(COMPRA, repeticao.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, compras.get());
+    }
+
+    @Test
+    @DisplayName("Repetição em andamento deve receber a mesma falha da original")
+    void repeticaoEmAndamentoDeveReceberFalhaDaOriginal() throws Exception {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CompletableFuture<Void> liberar = new CompletableFuture<>();
+        Supplier<CompraDTO> compraQueFalha = () -> {
+            iniciada.countDown();
+            liberar.join();
+            throw new IllegalStateException("Pagamento não autorizado.");
+        };
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<CompraDTO> original = executor.submit(
+                    () -> idempotenciaService.executar("chave-1", 10L, 1L, compraQueFalha));
+            assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+            Future<CompraDTO> repeticao = executor.submit(
+                    () -> idempotenciaService.executar("chave-1", 10L, 1L, compraQueFalha));
+            Thread.sleep(50);
+
+            liberar.complete(null);
+
+            Exception e = assertThrows(Exception.class, () -> repeticao.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals("Pagamento não autorizado.", e.getCause().getMessage());
+            assertThrows(Exception.class, () -> original.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Compra que falhou não deve ser guardada e pode ser tentada de novo com a mesma chave")
+    void falhaNaoDeveSerGuardada() {
+        assertThrows(IllegalStateException.class, () -> idempotenciaService.executar("chave-1", 10L, 1L, () -> {
+            throw new IllegalStateException("Itens fora de estoque.");
+        }));
+
+        CompraDTO resultado = idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA));
+
+        assertEquals(COMPRA, resultado);
+        assertEquals(1, compras.get());
+    }
+
+    @Test
+    @DisplayName("Chave já usada em outra compra deve ser rejeitada")
+    void chaveDeOutraCompraDeveSerRejeitada() {
+        idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> idempotenciaService.executar("chave-1", 20L, 1L, compraQueRetorna(COMPRA)));
+
+        assertEquals("Chave de idempotência já usada em outra compra.", e.getMessage());
+        assertEquals(1, compras.get());
+    }
+
+    @Test
+    @DisplayName("Compra concluída deve ser devolvida mesmo se o armazenamento falhar, e a repetição não deve cobrar de novo")
+    void falhaAoGuardarNaoDeveRepetirACompra() {
+        ArmazenamentoDeIdempotencia emMemoria = new ArmazenamentoDeIdempotenciaEmMemoria(100, 60_000);
+        AtomicInteger falhasRestantes = new AtomicInteger(2);
+        ArmazenamentoDeIdempotencia instavel = new ArmazenamentoDeIdempotencia() {
+            @Override
+            public Optional<RegistroDeIdempotencia> buscar(String chave) {
+                return emMemoria.buscar(chave);
+            }
+
+            @Override
+            public void salvar(String chave, RegistroDeIdempotencia registro) {
+                if (falhasRestantes.getAndDecrement() > 0) {
+                    throw new IllegalStateException("Banco indisponível.");
+                }
+                emMemoria.salvar(chave, registro);
+            }
+        };
+        idempotenciaService = new IdempotenciaService(instavel, 5_000, 100, TTL_MS, relogioNanos::get);
+
+        assertEquals(COMPRA, idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA)));
+        idempotenciaService.regravarPendentes();
+        assertEquals(COMPRA, idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA)));
+        assertTrue(emMemoria.buscar("chave-1").isEmpty());
+
+        idempotenciaService.regravarPendentes();
+
+        assertEquals(COMPRA, emMemoria.buscar("chave-1").orElseThrow().compra());
+        assertEquals(1, compras.get());
+    }
+
+    @Test
+    @DisplayName("Registro não gravado deve expirar com a validade do armazenamento, sem ser devolvido nem regravado")
+    void registroNaoGravadoDeveExpirar() {
+        AtomicInteger gravacoes = new AtomicInteger();
+        AtomicInteger falhasRestantes = new AtomicInteger(1);
+        ArmazenamentoDeIdempotencia instavel = new ArmazenamentoDeIdempotencia() {
+            @Override
+            public Optional<RegistroDeIdempotencia> buscar(String chave) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void salvar(String chave, RegistroDeIdempotencia registro) {
+                if (falhasRestantes.getAndDecrement() > 0) {
+                    throw new IllegalStateException("Banco indisponível.");
+                }
+                gravacoes.incrementAndGet();
+            }
+        };
+        idempotenciaService = new IdempotenciaService(instavel, 5_000, 100, TTL_MS, relogioNanos::get);
+        idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA));
+
+        relogioNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS + 1));
+        idempotenciaService.regravarPendentes();
+        idempotenciaService.executar("chave-1", 10L, 1L, compraQueRetorna(COMPRA));
+
+        // só a segunda compra, já fora da validade da primeira, foi gravada
+        assertEquals(1, gravacoes.get());
+        assertEquals(2, compras.get());
+    }
+}
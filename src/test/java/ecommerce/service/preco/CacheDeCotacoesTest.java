@@ -0,0 +1,146 @@
+package ecommerce.service.preco;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CompraService;
+import ecommerce.service.MetricasDeCompra;
+import ecommerce.service.catalogo.CatalogoDeProdutos;
+import ecommerce.service.catalogo.ProdutoSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+public class CacheDeCotacoesTest {
+
+    private MotorDePreco motor;
+    private CacheDeCotacoes cache;
+    private Map<Long, ProdutoSnapshot> catalogo;
+    private ItemCompra item;
+
+    @BeforeEach
+    void setUp() {
+        motor = new MotorDePreco();
+        cache = new CacheDeCotacoes(motor, 100);
+        catalogo = new HashMap<>();
+        catalogo.put(1L, copiaDoProduto(new BigDecimal("100.00")));
+        item = criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 2L);
+    }
+
+    private CotacaoDTO cotar(TipoCliente nivel) {
+        return cache.cotar(10L, List.of(item), i -> catalogo.get(i.getProduto().getId()), nivel, Regiao.SUL);
+    }
+
+    private static ProdutoSnapshot copiaDoProduto(BigDecimal preco) {
+        return ProdutoSnapshot.de(new Produto(1L, "Produto 1", "Produto de teste", preco, new BigDecimal("1.00"),
+                null, null, null, false, TipoProduto.LIVRO));
+    }
+
+    @Test
+    @DisplayName("Carrinho sem mudança deve reaproveitar a cotação memorizada")
+    void carrinhoSemMudancaDeveReaproveitarACotacao() {
+        CotacaoDTO primeira = cotar(null);
+
+        assertSame(primeira, cotar(null));
+        assertEquals(new BigDecimal("200.00"), primeira.total());
+        assertEquals(1, cache.estatisticas().hitCount());
+    }
+
+    @Test
+    @DisplayName("Mudança na quantidade de um item deve recalcular a cotação")
+    void mudancaNaQuantidadeDeveRecalcular() {
+        cotar(null);
+
+        item.setQuantidade(3L);
+
+        assertEquals(new BigDecimal("300.00"), cotar(null).total());
+    }
+
+    @Test
+    @DisplayName("Nova cópia do produto no catálogo deve recalcular a cotação, mesmo com o mesmo preço")
+    void novaCopiaDoProdutoDeveRecalcular() {
+        CotacaoDTO primeira = cotar(null);
+
+        catalogo.put(1L, copiaDoProduto(new BigDecimal("100.00")));
+        CotacaoDTO mesmoPreco = cotar(null);
+        catalogo.put(1L, copiaDoProduto(new BigDecimal("150.00")));
+
+        assertNotSame(primeira, mesmoPreco);
+        assertEquals(primeira, mesmoPreco);
+        assertEquals(new BigDecimal("300.00"), cotar(null).total());
+    }
+
+    @Test
+    @DisplayName("Nova tabela de preço ou outro nível de cliente devem recalcular a cotação")
+    void novaTabelaOuOutroNivelDevemRecalcular() {
+        cotar(null);
+
+        motor.atualizarTabela(TabelaDePreco.de("100.00:50", TabelaDePreco.FRETES_PADRAO));
+        assertEquals(new BigDecimal("100.00"), cotar(null).total());
+
+        motor.atualizarTabela(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO, TabelaDePreco.FRETES_PADRAO, Map.of(),
+                6000, Map.of(), Map.of(TipoCliente.OURO, "10")));
+        assertEquals(new BigDecimal("200.00"), cotar(null).total());
+        assertEquals(new BigDecimal("180.00"), cotar(TipoCliente.OURO).total());
+    }
+
+    @Test
+    @DisplayName("Itens inválidos devem ser recusados e não memorizados")
+    void itensInvalidosNaoDevemSerMemorizados() {
+        item.setQuantidade(null);
+        assertThrows(IllegalArgumentException.class, () -> cotar(null));
+
+        item.setQuantidade(1L);
+        catalogo.clear();
+        assertThrows(IllegalArgumentException.class, () -> cotar(null));
+
+        assertEquals(0, cache.estatisticas().requestCount());
+    }
+
+    @Test
+    @DisplayName("Carrinho invalidado deve ser recalculado")
+    void carrinhoInvalidadoDeveSerRecalculado() {
+        CotacaoDTO primeira = cotar(null);
+
+        cache.invalidar(10L);
+
+        assertNotSame(primeira, cotar(null));
+    }
+
+    @Test
+    @DisplayName("Finalização deve reaproveitar o preço da cotação de um carrinho que não mudou")
+    void finalizacaoDeveReaproveitarOPrecoDaCotacao() {
+        ProdutoRepository produtoRepository = mock(ProdutoRepository.class);
+        when(produtoRepository.findAllById(anyIterable())).thenReturn(List.of(new Produto(1L, "Produto 1",
+                "Produto de teste", new BigDecimal("100.00"), new BigDecimal("1.00"), null, null, null, false,
+                TipoProduto.LIVRO)));
+        CarrinhoDeComprasService carrinhoService = mock(CarrinhoDeComprasService.class);
+        CarrinhoDeCompras carrinho = criarCarrinho(item);
+        carrinho.setId(10L);
+        carrinho.setCliente(criarCliente(1L, "Lucas"));
+        when(carrinhoService.buscarParaCotacao(10L)).thenReturn(carrinho);
+        CompraService compraService = new CompraService(carrinhoService, null, null, null, null, null, motor,
+                new CatalogoDeProdutos(produtoRepository, motor, 100, 60_000), cache, MetricasDeCompra.desabilitadas());
+
+        CotacaoDTO cotacao = compraService.cotar(10L, versao -> false).orElseThrow();
+
+        assertEquals(cotacao.total(), compraService.calcularCustoTotal(carrinho, TipoCliente.OURO, Regiao.SUDESTE));
+        assertEquals(1, cache.estatisticas().hitCount());
+    }
+}
@@ -0,0 +1,82 @@
+package ecommerce.service.preco;
+
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+// Cópia congelada do cálculo original de CompraService.calcularCustoTotal, todo em
+// BigDecimal com setScale(2, HALF_UP) no fim: faixas de desconto de 10% e 20%,
+// frete pelo peso físico com as faixas 5/10/50 kg e R$ 5,00 por unidade frágil.
+// É a referência das propriedades do MotorDePreco com a tabela padrão e não deve
+// acompanhar as mudanças do motor.
+final class CalculoOriginal {
+
+    private CalculoOriginal() {
+    }
+
+    // Espera itens já validados
+    static BigDecimal calcularCustoTotal(List<ItemCompra> itensCarrinho) {
+        BigDecimal subtotalGeral = calcularSubtotal(itensCarrinho);
+        BigDecimal descontoPorValorTotal = calcularDescontoPorValor(subtotalGeral);
+        BigDecimal subtotalFinal = subtotalGeral.subtract(descontoPorValorTotal);
+        BigDecimal pesoTotal = calcularPesoTotal(itensCarrinho);
+        BigDecimal valorFrete = calcularFrete(pesoTotal);
+        BigDecimal taxaFragilidade = calcularTaxaDeProdutosFrageis(itensCarrinho);
+        valorFrete = valorFrete.add(taxaFragilidade);
+
+        return subtotalFinal.add(valorFrete).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal calcularSubtotal(List<ItemCompra> itensCarrinho) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (ItemCompra item : itensCarrinho) {
+            Produto produto = item.getProduto();
+            subtotal = subtotal.add(produto.getPreco().multiply(BigDecimal.valueOf(item.getQuantidade())));
+        }
+        return subtotal;
+    }
+
+    private static BigDecimal calcularDescontoPorValor(BigDecimal subtotal) {
+        if (subtotal.compareTo(new BigDecimal("1000.00")) >= 0) {
+            return subtotal.multiply(new BigDecimal("0.20"));
+        } else if (subtotal.compareTo(new BigDecimal("500.00")) >= 0) {
+            return subtotal.multiply(new BigDecimal("0.10"));
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private static BigDecimal calcularPesoTotal(List<ItemCompra> itensCarrinho) {
+        BigDecimal pesoTotal = BigDecimal.ZERO;
+        for (ItemCompra item : itensCarrinho) {
+            Produto produto = item.getProduto();
+            pesoTotal = pesoTotal.add(produto.getPesoFisico().multiply(BigDecimal.valueOf(item.getQuantidade())));
+        }
+        return pesoTotal;
+    }
+
+    private static BigDecimal calcularFrete(BigDecimal pesoTotal) {
+        if (pesoTotal.compareTo(new BigDecimal("5.00")) <= 0)
+            return BigDecimal.ZERO;
+
+        if (pesoTotal.compareTo(new BigDecimal("10.00")) <= 0)
+            return pesoTotal.multiply(new BigDecimal("2.00"));
+
+        if (pesoTotal.compareTo(new BigDecimal("50.00")) <= 0)
+            return pesoTotal.multiply(new BigDecimal("4.00"));
+
+        return pesoTotal.multiply(new BigDecimal("7.00"));
+    }
+
+    private static BigDecimal calcularTaxaDeProdutosFrageis(List<ItemCompra> itensCarrinho) {
+        BigDecimal taxaTotal = BigDecimal.ZERO;
+        for (ItemCompra item : itensCarrinho) {
+            if (Boolean.TRUE.equals(item.getProduto().isFragil())) {
+                taxaTotal = taxaTotal.add(new BigDecimal("5.00").multiply(BigDecimal.valueOf(item.getQuantidade())));
+            }
+        }
+        return taxaTotal;
+    }
+}
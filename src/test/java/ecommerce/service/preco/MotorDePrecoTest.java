@@ -0,0 +1,356 @@
+package ecommerce.service.preco;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisDoCarrinho;
+import org.instancio.Random;
+import org.instancio.junit.Given;
+import org.instancio.junit.GivenProvider;
+import org.instancio.junit.InstancioExtension;
+import org.instancio.junit.InstancioSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static ecommerce.util.MetodosAuxilar.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(InstancioExtension.class)
+public class MotorDePrecoTest {
+
+    private final MotorDePreco motor = new MotorDePreco();
+
+    // Propriedade: para qualquer carrinho válido, com a tabela padrão, o motor (em
+    // ponto fixo ou no retorno ao BigDecimal) é idêntico (valor e escala) ao cálculo
+    // original, congelado em CalculoOriginal
+    @ParameterizedTest
+    @InstancioSource(samples = 1000)
+    @DisplayName("Cálculo do motor deve ser idêntico ao cálculo original com BigDecimal")
+    void deveSerIdenticoAoCalculoComBigDecimal(@Given(CarrinhoAleatorio.class) List<ItemCompra> itens) {
+        BigDecimal esperado = CalculoOriginal.calcularCustoTotal(itens);
+
+        assertEquals(esperado, motor.calcularCustoTotal(itens), () -> descrever(itens));
+        assertEquals(esperado, motor.calcularComBigDecimal(itens), () -> descrever(itens));
+    }
+
+    @Test
+    @DisplayName("Deve cair para BigDecimal quando o preço tem mais de duas casas decimais")
+    void deveUsarBigDecimalComPrecoDeTresCasas() {
+        List<ItemCompra> itens = List.of(criarItem(new BigDecimal("166.665"), new BigDecimal("1.00"), 3L));
+
+        assertEquals(new BigDecimal("500.00"), motor.calcularCustoTotal(itens));
+    }
+
+    @Test
+    @DisplayName("Deve cair para BigDecimal quando o subtotal estoura o long")
+    void deveUsarBigDecimalQuandoEstouraLong() {
+        List<ItemCompra> itens = List.of(criarItem(new BigDecimal("9999999999999999.99"), new BigDecimal("1.00"), 1000L));
+
+        assertEquals(CalculoOriginal.calcularCustoTotal(itens), motor.calcularCustoTotal(itens));
+    }
+
+    // Mesma propriedade com faixas fora do padrão: percentuais e fretes com casas
+    // decimais e limites que não são múltiplos de R$ 1 ou de 1 kg
+    @ParameterizedTest
+    @InstancioSource(samples = 500)
+    @DisplayName("Cálculo em ponto fixo deve ser idêntico ao com BigDecimal também com faixas configuradas")
+    void deveSerIdenticoComFaixasConfiguradas(@Given(CarrinhoAleatorio.class) List<ItemCompra> itens) {
+        MotorDePreco configurado = new MotorDePreco(TabelaDePreco.de("0.50:0.25,250.10:7.5,800:12.75,2000:33.33",
+                "0.5:1.99,7.25:0,12.001:3.10,*:6.45"));
+
+        assertEquals(configurado.calcularComBigDecimal(itens), configurado.calcularCustoTotal(itens),
+                () -> descrever(itens));
+    }
+
+    @Test
+    @DisplayName("Nova tabela deve valer para os cálculos seguintes")
+    void novaTabelaDeveValerParaOsCalculosSeguintes() {
+        MotorDePreco motorAtualizavel = new MotorDePreco();
+        List<ItemCompra> itens = List.of(criarItem(new BigDecimal("600.00"), new BigDecimal("6.00"), 1L));
+        assertEquals(new BigDecimal("552.00"), motorAtualizavel.calcularCustoTotal(itens));
+
+        motorAtualizavel.atualizarTabela(TabelaDePreco.de("600.00:50", "10:1.00,*:7.00"));
+
+        assertEquals(new BigDecimal("306.00"), motorAtualizavel.calcularCustoTotal(itens));
+        assertThrows(IllegalArgumentException.class, () -> motorAtualizavel.atualizarTabela(null));
+    }
+
+    // Mesma propriedade com dimensões (peso cúbico) e faixas de frete por região
+    @ParameterizedTest
+    @InstancioSource(samples = 500)
+    @DisplayName("Cálculo em ponto fixo deve ser idêntico ao com BigDecimal com peso cúbico e frete por região")
+    void deveSerIdenticoComPesoCubicoERegiao(@Given(CarrinhoComDimensoes.class) List<ItemCompra> itens) {
+        MotorDePreco porRegiao = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(Regiao.NORTE, "2.5:3.15,20:5.80,*:9.99"), 5000));
+
+        for (Regiao regiao : new Regiao[] {null, Regiao.NORTE, Regiao.SUL}) {
+            assertEquals(porRegiao.calcularComBigDecimal(itens, regiao), porRegiao.calcularCustoTotal(itens, regiao),
+                    () -> regiao + " " + descrever(itens));
+        }
+    }
+
+    @Test
+    @DisplayName("Produto leve e volumoso deve pagar frete pelo peso cúbico")
+    void produtoVolumosoDevePagarPeloPesoCubico() {
+        // 60 x 50 x 40 cm = 120.000 cm³ / 6000 = 20 kg cobrados, contra 1 kg físico
+        ItemCompra item = criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L);
+        dimensionar(item, "60", "50", "40");
+
+        assertEquals(new BigDecimal("180.00"), motor.calcularCustoTotal(List.of(item)));
+    }
+
+    @Test
+    @DisplayName("Produto pesado e pequeno deve continuar pagando pelo peso físico")
+    void produtoPesadoDevePagarPeloPesoFisico() {
+        ItemCompra item = criarItem(new BigDecimal("100.00"), new BigDecimal("8.00"), 1L);
+        dimensionar(item, "10", "10", "10");
+
+        assertEquals(new BigDecimal("116.00"), motor.calcularCustoTotal(List.of(item)));
+    }
+
+    @Test
+    @DisplayName("Frete deve usar as faixas da região do cliente")
+    void freteDeveUsarAsFaixasDaRegiao() {
+        MotorDePreco porRegiao = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(Regiao.NORTE, "*:9.00"), 6000));
+        ItemCompra item = criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L);
+        dimensionar(item, "60", "50", "40");
+
+        assertEquals(new BigDecimal("280.00"), porRegiao.calcularCustoTotal(List.of(item), Regiao.NORTE));
+        assertEquals(new BigDecimal("180.00"), porRegiao.calcularCustoTotal(List.of(item), Regiao.SUDESTE));
+    }
+
+    // Mesma propriedade com descontos por categoria e por nível, inclusive
+    // percentuais quebrados que tiram o ponto fixo da escala exata
+    @ParameterizedTest
+    @InstancioSource(samples = 500)
+    @DisplayName("Cálculo em ponto fixo deve ser idêntico ao com BigDecimal com descontos por categoria e nível")
+    void deveSerIdenticoComDescontosPorCategoriaENivel(@Given(CarrinhoDeCategorias.class) List<ItemCompra> itens) {
+        MotorDePreco comDescontos = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(), 6000,
+                Map.of(TipoProduto.LIVRO, "5", TipoProduto.ROUPA, "12.5", TipoProduto.MOVEL, "0.33"),
+                Map.of(TipoCliente.PRATA, "2", TipoCliente.OURO, "7.25")));
+
+        for (TipoCliente nivel : new TipoCliente[] {null, TipoCliente.BRONZE, TipoCliente.PRATA, TipoCliente.OURO}) {
+            assertEquals(comDescontos.calcularComBigDecimal(itens, nivel, Regiao.SUL),
+                    comDescontos.calcularCustoTotal(itens, nivel, Regiao.SUL), () -> nivel + " " + descrever(itens));
+        }
+    }
+
+    @Test
+    @DisplayName("Descontos devem ser aplicados em ordem: categoria, valor e nível do cliente")
+    void descontosDevemSerAplicadosEmOrdem() {
+        MotorDePreco comDescontos = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(), 6000, Map.of(TipoProduto.LIVRO, "10"),
+                Map.of(TipoCliente.OURO, "5")));
+        ItemCompra livro = criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L);
+        livro.getProduto().setTipo(TipoProduto.LIVRO);
+        ItemCompra eletronico = criarItem(new BigDecimal("500.00"), new BigDecimal("1.00"), 1L);
+        List<ItemCompra> itens = List.of(livro, eletronico);
+
+        // 600 - 10 (livro) = 590; -10% da faixa de R$ 500 = 531; -5% do nível OURO = 504,45
+        assertEquals(new BigDecimal("531.00"), comDescontos.calcularCustoTotal(itens, TipoCliente.BRONZE, null));
+        assertEquals(new BigDecimal("504.45"), comDescontos.calcularCustoTotal(itens, TipoCliente.OURO, null));
+    }
+
+    @Test
+    @DisplayName("Faixa de desconto por valor deve considerar o valor já com o desconto por categoria")
+    void faixaDeValorDeveConsiderarODescontoPorCategoria() {
+        MotorDePreco comDescontos = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(), 6000, Map.of(TipoProduto.LIVRO, "20"), Map.of()));
+        ItemCompra livro = criarItem(new BigDecimal("450.00"), new BigDecimal("1.00"), 1L);
+        livro.getProduto().setTipo(TipoProduto.LIVRO);
+        ItemCompra eletronico = criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 1L);
+
+        // 550 - 90 (livro) = 460, abaixo da faixa de R$ 500
+        assertEquals(new BigDecimal("460.00"), comDescontos.calcularCustoTotal(List.of(livro, eletronico)));
+    }
+
+    // Propriedade: a cotação tem o mesmo total do cálculo e as parcelas somam o total
+    @ParameterizedTest
+    @InstancioSource(samples = 500)
+    @DisplayName("Cotação deve ter o total do cálculo e parcelas que somam o total")
+    void cotacaoDeveSomarOTotal(@Given(CarrinhoDeCategorias.class) List<ItemCompra> itens) {
+        MotorDePreco comDescontos = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(), 6000, Map.of(TipoProduto.LIVRO, "5"),
+                Map.of(TipoCliente.OURO, "2.5")));
+
+        CotacaoDTO cotacao = comDescontos.cotar(itens, ItemCompra::getProduto, TipoCliente.OURO, Regiao.SUL);
+
+        assertEquals(comDescontos.calcularCustoTotal(itens, TipoCliente.OURO, Regiao.SUL), cotacao.total(),
+                () -> descrever(itens));
+        assertEquals(0, cotacao.subtotal().subtract(cotacao.desconto()).add(cotacao.frete())
+                .add(cotacao.taxaDeFragil()).compareTo(cotacao.total()), () -> cotacao + " " + descrever(itens));
+        assertTrue(cotacao.desconto().signum() >= 0, () -> cotacao + " " + descrever(itens));
+    }
+
+    @Test
+    @DisplayName("Cotação em BigDecimal deve separar frete e taxa de frágeis")
+    void cotacaoEmBigDecimal() {
+        List<ItemCompra> itens = List.of(criarItemFragil(new BigDecimal("166.665"), new BigDecimal("2.5"), 3L));
+
+        // 499,995 + 7,5 kg a R$ 2,00 + 3 frágeis a R$ 5,00 = 529,995, arredondados
+        assertEquals(new CotacaoDTO(new BigDecimal("500.00"), new BigDecimal("0.00"), new BigDecimal("15.00"),
+                new BigDecimal("15.00"), new BigDecimal("530.00")), motor.cotar(itens, ItemCompra::getProduto, null, null));
+    }
+
+    // Propriedade: os totais somados item a item são os totais do carrinho, e a
+    // cotação por eles é a mesma da cotação pelos itens
+    @ParameterizedTest
+    @InstancioSource(samples = 500)
+    @DisplayName("Cotação pelos totais mantidos deve ser idêntica à cotação pelos itens")
+    void cotacaoPelosTotaisDeveSerIdenticaAPelosItens(@Given(CarrinhoComDimensoes.class) List<ItemCompra> itens) {
+        MotorDePreco comNivel = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(Regiao.NORTE, "2.5:3.15,20:5.80,*:9.99"), 5000, Map.of(),
+                Map.of(TipoCliente.OURO, "2.5")));
+
+        TotaisDoCarrinho totais = comNivel.totais(itens, ItemCompra::getProduto);
+        if (totais == null) {
+            // valores fora do ponto fixo: o carrinho é cotado pelos itens
+            return;
+        }
+        TotaisDoCarrinho somados = comNivel.totais(List.of(), ItemCompra::getProduto);
+        for (ItemCompra item : itens) {
+            somados = somados.mais(comNivel.totais(List.of(item), ItemCompra::getProduto));
+        }
+
+        assertEquals(totais, somados, () -> descrever(itens));
+        for (Regiao regiao : new Regiao[] {null, Regiao.NORTE}) {
+            assertEquals(comNivel.cotar(itens, ItemCompra::getProduto, TipoCliente.OURO, regiao),
+                    comNivel.cotar(totais, TipoCliente.OURO, regiao),
+                    () -> regiao + " " + descrever(itens));
+        }
+    }
+
+    @Test
+    @DisplayName("Itens fora do ponto fixo ou inválidos não devem ter totais mantidos")
+    void itensForaDoPontoFixoNaoDevemTerTotais() {
+        assertNull(motor.totais(List.of(criarItem(new BigDecimal("166.665"), new BigDecimal("1.00"), 3L)),
+                ItemCompra::getProduto));
+        assertNull(motor.totais(List.of(criarItem(new BigDecimal("10.00"), new BigDecimal("1.00"), 0L)),
+                ItemCompra::getProduto));
+        TotaisDoCarrinho totais = motor.totais(
+                List.of(criarItemFragil(new BigDecimal("100.00"), new BigDecimal("1.00"), 3L)), ItemCompra::getProduto);
+        assertEquals(new TotaisDoCarrinho(30000, 3000, 3, TabelaDePreco.FATOR_DE_CUBAGEM_PADRAO,
+                motor.getEpocaDosPrecos()), totais);
+    }
+
+    @Test
+    @DisplayName("Totais de uma época dos preços anterior devem ser cotados pelos itens")
+    void totaisDeEpocaAnteriorDevemSerCotadosPelosItens() {
+        List<ItemCompra> itens = List.of(criarItem(new BigDecimal("100.00"), new BigDecimal("1.00"), 3L));
+        TotaisDoCarrinho totais = motor.totais(itens, ItemCompra::getProduto);
+
+        assertEquals(new BigDecimal("300.00"), motor.cotar(totais, null, null).total());
+        motor.avancarEpocaDosPrecos();
+        assertNull(motor.cotar(totais, null, null));
+
+        totais = motor.totais(itens, ItemCompra::getProduto);
+        motor.atualizarTabela(TabelaDePreco.padrao());
+        assertNull(motor.cotar(totais, null, null));
+    }
+
+    @Test
+    @DisplayName("Totais de outro fator de cubagem ou plano com desconto por categoria devem ser cotados pelos itens")
+    void totaisQueNaoServemDevemSerCotadosPelosItens() {
+        MotorDePreco outroFator = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(), 5000));
+        MotorDePreco porCategoria = new MotorDePreco(TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(), TabelaDePreco.FATOR_DE_CUBAGEM_PADRAO,
+                Map.of(TipoProduto.LIVRO, "5"), Map.of()));
+
+        assertEquals(new BigDecimal("300.00"), motor.cotar(totaisDaEpoca(motor), null, null).total());
+        assertNull(outroFator.cotar(totaisDaEpoca(outroFator), null, null));
+        assertNull(porCategoria.cotar(totaisDaEpoca(porCategoria), null, null));
+        assertNull(motor.cotar(null, null, null));
+    }
+
+    private static TotaisDoCarrinho totaisDaEpoca(MotorDePreco motor) {
+        return new TotaisDoCarrinho(30000, 3000, 0, TabelaDePreco.FATOR_DE_CUBAGEM_PADRAO, motor.getEpocaDosPrecos());
+    }
+
+    private static void dimensionar(ItemCompra item, String comprimento, String largura, String altura) {
+        item.getProduto().setComprimento(new BigDecimal(comprimento));
+        item.getProduto().setLargura(new BigDecimal(largura));
+        item.getProduto().setAltura(new BigDecimal(altura));
+    }
+
+    private static String descrever(List<ItemCompra> itens) {
+        StringBuilder sb = new StringBuilder("Carrinho:");
+        for (ItemCompra item : itens) {
+            sb.append(String.format(" [%s preço=%s peso=%s dimensões=%sx%sx%s qtd=%d frágil=%s]",
+                    item.getProduto().getTipo(), item.getProduto().getPreco(), item.getProduto().getPesoFisico(),
+                    item.getProduto().getComprimento(), item.getProduto().getLargura(),
+                    item.getProduto().getAltura(), item.getQuantidade(), item.getProduto().isFragil()));
+        }
+        return sb.toString();
+    }
+
+    // Gera carrinhos que cruzam as faixas de desconto (500/1000) e de frete (5/10/50 kg),
+    // com preços de até 2 casas, pesos de até 4 casas (para exercitar o retorno ao
+    // BigDecimal) e quantidades variadas.
+    public static class CarrinhoAleatorio implements GivenProvider {
+
+        @Override
+        public Object provide(ElementContext context) {
+            Random random = context.random();
+            int quantidadeDeItens = random.intRange(1, 8);
+
+            List<ItemCompra> itens = new ArrayList<>();
+            for (int i = 0; i < quantidadeDeItens; i++) {
+                BigDecimal preco = BigDecimal.valueOf(random.longRange(0, 60_000), random.intRange(0, 2));
+                BigDecimal peso = BigDecimal.valueOf(random.longRange(1, 25_000), random.intRange(0, 4));
+                long quantidade = random.longRange(1, 12);
+
+                itens.add(random.trueOrFalse()
+                        ? criarItemFragil(preco, peso, quantidade)
+                        : criarItem(preco, peso, quantidade));
+            }
+            return itens;
+        }
+    }
+
+    // Carrinhos aleatórios em que parte dos produtos tem dimensões (até 3 casas, para
+    // exercitar o retorno ao BigDecimal) grandes o bastante para o peso cúbico vencer
+    public static class CarrinhoComDimensoes implements GivenProvider {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object provide(ElementContext context) {
+            Random random = context.random();
+            List<ItemCompra> itens = (List<ItemCompra>) new CarrinhoAleatorio().provide(context);
+            for (ItemCompra item : itens) {
+                if (random.trueOrFalse()) {
+                    item.getProduto().setComprimento(BigDecimal.valueOf(random.longRange(1, 12_000), random.intRange(0, 3)));
+                    item.getProduto().setLargura(BigDecimal.valueOf(random.longRange(1, 8_000), random.intRange(0, 2)));
+                    item.getProduto().setAltura(BigDecimal.valueOf(random.longRange(1, 6_000), random.intRange(0, 2)));
+                }
+            }
+            return itens;
+        }
+    }
+
+    // Carrinhos aleatórios com produtos de todas as categorias
+    public static class CarrinhoDeCategorias implements GivenProvider {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object provide(ElementContext context) {
+            Random random = context.random();
+            List<ItemCompra> itens = (List<ItemCompra>) new CarrinhoComDimensoes().provide(context);
+            for (ItemCompra item : itens) {
+                item.getProduto().setTipo(random.oneOf(TipoProduto.values()));
+            }
+            return itens;
+        }
+    }
+}
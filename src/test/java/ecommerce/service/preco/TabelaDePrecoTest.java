@@ -0,0 +1,201 @@
+package ecommerce.service.preco;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TabelaDePrecoTest {
+
+    private final TabelaDePreco padrao = TabelaDePreco.padrao();
+
+    @ParameterizedTest(name = "subtotal de {0} centavos deve ter {1} pontos-base de desconto")
+    @CsvSource({"0, 0", "49999, 0", "50000, 1000", "99999, 1000", "100000, 2000", "9999999, 2000"})
+    @DisplayName("Faixas padrão de desconto devem ser as de sempre")
+    void faixasPadraoDeDesconto(long subtotalCentavos, long pontosBase) {
+        assertEquals(pontosBase, padrao.pontosBaseDeDesconto(subtotalCentavos));
+    }
+
+    @ParameterizedTest(name = "peso de {0} g deve ter frete de {1} centavos por kg")
+    @CsvSource({"1, 0", "5000, 0", "5001, 200", "10000, 200", "10001, 400", "50000, 400", "50001, 700"})
+    @DisplayName("Faixas padrão de frete devem ser as de sempre")
+    void faixasPadraoDeFrete(long pesoGramas, long centavosPorKg) {
+        assertEquals(centavosPorKg, padrao.faixasDe(null).centavosPorKg(pesoGramas));
+    }
+
+    @Test
+    @DisplayName("Busca em BigDecimal deve respeitar os mesmos limites")
+    void buscaEmBigDecimal() {
+        assertEquals(0, BigDecimal.ZERO.compareTo(padrao.percentualDeDesconto(new BigDecimal("499.999"))));
+        assertEquals(0, new BigDecimal("0.10").compareTo(padrao.percentualDeDesconto(new BigDecimal("500"))));
+        assertEquals(0, new BigDecimal("2.00").compareTo(padrao.faixasDe(null).fretePorKg(new BigDecimal("10.0000"))));
+        assertEquals(0, new BigDecimal("4.00").compareTo(padrao.faixasDe(null).fretePorKg(new BigDecimal("10.0001"))));
+    }
+
+    @Test
+    @DisplayName("Configuração sem as propriedades deve resultar na tabela padrão")
+    void configuracaoVaziaDeveSerOPadrao() {
+        assertEquals(padrao, TabelaDePreco.daConfiguracao(new MockEnvironment()));
+        assertEquals("TabelaDePreco[descontos=500.00:10,1000.00:20, fretes=5.000:0.00,10.000:2.00,50.000:4.00,*:7.00, fatorDeCubagem=6000]",
+                padrao.toString());
+    }
+
+    @Test
+    @DisplayName("Tabela sem faixas de desconto não deve dar desconto")
+    void semFaixasDeDesconto() {
+        TabelaDePreco tabela = TabelaDePreco.de("", "*:1.00");
+
+        assertEquals(0, tabela.pontosBaseDeDesconto(Long.MAX_VALUE));
+        assertEquals(100, tabela.faixasDe(null).centavosPorKg(1));
+    }
+
+    @Test
+    @DisplayName("Região com faixas próprias deve usá-las e as demais devem usar as gerais")
+    void faixasPorRegiao() {
+        TabelaDePreco tabela = TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO, TabelaDePreco.FRETES_PADRAO,
+                Map.of(Regiao.NORTE, "5:1.00,*:9.00"), 6000);
+
+        assertEquals(100, tabela.faixasDe(Regiao.NORTE).centavosPorKg(5000));
+        assertEquals(900, tabela.faixasDe(Regiao.NORTE).centavosPorKg(5001));
+        assertEquals(0, tabela.faixasDe(Regiao.SUL).centavosPorKg(5000));
+        assertEquals(200, tabela.faixasDe(null).centavosPorKg(5001));
+        assertEquals(0, new BigDecimal("9.00").compareTo(tabela.faixasDe(Regiao.NORTE).fretePorKg(new BigDecimal("5.0001"))));
+        assertTrue(tabela.toString().contains("fretes NORTE=5.000:1.00,*:9.00"));
+    }
+
+    @Test
+    @DisplayName("Faixas por região e fator de cubagem devem vir da configuração")
+    void regioesEFatorDaConfiguracao() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("compra.preco.regioes.centro-oeste.fretes", "*:3.00")
+                .withProperty(TabelaDePreco.PROPRIEDADE_FATOR_DE_CUBAGEM, "5000");
+
+        TabelaDePreco tabela = TabelaDePreco.daConfiguracao(environment);
+
+        assertEquals(300, tabela.faixasDe(Regiao.CENTRO_OESTE).centavosPorKg(1));
+        assertEquals(0, tabela.faixasDe(Regiao.NORDESTE).centavosPorKg(1));
+        // 30 x 20 x 10 cm = 6000 cm³ / 5000 = 1,2 kg
+        assertEquals(1200, tabela.pesoCubicoGramas(6_000_000_000L));
+        assertThrows(IllegalArgumentException.class, () -> TabelaDePreco.daConfiguracao(
+                new MockEnvironment().withProperty(TabelaDePreco.PROPRIEDADE_FATOR_DE_CUBAGEM, "seis mil")));
+    }
+
+    @Test
+    @DisplayName("Peso cúbico deve ser arredondado para cima no grama e zero com fator zero")
+    void pesoCubico() {
+        // 10 x 10 x 10 cm = 1000 cm³ / 6000 = 0,1666... kg
+        assertEquals(167, padrao.pesoCubicoGramas(1_000_000_000L));
+        assertEquals(new BigDecimal("0.167"), padrao.pesoCubicoKg(new BigDecimal("1000")));
+
+        TabelaDePreco semCubagem = TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO, TabelaDePreco.FRETES_PADRAO,
+                Map.of(), 0);
+        assertEquals(0, semCubagem.pesoCubicoGramas(1_000_000_000L));
+        assertEquals(BigDecimal.ZERO, semCubagem.pesoCubicoKg(new BigDecimal("1000")));
+        assertThrows(IllegalArgumentException.class, () -> TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(), -1));
+        assertThrows(IllegalArgumentException.class, () -> TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO,
+                TabelaDePreco.FRETES_PADRAO, Map.of(Regiao.SUL, "5:1"), 6000));
+    }
+
+    @Test
+    @DisplayName("Plano de preço deve ser montado uma vez por nível e região")
+    void planoMontadoPorNivelERegiao() {
+        TabelaDePreco tabela = TabelaDePreco.de(TabelaDePreco.DESCONTOS_PADRAO, "*:1.00",
+                Map.of(Regiao.NORTE, "*:9.00"), 6000, Map.of(TipoProduto.LIVRO, "5"), Map.of(TipoCliente.OURO, "3"));
+
+        assertSame(tabela.plano(TipoCliente.OURO, Regiao.NORTE), tabela.plano(TipoCliente.OURO, Regiao.NORTE));
+        assertEquals("PlanoDePreco[DescontoPorCategoria[LIVRO=5%], DescontoPorValor, BeneficioDoNivel[3%], "
+                + "Frete[*:9.00], TaxaDeFragil[5.00]]", tabela.plano(TipoCliente.OURO, Regiao.NORTE).toString());
+        assertEquals("PlanoDePreco[DescontoPorCategoria[LIVRO=5%], DescontoPorValor, Frete[*:1.00], TaxaDeFragil[5.00]]",
+                tabela.plano(TipoCliente.PRATA, null).toString());
+        assertFalse(padrao.plano(TipoCliente.OURO, Regiao.SUL).porCategoria());
+        assertEquals("PlanoDePreco[DescontoPorValor, Frete[5.000:0.00,10.000:2.00,50.000:4.00,*:7.00], TaxaDeFragil[5.00]]",
+                padrao.plano(TipoCliente.OURO, Regiao.SUL).toString());
+    }
+
+    @Test
+    @DisplayName("Descontos por categoria e por nível devem vir da configuração")
+    void descontosPorCategoriaENivelDaConfiguracao() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("compra.preco.categorias.livro.desconto", "5")
+                .withProperty("compra.preco.clientes.ouro.desconto", "2.5");
+
+        TabelaDePreco tabela = TabelaDePreco.daConfiguracao(environment);
+
+        assertNotEquals(padrao, tabela);
+        assertTrue(tabela.toString().endsWith("fatorDeCubagem=6000, desconto LIVRO=5, desconto OURO=2.5]"),
+                tabela::toString);
+        assertThrows(IllegalArgumentException.class, () -> TabelaDePreco.daConfiguracao(
+                new MockEnvironment().withProperty("compra.preco.clientes.prata.desconto", "100.01")));
+        assertThrows(IllegalArgumentException.class, () -> TabelaDePreco.daConfiguracao(
+                new MockEnvironment().withProperty("compra.preco.categorias.movel.desconto", "0.001")));
+    }
+
+    @ParameterizedTest(name = "descontos ''{0}'' e fretes ''{1}'' devem ser recusados")
+    @CsvSource(delimiter = '|', value = {
+            "500:10,100:20 | *:1",
+            "500:10,500:20 | *:1",
+            "500:101       | *:1",
+            "500:-1        | *:1",
+            "500.001:10    | *:1",
+            "500           | *:1",
+            "abc:10        | *:1",
+            "500:10        | 5:0,10:2",
+            "500:10        | 10:2,5:1,*:3",
+            "500:10        | 5.0001:1,*:3",
+            "500:10        | ''"
+    })
+    @DisplayName("Faixas inválidas devem ser recusadas")
+    void faixasInvalidasDevemSerRecusadas(String descontos, String fretes) {
+        assertThrows(IllegalArgumentException.class, () -> TabelaDePreco.de(descontos, fretes));
+    }
+
+    @Test
+    @DisplayName("Mudança das faixas na configuração deve trocar a tabela do motor")
+    void mudancaNaConfiguracaoDeveTrocarATabela() {
+        MockEnvironment environment = new MockEnvironment();
+        MotorDePreco motor = new MotorDePreco(environment);
+        RecargaDaTabelaDePreco recarga = new RecargaDaTabelaDePreco(motor, environment);
+
+        environment.setProperty(TabelaDePreco.PROPRIEDADE_DESCONTOS, "100:5");
+        recarga.onApplicationEvent(new EnvironmentChangeEvent(Set.of("compra.lote.tamanho-maximo")));
+        assertEquals(padrao, motor.getTabela());
+
+        recarga.onApplicationEvent(new EnvironmentChangeEvent(Set.of(TabelaDePreco.PROPRIEDADE_DESCONTOS)));
+        assertEquals(500, motor.getTabela().pontosBaseDeDesconto(10_000));
+
+        environment.setProperty("compra.preco.regioes.sul.fretes", "*:1.00");
+        recarga.onApplicationEvent(new EnvironmentChangeEvent(Set.of("compra.preco.regioes.sul.fretes")));
+        assertEquals(100, motor.getTabela().faixasDe(Regiao.SUL).centavosPorKg(1));
+
+        environment.setProperty("compra.preco.clientes.bronze.desconto", "1");
+        recarga.onApplicationEvent(new EnvironmentChangeEvent(Set.of("compra.preco.clientes.bronze.desconto")));
+        assertEquals("PlanoDePreco[DescontoPorValor, BeneficioDoNivel[1%], Frete[*:1.00], TaxaDeFragil[5.00]]",
+                motor.getTabela().plano(TipoCliente.BRONZE, Regiao.SUL).toString());
+    }
+
+    @Test
+    @DisplayName("Recarga com faixas inválidas deve falhar e manter a tabela em uso")
+    void recargaInvalidaDeveManterATabela() {
+        MockEnvironment environment = new MockEnvironment();
+        MotorDePreco motor = new MotorDePreco(environment);
+        RecargaDaTabelaDePreco recarga = new RecargaDaTabelaDePreco(motor, environment);
+
+        environment.setProperty(TabelaDePreco.PROPRIEDADE_FRETES, "5:0");
+
+        assertThrows(IllegalArgumentException.class, () -> recarga.onApplicationEvent(
+                new EnvironmentChangeEvent(Set.of(TabelaDePreco.PROPRIEDADE_FRETES))));
+        assertEquals(padrao, motor.getTabela());
+    }
+}